@@ -30,8 +30,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
 import org.hibernate.util.EqualsHelper;
+import org.jasypt.encryption.StringEncryptor;
 import org.jasypt.encryption.pbe.PBEStringEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate.encryptor.HibernatePBEEncryptorRegistry;
 
@@ -64,7 +66,7 @@ public abstract class AbstractEncryptedAsStringType
     private Integer keyObtentionIterations = null;
     private String stringOutputType = null;
     
-    protected PBEStringEncryptor encryptor = null;
+    protected StringEncryptor encryptor = null;
 
     /**
      * Converts given String to its Object form.
@@ -255,31 +257,30 @@ public abstract class AbstractEncryptedAsStringType
                 
             } else {
                 
-                final StandardPBEStringEncryptor newEncryptor = 
-                    new StandardPBEStringEncryptor();
+                final SimpleStringPBEConfig config = new SimpleStringPBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.providerName != null) {
-                    newEncryptor.setProviderName(this.providerName);
+                    config.setProviderName(this.providerName);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
                 if (this.stringOutputType != null) {
-                    newEncryptor.setStringOutputType(this.stringOutputType);
+                    config.setStringOutputType(this.stringOutputType);
                 }
                 
-                newEncryptor.initialize();
-                
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
                 
             }
             
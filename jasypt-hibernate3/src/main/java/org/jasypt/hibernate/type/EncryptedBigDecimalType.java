@@ -31,8 +31,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
 import org.hibernate.util.EqualsHelper;
+import org.jasypt.encryption.BigDecimalEncryptor;
 import org.jasypt.encryption.pbe.PBEBigDecimalEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEBigDecimalEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate.encryptor.HibernatePBEBigDecimalEncryptor;
 import org.jasypt.hibernate.encryptor.HibernatePBEEncryptorRegistry;
@@ -150,7 +152,7 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
     private Integer keyObtentionIterations = null;
     private Integer decimalScale = null;
     
-    private PBEBigDecimalEncryptor encryptor = null;
+    private BigDecimalEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -350,23 +352,22 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
                 
             } else {
                 
-                final StandardPBEBigDecimalEncryptor newEncryptor = 
-                    new StandardPBEBigDecimalEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
-                
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getBigDecimalEncryptor(config);
                 
             }
             
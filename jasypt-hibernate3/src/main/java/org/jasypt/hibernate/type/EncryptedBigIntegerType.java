@@ -32,8 +32,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
 import org.hibernate.util.EqualsHelper;
+import org.jasypt.encryption.BigIntegerEncryptor;
 import org.jasypt.encryption.pbe.PBEBigIntegerEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEBigIntegerEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate.encryptor.HibernatePBEBigIntegerEncryptor;
 import org.jasypt.hibernate.encryptor.HibernatePBEEncryptorRegistry;
@@ -127,7 +129,7 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
     private String password = null;
     private Integer keyObtentionIterations = null;
     
-    private PBEBigIntegerEncryptor encryptor = null;
+    private BigIntegerEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -301,23 +303,22 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
                 
             } else {
                 
-                final StandardPBEBigIntegerEncryptor newEncryptor = 
-                    new StandardPBEBigIntegerEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
-                
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getBigIntegerEncryptor(config);
                 
             }
             
@@ -34,8 +34,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.cfg.Environment;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
+import org.jasypt.encryption.ByteEncryptor;
 import org.jasypt.encryption.pbe.PBEByteEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate.encryptor.HibernatePBEByteEncryptor;
 import org.jasypt.hibernate.encryptor.HibernatePBEEncryptorRegistry;
@@ -131,7 +133,7 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
     private String password = null;
     private Integer keyObtentionIterations = null;
     
-    private PBEByteEncryptor encryptor = null;
+    private ByteEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -374,23 +376,22 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
                 
             } else {
                 
-                final StandardPBEByteEncryptor newEncryptor = 
-                    new StandardPBEByteEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
-                
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getByteEncryptor(config);
                 
             }
             
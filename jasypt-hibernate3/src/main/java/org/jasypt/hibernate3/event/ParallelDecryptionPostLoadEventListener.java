@@ -0,0 +1,111 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.event;
+
+import org.hibernate.event.PostLoadEvent;
+import org.hibernate.event.def.DefaultPostLoadEventListener;
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.hibernate3.type.LazyDecryptedValue;
+
+/**
+ * <p>
+ * <b>Hibernate</b> <tt>PostLoadEventListener</tt> which decrypts, in 
+ * parallel, all the values loaded by jasypt types configured with 
+ * parallel decryption 
+ * (see {@link org.jasypt.hibernate3.type.ParameterNaming#PARALLEL_DECRYPTION}).
+ * </p>
+ * <p>
+ * Hibernate reads all the rows of a result before initializing (and 
+ * post-loading) any of the entities, so that when the first entity is
+ * post-loaded the encrypted values of all the rows are already waiting 
+ * for decryption. All of them are then decrypted at once, in parallel, 
+ * before any entity is returned to the caller.
+ * </p>
+ * <p>
+ * As it extends Hibernate's default post-load listener, it can be directly
+ * set as the <tt>post-load</tt> listener in the Hibernate configuration:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-configuration>
+ *    &lt;session-factory>
+ *      ...
+ *      &lt;listener type="post-load" class="org.jasypt.hibernate3.event.ParallelDecryptionPostLoadEventListener"/>
+ *      ...
+ *    &lt;/session-factory>
+ *  &lt;/hibernate-configuration>
+ * </pre>
+ * </p>
+ * <p>
+ * Note that parallel decryption only pays off if the encryptor used by 
+ * the types can actually work concurrently (e.g. a 
+ * <tt>PooledPBEStringEncryptor</tt>).
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public class ParallelDecryptionPostLoadEventListener 
+        extends DefaultPostLoadEventListener {
+
+    private static final long serialVersionUID = 4387109534182635102L;
+    
+    private final int threadCount;
+    
+    
+    /**
+     * <p>
+     * Creates a new listener which will use as many threads as available
+     * processors.
+     * </p>
+     */
+    public ParallelDecryptionPostLoadEventListener() {
+        this(ParallelProcessingUtils.getDefaultThreadCount());
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new listener.
+     * </p>
+     * 
+     * @param threadCount the maximum number of threads to be used for
+     *        decrypting the values of each load operation.
+     */
+    public ParallelDecryptionPostLoadEventListener(final int threadCount) {
+        super();
+        CommonUtils.validateIsTrue(threadCount > 0, "Thread count must be > 0");
+        this.threadCount = threadCount;
+        LazyDecryptedValue.registerDecryptionListener();
+    }
+    
+    
+    public void onPostLoad(final PostLoadEvent event) {
+        LazyDecryptedValue.decryptPendingValues(this.threadCount);
+        super.onPostLoad(event);
+    }
+    
+}
@@ -30,8 +30,11 @@ import org.hibernate.HibernateException;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
 import org.hibernate.util.EqualsHelper;
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringEncryptor;
 import org.jasypt.encryption.pbe.PBEStringEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate3.encryptor.HibernatePBEEncryptorRegistry;
 
@@ -60,9 +63,12 @@ public abstract class AbstractEncryptedAsStringType
     private String providerName = null;
     private String password = null;
     private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
     private String stringOutputType = null;
+    private boolean lazyDecryption = false;
+    private boolean parallelDecryption = false;
     
-    protected PBEStringEncryptor encryptor = null;
+    protected StringEncryptor encryptor = null;
 
     /**
      * Converts given String to its Object form.
@@ -86,6 +92,19 @@ public abstract class AbstractEncryptedAsStringType
 
     
     public abstract Class returnedClass();
+    
+    
+    /**
+     * Returns whether this type works in <i>lazy decryption</i> mode, 
+     * in which values are returned wrapped in {@link LazyDecryptedValue}
+     * holders and decrypted only when first accessed.
+     * 
+     * @return true if lazy decryption is enabled, false if not.
+     * @since 1.9.3
+     */
+    protected final boolean isLazyDecryption() {
+        return this.lazyDecryption;
+    }
 
     
     public final boolean equals(final Object x, final Object y) 
@@ -105,6 +124,9 @@ public abstract class AbstractEncryptedAsStringType
         if (cached == null) {
             return null;
         }
+        if (this.lazyDecryption) {
+            return new LazyDecryptedValue(cached);
+        }
         return deepCopy(cached);
     }
 
@@ -114,6 +136,9 @@ public abstract class AbstractEncryptedAsStringType
         if (value == null) {
             return null;
         }
+        if (value instanceof LazyDecryptedValue) {
+            return (Serializable) ((LazyDecryptedValue) value).getValue();
+        }
         return (Serializable) deepCopy(value);
     }
 
@@ -139,7 +164,24 @@ public abstract class AbstractEncryptedAsStringType
             throws HibernateException, SQLException {
         checkInitialization();
         final String message = rs.getString(names[0]);
-        return rs.wasNull() ? null : convertToObject(this.encryptor.decrypt(message));
+        if (rs.wasNull()) {
+            return null;
+        }
+        if (this.lazyDecryption) {
+            final LazyDecryptedValue holder = new LazyDecryptedValue(this, message);
+            if (this.parallelDecryption) {
+                if (!LazyDecryptedValue.isDecryptionListenerRegistered()) {
+                    // Pending values would never be decrypted nor released
+                    throw new EncryptionInitializationException(
+                            "\"" + ParameterNaming.PARALLEL_DECRYPTION + "\" requires " +
+                            "org.jasypt.hibernate3.event.ParallelDecryptionPostLoadEventListener " +
+                            "to be configured as post-load listener");
+                }
+                LazyDecryptedValue.addPending(holder);
+            }
+            return holder;
+        }
+        return convertToObject(this.encryptor.decrypt(message));
     }
 
     
@@ -148,6 +190,20 @@ public abstract class AbstractEncryptedAsStringType
         checkInitialization();
         if (value == null) {
             st.setNull(index, sqlType);
+        } else if (value instanceof LazyDecryptedValue) {
+            final LazyDecryptedValue holder = (LazyDecryptedValue) value;
+            final String message = holder.getEncryptedMessage(this);
+            if (message != null) {
+                // Unchanged value loaded by this type: no need to re-encrypt
+                st.setString(index, message);
+            } else {
+                final Object holderValue = holder.getValue();
+                if (holderValue == null) {
+                    st.setNull(index, sqlType);
+                } else {
+                    st.setString(index, this.encryptor.encrypt(convertToString(holderValue)));
+                }
+            }
         } else {
             st.setString(index, this.encryptor.encrypt(convertToString(value)));
         }
@@ -166,22 +222,54 @@ public abstract class AbstractEncryptedAsStringType
             parameters.getProperty(ParameterNaming.PASSWORD);
         final String paramKeyObtentionIterations =
             parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
         final String paramStringOutputType =
             parameters.getProperty(ParameterNaming.STRING_OUTPUT_TYPE);
+        final String paramLazyDecryption =
+            parameters.getProperty(ParameterNaming.LAZY_DECRYPTION);
+        final String paramParallelDecryption =
+            parameters.getProperty(ParameterNaming.PARALLEL_DECRYPTION);
+        
+        if ((paramLazyDecryption != null) && (!paramLazyDecryption.trim().equals(""))) {
+            final Boolean lazy = CommonUtils.getStandardBooleanValue(paramLazyDecryption);
+            if (lazy == null) {
+                throw new EncryptionInitializationException(
+                        "Value specified for \"" + 
+                        ParameterNaming.LAZY_DECRYPTION + 
+                        "\" is not a valid boolean");
+            }
+            this.lazyDecryption = lazy.booleanValue();
+        }
+        
+        if ((paramParallelDecryption != null) && (!paramParallelDecryption.trim().equals(""))) {
+            final Boolean parallel = CommonUtils.getStandardBooleanValue(paramParallelDecryption);
+            if (parallel == null) {
+                throw new EncryptionInitializationException(
+                        "Value specified for \"" + 
+                        ParameterNaming.PARALLEL_DECRYPTION + 
+                        "\" is not a valid boolean");
+            }
+            // Parallel decryption is performed on lazy decryption holders
+            this.parallelDecryption = parallel.booleanValue();
+            this.lazyDecryption = this.lazyDecryption || this.parallelDecryption;
+        }
         
         this.useEncryptorName = false;
         if (paramEncryptorName != null) {
             
             if ((paramAlgorithm != null) ||
                 (paramPassword != null) ||
-                (paramKeyObtentionIterations != null)) {
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
                 
                 throw new EncryptionInitializationException(
                         "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
                         "\" is specified, none of \"" +
                         ParameterNaming.ALGORITHM + "\", \"" +
-                        ParameterNaming.PASSWORD + "\" or \"" + 
-                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" " +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
                         "can be specified");
                 
             }
@@ -215,6 +303,8 @@ public abstract class AbstractEncryptedAsStringType
                 
             }
             
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
             if (paramStringOutputType != null) {
                 this.stringOutputType = paramStringOutputType;
             }
@@ -234,6 +324,16 @@ public abstract class AbstractEncryptedAsStringType
 
     
     
+    /*
+     * Decrypts an encrypted message read from the database and converts
+     * it to its object form. Used by lazy decryption holders.
+     */
+    final Object decryptToObject(final String message) {
+        checkInitialization();
+        return convertToObject(this.encryptor.decrypt(message));
+    }
+    
+    
     protected synchronized final void checkInitialization() {
         
         if (!this.initialized) {
@@ -253,31 +353,32 @@ public abstract class AbstractEncryptedAsStringType
                 
             } else {
                 
-                final StandardPBEStringEncryptor newEncryptor = 
-                    new StandardPBEStringEncryptor();
+                final SimpleStringPBEConfig config = new SimpleStringPBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.providerName != null) {
-                    newEncryptor.setProviderName(this.providerName);
+                    config.setProviderName(this.providerName);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
+                config.setPoolSize(PoolSizeParameter.resolve(this.poolSize));
+                
                 if (this.stringOutputType != null) {
-                    newEncryptor.setStringOutputType(this.stringOutputType);
+                    config.setStringOutputType(this.stringOutputType);
                 }
                 
-                newEncryptor.initialize();
-                
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
                 
             }
             
@@ -0,0 +1,231 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import org.jasypt.encryption.ByteStreamEncryptor;
+
+/**
+ * <p>
+ * Read-only <tt>Blob</tt> which decrypts the contents of an encrypted 
+ * <tt>Blob</tt> on the fly, every time its stream is read.
+ * </p>
+ * <p>
+ * As the length of the decrypted contents is not stored, 
+ * {@link #length()} requires reading (and decrypting) them all.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+final class DecryptedBlob implements Blob {
+
+    private final Blob encryptedBlob;
+    private final ByteStreamEncryptor encryptor;
+    private long length = -1L;
+    
+    
+    DecryptedBlob(final Blob encryptedBlob, final ByteStreamEncryptor encryptor) {
+        super();
+        this.encryptedBlob = encryptedBlob;
+        this.encryptor = encryptor;
+    }
+    
+    
+    Blob getEncryptedBlob() {
+        return this.encryptedBlob;
+    }
+    
+    
+    ByteStreamEncryptor getEncryptor() {
+        return this.encryptor;
+    }
+    
+
+    public InputStream getBinaryStream() throws SQLException {
+        return this.encryptor.decryptStream(this.encryptedBlob.getBinaryStream());
+    }
+
+
+    public InputStream getBinaryStream(final long pos, final long length) 
+            throws SQLException {
+        final InputStream stream = getBinaryStream();
+        skip(stream, pos - 1);
+        return new BoundedInputStream(stream, length);
+    }
+
+
+    public byte[] getBytes(final long pos, final int length) throws SQLException {
+        final InputStream stream = getBinaryStream(pos, length);
+        try {
+            final byte[] buffer = new byte[length];
+            int total = 0;
+            while (total < length) {
+                final int read = stream.read(buffer, total, length - total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            if (total == length) {
+                return buffer;
+            }
+            final byte[] result = new byte[total];
+            System.arraycopy(buffer, 0, result, 0, total);
+            return result;
+        } catch (final IOException e) {
+            throw new SQLException(e.getMessage());
+        } finally {
+            close(stream);
+        }
+    }
+
+
+    public synchronized long length() throws SQLException {
+        if (this.length < 0) {
+            final InputStream stream = getBinaryStream();
+            try {
+                this.length = skip(stream, Long.MAX_VALUE);
+            } finally {
+                close(stream);
+            }
+        }
+        return this.length;
+    }
+
+
+    public long position(final byte[] pattern, final long start) throws SQLException {
+        throw new SQLException("Searching is not supported by encrypted Blobs");
+    }
+
+
+    public long position(final Blob pattern, final long start) throws SQLException {
+        throw new SQLException("Searching is not supported by encrypted Blobs");
+    }
+
+
+    public int setBytes(final long pos, final byte[] bytes) throws SQLException {
+        throw new SQLException("Encrypted Blobs are read-only");
+    }
+
+
+    public int setBytes(final long pos, final byte[] bytes, final int offset, final int len)
+            throws SQLException {
+        throw new SQLException("Encrypted Blobs are read-only");
+    }
+
+
+    public OutputStream setBinaryStream(final long pos) throws SQLException {
+        throw new SQLException("Encrypted Blobs are read-only");
+    }
+
+
+    public void truncate(final long len) throws SQLException {
+        throw new SQLException("Encrypted Blobs are read-only");
+    }
+
+
+    public void free() throws SQLException {
+        this.encryptedBlob.free();
+    }
+    
+    
+    
+    /*
+     * Skips (reading) the specified number of bytes, returning the number
+     * of bytes actually skipped.
+     */
+    static long skip(final InputStream stream, final long count) throws SQLException {
+        try {
+            final byte[] buffer = new byte[4096];
+            long total = 0L;
+            while (total < count) {
+                final int read = 
+                    stream.read(buffer, 0, (int) Math.min(buffer.length, count - total));
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        } catch (final IOException e) {
+            throw new SQLException(e.getMessage());
+        }
+    }
+    
+    
+    static void close(final InputStream stream) {
+        try {
+            stream.close();
+        } catch (final IOException e) {
+            // exception ignored
+        }
+    }
+    
+    
+    
+    private static final class BoundedInputStream extends InputStream {
+        
+        private final InputStream stream;
+        private long remaining;
+        
+        BoundedInputStream(final InputStream stream, final long length) {
+            super();
+            this.stream = stream;
+            this.remaining = length;
+        }
+        
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int result = this.stream.read();
+            if (result >= 0) {
+                this.remaining--;
+            }
+            return result;
+        }
+        
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int result = 
+                this.stream.read(b, off, (int) Math.min(len, this.remaining));
+            if (result > 0) {
+                this.remaining -= result;
+            }
+            return result;
+        }
+        
+        public void close() throws IOException {
+            this.stream.close();
+        }
+        
+    }
+    
+}
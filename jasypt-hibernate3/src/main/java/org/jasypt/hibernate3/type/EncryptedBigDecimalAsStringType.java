@@ -109,7 +109,7 @@ public final class EncryptedBigDecimalAsStringType extends AbstractEncryptedAsSt
     }
 
     public Class returnedClass() {
-        return BigDecimal.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : BigDecimal.class);
     }
 
 
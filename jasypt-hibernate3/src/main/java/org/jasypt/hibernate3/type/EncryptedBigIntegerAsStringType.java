@@ -109,7 +109,7 @@ public final class EncryptedBigIntegerAsStringType extends AbstractEncryptedAsSt
     }
 
     public Class returnedClass() {
-        return BigInteger.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : BigInteger.class);
     }
 
 
@@ -32,8 +32,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
 import org.hibernate.util.EqualsHelper;
+import org.jasypt.encryption.BigIntegerEncryptor;
 import org.jasypt.encryption.pbe.PBEBigIntegerEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEBigIntegerEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate3.encryptor.HibernatePBEBigIntegerEncryptor;
 import org.jasypt.hibernate3.encryptor.HibernatePBEEncryptorRegistry;
@@ -124,8 +126,9 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
     private String algorithm = null;
     private String password = null;
     private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
     
-    private PBEBigIntegerEncryptor encryptor = null;
+    private BigIntegerEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -222,20 +225,24 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
             parameters.getProperty(ParameterNaming.PASSWORD);
         final String paramKeyObtentionIterations =
             parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
         
         this.useEncryptorName = false;
         if (paramEncryptorName != null) {
             
             if ((paramAlgorithm != null) ||
                 (paramPassword != null) ||
-                (paramKeyObtentionIterations != null)) {
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
                 
                 throw new EncryptionInitializationException(
                         "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
                         "\" is specified, none of \"" +
                         ParameterNaming.ALGORITHM + "\", \"" +
-                        ParameterNaming.PASSWORD + "\" or \"" + 
-                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" " +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
                         "can be specified");
                 
             }
@@ -265,6 +272,8 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
                 
             }
             
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
         } else {
             
             throw new EncryptionInitializationException(
@@ -299,23 +308,24 @@ public final class EncryptedBigIntegerType implements UserType, ParameterizedTyp
                 
             } else {
                 
-                final StandardPBEBigIntegerEncryptor newEncryptor = 
-                    new StandardPBEBigIntegerEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
+                config.setPoolSize(PoolSizeParameter.resolve(this.poolSize));
                 
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getBigIntegerEncryptor(config);
                 
             }
             
@@ -34,8 +34,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.cfg.Environment;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
+import org.jasypt.encryption.ByteEncryptor;
 import org.jasypt.encryption.pbe.PBEByteEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate3.encryptor.HibernatePBEByteEncryptor;
 import org.jasypt.hibernate3.encryptor.HibernatePBEEncryptorRegistry;
@@ -128,8 +130,9 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
     private String algorithm = null;
     private String password = null;
     private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
     
-    private PBEByteEncryptor encryptor = null;
+    private ByteEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -295,20 +298,24 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
             parameters.getProperty(ParameterNaming.PASSWORD);
         final String paramKeyObtentionIterations =
             parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
         
         this.useEncryptorName = false;
         if (paramEncryptorName != null) {
             
             if ((paramAlgorithm != null) ||
                 (paramPassword != null) ||
-                (paramKeyObtentionIterations != null)) {
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
                 
                 throw new EncryptionInitializationException(
                         "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
                         "\" is specified, none of \"" +
                         ParameterNaming.ALGORITHM + "\", \"" +
-                        ParameterNaming.PASSWORD + "\" or \"" + 
-                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" " +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
                         "can be specified");
                 
             }
@@ -338,6 +345,8 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
                 
             }
             
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
         } else {
             
             throw new EncryptionInitializationException(
@@ -372,23 +381,24 @@ public final class EncryptedBinaryType implements UserType, ParameterizedType {
                 
             } else {
                 
-                final StandardPBEByteEncryptor newEncryptor = 
-                    new StandardPBEByteEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
+                config.setPoolSize(PoolSizeParameter.resolve(this.poolSize));
                 
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getByteEncryptor(config);
                 
             }
             
@@ -109,7 +109,7 @@ public final class EncryptedBooleanAsStringType extends AbstractEncryptedAsStrin
     }
 
     public Class returnedClass() {
-        return Boolean.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Boolean.class);
     }
 
  
@@ -160,7 +160,7 @@ public final class EncryptedCalendarAsStringType extends AbstractEncryptedAsStri
 
 
     public Class returnedClass() {
-        return Calendar.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Calendar.class);
     }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import java.util.Date;
+
+import org.jasypt.hibernate3.encryptor.HibernatePBEByteEncryptor;
+import org.jasypt.hibernate3.encryptor.HibernatePBEEncryptorRegistry;
+
+/**
+ * <p>
+ * A <b>Hibernate</b> <tt>UserType</tt> implementation which allows 
+ * encryption of Date values into binary (VARBINARY) database fields
+ * during persistence of entities.
+ * </p>
+ * <p>
+ * Values are stored in a compact binary form, which makes encrypted 
+ * values smaller and faster to process than those of 
+ * <tt>EncryptedDateAsStringType</tt>.
+ * </p>
+ * <p>
+ * <i>This class is intended only for declarative use from a Hibernate mapping
+ * file. Do not use it directly from your <tt>.java</tt> files (although
+ * of course you can use it when mapping entities using annotations).</i>
+ * </p>
+ * <p>
+ * To use this Hibernate type in one of your Hibernate mappings, you can
+ * add it like this:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedDateAsBinary</b>" class="org.jasypt.hibernate3.type.EncryptedDateAsBinaryType">
+ *      &lt;param name="encryptorRegisteredName"><b><i>myHibernateByteEncryptor</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="birth" column="BIRTH" type="<b>encryptedDateAsBinary</b>" />
+ *      ...
+ *    &lt;class>
+ *    ...
+ *  &lt;hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * ...where a <tt>HibernatePBEByteEncryptor</tt> object
+ * should have been previously registered to be used
+ * from Hibernate with name <tt>myHibernateByteEncryptor</tt> (see
+ * {@link HibernatePBEByteEncryptor} and {@link HibernatePBEEncryptorRegistry}). 
+ * </p>
+ * <p>
+ * Or, if you prefer to avoid registration of encryptors, you can configure
+ * your encryptor directly in the mapping file (although not recommended), 
+ * like this:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedDateAsBinary</b>" class="org.jasypt.hibernate3.type.EncryptedDateAsBinaryType">
+ *      &lt;param name="algorithm"><b><i>PBEWithMD5AndTripleDES</i></b>&lt;/param>
+ *      &lt;param name="password"><b><i>XXXXX</i></b>&lt;/param>
+ *      &lt;param name="keyObtentionIterations"><b><i>1000</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="birth" column="BIRTH" type="<b>encryptedDateAsBinary</b>" />
+ *      ...
+ *    &lt;class>
+ *    ...
+ *  &lt;hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * To learn more about usage of user-defined types, please refer to the
+ * <a href="http://www.hibernate.org" target="_blank">Hibernate Reference
+ * Documentation</a>.
+ * </p>
+ * 
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptedDateAsBinaryType extends AbstractEncryptedAsBinaryType {
+
+    protected Object convertToObject(final byte[] bytes) {
+        checkLength(bytes, 8);
+        return new Date(readLong(bytes, 0));
+    }
+
+
+    protected byte[] convertToBytes(final Object object) {
+        final byte[] bytes = new byte[8];
+        writeLong(((Date) object).getTime(), bytes, 0);
+        return bytes;
+    }
+
+
+    public Object deepCopy(final Object value) {
+        // Dates are mutable
+        return (value == null? null : new Date(((Date) value).getTime()));
+    }
+
+
+    public boolean isMutable() {
+        return true;
+    }
+
+
+    public Class returnedClass() {
+        return Date.class;
+    }
+
+}
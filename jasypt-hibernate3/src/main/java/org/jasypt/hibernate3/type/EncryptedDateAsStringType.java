@@ -121,7 +121,7 @@ public final class EncryptedDateAsStringType extends AbstractEncryptedAsStringTy
 
 
     public Class returnedClass() {
-        return Date.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Date.class);
     }
     
 }
@@ -110,7 +110,7 @@ public final class EncryptedFloatAsStringType extends AbstractEncryptedAsStringT
     }
 
     public Class returnedClass() {
-        return Float.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Float.class);
     }
     
 }
@@ -109,7 +109,7 @@ public final class EncryptedIntegerAsStringType extends AbstractEncryptedAsStrin
     }
 
     public Class returnedClass() {
-        return Integer.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Integer.class);
     }
 
  
@@ -109,7 +109,7 @@ public final class EncryptedLongAsStringType extends AbstractEncryptedAsStringTy
     }
 
     public Class returnedClass() {
-        return Long.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Long.class);
     }
 
  
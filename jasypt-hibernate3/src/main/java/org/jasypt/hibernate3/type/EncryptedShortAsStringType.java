@@ -109,7 +109,7 @@ public final class EncryptedShortAsStringType extends AbstractEncryptedAsStringT
     }
 
     public Class returnedClass() {
-        return Short.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Short.class);
     }
 
     
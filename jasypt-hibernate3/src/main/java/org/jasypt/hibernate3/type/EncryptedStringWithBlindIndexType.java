@@ -0,0 +1,269 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.type.Type;
+import org.hibernate.usertype.CompositeUserType;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.util.EqualsHelper;
+import org.jasypt.digest.HmacBlindIndexer;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+
+
+/**
+ * <p>
+ * A <b>Hibernate</b> <tt>CompositeUserType</tt> implementation which allows 
+ * transparent encryption of String values during persistence of entities,
+ * and also stores a <i>blind index</i> of each value (a keyed HMAC digest,
+ * see {@link HmacBlindIndexer}) in a second column, so that entities can be
+ * searched by value using a standard database index.
+ * </p>
+ * <p>
+ * <i>This class is intended only for declarative use from a Hibernate mapping
+ * file. Do not use it directly from your <tt>.java</tt> files (although
+ * of course you can use it when mapping entities using annotations).</i>
+ * </p>
+ * <p>
+ * Encryption is configured with the same parameters as 
+ * {@link EncryptedStringType}, and the blind index with the 
+ * <tt>blindIndexPassword</tt> (required) and <tt>blindIndexAlgorithm</tt> 
+ * (optional, <tt>HmacSHA256</tt> by default) parameters:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedIndexedString</b>" class="org.jasypt.hibernate3.type.EncryptedStringWithBlindIndexType">
+ *      &lt;param name="encryptorRegisteredName"><b><i>myHibernateStringEncryptor</i></b>&lt;/param>
+ *      &lt;param name="blindIndexPassword"><b><i>YYYYY</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="email" type="<b>encryptedIndexedString</b>">
+ *        &lt;column name="EMAIL" />
+ *        &lt;column name="EMAIL_INDEX" />
+ *      &lt;/property>
+ *      ...
+ *    &lt;/class>
+ *    ...
+ *  &lt;/hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * Equality queries must then be performed on the <tt>blindIndex</tt> 
+ * property of the mapped value, using an index computed by a 
+ * {@link HmacBlindIndexer} configured with the same password and algorithm:
+ * </p>
+ * <p>
+ * <pre>
+ *  session.createQuery("from UserData u where u.email.blindIndex = :index")
+ *         .setString("index", indexer.index("someone@example.com"));
+ * </pre>
+ * </p>
+ * <p>
+ * Note that blind indexes reveal which rows share the same value, and that
+ * only equality (not range or pattern) searches are possible.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptedStringWithBlindIndexType 
+        implements CompositeUserType, ParameterizedType {
+
+    private static final String[] propertyNames = 
+        new String[] { "value", "blindIndex" };
+    private static final Type[] propertyTypes = 
+        new Type[] { Hibernate.STRING, Hibernate.STRING };
+    
+    private final EncryptedStringType valueType = new EncryptedStringType();
+    
+    private boolean initialized = false;
+    
+    private String blindIndexPassword = null;
+    private String blindIndexAlgorithm = null;
+    
+    private HmacBlindIndexer indexer = null;
+    
+    
+    
+    public String[] getPropertyNames() {
+        return (String[]) propertyNames.clone();
+    }
+
+    
+    public Type[] getPropertyTypes() {
+        return (Type[]) propertyTypes.clone();
+    }
+
+    
+    public Object getPropertyValue(final Object component, final int property)
+            throws HibernateException {
+        if (component == null) {
+            return null;
+        }
+        if (property == 0) {
+            return component;
+        }
+        checkInitialization();
+        return this.indexer.index((String) component);
+    }
+
+    
+    public void setPropertyValue(final Object component, final int property, 
+            final Object value) throws HibernateException {
+        throw new HibernateException(
+                "Encrypted strings with blind index are immutable");
+    }
+
+    
+    public Class returnedClass() {
+        return String.class;
+    }
+
+    
+    public boolean equals(final Object x, final Object y) 
+            throws HibernateException {
+        return EqualsHelper.equals(x, y);
+    }
+
+    
+    public int hashCode(final Object x) throws HibernateException {
+        return x.hashCode();
+    }
+
+    
+    public Object deepCopy(final Object value) throws HibernateException {
+        return value;
+    }
+
+    
+    public boolean isMutable() {
+        return false;
+    }
+
+    
+    public Serializable disassemble(final Object value, 
+            final SessionImplementor session) throws HibernateException {
+        return (Serializable) value;
+    }
+
+    
+    public Object assemble(final Serializable cached, 
+            final SessionImplementor session, final Object owner)
+            throws HibernateException {
+        return cached;
+    }
+
+    
+    public Object replace(final Object original, final Object target,
+            final SessionImplementor session, final Object owner) 
+            throws HibernateException {
+        return original;
+    }
+
+    
+    public Object nullSafeGet(final ResultSet rs, final String[] names,
+            final SessionImplementor session, final Object owner)
+            throws HibernateException, SQLException {
+        // Only the encrypted value is needed, the index column is ignored
+        return this.valueType.nullSafeGet(
+                rs, new String[] { names[0] }, owner);
+    }
+
+    
+    public void nullSafeSet(final PreparedStatement st, final Object value, 
+            final int index, final SessionImplementor session)
+            throws HibernateException, SQLException {
+        
+        checkInitialization();
+        this.valueType.nullSafeSet(st, value, index);
+        if (value == null) {
+            st.setNull(index + 1, Types.VARCHAR);
+        } else {
+            st.setString(index + 1, this.indexer.index((String) value));
+        }
+        
+    }
+
+    
+    public synchronized void setParameterValues(final Properties parameters) {
+        
+        if ((parameters.getProperty(ParameterNaming.LAZY_DECRYPTION) != null) ||
+            (parameters.getProperty(ParameterNaming.PARALLEL_DECRYPTION) != null)) {
+            throw new EncryptionInitializationException(
+                    "Neither \"" + ParameterNaming.LAZY_DECRYPTION + "\" nor \"" + 
+                    ParameterNaming.PARALLEL_DECRYPTION + 
+                    "\" can be specified for blind-indexed types");
+        }
+        
+        this.valueType.setParameterValues(parameters);
+        
+        final String paramBlindIndexPassword =
+            parameters.getProperty(ParameterNaming.BLIND_INDEX_PASSWORD);
+        final String paramBlindIndexAlgorithm =
+            parameters.getProperty(ParameterNaming.BLIND_INDEX_ALGORITHM);
+        
+        if (paramBlindIndexPassword == null) {
+            throw new EncryptionInitializationException(
+                    "\"" + ParameterNaming.BLIND_INDEX_PASSWORD + 
+                    "\" must be specified");
+        }
+        this.blindIndexPassword = paramBlindIndexPassword;
+        this.blindIndexAlgorithm = paramBlindIndexAlgorithm;
+        
+    }
+    
+    
+    
+    private synchronized void checkInitialization() {
+        
+        if (!this.initialized) {
+            
+            final HmacBlindIndexer newIndexer = new HmacBlindIndexer();
+            newIndexer.setPassword(this.blindIndexPassword);
+            if (this.blindIndexAlgorithm != null) {
+                newIndexer.setAlgorithm(this.blindIndexAlgorithm);
+            }
+            newIndexer.initialize();
+            
+            this.indexer = newIndexer;
+            this.blindIndexPassword = null;
+            this.initialized = true;
+            
+        }
+        
+    }
+    
+}
@@ -0,0 +1,302 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jasypt.commons.ParallelProcessingUtils;
+
+/**
+ * <p>
+ * Holder for the values of properties mapped with a jasypt 
+ * <tt>Encrypted*AsStringType</tt> (or <tt>EncryptedStringType</tt>) in 
+ * <i>lazy decryption</i> mode (see {@link ParameterNaming#LAZY_DECRYPTION}). 
+ * </p>
+ * <p>
+ * Values loaded from the database are kept encrypted until 
+ * {@link #getValue()} is called for the first time, so that entities 
+ * can be loaded without spending any time decrypting the properties 
+ * that are never read. Once decrypted, the value is kept and not 
+ * decrypted again. If the entity is saved again without having set a new 
+ * holder for the property, the original encrypted value is written back
+ * without being encrypted again.
+ * </p>
+ * <p>
+ * Properties mapped in lazy decryption mode must be declared of this type 
+ * in the entity class and accessed by Hibernate directly as fields, so 
+ * that the entity can transparently expose the decrypted value:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;typedef name="<b>lazyEncryptedString</b>" class="org.jasypt.hibernate3.type.EncryptedStringType">
+ *    &lt;param name="encryptorRegisteredName"><b><i>myHibernateStringEncryptor</i></b>&lt;/param>
+ *    &lt;param name="lazyDecryption"><b><i>true</i></b>&lt;/param>
+ *  &lt;/typedef>
+ *  ...
+ *  &lt;property name="name" column="NAME" type="<b>lazyEncryptedString</b>" access="field" />
+ * </pre>
+ * </p>
+ * <p>
+ * <pre>
+ *  private LazyDecryptedValue name;
+ *  
+ *  public String getName() {
+ *      return (String) LazyDecryptedValue.valueOf(this.name);
+ *  }
+ *  
+ *  public void setName(final String name) {
+ *      this.name = new LazyDecryptedValue(name);
+ *  }
+ * </pre>
+ * </p>
+ * <p>
+ * Holders are immutable (a new holder has to be set in order to change the
+ * value of the property).
+ * </p>
+ * <p>
+ * When the type is configured with <i>parallel decryption</i> (see 
+ * {@link ParameterNaming#PARALLEL_DECRYPTION}), the holders created while
+ * loading entities are also registered as pending for the current thread,
+ * and all of them are decrypted at once, in parallel, by 
+ * {@link #decryptPendingValues(int)} when the load finishes (see 
+ * <tt>org.jasypt.hibernate3.event.ParallelDecryptionPostLoadEventListener</tt>,
+ * which must be configured for parallel decryption to be used). Values 
+ * loaded without any entity being post-loaded (e.g. by scalar or 
+ * projection queries) remain pending until the next load in the same 
+ * thread, so the number of pending values per thread is capped: values
+ * over the cap are just decrypted lazily when read.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class LazyDecryptedValue {
+
+    // Pending holders (list of) for the current thread. Hibernate 3 types
+    // are not given the session when reading values.
+    private static final ThreadLocal pendingForThread = new ThreadLocal();
+    
+    // Minimum number of pending values for each thread taking part in
+    // parallel decryption (no threads are worth starting for less)
+    private static final int MIN_VALUES_PER_THREAD = 4;
+    
+    // Maximum number of pending values for each thread
+    static final int MAX_PENDING_VALUES = 4096;
+    
+    private static volatile boolean decryptionListenerRegistered = false;
+
+    private final AbstractEncryptedAsStringType type;
+    private final String encryptedMessage;
+    
+    private boolean decrypted;
+    private Object value;
+    
+    
+    /**
+     * <p>
+     * Creates a holder for a new (non-encrypted) value.
+     * </p>
+     * 
+     * @param value the value.
+     */
+    public LazyDecryptedValue(final Object value) {
+        super();
+        this.type = null;
+        this.encryptedMessage = null;
+        this.decrypted = true;
+        this.value = value;
+    }
+    
+    
+    LazyDecryptedValue(final AbstractEncryptedAsStringType type, 
+            final String encryptedMessage) {
+        super();
+        this.type = type;
+        this.encryptedMessage = encryptedMessage;
+        this.decrypted = false;
+        this.value = null;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the value held, decrypting it if this has not been done yet.
+     * </p>
+     * 
+     * @return the (decrypted) value.
+     */
+    public synchronized Object getValue() {
+        if (!this.decrypted) {
+            this.value = this.type.decryptToObject(this.encryptedMessage);
+            this.decrypted = true;
+        }
+        return this.value;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the value held has already been decrypted (or did not
+     * need decryption at all because it was not loaded from the database).
+     * </p>
+     * 
+     * @return true if the value is already available, false if not.
+     */
+    public synchronized boolean isDecrypted() {
+        return this.decrypted;
+    }
+    
+    
+    /**
+     * <p>
+     * Null-safe convenience method for obtaining the value of a holder.
+     * </p>
+     * 
+     * @param holder the holder (might be null).
+     * @return the (decrypted) value held, or null if the holder is null.
+     */
+    public static Object valueOf(final LazyDecryptedValue holder) {
+        return (holder == null? null : holder.getValue());
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts (in parallel, using up to the specified amount of threads)
+     * all the values that have been loaded by the current thread using 
+     * types configured with parallel decryption and are still pending.
+     * </p>
+     * <p>
+     * If any of the values cannot be decrypted, the corresponding exception
+     * is thrown once all working threads have finished.
+     * </p>
+     * 
+     * @param threadCount the maximum number of threads to be used.
+     * @return the number of values that were decrypted.
+     */
+    public static int decryptPendingValues(final int threadCount) {
+        
+        final List pending = (List) pendingForThread.get();
+        if (pending == null) {
+            return 0;
+        }
+        
+        try {
+            final int size = pending.size();
+            final int threads = 
+                Math.max(1, Math.min(threadCount, size / MIN_VALUES_PER_THREAD));
+            ParallelProcessingUtils.process(size, threads, 
+                    new ParallelProcessingUtils.IndexedTask() {
+                        public void process(final int index) {
+                            ((LazyDecryptedValue) pending.get(index)).getValue();
+                        }
+                    });
+            return size;
+        } finally {
+            // Pending values are never kept for the next load, even if
+            // any of them could not be decrypted
+            pendingForThread.set(null);
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Signals that a listener calling {@link #decryptPendingValues(int)} 
+     * after each load has been configured. This is done by 
+     * <tt>org.jasypt.hibernate3.event.ParallelDecryptionPostLoadEventListener</tt>
+     * when created, and types configured with parallel decryption will 
+     * refuse to load values until then.
+     * </p>
+     */
+    public static void registerDecryptionListener() {
+        decryptionListenerRegistered = true;
+    }
+    
+    
+    static boolean isDecryptionListenerRegistered() {
+        return decryptionListenerRegistered;
+    }
+    
+    
+    /*
+     * Registers a holder as pending of (parallel) decryption for the
+     * current thread, unless the maximum has been reached (in which case
+     * it will be decrypted when read).
+     */
+    static void addPending(final LazyDecryptedValue holder) {
+        List pending = (List) pendingForThread.get();
+        if (pending == null) {
+            pending = new ArrayList();
+            pendingForThread.set(pending);
+        }
+        if (pending.size() < MAX_PENDING_VALUES) {
+            pending.add(holder);
+        }
+    }
+    
+    
+    /*
+     * Returns the encrypted message this holder was loaded from, if it was
+     * loaded by the specified type (and therefore can be written back as is).
+     */
+    String getEncryptedMessage(final AbstractEncryptedAsStringType sourceType) {
+        return (this.type == sourceType? this.encryptedMessage : null);
+    }
+    
+    
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LazyDecryptedValue)) {
+            return false;
+        }
+        final LazyDecryptedValue other = (LazyDecryptedValue) obj;
+        if (this.type != null && this.type == other.type && 
+                this.encryptedMessage.equals(other.encryptedMessage)) {
+            // Same encrypted message from the same type: no need to decrypt
+            return true;
+        }
+        final Object thisValue = getValue();
+        final Object otherValue = other.getValue();
+        return (thisValue == null? 
+                otherValue == null : thisValue.equals(otherValue));
+    }
+    
+    
+    public int hashCode() {
+        final Object thisValue = getValue();
+        return (thisValue == null? 0 : thisValue.hashCode());
+    }
+    
+    
+    public String toString() {
+        return String.valueOf(getValue());
+    }
+    
+}
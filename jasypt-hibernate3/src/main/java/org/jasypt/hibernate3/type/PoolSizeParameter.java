@@ -0,0 +1,82 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * <p>
+ * Parsing and default value of the {@link ParameterNaming#POOL_SIZE} 
+ * parameter, shared by all the types which create their own encryptors.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+final class PoolSizeParameter {
+
+    
+    /*
+     * Parses the value specified for the parameter, if any.
+     */
+    static Integer parse(final String paramPoolSize) {
+        
+        if (paramPoolSize == null) {
+            return null;
+        }
+        
+        final int poolSize;
+        try {
+            poolSize = Integer.parseInt(paramPoolSize.trim());
+        } catch (final NumberFormatException e) {
+            throw new EncryptionInitializationException(
+                    "Value specified for \"" + 
+                    ParameterNaming.POOL_SIZE + 
+                    "\" is not a valid integer");
+        }
+        if (poolSize <= 0) {
+            throw new EncryptionInitializationException(
+                    "Value specified for \"" + 
+                    ParameterNaming.POOL_SIZE + 
+                    "\" must be greater than zero");
+        }
+        return new Integer(poolSize);
+        
+    }
+    
+    
+    /*
+     * Returns the pool size to be used: unless specified, encryptors are 
+     * pooled (one per processor) so that concurrent sessions do not contend
+     * for one cipher.
+     */
+    static Integer resolve(final Integer poolSize) {
+        return (poolSize != null? 
+                poolSize : new Integer(Runtime.getRuntime().availableProcessors()));
+    }
+    
+    
+    private PoolSizeParameter() {
+        super();
+    }
+    
+}
@@ -22,6 +22,7 @@ package org.jasypt.hibernate3.model.user;
 import java.util.Calendar;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.jasypt.hibernate3.type.LazyDecryptedValue;
 
 /**
  * 
@@ -35,6 +36,7 @@ public class User {
 	private String password;
 	private Calendar birthdate;
 	private byte[] document;
+	private LazyDecryptedValue nickname;
 	
 	
 	public User(String name, String login, String password, Calendar birthdate,
@@ -86,6 +88,15 @@ public class User {
 	public void setDocument(byte[] document) {
 		this.document = document;
 	}
+	public String getNickname() {
+		return (String) LazyDecryptedValue.valueOf(this.nickname);
+	}
+	public void setNickname(String nickname) {
+		this.nickname = new LazyDecryptedValue(nickname);
+	}
+	public LazyDecryptedValue getNicknameHolder() {
+		return this.nickname;
+	}
 	
 	
 }
@@ -52,6 +52,7 @@ public class TestHibernateTypes extends TestCase {
 	private static String userPassword;
 	private static Calendar userBirthdate;
 	private static byte[] userDocument;
+	private static String userNickname;
 
 	static Session session;
 	
@@ -70,6 +71,7 @@ public class TestHibernateTypes extends TestCase {
         
         createUser();
         readUser();
+        readUserLazily();
         
         finish();
     }
@@ -126,7 +128,8 @@ public class TestHibernateTypes extends TestCase {
             				"LOGIN VARCHAR(100) PRIMARY KEY," +
             				"PASSWORD VARCHAR(100)," +
             				"BIRTHDATE VARCHAR(100)," +
-            				"DOCUMENT BLOB);");
+            				"DOCUMENT BLOB," +
+            				"NICKNAME VARCHAR(100));");
         } catch (HibernateException e) {
             e.printStackTrace();
             assertTrue(false);
@@ -145,6 +148,7 @@ public class TestHibernateTypes extends TestCase {
 	    userLogin = RandomStringUtils.randomAlphabetic(5);
 	    userName = RandomStringUtils.randomAlphabetic(10);
 	    userPassword = RandomStringUtils.randomAlphanumeric(15);
+	    userNickname = RandomStringUtils.randomAlphabetic(8);
 	    userBirthdate = Calendar.getInstance();
 	    try {
             userDocument = RandomStringUtils.randomAlphabetic(100).getBytes(
@@ -162,6 +166,7 @@ public class TestHibernateTypes extends TestCase {
 	    
 	    User user = new User(userName, userLogin, userPassword,
 				userBirthdate, userDocument);
+	    user.setNickname(userNickname);
 		
 		Transaction transaction = session.beginTransaction();
 		
@@ -192,4 +197,26 @@ public class TestHibernateTypes extends TestCase {
 		assertEquals(user.getDocument(), userDocument);
 	}
 	
+	private void readUserLazily() throws Exception {
+		
+		session.clear();
+		Transaction transaction = session.beginTransaction();
+		
+		User user = (User) session.get(User.class, userLogin);
+		
+		assertFalse(user.getNicknameHolder().isDecrypted());
+		assertEquals(user.getNickname(), userNickname);
+		assertTrue(user.getNicknameHolder().isDecrypted());
+		
+		user.setNickname(userNickname + "2");
+		
+		transaction.commit();
+		session.clear();
+		
+		transaction = session.beginTransaction();
+		user = (User) session.get(User.class, userLogin);
+		assertEquals(user.getNickname(), userNickname + "2");
+		transaction.commit();
+	}
+	
 }
@@ -0,0 +1,107 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate3.type;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.hibernate3.event.ParallelDecryptionPostLoadEventListener;
+
+/**
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public class TestParallelDecryption extends TestCase {
+
+    
+    public TestParallelDecryption() {
+        super();
+    }
+
+    public TestParallelDecryption(String name) {
+        super(name);
+    }
+    
+    
+    public void testPendingValues() throws Exception {
+        
+        final Properties parameters = new Properties();
+        parameters.setProperty(ParameterNaming.ALGORITHM, "PBEWithMD5AndDES");
+        parameters.setProperty(ParameterNaming.PASSWORD, "jasypt-hibernate3-parallel-test");
+        parameters.setProperty(ParameterNaming.PARALLEL_DECRYPTION, "true");
+        final EncryptedStringType type = new EncryptedStringType();
+        type.setParameterValues(parameters);
+        type.checkInitialization();
+        
+        final ResultSet resultSet = createResultSet(type.encryptor.encrypt("value"));
+        
+        // Listener not configured: pending values would never be released
+        if (!LazyDecryptedValue.isDecryptionListenerRegistered()) {
+            try {
+                type.nullSafeGet(resultSet, new String[] { "VALUE" }, null);
+                fail();
+            } catch (EncryptionInitializationException e) {
+                // expected
+            }
+        }
+        
+        new ParallelDecryptionPostLoadEventListener();
+        LazyDecryptedValue.decryptPendingValues(1);
+        
+        // Values loaded with no entity being post-loaded are capped
+        final int loaded = LazyDecryptedValue.MAX_PENDING_VALUES + 10;
+        final LazyDecryptedValue[] holders = new LazyDecryptedValue[loaded];
+        for (int i = 0; i < loaded; i++) {
+            holders[i] = (LazyDecryptedValue) type.nullSafeGet(resultSet, new String[] { "VALUE" }, null);
+        }
+        assertEquals(LazyDecryptedValue.MAX_PENDING_VALUES, LazyDecryptedValue.decryptPendingValues(2));
+        assertTrue(holders[0].isDecrypted());
+        assertFalse(holders[loaded - 1].isDecrypted());
+        assertEquals("value", holders[loaded - 1].getValue());
+        assertEquals(0, LazyDecryptedValue.decryptPendingValues(2));
+        
+    }
+    
+    
+    private static ResultSet createResultSet(final String value) {
+        return (ResultSet) Proxy.newProxyInstance(
+                TestParallelDecryption.class.getClassLoader(), 
+                new Class[] { ResultSet.class }, 
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getString")) {
+                            return value;
+                        }
+                        if (method.getName().equals("wasNull")) {
+                            return Boolean.FALSE;
+                        }
+                        return null;
+                    }
+                });
+    }
+    
+}
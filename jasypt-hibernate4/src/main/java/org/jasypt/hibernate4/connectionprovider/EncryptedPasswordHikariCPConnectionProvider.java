@@ -0,0 +1,275 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.connectionprovider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
+import org.jasypt.properties.PropertyValueEncryptionUtils;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ *
+ * <p>
+ * Hibernate {@link ConnectionProvider} based on the 
+ * <a href="https://github.com/brettwooldridge/HikariCP">HikariCP</a> 
+ * connection pool that allows the user to write the datasource 
+ * configuration parameters in an encrypted manner in the 
+ * <tt>hibernate.cfg.xml</tt> or <tt>hibernate.properties</tt> file
+ * </p>
+ * <p>
+ * The encryptable parameters are:
+ *  <ul>
+ *    <li><tt>connection.driver_class</tt></li>
+ *    <li><tt>connection.url</tt></li>
+ *    <li><tt>connection.username</tt></li>
+ *    <li><tt>connection.password</tt></li>
+ *  </ul>
+ * </p>
+ * <p>
+ * The name of the password encryptor (decryptor, in fact) will be set in
+ * property <tt>hibernate.connection.encryptor_registered_name</tt>. 
+ * Its value must be the name of a {@link PBEStringEncryptor} object 
+ * previously registered within {@link HibernatePBEEncryptorRegistry}.
+ * </p>
+ * <p>
+ * Standard <tt>connection.pool_size</tt>, <tt>connection.autocommit</tt>
+ * and <tt>connection.isolation</tt> properties are applied to the pool. 
+ * Any other HikariCP configuration property can be specified with the 
+ * <tt>hibernate.hikari.</tt> prefix (e.g. 
+ * <tt>hibernate.hikari.connectionTimeout</tt>).
+ * </p>
+ * <p>
+ * An example <tt>hibernate.cfg.xml</tt> file:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-configuration>
+ *
+ *    &lt;session-factory>
+ *
+ *      <!-- Database connection settings -->
+ *      &lt;property name="<b>connection.provider_class</b>">org.jasypt.hibernate4.connectionprovider.EncryptedPasswordHikariCPConnectionProvider&lt;/property>
+ *      &lt;property name="<b>connection.encryptor_registered_name</b>">stringEncryptor&lt;/property>
+ *      &lt;property name="connection.driver_class">org.postgresql.Driver&lt;/property>
+ *      &lt;property name="connection.url">jdbc:postgresql://localhost/mydatabase&lt;/property>
+ *      &lt;property name="connection.username">myuser&lt;/property>
+ *      &lt;property name="connection.password">ENC(T6DAe34NasW==)&lt;/property>
+ *      &lt;property name="connection.pool_size">20&lt;/property>
+ *      &lt;property name="hibernate.hikari.minimumIdle">5&lt;/property>
+ *      &lt;property name="hibernate.hikari.idleTimeout">1800000&lt;/property>
+ *      ...
+ *      
+ *    &lt;/session-factory>
+ *    
+ *    ...
+ *    
+ *  &lt;/hibernate-configuration>
+ * </pre>
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptedPasswordHikariCPConnectionProvider 
+        implements ConnectionProvider, Configurable, Stoppable {
+    
+    private static final long serialVersionUID = -2683429305281652163L;
+    
+    private static final String HIKARI_CONFIG_PREFIX = "hibernate.hikari.";
+
+    private HikariDataSource dataSource = null;
+    
+
+    public EncryptedPasswordHikariCPConnectionProvider() {
+        super();
+    }
+    
+    
+    public void configure(final Map props) {
+       
+       final String encryptorRegisteredName = 
+           ConfigurationHelper.getString(ParameterNaming.ENCRYPTOR_REGISTERED_NAME, props);
+       
+       final HibernatePBEEncryptorRegistry encryptorRegistry =
+           HibernatePBEEncryptorRegistry.getInstance();
+       final PBEStringEncryptor encryptor = 
+           encryptorRegistry.getPBEStringEncryptor(encryptorRegisteredName);
+       
+       if (encryptor == null) {
+           throw new EncryptionInitializationException(
+                   "No string encryptor registered for hibernate " +
+                   "with name \"" + encryptorRegisteredName + "\"");
+       }
+
+       // Get the original values, which may be encrypted
+       final String driver = ConfigurationHelper.getString(AvailableSettings.DRIVER, props);
+       final String url = ConfigurationHelper.getString(AvailableSettings.URL, props);
+       final String user = ConfigurationHelper.getString(AvailableSettings.USER, props);
+       final String password = ConfigurationHelper.getString(AvailableSettings.PASS, props);
+
+       // Properties with the "hibernate.hikari." prefix are handed to HikariCP
+       final Properties hikariProps = new Properties();
+       final Iterator entriesIter = props.entrySet().iterator();
+       while (entriesIter.hasNext()) {
+           final Map.Entry entry = (Map.Entry) entriesIter.next();
+           final Object key = entry.getKey();
+           if ((key instanceof String) && 
+                   ((String) key).startsWith(HIKARI_CONFIG_PREFIX) &&
+                   (entry.getValue() != null)) {
+               hikariProps.setProperty(
+                       ((String) key).substring(HIKARI_CONFIG_PREFIX.length()), 
+                       entry.getValue().toString());
+           }
+       }
+       
+       final HikariConfig config = new HikariConfig(hikariProps);
+
+       // Perform decryption operations as needed and set the values
+       if (driver != null) {
+           config.setDriverClassName(decrypt(driver, encryptor));
+       }
+       if (url != null) {
+           config.setJdbcUrl(decrypt(url, encryptor));
+       }
+       if (user != null) {
+           config.setUsername(decrypt(user, encryptor));
+       }
+       if (password != null) {
+           config.setPassword(decrypt(password, encryptor));
+       }
+       
+       final Integer poolSize = 
+           ConfigurationHelper.getInteger(AvailableSettings.POOL_SIZE, props);
+       if (poolSize != null) {
+           config.setMaximumPoolSize(poolSize.intValue());
+       }
+       if (props.get(AvailableSettings.AUTOCOMMIT) != null) {
+           config.setAutoCommit(
+                   ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, props));
+       }
+       final Integer isolation = 
+           ConfigurationHelper.getInteger(AvailableSettings.ISOLATION, props);
+       if (isolation != null) {
+           config.setTransactionIsolation(getIsolationName(isolation.intValue()));
+       }
+       
+       try {
+           this.dataSource = new HikariDataSource(config);
+       } catch (final Exception e) {
+           throw new HibernateException("Could not create HikariCP connection pool", e);
+       }
+       
+    } 
+
+    
+    private static String decrypt(final String value, final PBEStringEncryptor encryptor) {
+        if (PropertyValueEncryptionUtils.isEncryptedValue(value)) {
+            return PropertyValueEncryptionUtils.decrypt(value, encryptor);
+        }
+        return value;
+    }
+    
+    
+    private static String getIsolationName(final int isolation) {
+        switch (isolation) {
+            case Connection.TRANSACTION_NONE: 
+                return "TRANSACTION_NONE";
+            case Connection.TRANSACTION_READ_UNCOMMITTED: 
+                return "TRANSACTION_READ_UNCOMMITTED";
+            case Connection.TRANSACTION_READ_COMMITTED: 
+                return "TRANSACTION_READ_COMMITTED";
+            case Connection.TRANSACTION_REPEATABLE_READ: 
+                return "TRANSACTION_REPEATABLE_READ";
+            case Connection.TRANSACTION_SERIALIZABLE: 
+                return "TRANSACTION_SERIALIZABLE";
+            default:
+                throw new HibernateException(
+                        "Value specified for \"" + AvailableSettings.ISOLATION + 
+                        "\" is not a valid transaction isolation level");
+        }
+    }
+    
+    
+    public Connection getConnection() throws SQLException {
+        if (this.dataSource == null) {
+            throw new SQLException("Connection provider has not been configured");
+        }
+        return this.dataSource.getConnection();
+    }
+    
+    
+    public void closeConnection(final Connection conn) throws SQLException {
+        conn.close();
+    }
+    
+    
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+    
+    
+    public boolean isUnwrappableAs(final Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType) ||
+               EncryptedPasswordHikariCPConnectionProvider.class.isAssignableFrom(unwrapType) ||
+               DataSource.class.isAssignableFrom(unwrapType);
+    }
+    
+    
+    public Object unwrap(final Class unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType) ||
+                EncryptedPasswordHikariCPConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return this;
+        }
+        if (DataSource.class.isAssignableFrom(unwrapType)) {
+            return this.dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+    
+    
+    public void stop() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+            this.dataSource = null;
+        }
+    }
+    
+    
+}
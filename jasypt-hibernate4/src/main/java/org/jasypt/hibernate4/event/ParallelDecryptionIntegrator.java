@@ -0,0 +1,125 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.event;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * <p>
+ * <b>Hibernate</b> <tt>Integrator</tt> which registers a 
+ * {@link ParallelDecryptionPostLoadEventListener} for every session 
+ * factory.
+ * </p>
+ * <p>
+ * This integrator is automatically discovered by Hibernate (by means of
+ * the standard <tt>META-INF/services</tt> mechanism) when jasypt's Hibernate 
+ * integration is in the classpath. It only affects properties mapped with 
+ * types configured with parallel decryption 
+ * (see {@link org.jasypt.hibernate4.type.ParameterNaming#PARALLEL_DECRYPTION}).
+ * </p>
+ * <p>
+ * The maximum number of threads to be used for each load operation can be
+ * specified with the <tt>jasypt.parallel_decryption.thread_count</tt> 
+ * configuration property, and defaults to the number of available 
+ * processors. Note that parallel decryption only pays off if the 
+ * encryptor used by the types can actually work concurrently (e.g. a 
+ * <tt>PooledPBEStringEncryptor</tt>).
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ParallelDecryptionIntegrator implements Integrator {
+
+    /**
+     * Name of the configuration property specifying the maximum number
+     * of threads to be used for decrypting the values of each load 
+     * operation.
+     */
+    public static final String THREAD_COUNT_PROPERTY = 
+        "jasypt.parallel_decryption.thread_count";
+    
+    
+    public ParallelDecryptionIntegrator() {
+        super();
+    }
+    
+
+    public void integrate(final Configuration configuration,
+            final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        
+        int threadCount = ParallelProcessingUtils.getDefaultThreadCount();
+        final String paramThreadCount = 
+            configuration.getProperty(THREAD_COUNT_PROPERTY);
+        if (paramThreadCount != null) {
+            try {
+                threadCount = Integer.parseInt(paramThreadCount.trim());
+            } catch (final NumberFormatException e) {
+                throw new EncryptionInitializationException(
+                        "Value specified for \"" + THREAD_COUNT_PROPERTY + 
+                        "\" is not a valid integer");
+            }
+        }
+        
+        registerListener(serviceRegistry, threadCount);
+        
+    }
+
+
+    public void integrate(final MetadataImplementor metadata,
+            final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        registerListener(
+                serviceRegistry, ParallelProcessingUtils.getDefaultThreadCount());
+    }
+
+
+    public void disintegrate(final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to be done
+    }
+    
+    
+    
+    private static void registerListener(
+            final SessionFactoryServiceRegistry serviceRegistry, final int threadCount) {
+        
+        final EventListenerRegistry registry = 
+            (EventListenerRegistry) serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(
+                EventType.POST_LOAD, 
+                new PostLoadEventListener[] { 
+                        new ParallelDecryptionPostLoadEventListener(threadCount) });
+        
+    }
+    
+}
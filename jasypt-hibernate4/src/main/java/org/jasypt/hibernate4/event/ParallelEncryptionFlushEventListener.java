@@ -0,0 +1,207 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.event;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.Type;
+import org.hibernate.usertype.UserType;
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.hibernate4.type.AbstractEncryptedAsStringType;
+import org.jasypt.hibernate4.type.LazyDecryptedValue;
+
+/**
+ * <p>
+ * <b>Hibernate</b> <tt>FlushEventListener</tt> and 
+ * <tt>AutoFlushEventListener</tt> which, before the session is flushed, 
+ * encrypts in parallel all the new values of properties mapped with jasypt 
+ * types configured with parallel encryption 
+ * (see {@link org.jasypt.hibernate4.type.ParameterNaming#PARALLEL_ENCRYPTION}).
+ * </p>
+ * <p>
+ * Encrypted messages are kept in the {@link LazyDecryptedValue} holders
+ * of the properties, so that the types only need to bind them when 
+ * Hibernate executes the (possibly batched) insert and update statements.
+ * Values of entities which are pending insertion are always encrypted, and 
+ * values of entities already in the database only if the holder set for the 
+ * property is not the one that was loaded.
+ * </p>
+ * <p>
+ * Note that entities with database-generated (<tt>identity</tt>) ids are 
+ * inserted as soon as they are saved, without waiting for the session to 
+ * be flushed, and therefore their values will be encrypted serially as
+ * usual.
+ * </p>
+ * <p>
+ * This listener is normally registered by {@link ParallelEncryptionIntegrator}.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ParallelEncryptionFlushEventListener 
+        implements FlushEventListener, AutoFlushEventListener {
+
+    private static final long serialVersionUID = 6293064123937285537L;
+    
+    // Minimum number of values for each thread taking part in parallel
+    // encryption (no threads are worth starting for less)
+    private static final int MIN_VALUES_PER_THREAD = 4;
+    
+    private final int threadCount;
+    
+    
+    /**
+     * <p>
+     * Creates a new listener.
+     * </p>
+     * 
+     * @param threadCount the maximum number of threads to be used for
+     *        encrypting the values of each flush.
+     */
+    public ParallelEncryptionFlushEventListener(final int threadCount) {
+        super();
+        CommonUtils.validateIsTrue(threadCount > 0, "Thread count must be > 0");
+        this.threadCount = threadCount;
+    }
+    
+    
+    public void onFlush(final FlushEvent event) throws HibernateException {
+        if (!AbstractEncryptedAsStringType.isParallelEncryptionInUse()) {
+            return;
+        }
+        encryptPendingValues(event.getSession());
+    }
+    
+    
+    public void onAutoFlush(final AutoFlushEvent event) throws HibernateException {
+        if (!AbstractEncryptedAsStringType.isParallelEncryptionInUse()) {
+            return;
+        }
+        final EventSource session = event.getSession();
+        // Same conditions under which Hibernate will not even try to flush
+        if (session.getFlushMode().lessThan(FlushMode.AUTO) ||
+                session.getDontFlushFromFind() != 0) {
+            return;
+        }
+        encryptPendingValues(session);
+    }
+    
+    
+    
+    private void encryptPendingValues(final EventSource session) {
+        
+        final Map entityEntries = 
+            session.getPersistenceContext().getEntityEntries();
+        if (entityEntries.isEmpty()) {
+            // Nothing can be pending insertion or update
+            return;
+        }
+        
+        final List types = new ArrayList();
+        final List holders = new ArrayList();
+        
+        final Iterator entriesIter = entityEntries.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            
+            final Map.Entry mapEntry = (Map.Entry) entriesIter.next();
+            final EntityEntry entry = (EntityEntry) mapEntry.getValue();
+            if (entry.getStatus() != Status.MANAGED && entry.getStatus() != Status.SAVING) {
+                continue;
+            }
+            
+            final EntityPersister persister = entry.getPersister();
+            final Type[] propertyTypes = persister.getPropertyTypes();
+            final Object[] loadedState = 
+                (entry.isExistsInDatabase()? entry.getLoadedState() : null);
+            Object[] values = null;
+            
+            for (int i = 0; i < propertyTypes.length; i++) {
+                
+                if (!(propertyTypes[i] instanceof CustomType)) {
+                    continue;
+                }
+                final UserType userType = ((CustomType) propertyTypes[i]).getUserType();
+                if (!(userType instanceof AbstractEncryptedAsStringType) ||
+                        !((AbstractEncryptedAsStringType) userType).isParallelEncryption()) {
+                    continue;
+                }
+                
+                if (values == null) {
+                    values = persister.getPropertyValues(mapEntry.getKey());
+                }
+                if (!(values[i] instanceof LazyDecryptedValue)) {
+                    continue;
+                }
+                if (loadedState != null && loadedState[i] == values[i]) {
+                    // Same holder as loaded: the value of a property can only
+                    // be changed by setting a new holder
+                    continue;
+                }
+                
+                final LazyDecryptedValue holder = (LazyDecryptedValue) values[i];
+                final AbstractEncryptedAsStringType type = 
+                    (AbstractEncryptedAsStringType) userType;
+                if (holder.isEncryptionPending(type)) {
+                    types.add(type);
+                    holders.add(holder);
+                }
+                
+            }
+            
+        }
+        
+        final int size = holders.size();
+        if (size == 0) {
+            return;
+        }
+        final int threads = 
+            Math.max(1, Math.min(this.threadCount, size / MIN_VALUES_PER_THREAD));
+        ParallelProcessingUtils.process(size, threads, 
+                new ParallelProcessingUtils.IndexedTask() {
+                    public void process(final int index) {
+                        ((LazyDecryptedValue) holders.get(index)).encryptFor(
+                                (AbstractEncryptedAsStringType) types.get(index));
+                    }
+                });
+        
+    }
+    
+}
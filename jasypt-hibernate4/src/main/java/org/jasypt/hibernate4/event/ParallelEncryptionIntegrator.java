@@ -0,0 +1,131 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.event;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * <p>
+ * <b>Hibernate</b> <tt>Integrator</tt> which registers a 
+ * {@link ParallelEncryptionFlushEventListener} for every session 
+ * factory.
+ * </p>
+ * <p>
+ * This integrator is automatically discovered by Hibernate (by means of
+ * the standard <tt>META-INF/services</tt> mechanism) when jasypt's Hibernate 
+ * integration is in the classpath. It only affects properties mapped with 
+ * types configured with parallel encryption 
+ * (see {@link org.jasypt.hibernate4.type.ParameterNaming#PARALLEL_ENCRYPTION}),
+ * and the registered listener returns immediately if no type has been 
+ * configured so (types might not have been configured yet when the 
+ * integrator is executed).
+ * </p>
+ * <p>
+ * The maximum number of threads to be used for each flush can be
+ * specified with the <tt>jasypt.parallel_encryption.thread_count</tt> 
+ * configuration property, and defaults to the number of available 
+ * processors. Note that parallel encryption only pays off if the 
+ * encryptor used by the types can actually work concurrently (e.g. a 
+ * <tt>PooledPBEStringEncryptor</tt>).
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ParallelEncryptionIntegrator implements Integrator {
+
+    /**
+     * Name of the configuration property specifying the maximum number
+     * of threads to be used for encrypting the values of each flush.
+     */
+    public static final String THREAD_COUNT_PROPERTY = 
+        "jasypt.parallel_encryption.thread_count";
+    
+    
+    public ParallelEncryptionIntegrator() {
+        super();
+    }
+    
+
+    public void integrate(final Configuration configuration,
+            final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        
+        int threadCount = ParallelProcessingUtils.getDefaultThreadCount();
+        final String paramThreadCount = 
+            configuration.getProperty(THREAD_COUNT_PROPERTY);
+        if (paramThreadCount != null) {
+            try {
+                threadCount = Integer.parseInt(paramThreadCount.trim());
+            } catch (final NumberFormatException e) {
+                throw new EncryptionInitializationException(
+                        "Value specified for \"" + THREAD_COUNT_PROPERTY + 
+                        "\" is not a valid integer");
+            }
+        }
+        
+        registerListener(serviceRegistry, threadCount);
+        
+    }
+
+
+    public void integrate(final MetadataImplementor metadata,
+            final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        registerListener(
+                serviceRegistry, ParallelProcessingUtils.getDefaultThreadCount());
+    }
+
+
+    public void disintegrate(final SessionFactoryImplementor sessionFactory,
+            final SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to be done
+    }
+    
+    
+    
+    private static void registerListener(
+            final SessionFactoryServiceRegistry serviceRegistry, final int threadCount) {
+        
+        final EventListenerRegistry registry = 
+            (EventListenerRegistry) serviceRegistry.getService(EventListenerRegistry.class);
+        final ParallelEncryptionFlushEventListener listener =
+            new ParallelEncryptionFlushEventListener(threadCount);
+        // Values must be encrypted before the default listeners flush
+        registry.prependListeners(
+                EventType.FLUSH, new FlushEventListener[] { listener });
+        registry.prependListeners(
+                EventType.AUTO_FLUSH, new AutoFlushEventListener[] { listener });
+        
+    }
+    
+}
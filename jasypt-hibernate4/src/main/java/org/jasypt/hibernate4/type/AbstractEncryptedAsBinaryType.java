@@ -0,0 +1,322 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.usertype.UserType;
+import org.jasypt.encryption.ByteEncryptor;
+import org.jasypt.encryption.pbe.PBEByteEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
+
+/**
+ *
+ * Base class for <b>Hibernate</b> <tt>UserType</tt>s to store 
+ * values as encrypted binary data (VARBINARY). Values are serialized into
+ * a compact binary form and encrypted with a byte encryptor, avoiding the
+ * conversions to and from String and the size overhead of the
+ * <tt>*AsString</tt> types.
+ * 
+ * @since 1.9.3
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public abstract class AbstractEncryptedAsBinaryType 
+        implements UserType, ParameterizedType {
+
+    static final int sqlType = Types.VARBINARY;
+    static final int[] sqlTypes = new int[]{ sqlType };
+    
+    private boolean initialized = false;
+    private boolean useEncryptorName = false;
+    
+    private String encryptorName = null;
+    private String algorithm = null;
+    private String providerName = null;
+    private String password = null;
+    private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
+    
+    protected ByteEncryptor encryptor = null;
+
+    /**
+     * Converts given binary form to its Object form.
+     * @param bytes the binary value
+     * @return the object form of the passed bytes
+     */
+    protected abstract Object convertToObject(final byte[] bytes);
+    
+    /**
+     * Converts given Object to its binary form.
+     * @param object the object value
+     * @return the binary form of the passed Object
+     */
+    protected abstract byte[] convertToBytes(final Object object);
+    
+    public final int[] sqlTypes() {
+        return (int[]) sqlTypes.clone();
+    }
+
+    
+    public abstract Class returnedClass();
+
+    
+    public final boolean equals(final Object x, final Object y) 
+            throws HibernateException {
+        return x == y || ( x != null && y != null && x.equals( y ) );
+    }
+    
+    
+    public Object deepCopy(final Object value)
+            throws HibernateException {
+        return value;
+    }
+    
+    
+    public final Object assemble(final Serializable cached, final Object owner)
+            throws HibernateException {
+        if (cached == null) {
+            return null;
+        }
+        return deepCopy(cached);
+    }
+
+    
+    public final Serializable disassemble(final Object value) 
+            throws HibernateException {
+        if (value == null) {
+            return null;
+        }
+        return (Serializable) deepCopy(value);
+    }
+
+    
+    public boolean isMutable() {
+        return false;
+    }
+
+
+    public final int hashCode(final Object x)
+            throws HibernateException {
+        return x.hashCode();
+    }
+
+    
+    public final Object replace(final Object original, final Object target, final Object owner) 
+            throws HibernateException {
+        return (original == null)? null : deepCopy(original);
+    }
+
+    
+    public Object nullSafeGet(final ResultSet rs, final String[] names,
+            final SessionImplementor session, final Object owner)
+            throws HibernateException, SQLException {
+        
+        checkInitialization();
+        // Values are small, so there is no point in reading them as streams
+        final byte[] message = rs.getBytes(names[0]);
+        return rs.wasNull() ? null : convertToObject(this.encryptor.decrypt(message));
+        
+    }
+
+    
+    public void nullSafeSet(final PreparedStatement st, final Object value, final int index,
+            final SessionImplementor session) throws HibernateException, SQLException {
+
+        checkInitialization();
+        if (value == null) {
+            st.setNull(index, sqlType);
+        } else {
+            st.setBytes(index, this.encryptor.encrypt(convertToBytes(value)));
+        }
+        
+    }
+
+    
+    public synchronized void setParameterValues(final Properties parameters) {
+        
+        final String paramEncryptorName =
+            parameters.getProperty(ParameterNaming.ENCRYPTOR_NAME);
+        final String paramAlgorithm =
+            parameters.getProperty(ParameterNaming.ALGORITHM);
+        final String paramProviderName =
+            parameters.getProperty(ParameterNaming.PROVIDER_NAME);
+        final String paramPassword =
+            parameters.getProperty(ParameterNaming.PASSWORD);
+        final String paramKeyObtentionIterations =
+            parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
+        
+        this.useEncryptorName = false;
+        if (paramEncryptorName != null) {
+            
+            if ((paramAlgorithm != null) ||
+                (paramPassword != null) ||
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
+                
+                throw new EncryptionInitializationException(
+                        "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
+                        "\" is specified, none of \"" +
+                        ParameterNaming.ALGORITHM + "\", \"" +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
+                        "can be specified");
+                
+            }
+            this.encryptorName = paramEncryptorName;
+            this.useEncryptorName = true;
+            
+        } else if ((paramPassword != null)) {
+
+            this.password = paramPassword;
+            
+            if (paramAlgorithm != null) {
+                this.algorithm = paramAlgorithm;
+            }
+            
+            if (paramProviderName != null) {
+                this.providerName = paramProviderName;
+            }
+            
+            if (paramKeyObtentionIterations != null) {
+
+                try {
+                    this.keyObtentionIterations = 
+                        new Integer(
+                                Integer.parseInt(paramKeyObtentionIterations));
+                } catch (NumberFormatException e) {
+                    throw new EncryptionInitializationException(
+                            "Value specified for \"" + 
+                            ParameterNaming.KEY_OBTENTION_ITERATIONS + 
+                            "\" is not a valid integer");
+                }
+                
+            }
+            
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
+        } else {
+            
+            throw new EncryptionInitializationException(
+                    "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
+                    "\" is not specified, then \"" +
+                    ParameterNaming.PASSWORD + "\" (and optionally \"" +
+                    ParameterNaming.ALGORITHM + "\" and \"" + 
+                    ParameterNaming.KEY_OBTENTION_ITERATIONS + "\") " +
+                    "must be specified");
+            
+        }
+    }
+
+    
+    
+    protected synchronized final void checkInitialization() {
+        
+        if (!this.initialized) {
+            
+            if (this.useEncryptorName) {
+
+                final HibernatePBEEncryptorRegistry registry = 
+                    HibernatePBEEncryptorRegistry.getInstance();
+                final PBEByteEncryptor pbeEncryptor = 
+                    registry.getPBEByteEncryptor(this.encryptorName);
+                if (pbeEncryptor == null) {
+                    throw new EncryptionInitializationException(
+                            "No byte encryptor registered for hibernate " +
+                            "with name \"" + this.encryptorName + "\"");
+                }
+                this.encryptor = pbeEncryptor;
+                
+            } else {
+                
+                final SimplePBEConfig config = new SimplePBEConfig();
+                
+                config.setPassword(this.password);
+                
+                if (this.algorithm != null) {
+                    config.setAlgorithm(this.algorithm);
+                }
+                
+                if (this.providerName != null) {
+                    config.setProviderName(this.providerName);
+                }
+                
+                if (this.keyObtentionIterations != null) {
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
+                }
+                
+                config.setPoolSize(PoolSizeParameter.resolve(this.poolSize));
+                
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getByteEncryptor(config);
+                
+            }
+            
+            this.initialized = true;
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Big-endian serialization helpers for subclasses.
+     */
+    
+    static void writeLong(final long value, final byte[] bytes, final int offset) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + 7 - i] = (byte) (value >>> (i * 8));
+        }
+    }
+    
+    
+    static long readLong(final byte[] bytes, final int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+    
+    
+    static void checkLength(final byte[] bytes, final int minLength) {
+        if (bytes.length < minLength) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+    }
+    
+}
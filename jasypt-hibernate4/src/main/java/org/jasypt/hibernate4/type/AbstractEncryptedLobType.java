@@ -0,0 +1,204 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.usertype.UserType;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * <p>
+ * Base class for the <b>Hibernate</b> <tt>UserType</tt>s which store 
+ * large objects (<tt>Blob</tt>s and <tt>Clob</tt>s) encrypted, processing
+ * them as streams so that values are never completely held in memory.
+ * </p>
+ * <p>
+ * Lob values are considered immutable (a new value has to be set for 
+ * the property in order to change it) and are not cacheable.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+abstract class AbstractEncryptedLobType implements UserType, ParameterizedType {
+
+    private boolean initialized = false;
+    private boolean useEncryptorName = false;
+    
+    private String encryptorName = null;
+    private String algorithm = null;
+    private String password = null;
+    private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
+    private String stringOutputType = null;
+    
+    
+    /*
+     * Initializes the encryptor of the type, either by asking the 
+     * registry for it (if a name is specified) or by creating it from 
+     * the configuration parameters.
+     */
+    protected abstract void initializeEncryptor(final String registeredName, 
+            final String password, final String algorithm, 
+            final Integer keyObtentionIterations, final Integer poolSize,
+            final String stringOutputType);
+    
+    
+    public final boolean equals(final Object x, final Object y) 
+            throws HibernateException {
+        return x == y;
+    }
+    
+    
+    public final int hashCode(final Object x)
+            throws HibernateException {
+        return System.identityHashCode(x);
+    }
+    
+    
+    public final Object deepCopy(final Object value)
+            throws HibernateException {
+        return value;
+    }
+    
+    
+    public final boolean isMutable() {
+        return false;
+    }
+    
+    
+    public final Object assemble(final Serializable cached, final Object owner)
+            throws HibernateException {
+        throw new HibernateException("Encrypted lobs cannot be cached");
+    }
+
+    
+    public final Serializable disassemble(final Object value) 
+            throws HibernateException {
+        throw new HibernateException("Encrypted lobs cannot be cached");
+    }
+
+    
+    public final Object replace(final Object original, final Object target, final Object owner) 
+            throws HibernateException {
+        return original;
+    }
+
+    
+    public synchronized void setParameterValues(final Properties parameters) {
+        
+        final String paramEncryptorName =
+            parameters.getProperty(ParameterNaming.ENCRYPTOR_NAME);
+        final String paramAlgorithm =
+            parameters.getProperty(ParameterNaming.ALGORITHM);
+        final String paramPassword =
+            parameters.getProperty(ParameterNaming.PASSWORD);
+        final String paramKeyObtentionIterations =
+            parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
+        final String paramStringOutputType =
+            parameters.getProperty(ParameterNaming.STRING_OUTPUT_TYPE);
+        
+        this.useEncryptorName = false;
+        if (paramEncryptorName != null) {
+            
+            if ((paramAlgorithm != null) ||
+                (paramPassword != null) ||
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
+                
+                throw new EncryptionInitializationException(
+                        "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
+                        "\" is specified, none of \"" +
+                        ParameterNaming.ALGORITHM + "\", \"" +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
+                        "can be specified");
+                
+            }
+            this.encryptorName = paramEncryptorName;
+            this.useEncryptorName = true;
+            
+        } else if ((paramPassword != null)) {
+
+            this.password = paramPassword;
+            
+            if (paramAlgorithm != null) {
+                this.algorithm = paramAlgorithm;
+            }
+            
+            if (paramKeyObtentionIterations != null) {
+
+                try {
+                    this.keyObtentionIterations = 
+                        new Integer(
+                                Integer.parseInt(paramKeyObtentionIterations));
+                } catch (NumberFormatException e) {
+                    throw new EncryptionInitializationException(
+                            "Value specified for \"" + 
+                            ParameterNaming.KEY_OBTENTION_ITERATIONS + 
+                            "\" is not a valid integer");
+                }
+                
+            }
+            
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
+            if (paramStringOutputType != null) {
+                this.stringOutputType = paramStringOutputType;
+            }
+            
+        } else {
+            
+            throw new EncryptionInitializationException(
+                    "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
+                    "\" is not specified, then \"" +
+                    ParameterNaming.PASSWORD + "\" (and optionally \"" +
+                    ParameterNaming.ALGORITHM + "\" and \"" + 
+                    ParameterNaming.KEY_OBTENTION_ITERATIONS + "\") " +
+                    "must be specified");
+            
+        }
+    }
+
+    
+    
+    protected synchronized final void checkInitialization() {
+        
+        if (!this.initialized) {
+            initializeEncryptor(
+                    (this.useEncryptorName? this.encryptorName : null), 
+                    this.password, this.algorithm, 
+                    this.keyObtentionIterations, this.poolSize, 
+                    this.stringOutputType);
+            this.initialized = true;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,227 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+import org.jasypt.encryption.CharacterStreamEncryptor;
+
+/**
+ * <p>
+ * Read-only <tt>Clob</tt> which decrypts the contents of an encrypted 
+ * <tt>Clob</tt> on the fly, every time its character stream is read.
+ * </p>
+ * <p>
+ * As the length of the decrypted contents is not stored, 
+ * {@link #length()} requires reading (and decrypting) them all.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+final class DecryptedClob implements Clob {
+
+    private final Clob encryptedClob;
+    private final CharacterStreamEncryptor encryptor;
+    private long length = -1L;
+    
+    
+    DecryptedClob(final Clob encryptedClob, final CharacterStreamEncryptor encryptor) {
+        super();
+        this.encryptedClob = encryptedClob;
+        this.encryptor = encryptor;
+    }
+    
+    
+    Clob getEncryptedClob() {
+        return this.encryptedClob;
+    }
+    
+    
+    CharacterStreamEncryptor getEncryptor() {
+        return this.encryptor;
+    }
+    
+
+    public Reader getCharacterStream() throws SQLException {
+        return this.encryptor.decryptCharacterStream(this.encryptedClob.getCharacterStream());
+    }
+
+
+    public Reader getCharacterStream(final long pos, final long length) 
+            throws SQLException {
+        final Reader reader = getCharacterStream();
+        skip(reader, pos - 1);
+        return new BoundedReader(reader, length);
+    }
+
+
+    public String getSubString(final long pos, final int length) throws SQLException {
+        final Reader reader = getCharacterStream(pos, length);
+        try {
+            final char[] buffer = new char[length];
+            int total = 0;
+            while (total < length) {
+                final int read = reader.read(buffer, total, length - total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return new String(buffer, 0, total);
+        } catch (final IOException e) {
+            throw new SQLException(e.getMessage());
+        } finally {
+            close(reader);
+        }
+    }
+
+
+    public synchronized long length() throws SQLException {
+        if (this.length < 0) {
+            final Reader reader = getCharacterStream();
+            try {
+                this.length = skip(reader, Long.MAX_VALUE);
+            } finally {
+                close(reader);
+            }
+        }
+        return this.length;
+    }
+
+
+    public InputStream getAsciiStream() throws SQLException {
+        throw new SQLException("ASCII streams are not supported by encrypted Clobs");
+    }
+
+
+    public long position(final String searchstr, final long start) throws SQLException {
+        throw new SQLException("Searching is not supported by encrypted Clobs");
+    }
+
+
+    public long position(final Clob searchstr, final long start) throws SQLException {
+        throw new SQLException("Searching is not supported by encrypted Clobs");
+    }
+
+
+    public int setString(final long pos, final String str) throws SQLException {
+        throw new SQLException("Encrypted Clobs are read-only");
+    }
+
+
+    public int setString(final long pos, final String str, final int offset, final int len)
+            throws SQLException {
+        throw new SQLException("Encrypted Clobs are read-only");
+    }
+
+
+    public OutputStream setAsciiStream(final long pos) throws SQLException {
+        throw new SQLException("Encrypted Clobs are read-only");
+    }
+
+
+    public Writer setCharacterStream(final long pos) throws SQLException {
+        throw new SQLException("Encrypted Clobs are read-only");
+    }
+
+
+    public void truncate(final long len) throws SQLException {
+        throw new SQLException("Encrypted Clobs are read-only");
+    }
+
+
+    public void free() throws SQLException {
+        this.encryptedClob.free();
+    }
+    
+    
+    
+    /*
+     * Skips (reading) the specified number of chars, returning the number
+     * of chars actually skipped.
+     */
+    static long skip(final Reader reader, final long count) throws SQLException {
+        try {
+            final char[] buffer = new char[4096];
+            long total = 0L;
+            while (total < count) {
+                final int read = 
+                    reader.read(buffer, 0, (int) Math.min(buffer.length, count - total));
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        } catch (final IOException e) {
+            throw new SQLException(e.getMessage());
+        }
+    }
+    
+    
+    static void close(final Reader reader) {
+        try {
+            reader.close();
+        } catch (final IOException e) {
+            // exception ignored
+        }
+    }
+    
+    
+    
+    private static final class BoundedReader extends Reader {
+        
+        private final Reader reader;
+        private long remaining;
+        
+        BoundedReader(final Reader reader, final long length) {
+            super();
+            this.reader = reader;
+            this.remaining = length;
+        }
+        
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int result = 
+                this.reader.read(cbuf, off, (int) Math.min(len, this.remaining));
+            if (result > 0) {
+                this.remaining -= result;
+            }
+            return result;
+        }
+        
+        public void close() throws IOException {
+            this.reader.close();
+        }
+        
+    }
+    
+}
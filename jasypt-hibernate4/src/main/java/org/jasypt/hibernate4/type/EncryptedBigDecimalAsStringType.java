@@ -108,7 +108,7 @@ public final class EncryptedBigDecimalAsStringType extends AbstractEncryptedAsSt
     }
 
     public Class returnedClass() {
-        return BigDecimal.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : BigDecimal.class);
     }
 
 
@@ -31,8 +31,10 @@ import org.hibernate.HibernateException;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.usertype.ParameterizedType;
 import org.hibernate.usertype.UserType;
+import org.jasypt.encryption.BigDecimalEncryptor;
 import org.jasypt.encryption.pbe.PBEBigDecimalEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEBigDecimalEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
 import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.hibernate4.encryptor.HibernatePBEBigDecimalEncryptor;
 import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
@@ -145,9 +147,10 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
     private String algorithm = null;
     private String password = null;
     private Integer keyObtentionIterations = null;
+    private Integer poolSize = null;
     private Integer decimalScale = null;
     
-    private PBEBigDecimalEncryptor encryptor = null;
+    private BigDecimalEncryptor encryptor = null;
 
     
     public int[] sqlTypes() {
@@ -249,6 +252,8 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
             parameters.getProperty(ParameterNaming.PASSWORD);
         final String paramKeyObtentionIterations =
             parameters.getProperty(ParameterNaming.KEY_OBTENTION_ITERATIONS);
+        final String paramPoolSize =
+            parameters.getProperty(ParameterNaming.POOL_SIZE);
         final String paramDecimalScale =
             parameters.getProperty(ParameterNaming.DECIMAL_SCALE);
         
@@ -257,14 +262,16 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
             
             if ((paramAlgorithm != null) ||
                 (paramPassword != null) ||
-                (paramKeyObtentionIterations != null)) {
+                (paramKeyObtentionIterations != null) ||
+                (paramPoolSize != null)) {
                 
                 throw new EncryptionInitializationException(
                         "If \"" + ParameterNaming.ENCRYPTOR_NAME + 
                         "\" is specified, none of \"" +
                         ParameterNaming.ALGORITHM + "\", \"" +
-                        ParameterNaming.PASSWORD + "\" or \"" + 
-                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" " +
+                        ParameterNaming.PASSWORD + "\", \"" + 
+                        ParameterNaming.KEY_OBTENTION_ITERATIONS + "\" or \"" +
+                        ParameterNaming.POOL_SIZE + "\" " +
                         "can be specified");
                 
             }
@@ -294,6 +301,8 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
                 
             }
             
+            this.poolSize = PoolSizeParameter.parse(paramPoolSize);
+            
         } else {
             
             throw new EncryptionInitializationException(
@@ -349,23 +358,24 @@ public final class EncryptedBigDecimalType implements UserType, ParameterizedTyp
                 
             } else {
                 
-                final StandardPBEBigDecimalEncryptor newEncryptor = 
-                    new StandardPBEBigDecimalEncryptor();
+                final SimplePBEConfig config = new SimplePBEConfig();
                 
-                newEncryptor.setPassword(this.password);
+                config.setPassword(this.password);
                 
                 if (this.algorithm != null) {
-                    newEncryptor.setAlgorithm(this.algorithm);
+                    config.setAlgorithm(this.algorithm);
                 }
                 
                 if (this.keyObtentionIterations != null) {
-                    newEncryptor.setKeyObtentionIterations(
-                            this.keyObtentionIterations.intValue());
+                    config.setKeyObtentionIterations(
+                            this.keyObtentionIterations);
                 }
                 
-                newEncryptor.initialize();
+                config.setPoolSize(PoolSizeParameter.resolve(this.poolSize));
                 
-                this.encryptor = newEncryptor;
+                // Types with the same configuration share their encryptor
+                this.encryptor = 
+                    SharedPBEEncryptorFactory.getInstance().getBigDecimalEncryptor(config);
                 
             }
             
@@ -108,7 +108,7 @@ public final class EncryptedBooleanAsStringType extends AbstractEncryptedAsStrin
     }
 
     public Class returnedClass() {
-        return Boolean.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Boolean.class);
     }
 
  
@@ -108,7 +108,7 @@ public final class EncryptedByteAsStringType extends AbstractEncryptedAsStringTy
     }
 
     public Class returnedClass() {
-        return Byte.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Byte.class);
     }
 
     
@@ -0,0 +1,185 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Calendar;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.hibernate4.encryptor.HibernatePBEByteEncryptor;
+import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
+
+/**
+ * <p>
+ * A <b>Hibernate</b> <tt>UserType</tt> implementation which allows 
+ * encryption of Calendar values into binary (VARBINARY) database fields
+ * during persistence of entities.
+ * </p>
+ * <p>
+ * Values are stored in a compact binary form, which makes encrypted 
+ * values smaller and faster to process than those of 
+ * <tt>EncryptedCalendarAsStringType</tt>.
+ * </p>
+ * <p>
+ * <i>This class is intended only for declarative use from a Hibernate mapping
+ * file. Do not use it directly from your <tt>.java</tt> files (although
+ * of course you can use it when mapping entities using annotations).</i>
+ * </p>
+ * <p>
+ * To use this Hibernate type in one of your Hibernate mappings, you can
+ * add it like this:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedCalendarAsBinary</b>" class="org.jasypt.hibernate4.type.EncryptedCalendarAsBinaryType">
+ *      &lt;param name="encryptorRegisteredName"><b><i>myHibernateByteEncryptor</i></b>&lt;/param>
+ *      &lt;param name="storeTimeZone"><b><i>true</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="birth" column="BIRTH" type="<b>encryptedCalendarAsBinary</b>" />
+ *      ...
+ *    &lt;class>
+ *    ...
+ *  &lt;hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * ...where a <tt>HibernatePBEByteEncryptor</tt> object
+ * should have been previously registered to be used
+ * from Hibernate with name <tt>myHibernateByteEncryptor</tt> (see
+ * {@link HibernatePBEByteEncryptor} and {@link HibernatePBEEncryptorRegistry}). 
+ * </p>
+ * <p>
+ * Or, if you prefer to avoid registration of encryptors, you can configure
+ * your encryptor directly in the mapping file (although not recommended), 
+ * like this:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedCalendarAsBinary</b>" class="org.jasypt.hibernate4.type.EncryptedCalendarAsBinaryType">
+ *      &lt;param name="algorithm"><b><i>PBEWithMD5AndTripleDES</i></b>&lt;/param>
+ *      &lt;param name="password"><b><i>XXXXX</i></b>&lt;/param>
+ *      &lt;param name="keyObtentionIterations"><b><i>1000</i></b>&lt;/param>
+ *      &lt;param name="storeTimeZone"><b><i>true</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="birth" column="BIRTH" type="<b>encryptedCalendarAsBinary</b>" />
+ *      ...
+ *    &lt;class>
+ *    ...
+ *  &lt;hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * To learn more about usage of user-defined types, please refer to the
+ * <a href="http://www.hibernate.org" target="_blank">Hibernate Reference
+ * Documentation</a>.
+ * </p>
+ * 
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptedCalendarAsBinaryType extends AbstractEncryptedAsBinaryType {
+
+    private static final String TIME_ZONE_ENCODING = "UTF-8";
+    
+    private Boolean storeTimeZone = Boolean.FALSE;
+
+    
+    protected Object convertToObject(final byte[] bytes) {
+        checkLength(bytes, 8);
+        final long timeMillis = readLong(bytes, 0);
+        TimeZone tz = null;
+        if (this.storeTimeZone.booleanValue()) {
+            try {
+                tz = TimeZone.getTimeZone(
+                        new String(bytes, 8, bytes.length - 8, TIME_ZONE_ENCODING));
+            } catch (final UnsupportedEncodingException e) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+        } else {
+            tz = TimeZone.getDefault();
+        }
+        final Calendar cal = Calendar.getInstance();
+        cal.setTimeZone(tz);
+        cal.setTimeInMillis(timeMillis);
+        return cal;
+    }
+
+
+    protected byte[] convertToBytes(final Object object) {
+        final Calendar cal = (Calendar) object;
+        byte[] tzBytes = new byte[0];
+        if (this.storeTimeZone.booleanValue()) {
+            try {
+                tzBytes = cal.getTimeZone().getID().getBytes(TIME_ZONE_ENCODING);
+            } catch (final UnsupportedEncodingException e) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+        }
+        final byte[] bytes = new byte[8 + tzBytes.length];
+        writeLong(cal.getTimeInMillis(), bytes, 0);
+        System.arraycopy(tzBytes, 0, bytes, 8, tzBytes.length);
+        return bytes;
+    }
+
+
+    public Object deepCopy(final Object value) {
+        // Calendars are mutable
+        return (value == null? null : ((Calendar) value).clone());
+    }
+
+
+    public boolean isMutable() {
+        return true;
+    }
+ 
+    
+    public synchronized void setParameterValues(final Properties parameters) {
+        
+        super.setParameterValues(parameters);
+        
+        final String paramStoreTimeZone = parameters.getProperty(ParameterNaming.STORE_TIME_ZONE);
+        if ((paramStoreTimeZone != null) && (!paramStoreTimeZone.trim().equals(""))) {
+            this.storeTimeZone = CommonUtils.getStandardBooleanValue(paramStoreTimeZone);
+        }
+        
+    }
+
+
+    public Class returnedClass() {
+        return Calendar.class;
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.jasypt.encryption.CharacterStreamEncryptor;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.hibernate4.encryptor.HibernatePBEStringEncryptor;
+import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
+
+/**
+ * <p>
+ * A <b>Hibernate</b> <tt>UserType</tt> implementation which allows transparent 
+ * encryption of <tt>java.sql.Clob</tt> values during persistence of entities.
+ * </p>
+ * <p>
+ * Contents are encrypted and decrypted as streams, so that they are never
+ * completely loaded into memory: the <tt>Clob</tt> obtained from a loaded
+ * entity decrypts its contents on the fly every time its character stream
+ * is read.
+ * </p>
+ * <p>
+ * <i>This class is intended only for declarative use from a Hibernate mapping
+ * file. Do not use it directly from your <tt>.java</tt> files (although
+ * of course you can use it when mapping entities using annotations).</i>
+ * </p>
+ * <p>
+ * To use this Hibernate type in one of your Hibernate mappings, you can
+ * add it like this:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;hibernate-mapping package="myapp">
+ *    ...
+ *    &lt;typedef name="<b>encryptedClob</b>" class="org.jasypt.hibernate4.type.EncryptedClobType">
+ *      &lt;param name="encryptorRegisteredName"><b><i>myHibernateStringEncryptor</i></b>&lt;/param>
+ *    &lt;/typedef>
+ *    ...
+ *    &lt;class name="UserData" table="USER_DATA">
+ *      ...
+ *      &lt;property name="resume" column="RESUME" type="<b>encryptedClob</b>" />
+ *      ...
+ *    &lt;class>
+ *    ...
+ *  &lt;hibernate-mapping>
+ * </pre>
+ * </p>
+ * <p>
+ * ...where a <tt>HibernatePBEStringEncryptor</tt> object
+ * should have been previously registered to be used
+ * from Hibernate with name <tt>myHibernateStringEncryptor</tt> (see
+ * {@link HibernatePBEStringEncryptor} and {@link HibernatePBEEncryptorRegistry}),
+ * or the <tt>password</tt> (and optionally <tt>algorithm</tt> and
+ * <tt>keyObtentionIterations</tt> and <tt>stringOutputType</tt>) parameters should be specified instead. 
+ * In both cases, the resulting encryptor must implement 
+ * {@link CharacterStreamEncryptor} (which is the case for both 
+ * <tt>StandardPBEStringEncryptor</tt> and <tt>PooledPBEStringEncryptor</tt>).
+ * </p>
+ * <p>
+ * As the length of the encrypted contents is not known in advance, values
+ * are set into statements by means of the JDBC 4 
+ * <tt>PreparedStatement.setCharacterStream(int, Reader)</tt> method,
+ * and therefore a JDBC 4 compliant driver is required. Clob values are 
+ * considered immutable (a new <tt>Clob</tt> has to be set for the property 
+ * in order to change its contents) and are not cacheable.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptedClobType extends AbstractEncryptedLobType {
+
+    private static final int sqlType = Types.CLOB;
+    private static final int[] sqlTypes = new int[]{ sqlType };
+    
+    private CharacterStreamEncryptor encryptor = null;
+    
+
+    public int[] sqlTypes() {
+        return (int[]) sqlTypes.clone();
+    }
+
+    
+    public Class returnedClass() {
+        return Clob.class;
+    }
+    
+    
+    public Object nullSafeGet(final ResultSet rs, final String[] names, 
+            final SessionImplementor session, final Object owner)
+            throws HibernateException, SQLException {
+
+        checkInitialization();
+        
+        final Clob encryptedClob = rs.getClob(names[0]);
+        if (rs.wasNull() || encryptedClob == null) {
+            return null;
+        }
+        return new DecryptedClob(encryptedClob, this.encryptor);
+        
+    }
+
+    
+    public void nullSafeSet(final PreparedStatement st, final Object value, final int index,
+            final SessionImplementor session)
+            throws HibernateException, SQLException {
+
+        checkInitialization();
+        
+        if (value == null) {
+            st.setNull(index, sqlType);
+        } else if ((value instanceof DecryptedClob) && 
+                   (((DecryptedClob) value).getEncryptor() == this.encryptor)) {
+            // Contents are already encrypted with our encryptor: no need to
+            // decrypt and re-encrypt them.
+            st.setClob(index, ((DecryptedClob) value).getEncryptedClob());
+        } else {
+            st.setCharacterStream(
+                    index, 
+                    this.encryptor.encryptCharacterStream(((Clob) value).getCharacterStream()));
+        }
+        
+    }
+    
+    
+    protected void initializeEncryptor(final String registeredName, 
+            final String password, final String algorithm, 
+            final Integer keyObtentionIterations, final Integer poolSize,
+            final String stringOutputType) {
+
+        final StringEncryptor pbeEncryptor;
+        
+        if (registeredName != null) {
+            
+            final HibernatePBEEncryptorRegistry registry = 
+                HibernatePBEEncryptorRegistry.getInstance();
+            pbeEncryptor = registry.getPBEStringEncryptor(registeredName);
+            if (pbeEncryptor == null) {
+                throw new EncryptionInitializationException(
+                        "No string encryptor registered for hibernate " +
+                        "with name \"" + registeredName + "\"");
+            }
+            
+        } else {
+            
+            final SimpleStringPBEConfig config = new SimpleStringPBEConfig();
+            
+            config.setPassword(password);
+            
+            if (algorithm != null) {
+                config.setAlgorithm(algorithm);
+            }
+            
+            if (keyObtentionIterations != null) {
+                config.setKeyObtentionIterations(keyObtentionIterations);
+            }
+            
+            config.setPoolSize(PoolSizeParameter.resolve(poolSize));
+            
+            if (stringOutputType != null) {
+                config.setStringOutputType(stringOutputType);
+            }
+            
+            // Types with the same configuration share their encryptor
+            pbeEncryptor = 
+                SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
+            
+        }
+        
+        if (!(pbeEncryptor instanceof CharacterStreamEncryptor)) {
+            throw new EncryptionInitializationException(
+                    "Encryptor for type " + EncryptedClobType.class.getName() + 
+                    " does not implement " + CharacterStreamEncryptor.class.getName());
+        }
+        this.encryptor = (CharacterStreamEncryptor) pbeEncryptor;
+        
+    }
+    
+}
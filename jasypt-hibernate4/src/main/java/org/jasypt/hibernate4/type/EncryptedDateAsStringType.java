@@ -120,7 +120,7 @@ public final class EncryptedDateAsStringType extends AbstractEncryptedAsStringTy
 
 
     public Class returnedClass() {
-        return Date.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Date.class);
     }
     
 }
@@ -108,7 +108,7 @@ public final class EncryptedDoubleAsStringType extends AbstractEncryptedAsString
     }
 
     public Class returnedClass() {
-        return Double.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Double.class);
     }
     
 }
@@ -109,7 +109,7 @@ public final class EncryptedFloatAsStringType extends AbstractEncryptedAsStringT
     }
 
     public Class returnedClass() {
-        return Float.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Float.class);
     }
     
 }
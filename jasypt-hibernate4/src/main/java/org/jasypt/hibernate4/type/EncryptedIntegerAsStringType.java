@@ -108,7 +108,7 @@ public final class EncryptedIntegerAsStringType extends AbstractEncryptedAsStrin
     }
 
     public Class returnedClass() {
-        return Integer.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Integer.class);
     }
 
  
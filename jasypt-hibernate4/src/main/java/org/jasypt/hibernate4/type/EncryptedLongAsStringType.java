@@ -108,7 +108,7 @@ public final class EncryptedLongAsStringType extends AbstractEncryptedAsStringTy
     }
 
     public Class returnedClass() {
-        return Long.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : Long.class);
     }
 
  
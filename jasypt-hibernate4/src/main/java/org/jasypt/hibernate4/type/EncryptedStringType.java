@@ -107,7 +107,7 @@ public final class EncryptedStringType extends AbstractEncryptedAsStringType{
     }
 
     public Class returnedClass() {
-        return String.class;
+        return (isLazyDecryption()? LazyDecryptedValue.class : String.class);
     }
     
     
@@ -0,0 +1,360 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.jasypt.commons.ParallelProcessingUtils;
+
+/**
+ * <p>
+ * Holder for the values of properties mapped with a jasypt 
+ * <tt>Encrypted*AsStringType</tt> (or <tt>EncryptedStringType</tt>) in 
+ * <i>lazy decryption</i> mode (see {@link ParameterNaming#LAZY_DECRYPTION}). 
+ * </p>
+ * <p>
+ * Values loaded from the database are kept encrypted until 
+ * {@link #getValue()} is called for the first time, so that entities 
+ * can be loaded without spending any time decrypting the properties 
+ * that are never read. Once decrypted, the value is kept and not 
+ * decrypted again. If the entity is saved again without having set a new 
+ * holder for the property, the original encrypted value is written back
+ * without being encrypted again.
+ * </p>
+ * <p>
+ * Properties mapped in lazy decryption mode must be declared of this type 
+ * in the entity class and accessed by Hibernate directly as fields, so 
+ * that the entity can transparently expose the decrypted value:
+ * </p>
+ * <p>
+ * <pre>
+ *  &lt;typedef name="<b>lazyEncryptedString</b>" class="org.jasypt.hibernate4.type.EncryptedStringType">
+ *    &lt;param name="encryptorRegisteredName"><b><i>myHibernateStringEncryptor</i></b>&lt;/param>
+ *    &lt;param name="lazyDecryption"><b><i>true</i></b>&lt;/param>
+ *  &lt;/typedef>
+ *  ...
+ *  &lt;property name="name" column="NAME" type="<b>lazyEncryptedString</b>" access="field" />
+ * </pre>
+ * </p>
+ * <p>
+ * <pre>
+ *  private LazyDecryptedValue name;
+ *  
+ *  public String getName() {
+ *      return (String) LazyDecryptedValue.valueOf(this.name);
+ *  }
+ *  
+ *  public void setName(final String name) {
+ *      this.name = new LazyDecryptedValue(name);
+ *  }
+ * </pre>
+ * </p>
+ * <p>
+ * The value held never changes (a new holder has to be set in order to 
+ * change the value of the property), but holders are not immutable: 
+ * besides caching the value once decrypted, a holder can be assigned the
+ * encrypted message computed for it by a type using parallel encryption 
+ * (see {@link #encryptFor(AbstractEncryptedAsStringType)}), so that it is
+ * not encrypted again when stored.
+ * </p>
+ * <p>
+ * When the type is configured with <i>parallel decryption</i> (see 
+ * {@link ParameterNaming#PARALLEL_DECRYPTION}), the holders created while
+ * loading entities are also registered as pending for their session, and
+ * all of them are decrypted at once, in parallel, by 
+ * {@link #decryptPendingValues(SessionImplementor, int)} when the load
+ * finishes (see <tt>org.jasypt.hibernate4.event.ParallelDecryptionIntegrator</tt>).
+ * </p>
+ * <p>
+ * Conversely, when the type is configured with <i>parallel encryption</i>
+ * (see {@link ParameterNaming#PARALLEL_ENCRYPTION}), new holders are 
+ * encrypted in parallel when the session is flushed (see 
+ * <tt>org.jasypt.hibernate4.event.ParallelEncryptionIntegrator</tt>), and 
+ * the type then only binds the already computed encrypted messages.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class LazyDecryptedValue {
+
+    // Pending holders (lists of) by session, kept apart for each thread 
+    // (sessions are not shared among threads, and values are loaded and 
+    // post-loaded by the same thread), so that no lock is needed. Sessions 
+    // are weakly referenced, so that values pending for discarded sessions
+    // can be collected.
+    private static final ThreadLocal pendingBySession = new ThreadLocal();
+    
+    // Whether any type has been configured with parallel decryption (if 
+    // not, there is never anything to be done after loading entities)
+    private static volatile boolean parallelDecryptionEnabled = false;
+    
+    // Minimum number of pending values for each thread taking part in
+    // parallel decryption (no threads are worth starting for less)
+    private static final int MIN_VALUES_PER_THREAD = 4;
+
+    // Type which produced (or can store) the encrypted message, if any
+    private AbstractEncryptedAsStringType type;
+    private String encryptedMessage;
+    
+    private boolean decrypted;
+    private Object value;
+    
+    
+    /**
+     * <p>
+     * Creates a holder for a new (non-encrypted) value.
+     * </p>
+     * 
+     * @param value the value.
+     */
+    public LazyDecryptedValue(final Object value) {
+        super();
+        this.type = null;
+        this.encryptedMessage = null;
+        this.decrypted = true;
+        this.value = value;
+    }
+    
+    
+    LazyDecryptedValue(final AbstractEncryptedAsStringType type, 
+            final String encryptedMessage) {
+        super();
+        this.type = type;
+        this.encryptedMessage = encryptedMessage;
+        this.decrypted = false;
+        this.value = null;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the value held, decrypting it if this has not been done yet.
+     * </p>
+     * 
+     * @return the (decrypted) value.
+     */
+    public synchronized Object getValue() {
+        if (!this.decrypted) {
+            this.value = this.type.decryptToObject(this.encryptedMessage);
+            this.decrypted = true;
+        }
+        return this.value;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the value held has already been decrypted (or did not
+     * need decryption at all because it was not loaded from the database).
+     * </p>
+     * 
+     * @return true if the value is already available, false if not.
+     */
+    public synchronized boolean isDecrypted() {
+        return this.decrypted;
+    }
+    
+    
+    /**
+     * <p>
+     * Null-safe convenience method for obtaining the value of a holder.
+     * </p>
+     * 
+     * @param holder the holder (might be null).
+     * @return the (decrypted) value held, or null if the holder is null.
+     */
+    public static Object valueOf(final LazyDecryptedValue holder) {
+        return (holder == null? null : holder.getValue());
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts (in parallel, using up to the specified amount of threads)
+     * all the values that have been loaded for the specified session by 
+     * types configured with parallel decryption and are still pending.
+     * </p>
+     * <p>
+     * If any of the values cannot be decrypted, the corresponding exception
+     * is thrown once all working threads have finished.
+     * </p>
+     * 
+     * @param session the session the values were loaded for.
+     * @param threadCount the maximum number of threads to be used.
+     * @return the number of values that were decrypted.
+     */
+    public static int decryptPendingValues(final SessionImplementor session, 
+            final int threadCount) {
+        
+        if (!parallelDecryptionEnabled) {
+            return 0;
+        }
+        final Map pendingForThread = (Map) pendingBySession.get();
+        if (pendingForThread == null) {
+            return 0;
+        }
+        final List pending = (List) pendingForThread.remove(session);
+        if (pendingForThread.isEmpty()) {
+            pendingBySession.set(null);
+        }
+        if (pending == null) {
+            return 0;
+        }
+        
+        final int size = pending.size();
+        final int threads = 
+            Math.max(1, Math.min(threadCount, size / MIN_VALUES_PER_THREAD));
+        ParallelProcessingUtils.process(size, threads, 
+                new ParallelProcessingUtils.IndexedTask() {
+                    public void process(final int index) {
+                        ((LazyDecryptedValue) pending.get(index)).getValue();
+                    }
+                });
+        return size;
+        
+    }
+    
+    
+    /*
+     * Registers a holder as pending of (parallel) decryption for the
+     * specified session.
+     */
+    static void addPending(final SessionImplementor session, 
+            final LazyDecryptedValue holder) {
+        Map pendingForThread = (Map) pendingBySession.get();
+        if (pendingForThread == null) {
+            pendingForThread = new WeakHashMap();
+            pendingBySession.set(pendingForThread);
+        }
+        List pending = (List) pendingForThread.get(session);
+        if (pending == null) {
+            pending = new ArrayList();
+            pendingForThread.put(session, pending);
+        }
+        pending.add(holder);
+    }
+    
+    
+    /*
+     * Signals that a type has been configured with parallel decryption, and
+     * therefore pending values might have to be decrypted after loads.
+     */
+    static void enableParallelDecryption() {
+        parallelDecryptionEnabled = true;
+    }
+    
+    
+    /*
+     * Returns the encrypted message this holder was loaded from, if it was
+     * loaded by the specified type (and therefore can be written back as is).
+     */
+    synchronized String getEncryptedMessage(final AbstractEncryptedAsStringType sourceType) {
+        return (this.type == sourceType? this.encryptedMessage : null);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether this holder has a value that would need to be 
+     * encrypted in order to be stored by the specified type.
+     * </p>
+     * 
+     * @param targetType the type the value would be stored by.
+     * @return true if encryption is needed, false if the value is null or 
+     *         its encrypted message for the type is already available.
+     */
+    public synchronized boolean isEncryptionPending(
+            final AbstractEncryptedAsStringType targetType) {
+        if (this.type == targetType) {
+            return false;
+        }
+        return (!this.decrypted || this.value != null);
+    }
+    
+    
+    /**
+     * <p>
+     * Encrypts the value held by means of the specified type, so that the 
+     * type can later store it without needing to encrypt it. Used for 
+     * encrypting values in parallel before flushing a session.
+     * </p>
+     * 
+     * @param targetType the type the value will be stored by.
+     */
+    public void encryptFor(final AbstractEncryptedAsStringType targetType) {
+        final Object plainValue = getValue();
+        if (plainValue == null) {
+            return;
+        }
+        final String message = targetType.encryptFromObject(plainValue);
+        synchronized (this) {
+            this.type = targetType;
+            this.encryptedMessage = message;
+        }
+    }
+    
+    
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LazyDecryptedValue)) {
+            return false;
+        }
+        final LazyDecryptedValue other = (LazyDecryptedValue) obj;
+        final String thisMessage = getEncryptedMessage(other.getType());
+        if (thisMessage != null && 
+                thisMessage.equals(other.getEncryptedMessage(getType()))) {
+            // Same encrypted message from the same type: no need to decrypt
+            return true;
+        }
+        final Object thisValue = getValue();
+        final Object otherValue = other.getValue();
+        return (thisValue == null? 
+                otherValue == null : thisValue.equals(otherValue));
+    }
+    
+    
+    private synchronized AbstractEncryptedAsStringType getType() {
+        return this.type;
+    }
+    
+    
+    public int hashCode() {
+        final Object thisValue = getValue();
+        return (thisValue == null? 0 : thisValue.hashCode());
+    }
+    
+    
+    public String toString() {
+        return String.valueOf(getValue());
+    }
+    
+}
@@ -86,6 +86,21 @@ public final class ParameterNaming {
     public static final String KEY_OBTENTION_ITERATIONS = 
         "keyObtentionIterations";
     
+    /**
+     * <p>
+     * The number of encryptor instances to be pooled for serving concurrent
+     * encryption and decryption operations. If not specified, the number 
+     * of available processors will be used.
+     * </p>
+     * <p>
+     * Value = <tt>poolSize</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String POOL_SIZE = 
+        "poolSize";
+    
     /**
      * <p>
      * The type of String output ("base64" (default), "hexadecimal") to be
@@ -120,6 +135,79 @@ public final class ParameterNaming {
     public static final String STORE_TIME_ZONE = 
         "storeTimeZone";
     
+    /**
+     * <p>
+     * The password (secret key) used for creating blind indexes. It should
+     * be different from the encryption password.
+     * </p>
+     * <p>
+     * Value = <tt>blindIndexPassword</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String BLIND_INDEX_PASSWORD = 
+        "blindIndexPassword";
+    
+    /**
+     * <p>
+     * The HMAC algorithm used for creating blind indexes.
+     * </p>
+     * <p>
+     * Value = <tt>blindIndexAlgorithm</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String BLIND_INDEX_ALGORITHM = 
+        "blindIndexAlgorithm";
+    
+    /**
+     * <p>
+     * Whether values should be decrypted lazily, i.e. returned wrapped in 
+     * <tt>LazyDecryptedValue</tt> holders and only decrypted when first
+     * accessed ("true" or "false" (default)).
+     * </p>
+     * <p>
+     * Value = <tt>lazyDecryption</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String LAZY_DECRYPTION = 
+        "lazyDecryption";
+    
+    /**
+     * <p>
+     * Whether values loaded for entities should be decrypted in parallel 
+     * once the whole load operation (e.g. a query) finishes, instead of 
+     * one after another as rows are read ("true" or "false" (default)). 
+     * Implies lazy decryption.
+     * </p>
+     * <p>
+     * Value = <tt>parallelDecryption</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String PARALLEL_DECRYPTION = 
+        "parallelDecryption";
+    
+    /**
+     * <p>
+     * Whether new values should be encrypted in parallel when the session 
+     * is flushed, instead of one after another as each statement is bound 
+     * ("true" or "false" (default)). Implies lazy decryption.
+     * </p>
+     * <p>
+     * Value = <tt>parallelEncryption</tt>
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final String PARALLEL_ENCRYPTION = 
+        "parallelEncryption";
+    
     
     
     private ParameterNaming() {
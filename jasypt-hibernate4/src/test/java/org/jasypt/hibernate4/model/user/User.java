@@ -19,9 +19,12 @@
  */
 package org.jasypt.hibernate4.model.user;
 
+import java.sql.Blob;
+import java.sql.Clob;
 import java.util.Calendar;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.jasypt.hibernate4.type.LazyDecryptedValue;
 
 /**
  * 
@@ -35,6 +38,13 @@ public class User {
 	private String password;
 	private Calendar birthdate;
 	private byte[] document;
+	private String email;
+	private Blob attachment;
+	private Clob notes;
+	private LazyDecryptedValue nickname;
+	private LazyDecryptedValue phone;
+	private Long salary;
+	private Calendar registered;
 	
 	
 	public User(String name, String login, String password, Calendar birthdate,
@@ -54,7 +64,8 @@ public class User {
 		return new ToStringBuilder(this).append("name", this.name)
 				.append("login", this.login).append("password", this.password)
 				.append("birthdate", this.birthdate)
-				.append("document", this.document).toString();
+				.append("document", this.document)
+				.append("email", this.email).toString();
 	}
 	public String getName() {
 		return this.name;
@@ -86,6 +97,54 @@ public class User {
 	public void setDocument(byte[] document) {
 		this.document = document;
 	}
+	public String getEmail() {
+		return this.email;
+	}
+	public void setEmail(String email) {
+		this.email = email;
+	}
+	public Blob getAttachment() {
+		return this.attachment;
+	}
+	public void setAttachment(Blob attachment) {
+		this.attachment = attachment;
+	}
+	public Clob getNotes() {
+		return this.notes;
+	}
+	public void setNotes(Clob notes) {
+		this.notes = notes;
+	}
+	public String getNickname() {
+		return (String) LazyDecryptedValue.valueOf(this.nickname);
+	}
+	public void setNickname(String nickname) {
+		this.nickname = new LazyDecryptedValue(nickname);
+	}
+	public LazyDecryptedValue getNicknameHolder() {
+		return this.nickname;
+	}
+	public String getPhone() {
+		return (String) LazyDecryptedValue.valueOf(this.phone);
+	}
+	public void setPhone(String phone) {
+		this.phone = new LazyDecryptedValue(phone);
+	}
+	public LazyDecryptedValue getPhoneHolder() {
+		return this.phone;
+	}
+	public Long getSalary() {
+		return this.salary;
+	}
+	public void setSalary(Long salary) {
+		this.salary = salary;
+	}
+	public Calendar getRegistered() {
+		return this.registered;
+	}
+	public void setRegistered(Calendar registered) {
+		this.registered = registered;
+	}
 	
 	
 }
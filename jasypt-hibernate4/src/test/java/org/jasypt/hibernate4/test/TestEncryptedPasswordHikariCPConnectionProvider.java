@@ -0,0 +1,122 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.test;
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.hibernate4.connectionprovider.EncryptedPasswordHikariCPConnectionProvider;
+import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
+
+/**
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public class TestEncryptedPasswordHikariCPConnectionProvider extends TestCase {
+
+    private static final String URL = "jdbc:h2:mem:jasypthikaritestdb;DB_CLOSE_DELAY=-1";
+    private static final String USER = "jasypt";
+    private static final String PASSWORD = "hikari-test-password";
+    
+    
+    public TestEncryptedPasswordHikariCPConnectionProvider() {
+        super();
+    }
+
+    public TestEncryptedPasswordHikariCPConnectionProvider(String name) {
+        super(name);
+    }
+
+    
+    public void testConnectWithEncryptedParameters() throws Exception {
+        
+        StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setAlgorithm("PBEWithMD5AndDES");
+        encryptor.setPassword("jasypt-hibernate4-test");
+        HibernatePBEEncryptorRegistry.getInstance().registerPBEStringEncryptor(
+                "hibernateConnectionEncryptor", encryptor);
+
+        // The first connection creates the in-memory database with the
+        // (decrypted) credentials, which are then required for connecting
+        ServiceRegistry serviceRegistry = new ServiceRegistryBuilder()
+            .applySetting("hibernate.connection.provider_class", 
+                    EncryptedPasswordHikariCPConnectionProvider.class.getName())
+            .applySetting("hibernate.connection.encryptor_registered_name", 
+                    "hibernateConnectionEncryptor")
+            .applySetting("hibernate.connection.driver_class", 
+                    "ENC(" + encryptor.encrypt("org.h2.Driver") + ")")
+            .applySetting("hibernate.connection.url", 
+                    "ENC(" + encryptor.encrypt(URL) + ")")
+            .applySetting("hibernate.connection.username", 
+                    "ENC(" + encryptor.encrypt(USER) + ")")
+            .applySetting("hibernate.connection.password", 
+                    "ENC(" + encryptor.encrypt(PASSWORD) + ")")
+            .applySetting("hibernate.connection.pool_size", "4")
+            .applySetting("hibernate.hikari.minimumIdle", "1")
+            .buildServiceRegistry();
+        
+        try {
+            
+            ConnectionProvider connectionProvider = 
+                (ConnectionProvider) serviceRegistry.getService(ConnectionProvider.class);
+            assertTrue(connectionProvider instanceof EncryptedPasswordHikariCPConnectionProvider);
+            assertNotNull(connectionProvider.unwrap(DataSource.class));
+            
+            Connection connection = connectionProvider.getConnection();
+            try {
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT USER()");
+                assertTrue(resultSet.next());
+                assertEquals(USER, resultSet.getString(1).toLowerCase());
+                resultSet.close();
+                statement.close();
+            } finally {
+                connectionProvider.closeConnection(connection);
+            }
+            
+            // Credentials are the ones the database was created with
+            try {
+                Connection wrongConnection = 
+                    new org.h2.Driver().connect(URL + ";USER=" + USER + ";PASSWORD=wrong", null);
+                wrongConnection.close();
+                fail("Connection should not be allowed with a wrong password");
+            } catch (SQLException e) {
+                // Expected
+            }
+            
+        } finally {
+            ServiceRegistryBuilder.destroy(serviceRegistry);
+        }
+        
+    }
+    
+}
@@ -23,22 +23,38 @@ package org.jasypt.hibernate4.test;
 import java.io.UnsupportedEncodingException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
 
 import junit.framework.TestCase;
 
 import org.apache.commons.lang.RandomStringUtils;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.LobCreator;
 import org.hibernate.jdbc.Work;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.service.ServiceRegistry;
 import org.hibernate.service.ServiceRegistryBuilder;
+import org.hibernate.type.CustomType;
+import org.jasypt.digest.HmacBlindIndexer;
+import org.jasypt.encryption.pbe.PooledPBEStringEncryptor;
 import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
 import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
 import org.jasypt.hibernate4.encryptor.HibernatePBEEncryptorRegistry;
 import org.jasypt.hibernate4.model.user.User;
+import org.jasypt.hibernate4.type.AbstractEncryptedAsStringType;
+import org.jasypt.hibernate4.type.LazyDecryptedValue;
 
 /**
  * 
@@ -55,6 +71,12 @@ public class TestHibernateTypes extends TestCase {
 	private static String userPassword;
 	private static Calendar userBirthdate;
 	private static byte[] userDocument;
+	private static String userEmail;
+	private static byte[] userAttachment;
+	private static String userNotes;
+	private static String userNickname;
+	private static Long userSalary;
+	private static Calendar userRegistered;
 
 	static Session session;
 	
@@ -71,6 +93,10 @@ public class TestHibernateTypes extends TestCase {
         
         createUser();
         readUser();
+        readUserLazily();
+        findUserByEmail();
+        readUserLobs();
+        saveAndListUsersInParallel();
         
         finish();
     }
@@ -120,6 +146,13 @@ public class TestHibernateTypes extends TestCase {
             HibernatePBEEncryptorRegistry.getInstance();
         registry.registerPBEStringEncryptor("hibernateStringEncryptor", stringEncryptor);
         registry.registerPBEByteEncryptor("hibernateByteEncryptor", byteEncryptor);
+        
+        PooledPBEStringEncryptor pooledStringEncryptor = new PooledPBEStringEncryptor();
+        pooledStringEncryptor.setAlgorithm("PBEWithMD5AndDES");
+        pooledStringEncryptor.setPassword("jasypt-hibernate3-test");
+        pooledStringEncryptor.setPoolSize(4);
+        registry.registerPBEStringEncryptor(
+                "hibernatePooledStringEncryptor", pooledStringEncryptor);
 	}
 	
 	/**
@@ -136,7 +169,15 @@ public class TestHibernateTypes extends TestCase {
 						"LOGIN VARCHAR(100) PRIMARY KEY," +
 						"PASSWORD VARCHAR(100)," +
 						"BIRTHDATE VARCHAR(100)," +
-						"DOCUMENT BLOB);");
+						"DOCUMENT BLOB," +
+						"EMAIL VARCHAR(100)," +
+						"EMAIL_INDEX VARCHAR(100)," +
+						"ATTACHMENT BLOB," +
+						"NOTES CLOB," +
+						"NICKNAME VARCHAR(100)," +
+						"PHONE VARCHAR(100)," +
+						"SALARY VARBINARY(100)," +
+						"REGISTERED VARBINARY(100));");
 			}
 		});
 		
@@ -151,6 +192,13 @@ public class TestHibernateTypes extends TestCase {
 	    userName = RandomStringUtils.randomAlphabetic(10);
 	    userPassword = RandomStringUtils.randomAlphanumeric(15);
 	    userBirthdate = Calendar.getInstance();
+	    userEmail = RandomStringUtils.randomAlphabetic(8) + "@example.com";
+	    userNickname = RandomStringUtils.randomAlphabetic(12);
+	    userSalary = new Long(new Random().nextLong());
+	    userRegistered = Calendar.getInstance(TimeZone.getTimeZone("America/Argentina/Buenos_Aires"));
+	    userAttachment = new byte[20000];
+	    new Random().nextBytes(userAttachment);
+	    userNotes = RandomStringUtils.random(20000, "abcdefghij \u00E1\u00F1\u4E2D\u6587\n");
 	    try {
             userDocument = RandomStringUtils.randomAlphabetic(100).getBytes(
                 "ISO-8859-1");
@@ -167,9 +215,17 @@ public class TestHibernateTypes extends TestCase {
 	private void createUser() throws Exception {
 		User user = new User(userName, userLogin, userPassword,
 				userBirthdate, userDocument);
+		user.setEmail(userEmail);
+		user.setNickname(userNickname);
+		user.setSalary(userSalary);
+		user.setRegistered(userRegistered);
 		
 		Transaction transaction = session.beginTransaction();
 		
+		LobCreator lobCreator = Hibernate.getLobCreator(session);
+		user.setAttachment(lobCreator.createBlob(userAttachment));
+		user.setNotes(lobCreator.createClob(userNotes));
+		
 		session.saveOrUpdate(user);
 		
 		System.out.println("User stored: " + user);
@@ -194,5 +250,123 @@ public class TestHibernateTypes extends TestCase {
 		assertEquals(user.getPassword(), userPassword);
 		assertEquals(user.getBirthdate(), userBirthdate);
 		assertEquals(user.getDocument(), userDocument);
+		assertEquals(user.getEmail(), userEmail);
+		assertEquals(user.getNickname(), userNickname);
+	}
+	
+	private void readUserLazily() throws Exception {
+		
+		session.clear();
+		Transaction transaction = session.beginTransaction();
+		
+		User user = (User) session.get(User.class, userLogin);
+		
+		assertFalse(user.getNicknameHolder().isDecrypted());
+		assertEquals(user.getNickname(), userNickname);
+		assertTrue(user.getNicknameHolder().isDecrypted());
+		assertEquals(user.getSalary(), userSalary);
+		assertEquals(user.getRegistered(), userRegistered);
+		
+		user.setNickname(userNickname + "2");
+		
+		transaction.commit();
+		session.clear();
+		
+		transaction = session.beginTransaction();
+		user = (User) session.get(User.class, userLogin);
+		assertEquals(user.getNickname(), userNickname + "2");
+		transaction.commit();
+		
+		userNickname = userNickname + "2";
+	}
+	
+	private void findUserByEmail() throws Exception {
+		
+		HmacBlindIndexer indexer = new HmacBlindIndexer();
+		indexer.setPassword("jasypt-hibernate4-blind-index-test");
+		
+		session.clear();
+		Transaction transaction = session.beginTransaction();
+		
+		List users = session
+		    .createQuery("from User u where u.email.blindIndex = :index")
+		    .setString("index", indexer.index(userEmail))
+		    .list();
+		List noUsers = session
+		    .createQuery("from User u where u.email.blindIndex = :index")
+		    .setString("index", indexer.index("nobody@example.com"))
+		    .list();
+		
+		transaction.commit();
+		
+		assertEquals(1, users.size());
+		assertEquals(((User) users.get(0)).getLogin(), userLogin);
+		assertEquals(((User) users.get(0)).getEmail(), userEmail);
+		assertEquals(0, noUsers.size());
+	}
+	
+	private void readUserLobs() throws Exception {
+		
+		session.clear();
+		Transaction transaction = session.beginTransaction();
+		
+		User user = (User) session.get(User.class, userLogin);
+		
+		byte[] attachment = 
+		    user.getAttachment().getBytes(1, (int) user.getAttachment().length());
+		String notes = 
+		    user.getNotes().getSubString(1, (int) user.getNotes().length());
+		String notesFragment = user.getNotes().getSubString(101, 50);
+		
+		transaction.commit();
+		
+		assertTrue(Arrays.equals(attachment, userAttachment));
+		assertEquals(notes, userNotes);
+		assertEquals(notesFragment, userNotes.substring(100, 150));
+	}
+	
+	private void saveAndListUsersInParallel() throws Exception {
+		
+		// The type instance used by the persister for writing the property
+		ClassMetadata userMetadata = sessionFactory.getClassMetadata(User.class);
+		int phoneIndex = 
+		    Arrays.asList(userMetadata.getPropertyNames()).indexOf("phone");
+		AbstractEncryptedAsStringType phoneType = (AbstractEncryptedAsStringType)
+		    ((CustomType) userMetadata.getPropertyTypes()[phoneIndex]).getUserType();
+		Map phonesByLogin = new HashMap();
+		List phoneHolders = new ArrayList();
+		
+		Transaction transaction = session.beginTransaction();
+		for (int i = 0; i < 20; i++) {
+			User user = new User(RandomStringUtils.randomAlphabetic(10), 
+					"parallel" + i, RandomStringUtils.randomAlphanumeric(15),
+					Calendar.getInstance(), userDocument);
+			user.setPhone(RandomStringUtils.randomNumeric(9));
+			session.save(user);
+			phonesByLogin.put(user.getLogin(), user.getPhone());
+			phoneHolders.add(user.getPhoneHolder());
+			assertTrue(user.getPhoneHolder().isEncryptionPending(phoneType));
+		}
+		transaction.commit();
+		
+		// All values must have been encrypted before flushing
+		Iterator phoneHoldersIter = phoneHolders.iterator();
+		while (phoneHoldersIter.hasNext()) {
+			assertFalse(((LazyDecryptedValue) phoneHoldersIter.next()).isEncryptionPending(phoneType));
+		}
+		session.clear();
+		
+		transaction = session.beginTransaction();
+		List users = session.createQuery("from User u where u.login like 'parallel%'").list();
+		
+		// All values must have been decrypted before the list was returned
+		assertEquals(20, users.size());
+		Iterator usersIter = users.iterator();
+		while (usersIter.hasNext()) {
+			User user = (User) usersIter.next();
+			assertTrue(user.getPhoneHolder().isDecrypted());
+			assertEquals(phonesByLogin.get(user.getLogin()), user.getPhone());
+		}
+		transaction.commit();
 	}
 }
@@ -0,0 +1,94 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.hibernate4.type;
+
+import java.util.Properties;
+
+import javax.security.auth.Destroyable;
+
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public class TestEncryptedTypePooling extends TestCase {
+
+    
+    public TestEncryptedTypePooling() {
+        super();
+    }
+
+    public TestEncryptedTypePooling(String name) {
+        super(name);
+    }
+    
+    
+    public void testEqualParametersSharePool() throws Exception {
+        
+        final EncryptedStringType type = createType("2");
+        final EncryptedStringType sameType = createType("2");
+        final EncryptedStringType otherType = createType("3");
+        
+        // The shared encryptor cannot be destroyed by any of the types using it
+        assertFalse(type.encryptor instanceof Destroyable);
+        assertSame(type.encryptor, sameType.encryptor);
+        assertNotSame(type.encryptor, otherType.encryptor);
+        
+        final String encrypted = type.encryptor.encrypt("pooled");
+        assertEquals("pooled", otherType.encryptor.decrypt(encrypted));
+        
+    }
+    
+    
+    public void testInvalidPoolSize() throws Exception {
+        
+        final String[] invalidValues = new String[] { "0", "-1", "two" };
+        for (int i = 0; i < invalidValues.length; i++) {
+            try {
+                createType(invalidValues[i]);
+                fail();
+            } catch (EncryptionInitializationException e) {
+                // expected
+            }
+        }
+        assertNull(PoolSizeParameter.parse(null));
+        assertEquals(
+                new Integer(Runtime.getRuntime().availableProcessors()), 
+                PoolSizeParameter.resolve(null));
+        
+    }
+    
+    
+    private static EncryptedStringType createType(final String poolSize) {
+        final Properties parameters = new Properties();
+        parameters.setProperty(ParameterNaming.ALGORITHM, "PBEWithMD5AndDES");
+        parameters.setProperty(ParameterNaming.PASSWORD, "jasypt-hibernate4-pool-test");
+        parameters.setProperty(ParameterNaming.POOL_SIZE, poolSize);
+        final EncryptedStringType type = new EncryptedStringType();
+        type.setParameterValues(parameters);
+        type.checkInitialization();
+        return type;
+    }
+    
+}
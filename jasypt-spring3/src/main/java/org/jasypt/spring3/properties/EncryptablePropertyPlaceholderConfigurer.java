@@ -19,8 +19,16 @@
  */
 package org.jasypt.spring3.properties;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
 import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.properties.ParallelPropertyValueDecryptor;
+import org.jasypt.properties.PropertyValueDecryptionReport;
 import org.jasypt.properties.PropertyValueEncryptionUtils;
 import org.jasypt.util.text.TextEncryptor;
 import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
@@ -43,6 +51,12 @@ import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
  * <p>
  * Encrypted and unencrypted objects can be combined in the same resources file.
  * </p>
+ * <p>
+ * If <tt>preloadEncryptedValues</tt> is set to true, all the encrypted values
+ * will be decrypted at once (in parallel) before placeholders are resolved,
+ * and every value that could not be decrypted will be reported in one
+ * single exception.
+ * </p>
  * 
  * @since 1.9.0 (existed in package org.jasypt.spring.properties since 1.4)
  * 
@@ -58,6 +72,10 @@ public final class EncryptablePropertyPlaceholderConfigurer
 	 */
 	private final StringEncryptor stringEncryptor;
 	private final TextEncryptor textEncryptor;
+	
+	private boolean preloadEncryptedValues = false;
+	private int preloadThreadCount = ParallelProcessingUtils.getDefaultThreadCount();
+	private PropertyValueDecryptionReport preloadReport = null;
 
 	/**
 	 * <p>
@@ -95,6 +113,98 @@ public final class EncryptablePropertyPlaceholderConfigurer
 		this.textEncryptor = textEncryptor;
 	}
 
+	/**
+	 * <p>
+	 * Sets whether all the encrypted values should be decrypted at once, 
+	 * in parallel, before resolving placeholders. Default is false.
+	 * </p>
+	 * <p>
+	 * Note that, in order for decryption to really happen in parallel, the
+	 * encryptor being used should be able to attend several requests at the
+	 * same time, like 
+	 * {@link org.jasypt.encryption.pbe.PooledPBEStringEncryptor} does.
+	 * </p>
+	 * 
+	 * @since 1.9.3
+	 * 
+	 * @param preloadEncryptedValues whether encrypted values should be 
+	 *        preloaded or not.
+	 */
+	public void setPreloadEncryptedValues(final boolean preloadEncryptedValues) {
+		this.preloadEncryptedValues = preloadEncryptedValues;
+	}
+
+	/**
+	 * <p>
+	 * Sets the maximum number of threads to be used for preloading encrypted
+	 * values. By default, this equals the number of processors available to
+	 * the JVM.
+	 * </p>
+	 * 
+	 * @since 1.9.3
+	 * 
+	 * @param preloadThreadCount the number of threads.
+	 */
+	public void setPreloadThreadCount(final int preloadThreadCount) {
+		CommonUtils.validateIsTrue(preloadThreadCount > 0, "Thread count must be > 0");
+		this.preloadThreadCount = preloadThreadCount;
+	}
+
+	/**
+	 * <p>
+	 * Returns the report of the last preloading of encrypted values (total
+	 * time, decrypted values and failures), or null if no preloading has 
+	 * been performed.
+	 * </p>
+	 * 
+	 * @since 1.9.3
+	 * 
+	 * @return the report of the last preload operation.
+	 */
+	public PropertyValueDecryptionReport getPreloadReport() {
+		return this.preloadReport;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @since 1.9.3
+	 * @see org.springframework.beans.factory.config.PropertyResourceConfigurer#convertProperties(java.util.Properties)
+	 */
+	@Override
+	protected void convertProperties(final Properties props) {
+		if (this.preloadEncryptedValues) {
+			preload(props);
+		}
+		super.convertProperties(props);
+	}
+
+	/*
+	 * Decrypts all encrypted values in parallel and replaces them in the
+	 * properties object, so that convertPropertyValue will not need to 
+	 * decrypt them again.
+	 */
+	private void preload(final Properties props) {
+		final ParallelPropertyValueDecryptor decryptor =
+			(this.stringEncryptor != null ?
+					new ParallelPropertyValueDecryptor(this.stringEncryptor) :
+					new ParallelPropertyValueDecryptor(this.textEncryptor));
+		decryptor.setThreadCount(this.preloadThreadCount);
+		final PropertyValueDecryptionReport report = decryptor.decrypt(props);
+		this.preloadReport = report;
+		if (report.hasFailures()) {
+			throw new EncryptionOperationNotPossibleException(
+					"Could not decrypt " + report.getFailures().size() + " of " +
+					report.getEncryptedValueCount() + " encrypted properties: " + 
+					report.getFailures().keySet());
+		}
+		final Iterator decryptedIter = report.getDecryptedValues().entrySet().iterator();
+		while (decryptedIter.hasNext()) {
+			final Map.Entry entry = (Map.Entry) decryptedIter.next();
+			props.put(entry.getKey(), entry.getValue());
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
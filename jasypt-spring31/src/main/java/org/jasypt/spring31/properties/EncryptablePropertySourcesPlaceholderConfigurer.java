@@ -119,7 +119,7 @@ public final class EncryptablePropertySourcesPlaceholderConfigurer
     /*
      * This is needed because of https://jira.springsource.org/browse/SPR-8928
      */
-    @Override
+	@Override
     protected void convertProperties(final Properties props) {
         if (!this.alreadyConverted) {
             super.convertProperties(props);
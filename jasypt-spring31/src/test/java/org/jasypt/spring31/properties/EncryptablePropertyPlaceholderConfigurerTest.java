@@ -5,8 +5,10 @@ import junit.framework.TestCase;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.util.text.TextEncryptor;
 
 
@@ -104,6 +106,36 @@ public class EncryptablePropertyPlaceholderConfigurerTest extends TestCase {
         assertEquals(unencryptedEnvVarValue, ppc.resolveSystemProperty(unencryptedEnvVarKey));
     }
 
+    public void testConvertPropertiesPreloadEncryptedValues() {
+        EncryptablePropertyPlaceholderConfigurer eppc = createPPCWithStringEncryptor();
+        eppc.setPreloadEncryptedValues(true);
+        eppc.setPreloadThreadCount(2);
+        Properties props = new Properties();
+        props.setProperty("encrypted", encryptedValueWithDelimiters);
+        props.setProperty("unencrypted", unencryptedValue);
+        eppc.convertProperties(props);
+        assertEquals(expectedDecryptedValue, props.getProperty("encrypted"));
+        assertEquals(unencryptedValue, props.getProperty("unencrypted"));
+        assertEquals(1, eppc.getPreloadReport().getEncryptedValueCount());
+        assertFalse(eppc.getPreloadReport().hasFailures());
+    }
+
+    public void testConvertPropertiesPreloadEncryptedValuesReportsFailures() {
+        EncryptablePropertyPlaceholderConfigurer eppc = createPPCWithStringEncryptor();
+        eppc.setPreloadEncryptedValues(true);
+        Properties props = new Properties();
+        props.setProperty("encrypted", encryptedValueWithDelimiters);
+        props.setProperty("wrong1", ENCRYPTED_VALUE_PREFIX + "wrong1" + ENCRYPTED_VALUE_SUFFIX);
+        props.setProperty("wrong2", ENCRYPTED_VALUE_PREFIX + "wrong2" + ENCRYPTED_VALUE_SUFFIX);
+        try {
+            eppc.convertProperties(props);
+            fail("Exception expected");
+        } catch (EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        assertEquals(2, eppc.getPreloadReport().getFailures().size());
+    }
+
     private EncryptablePropertyPlaceholderConfigurer createPPCWithTextEncryptor() {
         StubTextEncryptor textEncryptor = new StubTextEncryptor();
         textEncryptor.addDecryption(encryptedValue, expectedDecryptedValue);
@@ -122,6 +154,9 @@ public class EncryptablePropertyPlaceholderConfigurerTest extends TestCase {
         private Map decryptMap = new HashMap();
 
         public String decrypt(String encryptedMessage) {
+            if (!this.decryptMap.containsKey(encryptedMessage)) {
+                throw new EncryptionOperationNotPossibleException();
+            }
             return (String)this.decryptMap.get(encryptedMessage);
         }
 
@@ -44,6 +44,12 @@ import org.jasypt.util.password.PasswordEncryptor;
  * created and internally used.
  * </p>
  * <p>
+ * Hashing can be offloaded to a {@link PasswordHashingExecutor} set by 
+ * calling {@link #setHashingExecutor(PasswordHashingExecutor)}, which
+ * limits the CPU that password hashing can take and rejects operations
+ * when too many of them are waiting.
+ * </p>
+ * <p>
  * Important: <b>This implementation ignores any salt provided through
  * the interface methods</b>, as the internal Jasypt 
  * <tt>PasswordEncryptor</tt> or <tt>StringDigester</tt> objects normally use a 
@@ -136,6 +142,9 @@ public final class PasswordEncoder
     private StringDigester stringDigester = null;
     private Boolean useEncryptor = null;
     
+    // If set, hashing operations will be executed by this executor
+    private PasswordHashingExecutor hashingExecutor = null;
+    
     
     /**
      * Creates a new instance of <tt>PasswordEncoder</tt>
@@ -171,6 +180,21 @@ public final class PasswordEncoder
         this.useEncryptor = Boolean.FALSE;
     }
 
+    /**
+     * Sets an executor which will run every password encoding and checking
+     * operation on its own, limited set of threads instead of on the 
+     * calling (request) thread. If the executor's queue is full, operations 
+     * will fail with a {@link PasswordHashingRejectedException}.
+     * 
+     * @since 1.9.3
+     * 
+     * @param hashingExecutor the executor to be used, or null for executing
+     *        operations on the calling thread (default).
+     */
+    public void setHashingExecutor(final PasswordHashingExecutor hashingExecutor) {
+        this.hashingExecutor = hashingExecutor;
+    }
+
     
     /**
      * Encodes a password. This implementation completely ignores salt, 
@@ -182,6 +206,19 @@ public final class PasswordEncoder
      */
     public String encodePassword(final String rawPass, final Object salt) {
         checkInitialization();
+        if (this.hashingExecutor != null) {
+            return (String) this.hashingExecutor.execute(
+                    new PasswordHashingExecutor.Operation() {
+                        public Object execute() {
+                            return doEncodePassword(rawPass);
+                        }
+                    });
+        }
+        return doEncodePassword(rawPass);
+    }
+    
+    
+    private String doEncodePassword(final String rawPass) {
         if (this.useEncryptor.booleanValue()) {
             return this.passwordEncryptor.encryptPassword(rawPass);
         }
@@ -200,6 +237,20 @@ public final class PasswordEncoder
      */
     public boolean isPasswordValid(final String encPass, final String rawPass, final Object salt) {
         checkInitialization();
+        if (this.hashingExecutor != null) {
+            final Boolean valid = (Boolean) this.hashingExecutor.execute(
+                    new PasswordHashingExecutor.Operation() {
+                        public Object execute() {
+                            return Boolean.valueOf(doIsPasswordValid(encPass, rawPass));
+                        }
+                    });
+            return valid.booleanValue();
+        }
+        return doIsPasswordValid(encPass, rawPass);
+    }
+    
+    
+    private boolean doIsPasswordValid(final String encPass, final String rawPass) {
         if (this.useEncryptor.booleanValue()) {
             return this.passwordEncryptor.checkPassword(rawPass, encPass);
         }
@@ -0,0 +1,360 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.springsecurity3.authentication.encoding;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jasypt.commons.CommonUtils;
+
+/**
+ * <p>
+ * Executor which runs password hashing operations (encoding and checking)
+ * for {@link PasswordEncoder} objects on a fixed number of dedicated 
+ * threads instead of on the threads serving requests.
+ * </p>
+ * <p>
+ * Operations waiting for a hashing thread are held in a queue of limited
+ * capacity. When the queue is full, new operations are immediately 
+ * rejected with a {@link PasswordHashingRejectedException} instead of 
+ * being queued. This way, a burst of authentication requests (for example,
+ * during a credential stuffing attack) can use no more CPU than the 
+ * hashing threads can, and makes authentication fail fast once the queue
+ * is full instead of blocking every request thread.
+ * </p>
+ * <p>
+ * By default, one hashing thread will be created per available processor,
+ * and the queue will hold up to 16 operations per thread. Operations are
+ * run by a <tt>java.util.concurrent.ThreadPoolExecutor</tt> with a bounded
+ * queue and an abort policy.
+ * </p>
+ * <p>
+ * Hashing threads are daemon threads, created on first use. They should 
+ * be stopped by calling {@link #shutdown()} once the executor is no longer
+ * needed (e.g. by declaring it as the <tt>destroy-method</tt> of the 
+ * Spring bean).
+ * </p>
+ * <p>
+ * Queue metrics are exposed through <tt>get...()</tt> methods, so that 
+ * they can be monitored (e.g. through JMX).
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class PasswordHashingExecutor {
+
+    /**
+     * Default queue capacity per hashing thread: 16.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 16;
+    
+    private static final String THREAD_NAME_PREFIX = "jasypt-password-hashing-";
+    
+    
+    /*
+     * A hashing operation, executed by PasswordEncoder objects.
+     */
+    static interface Operation {
+        
+        public Object execute();
+        
+    }
+    
+    
+    private final int threadCount;
+    private final int queueCapacity;
+    
+    private final ThreadPoolExecutor executor;
+    
+    private final AtomicInteger largestQueueSize = new AtomicInteger(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0L);
+
+    
+    
+    /**
+     * <p>
+     * Creates a new executor, with one thread per available processor 
+     * and the default queue capacity.
+     * </p>
+     */
+    public PasswordHashingExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new executor with the specified number of threads and the
+     * default queue capacity.
+     * </p>
+     * 
+     * @param threadCount the number of hashing threads.
+     */
+    public PasswordHashingExecutor(final int threadCount) {
+        this(threadCount, threadCount * DEFAULT_QUEUE_CAPACITY_PER_THREAD);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new executor with the specified number of threads and 
+     * queue capacity.
+     * </p>
+     * 
+     * @param threadCount the number of hashing threads.
+     * @param queueCapacity the maximum number of operations waiting for 
+     *        a hashing thread (zero for no waiting at all).
+     */
+    public PasswordHashingExecutor(final int threadCount, final int queueCapacity) {
+        super();
+        CommonUtils.validateIsTrue(threadCount > 0, 
+                "Thread count must be greater than zero");
+        CommonUtils.validateIsTrue(queueCapacity >= 0, 
+                "Queue capacity cannot be negative");
+        this.threadCount = threadCount;
+        this.queueCapacity = queueCapacity;
+        
+        // Without capacity, operations are only accepted by idle threads
+        final BlockingQueue queue = 
+            (queueCapacity == 0? 
+                    (BlockingQueue) new SynchronousQueue() : 
+                    (BlockingQueue) new ArrayBlockingQueue(queueCapacity));
+        this.executor = 
+            new ThreadPoolExecutor(
+                    threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, queue,
+                    new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    
+    
+    /*
+     * Executes the operation on a hashing thread, waiting for its result.
+     * Exceptions thrown by the operation are thrown by this method too.
+     */
+    Object execute(final Operation operation) {
+        
+        final Future future;
+        try {
+            future = this.executor.submit(new Callable() {
+                public Object call() {
+                    return operation.execute();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            if (this.executor.isShutdown()) {
+                throw new PasswordHashingRejectedException(
+                        "Password hashing executor has been shut down");
+            }
+            this.rejectedCount.incrementAndGet();
+            throw new PasswordHashingRejectedException(
+                    "Password hashing queue is full");
+        }
+        updateLargestQueueSize();
+        
+        // The operation will be executed anyway, so the waiting thread
+        // keeps waiting if interrupted and restores the flag afterwards
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(
+                            "Password hashing operation failed: " + cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+    }
+    
+    
+    private void updateLargestQueueSize() {
+        final int queueSize = this.executor.getQueue().size();
+        int largest = this.largestQueueSize.get();
+        while (queueSize > largest) {
+            if (this.largestQueueSize.compareAndSet(largest, queueSize)) {
+                return;
+            }
+            largest = this.largestQueueSize.get();
+        }
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Stops the hashing threads once the operations already queued have 
+     * been executed. New operations will be rejected.
+     * </p>
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether this executor has been shut down.
+     * </p>
+     * 
+     * @return true if shut down, false if not.
+     */
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of hashing threads.
+     * </p>
+     * 
+     * @return the number of hashing threads.
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the maximum number of operations that can wait for a 
+     * hashing thread.
+     * </p>
+     * 
+     * @return the queue capacity.
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of operations currently waiting for a hashing 
+     * thread.
+     * </p>
+     * 
+     * @return the queue size.
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the largest number of operations that have been waiting 
+     * for a hashing thread at the same time.
+     * </p>
+     * 
+     * @return the largest queue size.
+     */
+    public int getLargestQueueSize() {
+        return this.largestQueueSize.get();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the (approximate) number of operations currently being 
+     * executed.
+     * </p>
+     * 
+     * @return the number of active operations.
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the (approximate) number of operations executed so far.
+     * </p>
+     * 
+     * @return the number of completed operations.
+     */
+    public long getCompletedCount() {
+        return this.executor.getCompletedTaskCount();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of operations rejected so far because the queue
+     * was full.
+     * </p>
+     * 
+     * @return the number of rejected operations.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+    
+    
+    
+    private static final class HashingThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+        
+        HashingThreadFactory() {
+            super();
+        }
+        
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = 
+                new Thread(runnable, THREAD_NAME_PREFIX + this.threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+        
+    }
+    
+}
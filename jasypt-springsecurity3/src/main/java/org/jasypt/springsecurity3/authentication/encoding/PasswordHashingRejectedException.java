@@ -0,0 +1,50 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.springsecurity3.authentication.encoding;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * <p>
+ * Exception thrown by {@link PasswordEncoder} when a password hashing
+ * operation cannot be accepted by its {@link PasswordHashingExecutor} 
+ * because the executor's queue is full (or it has been shut down). 
+ * </p>
+ * <p>
+ * Being an authentication exception, it makes the authentication attempt
+ * fail without affecting the rest of the application.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class PasswordHashingRejectedException 
+        extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = 4381729401836451203L;
+
+    
+    public PasswordHashingRejectedException(final String msg) {
+        super(msg);
+    }
+    
+}
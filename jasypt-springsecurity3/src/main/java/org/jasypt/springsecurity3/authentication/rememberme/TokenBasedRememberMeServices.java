@@ -19,13 +19,24 @@
  */
 package org.jasypt.springsecurity3.authentication.rememberme;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
 import org.jasypt.digest.StringDigester;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.rememberme.AbstractRememberMeServices;
@@ -41,6 +52,22 @@ import org.springframework.security.web.authentication.rememberme.InvalidCookieE
  * (username + ":" + expiry time + ":" + password + ":" + key).
  * </p>
  * <p>
+ * Alternatively, if an HMAC algorithm is set (see 
+ * {@link #setHmacAlgorithm(String)}), the signature will be a single-pass
+ * keyed HMAC of (username + ":" + expiry time + ":" + password), computed 
+ * with the key of this service as secret. No digester is needed in this 
+ * case. Note that cookies signed in one way will not be valid for the other.
+ * </p>
+ * <p>
+ * Validated cookies can also be cached for a short time (see 
+ * {@link #setValidationCacheTtlSeconds(int)}), so that repeated 
+ * auto-logins with the same cookie skip the signature check. Only the fact
+ * that the cookie was valid for the user's username and password is 
+ * cached: user details are still retrieved for every auto-login (so that 
+ * each request gets its own instance and changes to the user are noticed),
+ * and the signature is checked again if the user's password has changed.
+ * </p>
+ * <p>
  * This class is <i>thread-safe</i>
  * </p>
  * 
@@ -51,8 +78,29 @@ import org.springframework.security.web.authentication.rememberme.InvalidCookieE
  */
 public final class TokenBasedRememberMeServices extends AbstractRememberMeServices {
 
+    /**
+     * Default maximum number of cached validated cookies: 10,000.
+     */
+    public static final int DEFAULT_VALIDATION_CACHE_MAX_SIZE = 10000;
+    
+    private static final String SIGNATURE_CHARSET = "UTF-8";
+    private static final String SIGNATURE_ENCODED_CHARSET = "US-ASCII";
+    
     
     private StringDigester digester = null;
+    private String hmacAlgorithm = null;
+    
+    // Set on first use, after which the signing method cannot change
+    private volatile boolean initialized = false;
+    
+    // Mac objects are not thread-safe, so each thread reuses its own
+    private final ThreadLocal macs = new ThreadLocal();
+    private final Base64 base64 = new Base64();
+    
+    private long validationCacheTtlMillis = 0L;
+    private int validationCacheMaxSize = DEFAULT_VALIDATION_CACHE_MAX_SIZE;
+    // Map<String,ValidatedCookie> (cookie tokens -> validation), in access order
+    private Map validationCache = null;
     
     
 
@@ -61,22 +109,191 @@ public final class TokenBasedRememberMeServices extends AbstractRememberMeServic
     }
 
 
+    /**
+     * <p>
+     * Sets the HMAC algorithm (e.g. <tt>HmacSHA256</tt>) to be used for 
+     * signing cookies instead of a digester. It cannot be set once the
+     * service has been used.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param hmacAlgorithm the name of the HMAC algorithm.
+     */
+    public synchronized void setHmacAlgorithm(final String hmacAlgorithm) {
+        CommonUtils.validateNotEmpty(hmacAlgorithm, "HMAC algorithm cannot be set empty");
+        if (this.initialized) {
+            throw new AlreadyInitializedException();
+        }
+        this.hmacAlgorithm = hmacAlgorithm;
+    }
+
+
+    /**
+     * <p>
+     * Sets the time (in seconds) during which a validated cookie will be 
+     * accepted again without checking it. Entries never outlive the 
+     * cookie expiry time. Zero (default) disables the cache.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param validationCacheTtlSeconds the time to live of cache entries.
+     */
+    public synchronized void setValidationCacheTtlSeconds(final int validationCacheTtlSeconds) {
+        CommonUtils.validateIsTrue(validationCacheTtlSeconds >= 0, 
+                "Validation cache TTL cannot be negative");
+        this.validationCacheTtlMillis = 1000L * validationCacheTtlSeconds;
+        this.validationCache = null;
+    }
+
+
+    /**
+     * <p>
+     * Sets the maximum number of validated cookies to be cached. When 
+     * full, the least recently used entries will be evicted. Default is
+     * {@link #DEFAULT_VALIDATION_CACHE_MAX_SIZE}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param validationCacheMaxSize the maximum size of the cache.
+     */
+    public synchronized void setValidationCacheMaxSize(final int validationCacheMaxSize) {
+        CommonUtils.validateIsTrue(validationCacheMaxSize > 0, 
+                "Validation cache max size must be greater than zero");
+        this.validationCacheMaxSize = validationCacheMaxSize;
+        this.validationCache = null;
+    }
+
+
     
     
     private String getSignatureData(final long tokenExpiryTime, final String username, final String password) {
         return username + ":" + tokenExpiryTime + ":" + password + ":" + getKey(); 
     }
+    
+    
+    private String getHmacSignatureData(final long tokenExpiryTime, final String username, final String password) {
+        return username + ":" + tokenExpiryTime + ":" + password; 
+    }
+    
+    
+    private void checkInitialization() {
+        if (this.initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (this.digester == null && this.hmacAlgorithm == null) {
+                throw new IllegalStateException("Service incorrectly initialized: a " +
+                        "digester has not been set. A value must be specified for the \"digester\"" +
+                        " (or the \"hmacAlgorithm\") property in service of class " + 
+                        this.getClass().getName());
+            }
+            this.initialized = true;
+        }
+    }
+    
+    
+    private String sign(final long tokenExpiryTime, final String username, final String password) {
+        if (this.hmacAlgorithm == null) {
+            return this.digester.digest(getSignatureData(tokenExpiryTime, username, password));
+        }
+        try {
+            final byte[] hmac = 
+                getMac().doFinal(
+                        getHmacSignatureData(tokenExpiryTime, username, password).getBytes(SIGNATURE_CHARSET));
+            return new String(this.base64.encode(hmac), SIGNATURE_ENCODED_CHARSET);
+        } catch (final UnsupportedEncodingException e) {
+            throw new EncryptionInitializationException(e);
+        }
+    }
+    
+    
+    private boolean matches(final String signature, final long tokenExpiryTime, 
+            final String username, final String password) {
+        if (this.hmacAlgorithm == null) {
+            try {
+                return this.digester.matches(
+                        getSignatureData(tokenExpiryTime, username, password), signature);
+            } catch (final EncryptionOperationNotPossibleException e) {
+                // Signature is not even a well-formed digest
+                return false;
+            }
+        }
+        try {
+            // Constant-time comparison, not revealing how much of the 
+            // signature is right
+            return MessageDigest.isEqual(
+                    sign(tokenExpiryTime, username, password).getBytes(SIGNATURE_ENCODED_CHARSET),
+                    signature.getBytes(SIGNATURE_ENCODED_CHARSET));
+        } catch (final UnsupportedEncodingException e) {
+            throw new EncryptionInitializationException(e);
+        }
+    }
+    
+    
+    private Mac getMac() {
+        Mac mac = (Mac) this.macs.get();
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(this.hmacAlgorithm);
+                mac.init(new SecretKeySpec(getKey().getBytes(SIGNATURE_CHARSET), this.hmacAlgorithm));
+            } catch (final Exception e) {
+                throw new EncryptionInitializationException(e);
+            }
+            this.macs.set(mac);
+        }
+        return mac;
+    }
+    
+    
+    private synchronized boolean isValidationCached(final String cacheKey,
+            final String username, final String password) {
+        if (this.validationCache == null) {
+            return false;
+        }
+        final ValidatedCookie validation = 
+            (ValidatedCookie) this.validationCache.get(cacheKey);
+        if (validation == null) {
+            return false;
+        }
+        if (validation.validUntil < System.currentTimeMillis()) {
+            this.validationCache.remove(cacheKey);
+            return false;
+        }
+        // The signature depends on both, so it has to be checked again
+        // if any of them has changed
+        return (validation.username.equals(username) && 
+                validation.password.equals(password));
+    }
+    
+    
+    private synchronized void cacheValidation(final String cacheKey, 
+            final String username, final String password, final long tokenExpiryTime) {
+        if (this.validationCacheTtlMillis == 0L) {
+            return;
+        }
+        if (this.validationCache == null) {
+            final int maxSize = this.validationCacheMaxSize;
+            this.validationCache = new LinkedHashMap(16, 0.75f, true) {
+                private static final long serialVersionUID = -6081846536302861358L;
+                protected boolean removeEldestEntry(final Map.Entry eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+        final long validUntil = 
+            Math.min(System.currentTimeMillis() + this.validationCacheTtlMillis, tokenExpiryTime);
+        this.validationCache.put(cacheKey, new ValidatedCookie(username, password, validUntil));
+    }
 
     
 
     protected UserDetails processAutoLoginCookie(final String[] cookieTokens, 
             final HttpServletRequest request, final HttpServletResponse response) {
 
-        if (this.digester == null) {
-            throw new IllegalStateException("Service incorrectly initialized: a " +
-                    "digester has not been set. A value must be specified for the \"digester\"" +
-                    " property in service of class " + this.getClass().getName());
-        }
+        checkInitialization();
         
         if (cookieTokens.length != 3) {
             throw new InvalidCookieException("Wrong number of tokens in cookie");
@@ -104,10 +321,22 @@ public final class TokenBasedRememberMeServices extends AbstractRememberMeServic
         final String username = userDetails.getUsername();
         final String password = userDetails.getPassword();
         
+        // Cookies validated a short time ago for the same user data are
+        // not checked again
+        final String cacheKey = usernameToken + ":" + expiryToken + ":" + digestedSignature;
+        if (username != null && password != null && 
+                isValidationCached(cacheKey, username, password)) {
+            return userDetails;
+        }
+        
         // Check signature data
-        if (!this.digester.matches(getSignatureData(expiryTimestamp, username, password), digestedSignature)) {
+        if (!matches(digestedSignature, expiryTimestamp, username, password)) {
             throw new InvalidCookieException("Cookie signature is not valid");
         }
+        
+        if (username != null && password != null) {
+            cacheValidation(cacheKey, username, password, expiryTimestamp);
+        }
 
         return userDetails;
         
@@ -118,11 +347,7 @@ public final class TokenBasedRememberMeServices extends AbstractRememberMeServic
     public void onLoginSuccess(final HttpServletRequest request, final HttpServletResponse response,
             final Authentication successfulAuthentication) {
 
-        if (this.digester == null) {
-            throw new IllegalStateException("Service incorrectly initialized: a " +
-                    "digester has not been set. A value must be specified for the \"digester\"" +
-                    " property in service of class " + this.getClass().getName());
-        }
+        checkInitialization();
         
         String username = null;
         String password = null;
@@ -145,7 +370,7 @@ public final class TokenBasedRememberMeServices extends AbstractRememberMeServic
         final long expiryTime = 
             System.currentTimeMillis() + 1000L* (tokenValiditySeconds < 0 ? TWO_WEEKS_S : tokenValiditySeconds);
 
-        final String signature = this.digester.digest(getSignatureData(expiryTime, username, password));
+        final String signature = sign(expiryTime, username, password);
 
         setCookie(new String[] {username, Long.toString(expiryTime), signature}, tokenValiditySeconds, request, response);
 
@@ -154,8 +379,23 @@ public final class TokenBasedRememberMeServices extends AbstractRememberMeServic
         }
         
     }
-
     
     
     
+    private static final class ValidatedCookie {
+        
+        final String username;
+        final String password;
+        final long validUntil;
+        
+        ValidatedCookie(final String username, final String password, 
+                final long validUntil) {
+            super();
+            this.username = username;
+            this.password = password;
+            this.validUntil = validUntil;
+        }
+        
+    }
+    
 }
@@ -0,0 +1,158 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.springsecurity3.authentication.encoding;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.jasypt.util.password.PasswordEncryptor;
+
+public class PasswordHashingExecutorTest extends TestCase {
+
+    
+    public void testRejectionAndMetrics() throws Exception {
+        
+        final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final PasswordHashingExecutor.Operation blockingOperation = 
+            new PasswordHashingExecutor.Operation() {
+                public Object execute() {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e.getMessage());
+                    }
+                    return "done";
+                }
+            };
+        final Object[] results = new Object[2];
+        final Thread[] callers = new Thread[2];
+        for (int i = 0; i < callers.length; i++) {
+            final int index = i;
+            callers[i] = new Thread() {
+                public void run() {
+                    results[index] = executor.execute(blockingOperation);
+                }
+            };
+        }
+        
+        try {
+            
+            // First operation takes the only thread, second one waits in queue
+            callers[0].start();
+            waitFor(executor, 1, 0);
+            callers[1].start();
+            waitFor(executor, 1, 1);
+            
+            try {
+                executor.execute(blockingOperation);
+                fail();
+            } catch (final PasswordHashingRejectedException e) {
+                // expected
+            }
+            assertEquals(1L, executor.getRejectedCount());
+            assertEquals(1, executor.getLargestQueueSize());
+            
+        } finally {
+            release.countDown();
+        }
+        
+        for (int i = 0; i < callers.length; i++) {
+            callers[i].join(10000L);
+            assertEquals("done", results[i]);
+        }
+        waitFor(executor, 0, 0);
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while (executor.getCompletedCount() < 2L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(2L, executor.getCompletedCount());
+        assertEquals(1L, executor.getRejectedCount());
+        
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        try {
+            executor.execute(blockingOperation);
+            fail();
+        } catch (final PasswordHashingRejectedException e) {
+            // expected
+        }
+        // Operations rejected after shutdown are not counted as queue-full
+        assertEquals(1L, executor.getRejectedCount());
+        
+    }
+    
+    
+    public void testExceptionPropagation() throws Exception {
+        
+        final PasswordHashingExecutor executor = new PasswordHashingExecutor(2);
+        try {
+            
+            final PasswordEncoder encoder = new PasswordEncoder();
+            encoder.setHashingExecutor(executor);
+            final String encoded = encoder.encodePassword("secret", null);
+            assertTrue(encoder.isPasswordValid(encoded, "secret", null));
+            assertFalse(encoder.isPasswordValid(encoded, "other", null));
+            
+            final PasswordEncoder failingEncoder = new PasswordEncoder();
+            failingEncoder.setHashingExecutor(executor);
+            failingEncoder.setPasswordEncryptor(new PasswordEncryptor() {
+                public String encryptPassword(final String password) {
+                    throw new IllegalArgumentException("cannot encrypt");
+                }
+                public boolean checkPassword(final String plainPassword, 
+                        final String encryptedPassword) {
+                    throw new UnsupportedOperationException("cannot check");
+                }
+            });
+            try {
+                failingEncoder.encodePassword("secret", null);
+                fail();
+            } catch (final IllegalArgumentException e) {
+                assertEquals("cannot encrypt", e.getMessage());
+            }
+            try {
+                failingEncoder.isPasswordValid(encoded, "secret", null);
+                fail();
+            } catch (final UnsupportedOperationException e) {
+                assertEquals("cannot check", e.getMessage());
+            }
+            
+        } finally {
+            executor.shutdown();
+        }
+        
+    }
+    
+    
+    private static void waitFor(final PasswordHashingExecutor executor, 
+            final int activeCount, final int queueSize) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while ((executor.getActiveCount() != activeCount || 
+                    executor.getQueueSize() != queueSize) && 
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(activeCount, executor.getActiveCount());
+        assertEquals(queueSize, executor.getQueueSize());
+    }
+    
+}
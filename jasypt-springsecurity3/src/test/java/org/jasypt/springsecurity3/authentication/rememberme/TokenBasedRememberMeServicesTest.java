@@ -0,0 +1,282 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.springsecurity3.authentication.rememberme;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+import org.jasypt.digest.StandardStringDigester;
+import org.jasypt.digest.StringDigester;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.GrantedAuthorityImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.authentication.rememberme.InvalidCookieException;
+
+public class TokenBasedRememberMeServicesTest extends TestCase {
+
+    
+    public void testHmacSignAndVerify() throws Exception {
+        
+        final TestUserDetailsService userDetailsService = new TestUserDetailsService();
+        final TokenBasedRememberMeServices services = createHmacServices(userDetailsService);
+        
+        final String[] tokens = login(services, userDetailsService, "alice");
+        assertEquals(3, tokens.length);
+        assertEquals("alice", tokens[0]);
+        
+        final UserDetails userDetails = services.processAutoLoginCookie(tokens, null, null);
+        assertEquals("alice", userDetails.getUsername());
+        
+        // Same key, same signature
+        final TokenBasedRememberMeServices otherServices = createHmacServices(userDetailsService);
+        assertEquals("alice", otherServices.processAutoLoginCookie(tokens, null, null).getUsername());
+        
+        try {
+            services.setHmacAlgorithm("HmacSHA512");
+            fail();
+        } catch (final AlreadyInitializedException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testTamperRejection() throws Exception {
+        
+        final TestUserDetailsService userDetailsService = new TestUserDetailsService();
+        final TokenBasedRememberMeServices hmacServices = createHmacServices(userDetailsService);
+        final TokenBasedRememberMeServices digesterServices = new TokenBasedRememberMeServices();
+        digesterServices.setKey("remember-me-key");
+        digesterServices.setUserDetailsService(userDetailsService);
+        digesterServices.setDigester(new StandardStringDigester());
+        
+        final TokenBasedRememberMeServices[] servicesArray = 
+            new TokenBasedRememberMeServices[] { hmacServices, digesterServices };
+        for (int i = 0; i < servicesArray.length; i++) {
+            
+            final TokenBasedRememberMeServices services = servicesArray[i];
+            final String[] tokens = login(services, userDetailsService, "alice");
+            assertEquals("alice", services.processAutoLoginCookie(tokens, null, null).getUsername());
+            
+            final String signature = tokens[2];
+            final char lastChar = signature.charAt(signature.length() - 1);
+            assertRejected(services, new String[] { 
+                    tokens[0], tokens[1], 
+                    signature.substring(0, signature.length() - 1) + (lastChar == 'A'? 'B' : 'A') });
+            assertRejected(services, new String[] { 
+                    "bob", tokens[1], signature });
+            assertRejected(services, new String[] { 
+                    tokens[0], String.valueOf(Long.parseLong(tokens[1]) + 1000L), signature });
+            assertRejected(services, new String[] { 
+                    tokens[0], String.valueOf(System.currentTimeMillis() - 1000L), signature });
+            
+            // Cookies signed one way are not valid for the other
+            final TokenBasedRememberMeServices otherServices = 
+                servicesArray[(i + 1) % servicesArray.length];
+            assertRejected(otherServices, tokens);
+            
+        }
+        
+    }
+    
+    
+    public void testValidationCache() throws Exception {
+        
+        final TestUserDetailsService userDetailsService = new TestUserDetailsService();
+        final CountingStringDigester digester = new CountingStringDigester();
+        final TokenBasedRememberMeServices services = new TokenBasedRememberMeServices();
+        services.setKey("remember-me-key");
+        services.setUserDetailsService(userDetailsService);
+        services.setDigester(digester);
+        services.setValidationCacheTtlSeconds(1);
+        
+        final String[] tokens = login(services, userDetailsService, "alice");
+        final int loadCount = userDetailsService.getLoadCount("alice");
+        
+        final UserDetails first = services.processAutoLoginCookie(tokens, null, null);
+        assertEquals(1, digester.getMatchesCount());
+        final UserDetails second = services.processAutoLoginCookie(tokens, null, null);
+        assertEquals(1, digester.getMatchesCount());
+        
+        // Every auto-login gets its own user details
+        assertNotSame(first, second);
+        assertEquals(loadCount + 2, userDetailsService.getLoadCount("alice"));
+        
+        // A password change is noticed at once
+        userDetailsService.setPassword("alice", "changed");
+        assertRejected(services, tokens);
+        assertEquals(2, digester.getMatchesCount());
+        
+        // The validation still holds for the original password
+        userDetailsService.setPassword("alice", TestUserDetailsService.DEFAULT_PASSWORD);
+        services.processAutoLoginCookie(tokens, null, null);
+        assertEquals(2, digester.getMatchesCount());
+        
+        // Entries expire after their TTL
+        Thread.sleep(1100L);
+        services.processAutoLoginCookie(tokens, null, null);
+        assertEquals(3, digester.getMatchesCount());
+        services.processAutoLoginCookie(tokens, null, null);
+        assertEquals(3, digester.getMatchesCount());
+        
+    }
+    
+    
+    
+    private static TokenBasedRememberMeServices createHmacServices(
+            final UserDetailsService userDetailsService) {
+        final TokenBasedRememberMeServices services = new TokenBasedRememberMeServices();
+        services.setKey("remember-me-key");
+        services.setUserDetailsService(userDetailsService);
+        services.setHmacAlgorithm("HmacSHA256");
+        return services;
+    }
+    
+    
+    private static String[] login(final TokenBasedRememberMeServices services, 
+            final UserDetailsService userDetailsService, final String username) {
+        
+        final Map cookies = new HashMap();
+        final HttpServletResponse response = (HttpServletResponse) createProxy(
+                HttpServletResponse.class, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("addCookie")) {
+                            final Cookie cookie = (Cookie) args[0];
+                            cookies.put(cookie.getName(), cookie.getValue());
+                        }
+                        return null;
+                    }
+                });
+        final HttpServletRequest request = (HttpServletRequest) createProxy(
+                HttpServletRequest.class, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return (method.getReturnType() == Boolean.TYPE? Boolean.FALSE : null);
+                    }
+                });
+        
+        final UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        services.onLoginSuccess(request, response, 
+                new UsernamePasswordAuthenticationToken(
+                        userDetails, userDetails.getPassword(), userDetails.getAuthorities()));
+        
+        final String cookieValue = (String) cookies.values().iterator().next();
+        return decodeCookie(cookieValue);
+        
+    }
+    
+    
+    private static String[] decodeCookie(final String cookieValue) {
+        final StringBuffer padded = new StringBuffer(cookieValue);
+        while (padded.length() % 4 != 0) {
+            padded.append('=');
+        }
+        final String decoded = 
+            new String(new Base64().decode(padded.toString().getBytes()));
+        return decoded.split(":");
+    }
+    
+    
+    private static Object createProxy(final Class type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance(
+                TokenBasedRememberMeServicesTest.class.getClassLoader(), 
+                new Class[] { type }, handler);
+    }
+    
+    
+    private static void assertRejected(final TokenBasedRememberMeServices services, 
+            final String[] tokens) {
+        try {
+            services.processAutoLoginCookie(tokens, null, null);
+            fail();
+        } catch (final InvalidCookieException e) {
+            // expected
+        }
+    }
+    
+    
+    
+    private static final class TestUserDetailsService implements UserDetailsService {
+        
+        static final String DEFAULT_PASSWORD = "password";
+        
+        private final Map passwords = new HashMap();
+        private final Map loadCounts = new HashMap();
+        
+        synchronized void setPassword(final String username, final String password) {
+            this.passwords.put(username, password);
+        }
+        
+        synchronized int getLoadCount(final String username) {
+            final Integer count = (Integer) this.loadCounts.get(username);
+            return (count == null? 0 : count.intValue());
+        }
+        
+        public synchronized UserDetails loadUserByUsername(final String username)
+                throws UsernameNotFoundException, DataAccessException {
+            this.loadCounts.put(username, new Integer(getLoadCount(username) + 1));
+            final String password = (String) this.passwords.get(username);
+            return new User(username, (password == null? DEFAULT_PASSWORD : password), 
+                    true, true, true, true, 
+                    new GrantedAuthority[] { new GrantedAuthorityImpl("ROLE_USER") });
+        }
+        
+    }
+    
+    
+    
+    private static final class CountingStringDigester implements StringDigester {
+        
+        private final StringDigester digester = new StandardStringDigester();
+        private int matchesCount = 0;
+        
+        public String digest(final String message) {
+            return this.digester.digest(message);
+        }
+        
+        public boolean matches(final String message, final String digest) {
+            synchronized (this) {
+                this.matchesCount++;
+            }
+            return this.digester.matches(message, digest);
+        }
+        
+        synchronized int getMatchesCount() {
+            return this.matchesCount;
+        }
+        
+    }
+    
+}
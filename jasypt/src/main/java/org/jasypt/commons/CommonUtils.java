@@ -115,6 +115,58 @@ public final class CommonUtils {
     }
     
     
+    public static boolean isHexadecimal(final String message) {
+        if (message == null) {
+            return false;
+        }
+        final int length = message.length();
+        if ((length % 2) != 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(message.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    /*
+     * Checks the structure of a BASE64-encoded String: only characters in the
+     * BASE64 alphabet (plus whitespace and line breaks, which are ignored as 
+     * the BASE64 decoder does), a maximum of two padding characters at the
+     * end, and a total length multiple of four.
+     */
+    public static boolean isBase64(final String message) {
+        if (message == null) {
+            return false;
+        }
+        int count = 0;
+        int padding = 0;
+        final int length = message.length();
+        for (int i = 0; i < length; i++) {
+            final char c = message.charAt(i);
+            if (c <= ' ') {
+                continue;
+            }
+            if (c == '=') {
+                padding++;
+                if (padding > 2) {
+                    return false;
+                }
+            } else if (padding > 0) {
+                return false;
+            } else if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || 
+                         (c >= '0' && c <= '9') || c == '+' || c == '/')) {
+                return false;
+            }
+            count++;
+        }
+        return ((count % 4) == 0);
+    }
+    
+    
     public static boolean isEmpty(final String string) {
         if (string == null || string.length() == 0) {
             return true;
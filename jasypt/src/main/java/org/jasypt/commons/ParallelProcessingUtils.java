@@ -0,0 +1,319 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.commons;
+
+import java.util.LinkedList;
+
+/**
+ * <p>
+ * Utilities for executing a set of independent tasks in parallel across 
+ * several threads. 
+ * <b>This class is for internal use only</b>. 
+ * </p> 
+ * <p>
+ * Tasks are identified by an index (from 0 to <tt>taskCount - 1</tt>) and 
+ * are handed out dynamically to the working threads, so that threads which
+ * finish early take on the remaining work. The calling thread takes part in
+ * the processing, and no method returns until all the tasks have been 
+ * processed.
+ * </p>
+ * <p>
+ * Additional threads are taken from a pool of daemon worker threads shared
+ * by all operations. Workers are only started when needed, their number
+ * is bounded, and they finish after having been idle for a while. When no
+ * worker is available, the calling thread just processes more tasks 
+ * itself.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ParallelProcessingUtils {
+
+    private static final String THREAD_NAME_PREFIX = "jasypt-parallel-";
+    
+    private static final int MAX_WORKERS = 
+        Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final long WORKER_KEEP_ALIVE_MILLIS = 60000L;
+    
+    // Shared worker pool state, all of it guarded by the queue's monitor
+    private static final LinkedList queue = new LinkedList();
+    private static int workerCount = 0;
+    private static int idleWorkerCount = 0;
+    private static int workerSequence = 0;
+    
+    
+    
+    /**
+     * <p>
+     * A task to be executed for each of the indexes in a parallel
+     * processing operation. Implementations will be called concurrently
+     * from several threads.
+     * </p>
+     */
+    public static interface IndexedTask {
+        
+        public void process(final int index);
+        
+    }
+    
+    
+    
+    public static int getDefaultThreadCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    
+    
+    public static void process(final int taskCount, final int threadCount, final IndexedTask task) {
+        
+        CommonUtils.validateIsTrue(taskCount >= 0, "Task count cannot be negative");
+        CommonUtils.validateIsTrue(threadCount > 0, "Thread count must be > 0");
+        CommonUtils.validateNotNull(task, "Task cannot be null");
+        
+        if (taskCount == 0) {
+            return;
+        }
+        
+        final IndexedTaskRunner runner = new IndexedTaskRunner(taskCount, task);
+        
+        // The current thread will also take part in processing, so we only
+        // need (threadCount - 1) additional threads.
+        final int additionalThreads = Math.min(threadCount, taskCount) - 1;
+        for (int i = 0; i < additionalThreads; i++) {
+            if (!submit(runner)) {
+                break;
+            }
+        }
+        
+        runner.processTasks();
+        
+        // Workers which did not get to join are not waited for
+        withdraw(runner);
+        runner.close();
+        
+        final Throwable failure = runner.getFailure();
+        if (failure != null) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Queues a runner for a worker to join it, starting a new worker if 
+     * none is idle. Returns false if the runner could not be queued.
+     */
+    private static boolean submit(final IndexedTaskRunner runner) {
+        synchronized (queue) {
+            if (queue.size() >= MAX_WORKERS) {
+                return false;
+            }
+            queue.addLast(runner);
+            if (queue.size() > idleWorkerCount && workerCount < MAX_WORKERS) {
+                final Thread worker = 
+                    new Thread(new Worker(), THREAD_NAME_PREFIX + workerSequence++);
+                worker.setDaemon(true);
+                worker.start();
+                workerCount++;
+            } else {
+                queue.notify();
+            }
+            return true;
+        }
+    }
+    
+    
+    private static void withdraw(final IndexedTaskRunner runner) {
+        synchronized (queue) {
+            while (queue.remove(runner)) {
+                // Remove every occurrence
+            }
+        }
+    }
+    
+    
+    
+    private static final class Worker implements Runnable {
+        
+        Worker() {
+            super();
+        }
+        
+        
+        public void run() {
+            
+            while (true) {
+                
+                final Runnable runner;
+                synchronized (queue) {
+                    final long idleSince = System.currentTimeMillis();
+                    while (queue.isEmpty()) {
+                        final long remaining = 
+                            WORKER_KEEP_ALIVE_MILLIS - (System.currentTimeMillis() - idleSince);
+                        if (remaining <= 0) {
+                            workerCount--;
+                            return;
+                        }
+                        idleWorkerCount++;
+                        try {
+                            queue.wait(remaining);
+                        } catch (final InterruptedException e) {
+                            workerCount--;
+                            return;
+                        } finally {
+                            idleWorkerCount--;
+                        }
+                    }
+                    runner = (Runnable) queue.removeFirst();
+                }
+                
+                // Runners never throw (failures are kept for the caller)
+                runner.run();
+                
+            }
+            
+        }
+        
+    }
+    
+    
+    
+    private static final class IndexedTaskRunner implements Runnable {
+        
+        private final int taskCount;
+        private final IndexedTask task;
+        
+        private int nextIndex = 0;
+        private Throwable failure = null;
+        
+        // Number of workers processing tasks, and whether the caller has 
+        // finished (so that no more workers can join)
+        private int activeWorkers = 0;
+        private boolean closed = false;
+        
+        
+        IndexedTaskRunner(final int taskCount, final IndexedTask task) {
+            super();
+            this.taskCount = taskCount;
+            this.task = task;
+        }
+        
+        
+        /*
+         * Executed by pool workers.
+         */
+        public void run() {
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                this.activeWorkers++;
+            }
+            try {
+                processTasks();
+            } finally {
+                synchronized (this) {
+                    this.activeWorkers--;
+                    if (this.activeWorkers == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+        
+        
+        /*
+         * Executed by the calling thread once it has no more tasks to
+         * process: waits for the workers still processing their last ones.
+         */
+        void close() {
+            boolean interrupted = false;
+            synchronized (this) {
+                this.closed = true;
+                while (this.activeWorkers > 0) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        // We cannot leave tasks running, so we will keep 
+                        // waiting and restore the interrupted status at the end.
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        
+        void processTasks() {
+            
+            while (true) {
+                
+                final int index;
+                synchronized (this) {
+                    // Processing stops as soon as any task raises an
+                    // exception that it did not handle itself.
+                    if (this.nextIndex >= this.taskCount || this.failure != null) {
+                        return;
+                    }
+                    index = this.nextIndex++;
+                }
+                
+                try {
+                    this.task.process(index);
+                } catch (final Throwable t) {
+                    synchronized (this) {
+                        if (this.failure == null) {
+                            this.failure = t;
+                        }
+                    }
+                    return;
+                }
+                
+            }
+            
+        }
+        
+        
+        synchronized Throwable getFailure() {
+            return this.failure;
+        }
+        
+    }
+    
+    
+    
+    // This class should only be called statically
+    private ParallelProcessingUtils() {
+        super();
+    }
+    
+}
@@ -0,0 +1,152 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.commons;
+
+import java.security.Provider;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>
+ * Result of the automatic selection of the fastest security provider for
+ * an algorithm (see 
+ * {@link org.jasypt.encryption.pbe.StandardPBEByteEncryptor#setSelectFastestProvider(boolean)}
+ * and 
+ * {@link org.jasypt.digest.StandardByteDigester#setSelectFastestProvider(boolean)}),
+ * describing which provider was selected and why.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ProviderSelection {
+
+    private final String algorithm;
+    private final Provider selectedProvider;
+    private final Provider defaultProvider;
+    private final Map operationsPerSecond;
+    private final List incompatibleProviderNames;
+    
+    
+    ProviderSelection(final String algorithm, final Provider selectedProvider, 
+            final Provider defaultProvider, final Map operationsPerSecond, 
+            final List incompatibleProviderNames) {
+        super();
+        this.algorithm = algorithm;
+        this.selectedProvider = selectedProvider;
+        this.defaultProvider = defaultProvider;
+        this.operationsPerSecond = 
+            Collections.unmodifiableMap(new LinkedHashMap(operationsPerSecond));
+        this.incompatibleProviderNames = Collections.unmodifiableList(incompatibleProviderNames);
+    }
+
+
+    /**
+     * <p>
+     * Returns the algorithm for which the provider was selected.
+     * </p>
+     * 
+     * @return the algorithm.
+     */
+    public String getAlgorithm() {
+        return this.algorithm;
+    }
+
+
+    /**
+     * <p>
+     * Returns the selected (fastest) provider.
+     * </p>
+     * 
+     * @return the selected provider.
+     */
+    public Provider getSelectedProvider() {
+        return this.selectedProvider;
+    }
+
+
+    /**
+     * <p>
+     * Returns the provider that would have been used by default (according 
+     * to the JCA provider ordering).
+     * </p>
+     * 
+     * @return the default provider.
+     */
+    public Provider getDefaultProvider() {
+        return this.defaultProvider;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the measured throughput of each compatible provider, as a 
+     * map of provider names to operations per second (as <tt>Double</tt>).
+     * </p>
+     * 
+     * @return the measured throughput of each compatible provider.
+     */
+    public Map getOperationsPerSecond() {
+        return this.operationsPerSecond;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the names of the providers which support the algorithm but 
+     * were discarded because their results were not byte-identical to 
+     * those of the default provider.
+     * </p>
+     * 
+     * @return the names of the incompatible providers.
+     */
+    public List getIncompatibleProviderNames() {
+        return this.incompatibleProviderNames;
+    }
+    
+    
+    public String toString() {
+        final StringBuffer strBuff = new StringBuffer();
+        strBuff.append("Selected provider ").append(this.selectedProvider.getName());
+        strBuff.append(" for ").append(this.algorithm);
+        strBuff.append(" (default: ").append(this.defaultProvider.getName()).append(")");
+        final Iterator entriesIter = this.operationsPerSecond.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            final Map.Entry entry = (Map.Entry) entriesIter.next();
+            strBuff.append(", ").append(entry.getKey()).append(": ");
+            strBuff.append(Math.round(((Double) entry.getValue()).doubleValue()));
+            strBuff.append(" ops/s");
+        }
+        if (!this.incompatibleProviderNames.isEmpty()) {
+            strBuff.append(", incompatible: ").append(this.incompatibleProviderNames);
+        }
+        return strBuff.toString();
+    }
+    
+}
@@ -0,0 +1,282 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.commons;
+
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.PBEParameterSpec;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+
+/**
+ * <p>
+ * Utilities for selecting the fastest of the installed security providers
+ * for an algorithm, by micro-benchmarking them.
+ * <b>This class is for internal use only</b>. 
+ * </p> 
+ * <p>
+ * Only providers whose results are byte-identical to those of the 
+ * default provider for the algorithm are considered, so that selecting
+ * a different provider never changes the results of encryption or 
+ * digest operations.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ProviderSelectionUtils {
+
+    // Time during which each provider is benchmarked
+    private static final long BENCHMARK_TIME_MILLIS = 50L;
+    private static final int WARM_UP_OPERATIONS = 3;
+    
+    private static final int DEFAULT_SALT_SIZE_BYTES = 8;
+    private static final byte[] PROBE_MESSAGE = new byte[64];
+    private static final char[] PROBE_PASSWORD = "jasypt-provider-probe".toCharArray();
+    
+    static {
+        for (int i = 0; i < PROBE_MESSAGE.length; i++) {
+            PROBE_MESSAGE[i] = (byte) i;
+        }
+    }
+    
+    
+    /*
+     * An operation to be benchmarked on a specific provider. Returns its
+     * result, so that it can be compared with the default provider's.
+     */
+    private static interface Operation {
+        
+        public byte[] execute() throws Exception;
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Selects the fastest provider for a PBE algorithm, considering both 
+     * the key derivation (which is performed for each operation, with the
+     * specified number of iterations) and the encryption itself.
+     * </p>
+     * 
+     * @param algorithm the PBE algorithm.
+     * @param keyObtentionIterations the key obtention iterations.
+     * @return the result of the selection.
+     * @throws EncryptionInitializationException if no provider supports 
+     *         the algorithm.
+     */
+    public static ProviderSelection selectFastestPBEProvider(
+            final String algorithm, final int keyObtentionIterations) {
+        
+        final Provider defaultProvider;
+        final byte[] salt;
+        try {
+            final Cipher defaultCipher = Cipher.getInstance(algorithm);
+            defaultProvider = defaultCipher.getProvider();
+            // Same salt size as the one encryptors will use
+            final int blockSize = defaultCipher.getBlockSize();
+            salt = new byte[blockSize > 0? blockSize : DEFAULT_SALT_SIZE_BYTES];
+            Arrays.fill(salt, (byte) 0x5A);
+        } catch (final Exception e) {
+            throw new EncryptionInitializationException(e);
+        }
+        
+        final PBEParameterSpec parameterSpec = 
+            new PBEParameterSpec(salt, keyObtentionIterations);
+        
+        final Provider[] providers = Security.getProviders();
+        final Operation[] operations = new Operation[providers.length];
+        for (int i = 0; i < providers.length; i++) {
+            try {
+                final SecretKeyFactory factory = 
+                    SecretKeyFactory.getInstance(algorithm, providers[i]);
+                final SecretKey key = factory.generateSecret(new PBEKeySpec(PROBE_PASSWORD));
+                final Cipher cipher = Cipher.getInstance(algorithm, providers[i]);
+                operations[i] = new Operation() {
+                    public byte[] execute() throws Exception {
+                        cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec);
+                        return cipher.doFinal(PROBE_MESSAGE);
+                    }
+                };
+            } catch (final Exception e) {
+                // Algorithm not supported by this provider
+                operations[i] = null;
+            }
+        }
+        
+        return select(algorithm, defaultProvider, providers, operations);
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Selects the fastest provider for a message digest algorithm.
+     * </p>
+     * 
+     * @param algorithm the digest algorithm.
+     * @return the result of the selection.
+     * @throws EncryptionInitializationException if no provider supports 
+     *         the algorithm.
+     */
+    public static ProviderSelection selectFastestDigestProvider(final String algorithm) {
+        
+        final Provider defaultProvider;
+        try {
+            defaultProvider = MessageDigest.getInstance(algorithm).getProvider();
+        } catch (final Exception e) {
+            throw new EncryptionInitializationException(e);
+        }
+        
+        final Provider[] providers = Security.getProviders();
+        final Operation[] operations = new Operation[providers.length];
+        for (int i = 0; i < providers.length; i++) {
+            try {
+                final MessageDigest md = MessageDigest.getInstance(algorithm, providers[i]);
+                operations[i] = new Operation() {
+                    public byte[] execute() {
+                        return md.digest(PROBE_MESSAGE);
+                    }
+                };
+            } catch (final Exception e) {
+                // Algorithm not supported by this provider
+                operations[i] = null;
+            }
+        }
+        
+        return select(algorithm, defaultProvider, providers, operations);
+        
+    }
+    
+    
+    
+    private static ProviderSelection select(final String algorithm, 
+            final Provider defaultProvider, final Provider[] providers, 
+            final Operation[] operations) {
+
+        // Results of the default provider are the reference
+        byte[] reference = null;
+        for (int i = 0; i < providers.length && reference == null; i++) {
+            if (providers[i] == defaultProvider && operations[i] != null) {
+                reference = executeOrNull(operations[i]);
+            }
+        }
+        if (reference == null) {
+            throw new EncryptionInitializationException(
+                    "Default provider " + defaultProvider.getName() + 
+                    " cannot execute " + algorithm);
+        }
+        
+        final Map operationsPerSecond = new LinkedHashMap();
+        final List incompatibleProviderNames = new ArrayList();
+        Provider selectedProvider = defaultProvider;
+        double bestOperationsPerSecond = -1.0;
+        
+        for (int i = 0; i < providers.length; i++) {
+            
+            if (operations[i] == null) {
+                continue;
+            }
+            if (!Arrays.equals(reference, executeOrNull(operations[i]))) {
+                incompatibleProviderNames.add(providers[i].getName());
+                continue;
+            }
+            
+            final double measured = benchmark(operations[i]);
+            if (measured < 0.0) {
+                incompatibleProviderNames.add(providers[i].getName());
+                continue;
+            }
+            operationsPerSecond.put(providers[i].getName(), new Double(measured));
+            // Ties are resolved in favour of the preferred (first) provider
+            if (measured > bestOperationsPerSecond) {
+                bestOperationsPerSecond = measured;
+                selectedProvider = providers[i];
+            }
+            
+        }
+        
+        return new ProviderSelection(algorithm, selectedProvider, defaultProvider, 
+                operationsPerSecond, incompatibleProviderNames);
+        
+    }
+    
+    
+    
+    private static byte[] executeOrNull(final Operation operation) {
+        try {
+            return operation.execute();
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+    
+    
+    /*
+     * Returns the number of operations per second, or a negative number
+     * if the operation failed.
+     */
+    private static double benchmark(final Operation operation) {
+        
+        try {
+            
+            for (int i = 0; i < WARM_UP_OPERATIONS; i++) {
+                operation.execute();
+            }
+            
+            final long start = System.currentTimeMillis();
+            long now = start;
+            long count = 0L;
+            do {
+                operation.execute();
+                count++;
+                now = System.currentTimeMillis();
+            } while (now - start < BENCHMARK_TIME_MILLIS);
+            
+            return (count * 1000.0) / (now - start);
+            
+        } catch (final Exception e) {
+            return -1.0;
+        }
+        
+    }
+    
+    
+    private ProviderSelectionUtils() {
+        super();
+    }
+    
+}
@@ -0,0 +1,108 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.digest;
+
+
+/**
+ * <p>
+ * Result of a <tt>tryMatches(...)</tt> operation on a digester.
+ * </p>
+ * <p>
+ * Contrary to <tt>matches(...)</tt>, <tt>tryMatches(...)</tt> operations
+ * do not raise (nor create) any exceptions when the digest being checked
+ * is not valid (for example, when it is malformed or has a wrong length), 
+ * which makes them much cheaper in scenarios in which invalid digests 
+ * are expected to be frequent (for example, when receiving untrusted 
+ * input). As in the case of exceptions, no information is given about the 
+ * cause of the digest being invalid for security reasons.
+ * </p>
+ * <p>
+ * There are only three possible results, available as constants: 
+ * {@link #MATCH}, {@link #NO_MATCH} and {@link #INVALID}.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class DigestMatchResult {
+
+    /**
+     * The digest was valid and matched the message.
+     */
+    public static final DigestMatchResult MATCH = 
+        new DigestMatchResult(true, true);
+    
+    /**
+     * The digest was valid, but did not match the message.
+     */
+    public static final DigestMatchResult NO_MATCH = 
+        new DigestMatchResult(true, false);
+    
+    /**
+     * The digest was not valid (a <tt>matches(...)</tt> operation would
+     * have raised an exception).
+     */
+    public static final DigestMatchResult INVALID = 
+        new DigestMatchResult(false, false);
+    
+    
+    private final boolean valid;
+    private final boolean match;
+    
+    
+    private DigestMatchResult(final boolean valid, final boolean match) {
+        super();
+        this.valid = valid;
+        this.match = match;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the digest could be checked against the message.
+     * </p>
+     * 
+     * @return true if the digest was valid, false if not.
+     */
+    public boolean isValid() {
+        return this.valid;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the digest matched the message. Invalid digests never
+     * match.
+     * </p>
+     * 
+     * @return true if the digest matched the message, false if not.
+     */
+    public boolean isMatch() {
+        return this.match;
+    }
+    
+    
+    public String toString() {
+        return (this.valid? (this.match? "MATCH" : "NO_MATCH") : "INVALID");
+    }
+    
+}
@@ -0,0 +1,283 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.digest;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.normalization.Normalizer;
+
+
+/**
+ * <p>
+ * Creates <i>blind indexes</i> for String values: deterministic, keyed 
+ * HMAC digests which can be stored next to a (randomly salted, and 
+ * therefore non-deterministic) encrypted value, so that equality queries 
+ * can be performed on the database by comparing indexes, without the 
+ * database ever knowing the plain values.
+ * </p>
+ * <p>
+ * As every blind index for the same value and key is identical, indexes 
+ * do reveal which rows share the same value. Also, in order to avoid 
+ * offline guessing of the indexed values, the password used for creating
+ * blind indexes should be a high-entropy secret, different from the one
+ * used for encrypting the values themselves.
+ * </p>
+ * <p>
+ * Messages are normalized to Unicode NFC form and encoded in UTF-8 before
+ * computing the HMAC, and results are returned encoded in BASE64 (default)
+ * or hexadecimal.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class HmacBlindIndexer {
+
+    /**
+     * <p>
+     * Default HMAC algorithm will be <b>HmacSHA256</b>.
+     * </p>
+     */
+    public static final String DEFAULT_ALGORITHM = "HmacSHA256";
+
+    /**
+     * <p>
+     * Default type of String output. Set to <b>BASE64</b>.
+     * </p>
+     */
+    public static final String DEFAULT_STRING_OUTPUT_TYPE = 
+        CommonUtils.STRING_OUTPUT_TYPE_BASE64;
+    
+    private static final String MESSAGE_CHARSET = "UTF-8";
+    private static final String INDEX_CHARSET = "US-ASCII";
+    
+    private String algorithm = DEFAULT_ALGORITHM;
+    private String stringOutputType = DEFAULT_STRING_OUTPUT_TYPE;
+    private boolean stringOutputTypeBase64 = true;
+    private char[] password = null;
+    
+    private boolean initialized = false;
+    
+    // The Mac object is not thread-safe, so access to it is synchronized
+    private Mac mac = null;
+    
+    private final Base64 base64;
+    
+    
+    
+    /**
+     * Creates a new instance of <tt>HmacBlindIndexer</tt>.
+     */
+    public HmacBlindIndexer() {
+        super();
+        this.base64 = new Base64();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the HMAC algorithm to be used (default: <tt>HmacSHA256</tt>).
+     * </p>
+     * 
+     * @param algorithm the name of the HMAC algorithm.
+     */
+    public synchronized void setAlgorithm(final String algorithm) {
+        CommonUtils.validateNotEmpty(algorithm, "Algorithm cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.algorithm = algorithm;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the password (secret key) to be used for creating the indexes.
+     * </p>
+     * 
+     * @param password the password.
+     */
+    public synchronized void setPassword(final String password) {
+        CommonUtils.validateNotEmpty(password, "Password cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.password = password.toCharArray();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the the form in which String output will be encoded. Available 
+     * encoding types are:
+     * </p>
+     * <ul>
+     *   <li><tt><b>base64</b></tt> (default)</li>
+     *   <li><tt><b>hexadecimal</b></tt></li>
+     * </ul>
+     * 
+     * @param stringOutputType the string output type.
+     */
+    public synchronized void setStringOutputType(final String stringOutputType) {
+        CommonUtils.validateNotEmpty(stringOutputType, 
+                "String output type cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.stringOutputType = 
+            CommonUtils.getStandardStringOutputType(stringOutputType);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns true if the indexer has already been initialized, false if
+     * not. Initialization happens when <tt>initialize</tt> is called, or
+     * when <tt>index</tt> is called for the first time.
+     * </p>
+     * 
+     * @return true if the indexer has already been initialized.
+     */
+    public boolean isInitialized() {
+        return this.initialized;
+    }
+    
+    
+    /**
+     * <p>
+     * Initialize the indexer. Once initialized, its configuration cannot
+     * be changed anymore.
+     * </p>
+     * 
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if no password was set or the
+     *         algorithm is not available).
+     */
+    public synchronized void initialize() {
+        
+        // Double-check to avoid synchronization issues
+        if (!this.initialized) {
+            
+            if (this.password == null) {
+                throw new EncryptionInitializationException(
+                        "Password not set for Blind Indexer");
+            }
+            
+            final char[] normalizedPassword = Normalizer.normalizeToNfc(this.password);
+            try {
+                final byte[] keyBytes = 
+                    new String(normalizedPassword).getBytes(MESSAGE_CHARSET);
+                this.mac = Mac.getInstance(this.algorithm);
+                this.mac.init(new SecretKeySpec(keyBytes, this.algorithm));
+            } catch (final NoSuchAlgorithmException e) {
+                throw new EncryptionInitializationException(e);
+            } catch (final InvalidKeyException e) {
+                throw new EncryptionInitializationException(e);
+            } catch (final UnsupportedEncodingException e) {
+                throw new EncryptionInitializationException(e);
+            } finally {
+                cleanPassword(normalizedPassword);
+                cleanPassword(this.password);
+                this.password = null;
+            }
+            
+            this.stringOutputTypeBase64 =
+                (CommonUtils.STRING_OUTPUT_TYPE_BASE64.
+                    equalsIgnoreCase(this.stringOutputType));
+            
+            this.initialized = true;
+            
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Creates the blind index for a message. Equal messages will always
+     * produce the same index.
+     * </p>
+     * 
+     * @param message the message to be indexed.
+     * @return the blind index, or null if the message is null.
+     * @throws EncryptionOperationNotPossibleException if the operation could
+     *         not be performed.
+     */
+    public String index(final String message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            final byte[] messageBytes = 
+                Normalizer.normalizeToNfc(message).getBytes(MESSAGE_CHARSET);
+            
+            byte[] index = null;
+            synchronized (this.mac) {
+                index = this.mac.doFinal(messageBytes);
+            }
+            
+            if (this.stringOutputTypeBase64) {
+                return new String(this.base64.encode(index), INDEX_CHARSET);
+            }
+            return CommonUtils.toHexadecimal(index);
+            
+        } catch (final Exception e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    
+    private static void cleanPassword(final char[] password) {
+        if (password != null) {
+            synchronized (password) {
+                final int pwdLength = password.length;
+                for (int i = 0; i < pwdLength; i++) {
+                    password[i] = (char)0;
+                }
+            }
+        }
+    }
+    
+}
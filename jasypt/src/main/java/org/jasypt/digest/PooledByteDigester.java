@@ -22,6 +22,7 @@ package org.jasypt.digest;
 import java.security.Provider;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
 import org.jasypt.digest.config.DigesterConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
 import org.jasypt.salt.SaltGenerator;
@@ -248,6 +249,42 @@ public class PooledByteDigester implements ByteDigester {
     }
     
     
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the digest algorithm when the 
+     * digester is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardByteDigester#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public synchronized void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.firstDigester.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.firstDigester.getProviderSelection();
+    }
+    
+    
     /**
      * <p>
      * Whether the salt bytes are to be appended after the 
@@ -594,8 +631,42 @@ public class PooledByteDigester implements ByteDigester {
         return this.pool[poolPosition].matches(message, digest);
         
     }
-
     
     
+    /**
+     * <p>
+     * Checks a message against a given digest, exactly as 
+     * {@link #matches(byte[], byte[])} does, but without raising any 
+     * exceptions if the digest is not valid. A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #matches(byte[], byte[])} in scenarios in which invalid digests
+     * are frequent.
+     * </p>
+     * 
+     * @param message the message to be compared to the digest.
+     * @param digest the digest. 
+     * @return the result of the matching operation.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if the digest algorithm chosen
+     *         cannot be used).
+     * @since 1.9.3
+     */
+    public DigestMatchResult tryMatches(final byte[] message, final byte[] digest) {
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition].tryMatches(message, digest);
+        
+    }
+
     
 }
@@ -22,6 +22,7 @@ package org.jasypt.digest;
 import java.security.Provider;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
 import org.jasypt.digest.config.DigesterConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
 import org.jasypt.salt.SaltGenerator;
@@ -252,6 +253,78 @@ public class PooledStringDigester implements StringDigester {
     }
     
     
+    /**
+     * <p>
+     * Sets the number of synthetic digest/matching operations to be performed on 
+     * throwaway data by each of the digesters in the pool when it is 
+     * initialized. Default is 0 (no warm-up).
+     * </p>
+     * <p>
+     * See {@link StandardStringDigester#setWarmUpIterations(int)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpIterations the number of warm-up operations (0 for
+     *        no warm-up).
+     */
+    public synchronized void setWarmUpIterations(final int warmUpIterations) {
+        this.firstDigester.setWarmUpIterations(warmUpIterations);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum time (in milliseconds) the warm-up of each of the
+     * digesters in the pool can take. Default is 
+     * {@link StandardStringDigester#DEFAULT_WARM_UP_TIME_LIMIT_MILLIS}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpTimeLimitMillis the warm-up time limit, in milliseconds.
+     */
+    public synchronized void setWarmUpTimeLimitMillis(final long warmUpTimeLimitMillis) {
+        this.firstDigester.setWarmUpTimeLimitMillis(warmUpTimeLimitMillis);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the digest algorithm when the 
+     * digester is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardByteDigester#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public synchronized void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.firstDigester.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.firstDigester.getProviderSelection();
+    }
+    
+    
     /**
      * <p>
      * Whether the salt bytes are to be appended after the 
@@ -543,6 +616,12 @@ public class PooledStringDigester implements StringDigester {
                 this.pool[i] = this.pool[i - 1].cloneDigester();
             }
             
+            // Cloning initializes all digesters but the last one, which
+            // is lazily initialized unless it has to be warmed up
+            if (this.firstDigester.isWarmUpEnabled()) {
+                this.pool[this.poolSize - 1].initialize();
+            }
+            
             this.initialized = true;
             
         }
@@ -690,8 +769,42 @@ public class PooledStringDigester implements StringDigester {
         return this.pool[poolPosition].matches(message, digest);
         
     }
-
     
     
+    /**
+     * <p>
+     * Checks a message against a given digest, exactly as 
+     * {@link #matches(String, String)} does, but without raising any 
+     * exceptions if the digest is not valid. A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #matches(String, String)} in scenarios in which invalid digests
+     * are frequent.
+     * </p>
+     * 
+     * @param message the message to be compared to the digest.
+     * @param digest the digest. 
+     * @return the result of the matching operation.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if the digest algorithm chosen
+     *         cannot be used).
+     * @since 1.9.3
+     */
+    public DigestMatchResult tryMatches(final String message, final String digest) {
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition].tryMatches(message, digest);
+        
+    }
+
     
 }
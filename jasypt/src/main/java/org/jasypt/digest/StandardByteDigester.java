@@ -25,6 +25,8 @@ import java.security.NoSuchProviderException;
 import java.security.Provider;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
+import org.jasypt.commons.ProviderSelectionUtils;
 import org.jasypt.digest.config.DigesterConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
 import org.jasypt.exceptions.EncryptionInitializationException;
@@ -227,6 +229,14 @@ public final class StandardByteDigester implements ByteDigester {
     private boolean saltGeneratorSet = false;
     private boolean providerNameSet = false;
     private boolean providerSet = false;
+
+    /*
+     * Whether the fastest of the installed providers should be selected
+     * at initialization (if no provider was explicitly set), and the 
+     * result of that selection.
+     */
+    private boolean selectFastestProvider = false;
+    private ProviderSelection providerSelection = null;
     private boolean invertPositionOfSaltInMessageBeforeDigestingSet = false;
     private boolean invertPositionOfPlainSaltInEncryptionResultsSet = false;
     private boolean useLenientSaltSizeCheckSet = false;
@@ -477,6 +487,53 @@ public final class StandardByteDigester implements ByteDigester {
         this.provider = provider;
         this.providerSet = true;
     }
+
+    
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the digest algorithm when the 
+     * digester is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * When enabled, every installed provider supporting the algorithm is
+     * micro-benchmarked (for a few milliseconds) and the fastest one 
+     * producing byte-identical digests to the default provider is used. 
+     * The result of this selection can be obtained by calling 
+     * {@link #getProviderSelection()}.
+     * </p>
+     * <p>
+     * This setting is ignored if a provider or provider name is explicitly
+     * set (in this digester or its config object).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public synchronized void setSelectFastestProvider(final boolean selectFastestProvider) {
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.selectFastestProvider = selectFastestProvider;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.providerSelection;
+    }
     
     
     /**
@@ -796,8 +853,15 @@ public final class StandardByteDigester implements ByteDigester {
             /*
              * MessageDigest is initialized the usual way, and the digester
              * is marked as "initialized" so that configuration cannot be
-             * changed in the future.
+             * changed in the future. If requested (and no provider has been
+             * explicitly set), the fastest installed provider is used.
              */
+            if (this.selectFastestProvider && 
+                    this.provider == null && this.providerName == null) {
+                this.providerSelection =
+                    ProviderSelectionUtils.selectFastestDigestProvider(this.algorithm);
+                this.provider = this.providerSelection.getSelectedProvider();
+            }
             try {
                 if (this.provider != null) {
                     this.md = 
@@ -1049,7 +1113,61 @@ public final class StandardByteDigester implements ByteDigester {
         if (!isInitialized()) {
             initialize();
         }
-            
+        
+        final DigestMatchResult result = matchOrInvalid(message, digest);
+        if (!result.isValid()) {
+            throw EncryptionOperationNotPossibleException.createWithoutStackTrace();
+        }
+        return result.isMatch();
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Checks a message against a given digest, exactly as 
+     * {@link #matches(byte[], byte[])} does, but without raising any 
+     * exceptions if the digest is not valid (for example, if it has a 
+     * wrong length). A result object is returned instead, which makes this
+     * method much cheaper than {@link #matches(byte[], byte[])} in 
+     * scenarios in which invalid digests are frequent.
+     * </p>
+     * 
+     * @param message the message to be compared to the digest.
+     * @param digest the digest. 
+     * @return the result of the matching operation.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if the digest algorithm chosen
+     *         cannot be used).
+     * @since 1.9.3
+     */
+    public DigestMatchResult tryMatches(final byte[] message, final byte[] digest) {
+
+        if (message == null) {
+            return (digest == null? DigestMatchResult.MATCH : DigestMatchResult.NO_MATCH);
+        } else if (digest == null) {
+            return DigestMatchResult.NO_MATCH;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        return matchOrInvalid(message, digest);
+        
+    }
+    
+    
+    /*
+     * Performs the matching operation, returning INVALID (instead of 
+     * raising an exception) if the digest is not valid, so that no exceptions
+     * have to be created for what, in some scenarios, is a normal control 
+     * flow. The digester is expected to be already initialized, and neither
+     * message nor digest to be null.
+     */
+    DigestMatchResult matchOrInvalid(final byte[] message, final byte[] digest) {
+        
         try {
 
             // If we are using a salt, extract it to use it.
@@ -1066,18 +1184,18 @@ public final class StandardByteDigester implements ByteDigester {
                     if (this.digestLengthBytes > 0) {
                         if (this.useLenientSaltSizeCheck) {
                             if (digest.length < this.digestLengthBytes) {
-                                throw new EncryptionOperationNotPossibleException();
+                                return DigestMatchResult.INVALID;
                             }
                             digestSaltSize = digest.length - this.digestLengthBytes;
                         } else {
                             if (digest.length != (this.digestLengthBytes + this.saltSizeBytes)) {
-                                throw new EncryptionOperationNotPossibleException();
+                                return DigestMatchResult.INVALID;
                             }
                         }
                     } else {
                         // Salt size check behaviour cannot be set to lenient
                         if (digest.length < this.saltSizeBytes) {
-                            throw new EncryptionOperationNotPossibleException();
+                            return DigestMatchResult.INVALID;
                         }
                     }
                     
@@ -1098,12 +1216,13 @@ public final class StandardByteDigester implements ByteDigester {
             final byte[] encryptedMessage = digest(message, salt);
             
             // If, using the same salt, digests match, then messages too. 
-            return (digestsAreEqual(encryptedMessage, digest));
+            return (digestsAreEqual(encryptedMessage, digest)?
+                    DigestMatchResult.MATCH : DigestMatchResult.NO_MATCH);
         
         } catch (Exception e) {
             // If digest fails, it is more secure not to return any information
             // about the cause in nested exceptions. Simply fail.
-            throw new EncryptionOperationNotPossibleException();
+            return DigestMatchResult.INVALID;
         }
         
     }
@@ -22,6 +22,7 @@ package org.jasypt.digest;
 import java.security.Provider;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
 import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
 import org.jasypt.digest.config.DigesterConfig;
 import org.jasypt.digest.config.StringDigesterConfig;
@@ -226,6 +227,18 @@ public final class StandardStringDigester implements StringDigester {
      */
     public static final boolean DEFAULT_UNICODE_NORMALIZATION_IGNORED = false;
 
+
+    /**
+     * <p>
+     * Default maximum time (in milliseconds) the warm-up performed on 
+     * initialization can take: 10 seconds.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final long DEFAULT_WARM_UP_TIME_LIMIT_MILLIS = 10000L;
+    
+
     /**
      * <p>
      * Default type of String output. Set to <b>BASE64</b>. 
@@ -257,6 +270,12 @@ public final class StandardStringDigester implements StringDigester {
     private String suffix = null;
     
 
+    // Number of synthetic operations to be performed on initialization
+    // (if any) and maximum time these operations can take.
+    private int warmUpIterations = 0;
+    private long warmUpTimeLimitMillis = DEFAULT_WARM_UP_TIME_LIMIT_MILLIS;
+    
+
     /*
      * Set of booleans which indicate whether the config or default values
      * have to be overriden because of the setX methods having been
@@ -474,6 +493,42 @@ public final class StandardStringDigester implements StringDigester {
     }
     
     
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the digest algorithm when the 
+     * digester is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardByteDigester#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.byteDigester.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.byteDigester.getProviderSelection();
+    }
+    
+    
     /**
      * <p>
      * Whether the salt bytes are to be appended after the 
@@ -704,6 +759,8 @@ public final class StandardStringDigester implements StringDigester {
             cloned.setStringOutputType(this.stringOutputType);
         }
         cloned.setUnicodeNormalizationIgnored(this.unicodeNormalizationIgnored);
+        cloned.setWarmUpIterations(this.warmUpIterations);
+        cloned.setWarmUpTimeLimitMillis(this.warmUpTimeLimitMillis);
         
         return cloned;
         
@@ -712,6 +769,55 @@ public final class StandardStringDigester implements StringDigester {
     
     
     
+    /**
+     * <p>
+     * Sets the number of synthetic digest/matching operations to be performed on 
+     * throwaway data when this digester is initialized, so that it 
+     * (and the JIT-compiled code it uses) is already warmed up when 
+     * real operations start. Default is 0 (no warm-up).
+     * </p>
+     * <p>
+     * Warm-up will stop earlier if it takes longer than the time limit set 
+     * by {@link #setWarmUpTimeLimitMillis(long)}. In pooled digesters, 
+     * every member of the pool is warmed up.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpIterations the number of warm-up operations (0 for
+     *        no warm-up).
+     */
+    public synchronized void setWarmUpIterations(final int warmUpIterations) {
+        CommonUtils.validateIsTrue(warmUpIterations >= 0, 
+                "Warm-up iterations cannot be negative");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.warmUpIterations = warmUpIterations;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum time (in milliseconds) the warm-up performed on 
+     * initialization can take (see {@link #setWarmUpIterations(int)}). 
+     * Default is {@link #DEFAULT_WARM_UP_TIME_LIMIT_MILLIS}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpTimeLimitMillis the warm-up time limit, in milliseconds.
+     */
+    public synchronized void setWarmUpTimeLimitMillis(final long warmUpTimeLimitMillis) {
+        CommonUtils.validateIsTrue(warmUpTimeLimitMillis > 0, 
+                "Warm-up time limit must be > 0");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.warmUpTimeLimitMillis = warmUpTimeLimitMillis;
+    }
+    
+    
     /**
      * <p>
      *   Returns true if the digester has already been initialized, false if
@@ -812,11 +918,52 @@ public final class StandardStringDigester implements StringDigester {
                     equalsIgnoreCase(this.stringOutputType));
             
             this.byteDigester.initialize();
+            
+            warmUp();
         
         }
 
     }
     
+    
+    /*
+     * Performs the configured number of digest/matching operations
+     * on throwaway data (if any), within the configured time limit.
+     */
+    private void warmUp() {
+        
+        if (this.warmUpIterations <= 0) {
+            return;
+        }
+        
+        final long limit = System.currentTimeMillis() + this.warmUpTimeLimitMillis;
+        final StringBuffer message = new StringBuffer();
+        for (int i = 0; i < this.warmUpIterations; i++) {
+            // Vary message lengths so that different paths are exercised
+            if (message.length() >= 64) {
+                message.setLength(0);
+            }
+            message.append((char) ('a' + (i % 26)));
+            final String plain = message.toString();
+            if (!matches(plain, digest(plain))) {
+                throw new EncryptionInitializationException(
+                        "Warm-up operation returned an unexpected result");
+            }
+            if (System.currentTimeMillis() >= limit) {
+                break;
+            }
+        }
+        
+    }
+    
+    
+    /*
+     * Returns whether warm-up operations have been configured.
+     */
+    boolean isWarmUpEnabled() {
+        return this.warmUpIterations > 0;
+    }
+    
 
     /**
      * <p>
@@ -1022,6 +1169,77 @@ public final class StandardStringDigester implements StringDigester {
             initialize();
         }
         
+        final DigestMatchResult result = matchOrInvalid(message, processedDigest);
+        if (!result.isValid()) {
+            throw EncryptionOperationNotPossibleException.createWithoutStackTrace();
+        }
+        return result.isMatch();
+
+    }
+    
+    
+    /**
+     * <p>
+     * Checks a message against a given digest, exactly as 
+     * {@link #matches(String, String)} does, but without raising any 
+     * exceptions if the digest is not valid (for example, if it is not
+     * correctly encoded or it lacks the required prefix or suffix). A result
+     * object is returned instead, which makes this method much cheaper than
+     * {@link #matches(String, String)} in scenarios in which invalid digests
+     * are frequent.
+     * </p>
+     * 
+     * @param message the message to be compared to the digest.
+     * @param digest the digest. 
+     * @return the result of the matching operation.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if the digest algorithm chosen
+     *         cannot be used).
+     * @since 1.9.3
+     */
+    public DigestMatchResult tryMatches(final String message, final String digest) {
+
+        String processedDigest = digest;
+        
+        if (processedDigest != null) {
+            if (this.prefix != null) {
+                if (!processedDigest.startsWith(this.prefix)) {
+                    return DigestMatchResult.INVALID;
+                }
+                processedDigest = processedDigest.substring(this.prefix.length()); 
+            }
+            if (this.suffix != null) {
+                if (!processedDigest.endsWith(this.suffix)) {
+                    return DigestMatchResult.INVALID;
+                }
+                processedDigest = processedDigest.substring(0, processedDigest.length() - this.suffix.length());
+            }
+        }
+
+        if (message == null) {
+            return (processedDigest == null? DigestMatchResult.MATCH : DigestMatchResult.NO_MATCH);
+        } else if (processedDigest == null) {
+            return DigestMatchResult.NO_MATCH;
+        }
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        return matchOrInvalid(message, processedDigest);
+        
+    }
+    
+    
+    /*
+     * Performs the matching operation (once prefix and suffix have been
+     * removed from the digest), returning INVALID instead of raising an 
+     * exception if the digest is not valid. The digester is expected to be
+     * already initialized, and neither message nor digest to be null.
+     */
+    private DigestMatchResult matchOrInvalid(final String message, final String processedDigest) {
+        
         try {
 
             // Normalize Unicode message to NFC form
@@ -1049,16 +1267,14 @@ public final class StandardStringDigester implements StringDigester {
             }
             
             // The StandardByteDigester is asked to match message to digest.
-            return this.byteDigester.matches(messageBytes, digestBytes); 
+            return this.byteDigester.matchOrInvalid(messageBytes, digestBytes); 
         
         } catch (EncryptionInitializationException e) {
             throw e;
-        } catch (EncryptionOperationNotPossibleException e) {
-            throw e;
         } catch (Exception e) {
             // If digest fails, it is more secure not to return any information
             // about the cause in nested exceptions. Simply fail.
-            throw new EncryptionOperationNotPossibleException();
+            return DigestMatchResult.INVALID;
         }
 
     }
@@ -0,0 +1,59 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption;
+
+import java.io.InputStream;
+
+/**
+ * <p>
+ * Common interface for all Encryptors which can encrypt and decrypt
+ * binary streams on the fly, so that the whole message never needs to
+ * be held in memory.
+ * </p>
+ * <p>
+ * Streamed encryption results must be identical in format to the ones
+ * of the same encryptor's byte array operations.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface ByteStreamEncryptor {
+    
+    
+    /**
+     * Returns a stream which encrypts the input stream while it is read.
+     * 
+     * @param message the stream of the message to be encrypted
+     * @return the stream of the result of encryption
+     */
+    public InputStream encryptStream(InputStream message);
+
+    /**
+     * Returns a stream which decrypts the input stream while it is read.
+     * 
+     * @param encryptedMessage the stream of the encrypted message
+     * @return the stream of the result of decryption
+     */
+    public InputStream decryptStream(InputStream encryptedMessage);
+    
+}
@@ -0,0 +1,59 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption;
+
+import java.io.Reader;
+
+/**
+ * <p>
+ * Common interface for all Encryptors which can encrypt and decrypt
+ * character streams on the fly, so that the whole message never needs to
+ * be held in memory.
+ * </p>
+ * <p>
+ * Streamed encryption results must be identical in format to the ones
+ * of the same encryptor's String operations.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface CharacterStreamEncryptor {
+    
+    
+    /**
+     * Returns a reader which encrypts the input reader while it is read.
+     * 
+     * @param message the reader of the message to be encrypted
+     * @return the reader of the result of encryption
+     */
+    public Reader encryptCharacterStream(Reader message);
+
+    /**
+     * Returns a reader which decrypts the input reader while it is read.
+     * 
+     * @param encryptedMessage the reader of the encrypted message
+     * @return the reader of the result of decryption
+     */
+    public Reader decryptCharacterStream(Reader encryptedMessage);
+    
+}
@@ -0,0 +1,109 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * Result of a <tt>tryDecrypt(...)</tt> operation on a String message.
+ * </p>
+ * <p>
+ * Contrary to <tt>decrypt(...)</tt>, <tt>tryDecrypt(...)</tt> operations
+ * do not raise (nor create) any exceptions when decryption fails because of
+ * an invalid encrypted message or a wrong password, which makes them 
+ * much cheaper in scenarios in which failures are expected to be 
+ * frequent (for example, when trying several candidate keys or when 
+ * receiving untrusted input). As in the case of exceptions, no information
+ * is given about the cause of the failure for security reasons.
+ * </p>
+ * <p>
+ * Objects of this class are immutable and <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class StringDecryptionResult {
+
+    /**
+     * Shared result object for failed decryption operations.
+     */
+    public static final StringDecryptionResult FAILED = 
+        new StringDecryptionResult(false, null);
+    
+    
+    private final boolean successful;
+    private final String decryptedMessage;
+    
+    
+    /**
+     * <p>
+     * Creates a result object for a successful decryption operation.
+     * </p>
+     * 
+     * @param decryptedMessage the result of decryption (might be null if
+     *                         the encrypted message was null).
+     * @return the result object.
+     */
+    public static StringDecryptionResult successful(final String decryptedMessage) {
+        return new StringDecryptionResult(true, decryptedMessage);
+    }
+    
+    
+    private StringDecryptionResult(final boolean successful, final String decryptedMessage) {
+        super();
+        this.successful = successful;
+        this.decryptedMessage = decryptedMessage;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the decryption operation was successful.
+     * </p>
+     * 
+     * @return true if the message was decrypted, false if not.
+     */
+    public boolean isSuccessful() {
+        return this.successful;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of decryption. 
+     * </p>
+     * 
+     * @return the decrypted message.
+     * @throws EncryptionOperationNotPossibleException if the decryption
+     *         operation was not successful.
+     */
+    public String getDecryptedMessage() {
+        if (!this.successful) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        return this.decryptedMessage;
+    }
+    
+}
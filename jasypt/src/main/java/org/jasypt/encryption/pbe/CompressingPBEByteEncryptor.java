@@ -0,0 +1,380 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * Byte encryptor which compresses messages (using the <i>deflate</i> 
+ * algorithm, see {@link Deflater}) before encrypting them with another
+ * {@link PBEByteEncryptor}, so that large, verbose payloads (XML, JSON...)
+ * produce much shorter encryption results.
+ * </p>
+ * <p>
+ * Messages shorter than the <i>compression threshold</i> are not 
+ * compressed, and neither are those for which compression would not 
+ * reduce their size. A header byte, encrypted along with the message, 
+ * indicates whether the message was compressed or not. Because of this 
+ * header, messages encrypted directly with the underlying encryptor 
+ * cannot be decrypted by this one (nor the other way round).
+ * </p>
+ * <p>
+ * Each thread reuses its own {@link Deflater} and {@link Inflater} 
+ * instances. Threads which stop using the encryptor (for example, 
+ * threads belonging to a pool that is being shut down) should call 
+ * {@link #close()} in order to release the native memory held by them.
+ * </p>
+ * <p>
+ * Decompressed messages cannot be larger than the <i>maximum inflated 
+ * size</i>, so that a small encrypted message cannot make decryption 
+ * allocate an unbounded amount of memory. Messages larger than this 
+ * size are never compressed, so they can still be decrypted.
+ * </p>
+ * <p>
+ * Note that compressing before encryption makes the size of the 
+ * encryption results depend on the contents of the message. This should
+ * not be used for messages mixing secret data with data that might be 
+ * controlled by an attacker.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i> as long as the underlying encryptor
+ * is.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class CompressingPBEByteEncryptor implements PBEByteEncryptor {
+
+    /**
+     * Default compression threshold: 256 bytes.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+    
+    /**
+     * Default maximum inflated size: 16 MB.
+     */
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+    
+    private static final byte HEADER_STORED = 0x00;
+    private static final byte HEADER_DEFLATED = 0x01;
+    
+    private static final int INFLATE_BUFFER_SIZE = 4096;
+    
+    private final PBEByteEncryptor encryptor;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    private final int maxInflatedSize;
+    
+    // Deflater and Inflater instances allocate native memory, so they are
+    // created only once per thread and reset after each use
+    private final ThreadLocal deflaters = new ThreadLocal();
+    private final ThreadLocal inflaters = new ThreadLocal();
+    
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor and 
+     * using the default compression threshold, level and maximum inflated
+     * size.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     */
+    public CompressingPBEByteEncryptor(final PBEByteEncryptor encryptor) {
+        this(encryptor, DEFAULT_COMPRESSION_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor and 
+     * using the default maximum inflated size.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     * @param compressionThreshold the minimum size (in bytes) of messages
+     *                             to be compressed.
+     * @param compressionLevel the compression level (0-9), or 
+     *                         {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public CompressingPBEByteEncryptor(final PBEByteEncryptor encryptor,
+            final int compressionThreshold, final int compressionLevel) {
+        this(encryptor, compressionThreshold, compressionLevel, DEFAULT_MAX_INFLATED_SIZE);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     * @param compressionThreshold the minimum size (in bytes) of messages
+     *                             to be compressed.
+     * @param compressionLevel the compression level (0-9), or 
+     *                         {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param maxInflatedSize the maximum size (in bytes) of compressed 
+     *                        messages once decompressed.
+     */
+    public CompressingPBEByteEncryptor(final PBEByteEncryptor encryptor,
+            final int compressionThreshold, final int compressionLevel,
+            final int maxInflatedSize) {
+        super();
+        CommonUtils.validateNotNull(encryptor, "Encryptor cannot be set null");
+        CommonUtils.validateIsTrue(compressionThreshold >= 0, 
+                "Compression threshold cannot be negative");
+        CommonUtils.validateIsTrue(
+                (compressionLevel == Deflater.DEFAULT_COMPRESSION) ||
+                (compressionLevel >= Deflater.NO_COMPRESSION && 
+                 compressionLevel <= Deflater.BEST_COMPRESSION), 
+                "Compression level must be between " + Deflater.NO_COMPRESSION + 
+                " and " + Deflater.BEST_COMPRESSION);
+        CommonUtils.validateIsTrue(maxInflatedSize > 0, 
+                "Maximum inflated size must be greater than zero");
+        this.encryptor = encryptor;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = compressionLevel;
+        this.maxInflatedSize = maxInflatedSize;
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Sets the password of the underlying encryptor.
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public void setPassword(final String password) {
+        this.encryptor.setPassword(password);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the underlying encryptor.
+     * </p>
+     * 
+     * @return the underlying encryptor.
+     */
+    public PBEByteEncryptor getEncryptor() {
+        return this.encryptor;
+    }
+    
+    
+    /**
+     * <p>
+     * Ends the {@link Deflater} and {@link Inflater} instances used by 
+     * the calling thread, releasing their native memory. 
+     * </p>
+     * <p>
+     * The encryptor can still be used after calling this method (also by 
+     * the calling thread, which will create new instances when needed). 
+     * Instances used by other threads are not affected.
+     * </p>
+     */
+    public void close() {
+        
+        final Deflater deflater = (Deflater) this.deflaters.get();
+        if (deflater != null) {
+            this.deflaters.set(null);
+            deflater.end();
+        }
+        
+        final Inflater inflater = (Inflater) this.inflaters.get();
+        if (inflater != null) {
+            this.inflaters.set(null);
+            inflater.end();
+        }
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Compresses (if the message is large enough) and encrypts a message.
+     * </p>
+     * 
+     * @param message the message to be encrypted.
+     * @return the result of encryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if the underlying 
+     *         encryptor could not be initialized.
+     */
+    public byte[] encrypt(final byte[] message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        byte[] payload = null;
+        // Messages that could not be inflated back are stored as they are
+        if (message.length >= this.compressionThreshold && 
+                message.length <= this.maxInflatedSize) {
+            payload = deflate(message);
+        }
+        if (payload == null) {
+            payload = new byte[message.length + 1];
+            payload[0] = HEADER_STORED;
+            System.arraycopy(message, 0, payload, 1, message.length);
+        }
+        
+        return this.encryptor.encrypt(payload);
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts and (if it was compressed) decompresses a message.
+     * </p>
+     * 
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails (for example, if the message was not 
+     *         encrypted by a <tt>CompressingPBEByteEncryptor</tt>).
+     * @throws EncryptionInitializationException if the underlying 
+     *         encryptor could not be initialized.
+     */
+    public byte[] decrypt(final byte[] encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        final byte[] payload = this.encryptor.decrypt(encryptedMessage);
+        if (payload == null || payload.length == 0) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+        switch (payload[0]) {
+            case HEADER_STORED:
+                final byte[] message = new byte[payload.length - 1];
+                System.arraycopy(payload, 1, message, 0, message.length);
+                return message;
+            case HEADER_DEFLATED:
+                return inflate(payload);
+            default:
+                throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Returns the header byte followed by the compressed message, or null
+     * if compression would not make the message shorter.
+     */
+    private byte[] deflate(final byte[] message) {
+        
+        Deflater deflater = (Deflater) this.deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater(this.compressionLevel);
+            this.deflaters.set(deflater);
+        }
+        
+        try {
+            
+            deflater.setInput(message);
+            deflater.finish();
+            
+            // Compressed data is only useful if shorter than the original
+            // message, so output is never allowed to grow beyond that
+            final byte[] output = new byte[message.length + 1];
+            output[0] = HEADER_DEFLATED;
+            int length = 1;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            
+            final byte[] payload = new byte[length];
+            System.arraycopy(output, 0, payload, 0, length);
+            return payload;
+            
+        } finally {
+            deflater.reset();
+        }
+        
+    }
+    
+    
+    private byte[] inflate(final byte[] payload) {
+        
+        Inflater inflater = (Inflater) this.inflaters.get();
+        if (inflater == null) {
+            inflater = new Inflater();
+            this.inflaters.set(inflater);
+        }
+        
+        try {
+            
+            inflater.setInput(payload, 1, payload.length - 1);
+            
+            final ByteArrayOutputStream output = 
+                new ByteArrayOutputStream(
+                        (int) Math.min((long) payload.length * 4, this.maxInflatedSize));
+            final byte[] buffer = new byte[INFLATE_BUFFER_SIZE];
+            while (!inflater.finished()) {
+                final int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Truncated or corrupted data
+                    throw new EncryptionOperationNotPossibleException();
+                }
+                if (length > this.maxInflatedSize - output.size()) {
+                    // Message exceeds the maximum inflated size
+                    throw new EncryptionOperationNotPossibleException();
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+            
+        } catch (final DataFormatException e) {
+            throw new EncryptionOperationNotPossibleException();
+        } finally {
+            inflater.reset();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,302 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.zip.Deflater;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * String encryptor which compresses messages before encrypting them with 
+ * a {@link PBEByteEncryptor} (see {@link CompressingPBEByteEncryptor}).
+ * </p>
+ * <p>
+ * Messages are encoded in UTF-8 before compression and encryption, and 
+ * results are encoded in BASE64 (default) or hexadecimal.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i> as long as the underlying encryptor
+ * is.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class CompressingPBEStringEncryptor implements PBEStringEncryptor {
+
+    /**
+     * <p>
+     * Default type of String output. Set to <b>BASE64</b>.
+     * </p>
+     */
+    public static final String DEFAULT_STRING_OUTPUT_TYPE = 
+        CommonUtils.STRING_OUTPUT_TYPE_BASE64;
+    
+    private static final String MESSAGE_CHARSET = "UTF-8";
+    private static final String ENCRYPTED_MESSAGE_CHARSET = "US-ASCII";
+    
+    private final CompressingPBEByteEncryptor byteEncryptor;
+    private final Base64 base64;
+    
+    private String stringOutputType = DEFAULT_STRING_OUTPUT_TYPE;
+    private boolean stringOutputTypeBase64 = true;
+    private boolean initialized = false;
+    
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor and 
+     * using the default compression threshold and level.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     */
+    public CompressingPBEStringEncryptor(final PBEByteEncryptor encryptor) {
+        this(encryptor, 
+                CompressingPBEByteEncryptor.DEFAULT_COMPRESSION_THRESHOLD, 
+                Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor and 
+     * using the default maximum inflated size.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     * @param compressionThreshold the minimum size (in bytes, once encoded
+     *                             in UTF-8) of messages to be compressed.
+     * @param compressionLevel the compression level (0-9), or 
+     *                         {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public CompressingPBEStringEncryptor(final PBEByteEncryptor encryptor,
+            final int compressionThreshold, final int compressionLevel) {
+        this(encryptor, compressionThreshold, compressionLevel,
+                CompressingPBEByteEncryptor.DEFAULT_MAX_INFLATED_SIZE);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new instance, delegating on the specified encryptor.
+     * </p>
+     * 
+     * @param encryptor the encryptor compressed messages will be 
+     *                  encrypted with.
+     * @param compressionThreshold the minimum size (in bytes, once encoded
+     *                             in UTF-8) of messages to be compressed.
+     * @param compressionLevel the compression level (0-9), or 
+     *                         {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param maxInflatedSize the maximum size (in bytes, once encoded in 
+     *                        UTF-8) of compressed messages once 
+     *                        decompressed.
+     */
+    public CompressingPBEStringEncryptor(final PBEByteEncryptor encryptor,
+            final int compressionThreshold, final int compressionLevel,
+            final int maxInflatedSize) {
+        super();
+        this.byteEncryptor = new CompressingPBEByteEncryptor(
+                encryptor, compressionThreshold, compressionLevel, maxInflatedSize);
+        this.base64 = new Base64();
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Sets the password of the underlying encryptor.
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public void setPassword(final String password) {
+        this.byteEncryptor.setPassword(password);
+    }
+    
+    
+    /**
+     * <p>
+     * Releases the compression resources used by the calling thread (see
+     * {@link CompressingPBEByteEncryptor#close()}).
+     * </p>
+     */
+    public void close() {
+        this.byteEncryptor.close();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the the form in which String output will be encoded. Available 
+     * encoding types are:
+     * </p>
+     * <ul>
+     *   <li><tt><b>base64</b></tt> (default)</li>
+     *   <li><tt><b>hexadecimal</b></tt></li>
+     * </ul>
+     * 
+     * @param stringOutputType the string output type.
+     */
+    public synchronized void setStringOutputType(final String stringOutputType) {
+        CommonUtils.validateNotEmpty(stringOutputType, 
+                "String output type cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.stringOutputType = 
+            CommonUtils.getStandardStringOutputType(stringOutputType);
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns true if the encryptor has already been initialized, false if
+     *   not.
+     * </p>
+     * 
+     * @return true if the encryptor has already been initialized, false if
+     *         not.
+     */
+    public boolean isInitialized() {
+        return this.initialized;
+    }
+    
+    
+    /**
+     * <p>
+     * Initialize the encryptor. The underlying encryptor will be 
+     * initialized on its first use.
+     * </p>
+     */
+    public synchronized void initialize() {
+        // Double-check to avoid synchronization issues
+        if (!this.initialized) {
+            this.stringOutputTypeBase64 =
+                (CommonUtils.STRING_OUTPUT_TYPE_BASE64.
+                    equalsIgnoreCase(this.stringOutputType));
+            this.initialized = true;
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Compresses (if the message is large enough) and encrypts a message.
+     * </p>
+     * 
+     * @param message the String message to be encrypted
+     * @return the result of encryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public String encrypt(final String message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            final byte[] encrypted = 
+                this.byteEncryptor.encrypt(message.getBytes(MESSAGE_CHARSET));
+            if (this.stringOutputTypeBase64) {
+                return new String(this.base64.encode(encrypted), ENCRYPTED_MESSAGE_CHARSET);
+            }
+            return CommonUtils.toHexadecimal(encrypted);
+            
+        } catch (final EncryptionInitializationException e) {
+            throw e;
+        } catch (final EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (final Exception e) {
+            // If encryption fails, it is more secure not to return any 
+            // information about the cause in nested exceptions. Simply fail.
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts and (if it was compressed) decompresses a message.
+     * </p>
+     * 
+     * @param encryptedMessage the String message to be decrypted
+     * @return the result of decryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public String decrypt(final String encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            final byte[] encrypted;
+            if (this.stringOutputTypeBase64) {
+                encrypted = this.base64.decode(
+                        encryptedMessage.getBytes(ENCRYPTED_MESSAGE_CHARSET));
+            } else {
+                encrypted = CommonUtils.fromHexadecimal(encryptedMessage);
+            }
+            return new String(this.byteEncryptor.decrypt(encrypted), MESSAGE_CHARSET);
+            
+        } catch (final EncryptionInitializationException e) {
+            throw e;
+        } catch (final EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (final Exception e) {
+            // If decryption fails, it is more secure not to return any 
+            // information about the cause in nested exceptions. Simply fail.
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,412 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.normalization.Normalizer;
+
+
+/**
+ * <p>
+ * Deterministic implementation of the {@link PBEByteEncryptor} interface,
+ * based on the AES-SIV mode (<a href="http://tools.ietf.org/html/rfc5297" 
+ * target="_blank">RFC 5297</a>).
+ * </p>
+ * <p>
+ * Unlike {@link StandardPBEByteEncryptor}, which uses a random salt for 
+ * each encryption operation, this encryptor will always produce the same 
+ * encryption result for the same message (and password). This allows 
+ * encrypted values to be compared for equality without decrypting them, 
+ * for example for creating database indexes or performing joins on 
+ * encrypted columns, or for using encrypted values as cache keys.
+ * </p>
+ * <p>
+ * Compared to using a fixed salt generator with a PBE algorithm, AES-SIV
+ * only reveals whether two messages are equal (and their lengths), and 
+ * every result is authenticated, so that any tampering will be detected
+ * at decryption. Also, the encryption key is derived from the password only
+ * once (at initialization), and not for each operation.
+ * </p>
+ * <p>
+ * The AES-SIV key is derived from the password using PBKDF2 with 
+ * HMAC-SHA256, a key derivation salt and the configured number of 
+ * iterations. As encryption results must not depend on any random values,
+ * this salt is fixed. By default it is {@link #DEFAULT_KEY_DERIVATION_SALT},
+ * which is the same for every application, so it is <b>strongly 
+ * recommended</b> to set a specific one for each application (see 
+ * {@link #setKeyDerivationSalt(String)}), in order to prevent attacks using
+ * precomputed keys for common passwords.
+ * Key size can be 256 (default, AES-128 is used), 384 or 512 bits (AES-256
+ * is used, which might require unlimited strength JCE policy files on
+ * some JVMs).
+ * </p>
+ * <p>
+ * Encryption results are the 16-byte synthetic IV followed by the encrypted
+ * message, which has the same length as the original one.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class DeterministicPBEByteEncryptor implements PBEByteCleanablePasswordEncryptor {
+
+    /**
+     * <p>
+     * Default number of iterations applied for obtaining the encryption key
+     * from the specified password, set to 1000.
+     * </p>
+     */
+    public static final int DEFAULT_KEY_OBTENTION_ITERATIONS = 1000;
+
+    /**
+     * <p>
+     * Default size of the AES-SIV key, set to 256 bits (AES-128).
+     * </p>
+     */
+    public static final int DEFAULT_KEY_SIZE_BITS = 256;
+
+    /**
+     * <p>
+     * Default salt for deriving the AES-SIV key from the password, set to
+     * <tt>"org.jasypt.AES-SIV"</tt>. As it is public and the same for every
+     * application, setting a specific salt is strongly recommended.
+     * </p>
+     */
+    public static final String DEFAULT_KEY_DERIVATION_SALT = "org.jasypt.AES-SIV";
+    
+    private static final String KEY_DERIVATION_ALGORITHM = "HmacSHA256";
+    private static final String PASSWORD_CHARSET = "UTF-8";
+    
+    private static final byte[][] NO_ASSOCIATED_DATA = new byte[0][];
+    
+    private char[] password = null;
+    private int keyObtentionIterations = DEFAULT_KEY_OBTENTION_ITERATIONS;
+    private int keySizeBits = DEFAULT_KEY_SIZE_BITS;
+    private String keyDerivationSalt = DEFAULT_KEY_DERIVATION_SALT;
+    
+    private boolean initialized = false;
+    
+    private SivCipher cipher = null;
+    
+    
+    
+    /**
+     * Creates a new instance of <tt>DeterministicPBEByteEncryptor</tt>.
+     */
+    public DeterministicPBEByteEncryptor() {
+        super();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the password to be used for encryption.
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public synchronized void setPassword(final String password) {
+        CommonUtils.validateNotEmpty(password, "Password cannot be set empty");
+        setPasswordCharArray(password.toCharArray());
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the password to be used for encryption, as a char[].
+     * </p>
+     * <p>
+     * The char[] is copied, so the original one can be cleaned right after
+     * calling this method.
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public synchronized void setPasswordCharArray(final char[] password) {
+        CommonUtils.validateNotNull(password, "Password cannot be set null");
+        CommonUtils.validateIsTrue(password.length > 0, "Password cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        if (this.password != null) {
+            // We clean the old password, if there is one.
+            cleanPassword(this.password);
+        }
+        this.password = new char[password.length];
+        System.arraycopy(password, 0, this.password, 0, password.length);
+    }
+    
+    
+    /**
+     * <p>
+     * Set the number of PBKDF2 iterations applied to obtain the encryption
+     * key from the password (default: 1000).
+     * </p>
+     * 
+     * @param keyObtentionIterations the number of iterations
+     */
+    public synchronized void setKeyObtentionIterations(final int keyObtentionIterations) {
+        CommonUtils.validateIsTrue(keyObtentionIterations > 0, 
+                "Number of iterations for key obtention must be " +
+                "greater than zero");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.keyObtentionIterations = keyObtentionIterations;
+    }
+    
+    
+    /**
+     * <p>
+     * Set the size of the AES-SIV key in bits: 256 (default), 384 or 512.
+     * Half of the key is used for authentication and half for encryption,
+     * so these sizes correspond to AES-128, AES-192 and AES-256 respectively.
+     * </p>
+     * 
+     * @param keySizeBits the key size, in bits.
+     */
+    public synchronized void setKeySizeBits(final int keySizeBits) {
+        CommonUtils.validateIsTrue(
+                keySizeBits == 256 || keySizeBits == 384 || keySizeBits == 512, 
+                "Key size must be 256, 384 or 512 bits");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.keySizeBits = keySizeBits;
+    }
+    
+    
+    /**
+     * <p>
+     * Set the salt applied for deriving the AES-SIV key from the password
+     * (default: {@link #DEFAULT_KEY_DERIVATION_SALT}). It does not need to
+     * be secret, but it should be specific to each application (for 
+     * example, a random value generated once and kept in its 
+     * configuration). Values encrypted with a salt can only be decrypted
+     * with the same salt.
+     * </p>
+     * 
+     * @param keyDerivationSalt the key derivation salt.
+     * @since 1.9.3
+     */
+    public synchronized void setKeyDerivationSalt(final String keyDerivationSalt) {
+        CommonUtils.validateNotEmpty(keyDerivationSalt, 
+                "Key derivation salt cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.keyDerivationSalt = keyDerivationSalt;
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns true if the encryptor has already been initialized, false if
+     *   not. Initialization happens when <tt>initialize</tt> is called, or 
+     *   when <tt>encrypt</tt> or <tt>decrypt</tt> are called for the first 
+     *   time.
+     * </p>
+     * 
+     * @return true if the encryptor has already been initialized, false if
+     *         not.
+     */
+    public boolean isInitialized() {
+        return this.initialized;
+    }
+    
+    
+    /**
+     * <p>
+     * Initialize the encryptor, deriving the encryption key from the 
+     * password. Once initialized, the configuration of the encryptor
+     * cannot be changed anymore.
+     * </p>
+     * 
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if no password was set).
+     */
+    public synchronized void initialize() {
+        
+        // Double-check to avoid synchronization issues
+        if (!this.initialized) {
+            
+            if (this.password == null) {
+                throw new EncryptionInitializationException(
+                        "Password not set for Password Based Encryptor");
+            }
+            
+            final char[] normalizedPassword = Normalizer.normalizeToNfc(this.password);
+            byte[] key = null;
+            try {
+                key = deriveKey(
+                        new String(normalizedPassword).getBytes(PASSWORD_CHARSET),
+                        this.keyDerivationSalt.getBytes(PASSWORD_CHARSET),
+                        this.keyObtentionIterations, this.keySizeBits / 8);
+                this.cipher = new SivCipher(key);
+            } catch (final EncryptionInitializationException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new EncryptionInitializationException(e);
+            } finally {
+                // We don't need the password (or the key bytes) anymore -> clean!
+                cleanPassword(normalizedPassword);
+                cleanPassword(this.password);
+                this.password = null;
+                if (key != null) {
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = 0;
+                    }
+                }
+            }
+            
+            this.initialized = true;
+            
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Encrypts a message. The same message will always produce the same
+     * encryption result.
+     * </p>
+     * 
+     * @param message the byte array message to be encrypted
+     * @return the result of encryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public byte[] encrypt(final byte[] message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        return this.cipher.encrypt(NO_ASSOCIATED_DATA, message);
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message, checking its integrity.
+     * </p>
+     * 
+     * @param encryptedMessage the byte array message to be decrypted
+     * @return the result of decryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails (for example, if the message was encrypted 
+     *         with a different password or has been altered).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public byte[] decrypt(final byte[] encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        return this.cipher.decrypt(NO_ASSOCIATED_DATA, encryptedMessage);
+        
+    }
+    
+    
+    
+    /*
+     * PBKDF2 (PKCS #5 v2.0) key derivation
+     */
+    private static byte[] deriveKey(final byte[] password, final byte[] salt, 
+            final int iterations, final int keyLength) 
+            throws GeneralSecurityException {
+        
+        final Mac mac = Mac.getInstance(KEY_DERIVATION_ALGORITHM);
+        mac.init(new SecretKeySpec(password, KEY_DERIVATION_ALGORITHM));
+        for (int i = 0; i < password.length; i++) {
+            password[i] = 0;
+        }
+        
+        final int macLength = mac.getMacLength();
+        final byte[] key = new byte[keyLength];
+        
+        int blockIndex = 1;
+        for (int offset = 0; offset < keyLength; offset += macLength) {
+            
+            mac.update(salt);
+            mac.update(new byte[] {
+                    (byte) (blockIndex >>> 24), (byte) (blockIndex >>> 16), 
+                    (byte) (blockIndex >>> 8), (byte) blockIndex });
+            byte[] u = mac.doFinal();
+            final byte[] block = new byte[macLength];
+            System.arraycopy(u, 0, block, 0, macLength);
+            for (int i = 1; i < iterations; i++) {
+                u = mac.doFinal(u);
+                for (int j = 0; j < macLength; j++) {
+                    block[j] ^= u[j];
+                }
+            }
+            
+            System.arraycopy(block, 0, key, offset, Math.min(macLength, keyLength - offset));
+            blockIndex++;
+            
+        }
+        
+        return key;
+        
+    }
+    
+    
+    private static void cleanPassword(final char[] password) {
+        if (password != null) {
+            synchronized (password) {
+                final int pwdLength = password.length;
+                for (int i = 0; i < pwdLength; i++) {
+                    password[i] = (char)0;
+                }
+            }
+        }
+    }
+    
+}
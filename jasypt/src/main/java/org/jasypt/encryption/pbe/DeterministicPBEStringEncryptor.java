@@ -0,0 +1,300 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * Deterministic implementation of the {@link PBEStringEncryptor} interface,
+ * based on the AES-SIV mode (see {@link DeterministicPBEByteEncryptor}).
+ * </p>
+ * <p>
+ * The same message will always produce the same encryption result (for
+ * the same password), so that encrypted values can be compared for 
+ * equality, indexed or used as lookup keys without decrypting them.
+ * Only equality (and length) of the messages is revealed, and results are
+ * authenticated.
+ * </p>
+ * <p>
+ * Messages are encoded in UTF-8 before encryption, and results are
+ * encoded in BASE64 (default) or hexadecimal.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class DeterministicPBEStringEncryptor implements PBEStringCleanablePasswordEncryptor {
+
+    /**
+     * <p>
+     * Default type of String output. Set to <b>BASE64</b>.
+     * </p>
+     */
+    public static final String DEFAULT_STRING_OUTPUT_TYPE = 
+        CommonUtils.STRING_OUTPUT_TYPE_BASE64;
+    
+    private static final String MESSAGE_CHARSET = "UTF-8";
+    private static final String ENCRYPTED_MESSAGE_CHARSET = "US-ASCII";
+    
+    private final DeterministicPBEByteEncryptor byteEncryptor;
+    private final Base64 base64;
+    
+    private String stringOutputType = DEFAULT_STRING_OUTPUT_TYPE;
+    private boolean stringOutputTypeBase64 = true;
+    
+    
+    
+    /**
+     * Creates a new instance of <tt>DeterministicPBEStringEncryptor</tt>.
+     */
+    public DeterministicPBEStringEncryptor() {
+        super();
+        this.byteEncryptor = new DeterministicPBEByteEncryptor();
+        this.base64 = new Base64();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the password to be used for encryption.
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public void setPassword(final String password) {
+        this.byteEncryptor.setPassword(password);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the password to be used for encryption, as a char[].
+     * </p>
+     * 
+     * @param password the password to be used.
+     */
+    public void setPasswordCharArray(final char[] password) {
+        this.byteEncryptor.setPasswordCharArray(password);
+    }
+    
+    
+    /**
+     * <p>
+     * Set the number of PBKDF2 iterations applied to obtain the encryption
+     * key from the password (default: 1000).
+     * </p>
+     * 
+     * @param keyObtentionIterations the number of iterations
+     */
+    public void setKeyObtentionIterations(final int keyObtentionIterations) {
+        this.byteEncryptor.setKeyObtentionIterations(keyObtentionIterations);
+    }
+    
+    
+    /**
+     * <p>
+     * Set the size of the AES-SIV key in bits: 256 (default), 384 or 512.
+     * </p>
+     * 
+     * @param keySizeBits the key size, in bits.
+     */
+    public void setKeySizeBits(final int keySizeBits) {
+        this.byteEncryptor.setKeySizeBits(keySizeBits);
+    }
+    
+    
+    /**
+     * <p>
+     * Set the salt applied for deriving the AES-SIV key from the password
+     * (default: {@link DeterministicPBEByteEncryptor#DEFAULT_KEY_DERIVATION_SALT}).
+     * Setting a salt specific to each application is strongly recommended.
+     * See {@link DeterministicPBEByteEncryptor#setKeyDerivationSalt(String)}.
+     * </p>
+     * 
+     * @param keyDerivationSalt the key derivation salt.
+     * @since 1.9.3
+     */
+    public void setKeyDerivationSalt(final String keyDerivationSalt) {
+        this.byteEncryptor.setKeyDerivationSalt(keyDerivationSalt);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the the form in which String output will be encoded. Available 
+     * encoding types are:
+     * </p>
+     * <ul>
+     *   <li><tt><b>base64</b></tt> (default)</li>
+     *   <li><tt><b>hexadecimal</b></tt></li>
+     * </ul>
+     * 
+     * @param stringOutputType the string output type.
+     */
+    public synchronized void setStringOutputType(final String stringOutputType) {
+        CommonUtils.validateNotEmpty(stringOutputType, 
+                "String output type cannot be set empty");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.stringOutputType = 
+            CommonUtils.getStandardStringOutputType(stringOutputType);
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns true if the encryptor has already been initialized, false if
+     *   not.
+     * </p>
+     * 
+     * @return true if the encryptor has already been initialized, false if
+     *         not.
+     */
+    public boolean isInitialized() {
+        return this.byteEncryptor.isInitialized();
+    }
+    
+    
+    /**
+     * <p>
+     * Initialize the encryptor, deriving the encryption key from the 
+     * password.
+     * </p>
+     * 
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, if no password was set).
+     */
+    public synchronized void initialize() {
+        // Double-check to avoid synchronization issues
+        if (!isInitialized()) {
+            this.stringOutputTypeBase64 =
+                (CommonUtils.STRING_OUTPUT_TYPE_BASE64.
+                    equalsIgnoreCase(this.stringOutputType));
+            this.byteEncryptor.initialize();
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Encrypts a message. The same message will always produce the same
+     * encryption result.
+     * </p>
+     * 
+     * @param message the String message to be encrypted
+     * @return the result of encryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public String encrypt(final String message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            final byte[] encrypted = 
+                this.byteEncryptor.encrypt(message.getBytes(MESSAGE_CHARSET));
+            if (this.stringOutputTypeBase64) {
+                return new String(this.base64.encode(encrypted), ENCRYPTED_MESSAGE_CHARSET);
+            }
+            return CommonUtils.toHexadecimal(encrypted);
+            
+        } catch (final EncryptionInitializationException e) {
+            throw e;
+        } catch (final EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (final Exception e) {
+            // If encryption fails, it is more secure not to return any 
+            // information about the cause in nested exceptions. Simply fail.
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message, checking its integrity.
+     * </p>
+     * 
+     * @param encryptedMessage the String message to be decrypted
+     * @return the result of decryption, or null if the message was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails (for example, if the message was encrypted 
+     *         with a different password or has been altered).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done.
+     */
+    public String decrypt(final String encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            final byte[] encrypted;
+            if (this.stringOutputTypeBase64) {
+                encrypted = this.base64.decode(
+                        encryptedMessage.getBytes(ENCRYPTED_MESSAGE_CHARSET));
+            } else {
+                encrypted = CommonUtils.fromHexadecimal(encryptedMessage);
+            }
+            return new String(this.byteEncryptor.decrypt(encrypted), MESSAGE_CHARSET);
+            
+        } catch (final EncryptionInitializationException e) {
+            throw e;
+        } catch (final EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (final Exception e) {
+            // If decryption fails, it is more secure not to return any 
+            // information about the cause in nested exceptions. Simply fail.
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,266 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+
+/*
+ * Internal support for the hot-swappable encryptors: keeps track of the
+ * encryptor currently in use and of the operations in flight on each 
+ * encryptor, so that an encryptor can be replaced without blocking
+ * callers and the replaced one can be drained.
+ * 
+ * Operations only read the (volatile) current generation and update an
+ * in-flight counter in it. Counters are striped by thread (each stripe
+ * having its own monitor) so that concurrent operations do not contend
+ * on one single lock. A generation is retired when it is replaced: no 
+ * operations can start on it from then on.
+ * 
+ * Encryptors are handled as Object so that this class can be shared by
+ * the string and byte implementations.
+ */
+abstract class EncryptorSwapper {
+
+    
+    private static final int STRIPE_COUNT = 16;
+    
+    
+    static final class Generation {
+        
+        final Object encryptor;
+        private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+        
+        Generation(final Object encryptor) {
+            super();
+            this.encryptor = encryptor;
+            for (int i = 0; i < this.stripes.length; i++) {
+                this.stripes[i] = new Stripe();
+            }
+        }
+        
+        // Operations are always released by the thread that acquired them
+        private Stripe getStripe() {
+            final int hash = System.identityHashCode(Thread.currentThread());
+            return this.stripes[(hash & 0x7fffffff) % STRIPE_COUNT];
+        }
+        
+        private boolean drain(final long deadline) {
+            for (int i = 0; i < this.stripes.length; i++) {
+                if (!this.stripes[i].retireAndDrain(deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+    
+    private static final class Stripe {
+        
+        private int inFlight = 0;
+        private boolean retired = false;
+        
+        synchronized boolean enter() {
+            if (this.retired) {
+                return false;
+            }
+            this.inFlight++;
+            return true;
+        }
+        
+        synchronized void exit() {
+            this.inFlight--;
+            if (this.inFlight == 0 && this.retired) {
+                notifyAll();
+            }
+        }
+        
+        // A deadline of zero means no time limit
+        synchronized boolean retireAndDrain(final long deadline) {
+            this.retired = true;
+            while (this.inFlight > 0) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (deadline > 0 && remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(deadline > 0? remaining : 0L);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+
+    
+    private volatile Generation current;
+    private long swapCount = 0L;
+    
+    // Only one swap at a time. Never held while performing operations.
+    private final Object swapLock = new Object();
+    private Thread backgroundSwap = null;
+    private Exception lastSwapFailure = null;
+    
+    
+    
+    EncryptorSwapper(final Object encryptor) {
+        super();
+        this.current = new Generation(encryptor);
+    }
+
+    
+    /*
+     * Makes sure the new encryptor is initialized and ready to work at
+     * full speed before it starts receiving operations.
+     */
+    abstract void warm(final Object encryptor);
+    
+    
+    
+    Generation acquire() {
+        while (true) {
+            final Generation generation = this.current;
+            if (generation.getStripe().enter()) {
+                return generation;
+            }
+            // Retired by a swap after being read: the new one will be current
+        }
+    }
+    
+    
+    void release(final Generation generation) {
+        generation.getStripe().exit();
+    }
+    
+    
+    Object getCurrent() {
+        return this.current.encryptor;
+    }
+    
+    
+    synchronized long getSwapCount() {
+        return this.swapCount;
+    }
+    
+    
+    
+    boolean swap(final Object encryptor, final long drainTimeoutMillis,
+            final boolean destroyReplaced) {
+        
+        synchronized (this.swapLock) {
+            
+            // Done before swapping, while the current encryptor is still 
+            // serving every operation
+            warm(encryptor);
+            
+            final Generation old = this.current;
+            this.current = new Generation(encryptor);
+            synchronized (this) {
+                this.swapCount++;
+            }
+            
+            final long deadline = 
+                (drainTimeoutMillis > 0? System.currentTimeMillis() + drainTimeoutMillis : 0L);
+            if (!old.drain(deadline)) {
+                return false;
+            }
+            
+            // No operations can be in flight on the old encryptor anymore, but
+            // it belongs to the caller: it is only destroyed if asked to, and
+            // never if it is still the current one
+            if (destroyReplaced && old.encryptor != encryptor && 
+                    old.encryptor instanceof Destroyable) {
+                try {
+                    ((Destroyable) old.encryptor).destroy();
+                } catch (final DestroyFailedException e) {
+                    // Nothing else can be done: the encryptor is released anyway
+                }
+            }
+            return true;
+            
+        }
+        
+    }
+    
+    
+    
+    void swapInBackground(final Object encryptor, final long drainTimeoutMillis,
+            final boolean destroyReplaced) {
+        
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    swap(encryptor, drainTimeoutMillis, destroyReplaced);
+                    setLastSwapFailure(null);
+                } catch (final RuntimeException e) {
+                    setLastSwapFailure(e);
+                }
+            }
+        }, "jasypt-encryptor-swap");
+        thread.setDaemon(true);
+        
+        synchronized (this) {
+            if (this.backgroundSwap != null && this.backgroundSwap.isAlive()) {
+                throw new EncryptionInitializationException(
+                        "A background swap is already in progress");
+            }
+            this.backgroundSwap = thread;
+        }
+        thread.start();
+        
+    }
+    
+    
+    boolean waitForSwap(final long timeoutMillis) throws InterruptedException {
+        final Thread thread;
+        synchronized (this) {
+            thread = this.backgroundSwap;
+        }
+        if (thread == null) {
+            return true;
+        }
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+    
+    
+    synchronized boolean isSwapping() {
+        return (this.backgroundSwap != null && this.backgroundSwap.isAlive());
+    }
+    
+    
+    synchronized Exception getLastSwapFailure() {
+        return this.lastSwapFailure;
+    }
+    
+    
+    private synchronized void setLastSwapFailure(final Exception failure) {
+        this.lastSwapFailure = failure;
+    }
+    
+}
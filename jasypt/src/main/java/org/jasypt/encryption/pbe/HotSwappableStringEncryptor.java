@@ -0,0 +1,339 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringDecryptionResult;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * String encryptor which delegates on another encryptor that can be 
+ * replaced at any moment (<i>hot-swapped</i>) without interrupting the
+ * operations being executed.
+ * </p>
+ * <p>
+ * Once initialized, encryptors like {@link StandardPBEStringEncryptor} or
+ * {@link PooledPBEStringEncryptor} cannot be reconfigured. In order to 
+ * change their password or algorithm, a new encryptor can be configured
+ * and passed to {@link #swap(StringEncryptor)}, which will:
+ * </p>
+ * <ol>
+ *   <li>Initialize and <i>warm</i> the new encryptor (by executing an 
+ *       encryption and a decryption on it, or on each encryptor in its pool
+ *       if it is a pooled one) while the old one keeps serving every 
+ *       operation.</li>
+ *   <li>Atomically replace the old encryptor with the new one. Operations
+ *       started from this moment on are executed by the new one.</li>
+ *   <li>Wait for operations already in flight on the old encryptor to
+ *       finish (<i>drain</i>), up to the configured drain timeout.</li>
+ *   <li>Only if {@link #setDestroyReplacedEncryptors(boolean)} is enabled,
+ *       destroy the old encryptor, if it was completely drained and it 
+ *       implements <tt>javax.security.auth.Destroyable</tt>.</li>
+ * </ol>
+ * <p>
+ * {@link #swapInBackground(StringEncryptor)} does the same in a 
+ * background thread.
+ * </p>
+ * <p>
+ * Note that, if the password changes, messages encrypted with the old
+ * encryptor will not be decryptable by the new one. If both need to be
+ * supported for some time, the new encryptor can be a 
+ * {@link MultiKeyStringEncryptor}.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class HotSwappableStringEncryptor implements StringEncryptor {
+
+    /**
+     * Default drain timeout: 30 seconds.
+     */
+    public static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 30000L;
+    
+    private static final String WARM_UP_MESSAGE = "jasypt";
+    
+    private final EncryptorSwapper swapper;
+    private long drainTimeoutMillis = DEFAULT_DRAIN_TIMEOUT_MILLIS;
+    private boolean destroyReplacedEncryptors = false;
+    
+
+    
+    /**
+     * <p>
+     * Creates a new instance, initially delegating on the specified 
+     * encryptor.
+     * </p>
+     * 
+     * @param encryptor the initial encryptor.
+     */
+    public HotSwappableStringEncryptor(final StringEncryptor encryptor) {
+        super();
+        CommonUtils.validateNotNull(encryptor, "Encryptor cannot be set null");
+        this.swapper = new EncryptorSwapper(encryptor) {
+            void warm(final Object newEncryptor) {
+                if (newEncryptor instanceof PooledPBEStringEncryptor) {
+                    // Every encryptor in the pool will receive operations
+                    final StandardPBEStringEncryptor[] poolEncryptors = 
+                        ((PooledPBEStringEncryptor) newEncryptor).getPoolEncryptors();
+                    for (int i = 0; i < poolEncryptors.length; i++) {
+                        warmEncryptor(poolEncryptors[i]);
+                    }
+                } else {
+                    warmEncryptor((StringEncryptor) newEncryptor);
+                }
+            }
+        };
+    }
+    
+    
+    private static void warmEncryptor(final StringEncryptor encryptor) {
+        if (!WARM_UP_MESSAGE.equals(encryptor.decrypt(encryptor.encrypt(WARM_UP_MESSAGE)))) {
+            throw new EncryptionInitializationException(
+                    "New encryptor could not decrypt its own encryption results");
+        }
+    }
+
+    
+    /**
+     * <p>
+     * Sets the maximum time (in milliseconds) that a swap will wait for
+     * the operations in flight on the old encryptor to finish. Zero
+     * means waiting without time limit. Default is 
+     * {@link #DEFAULT_DRAIN_TIMEOUT_MILLIS}.
+     * </p>
+     * 
+     * @param drainTimeoutMillis the drain timeout.
+     */
+    public synchronized void setDrainTimeoutMillis(final long drainTimeoutMillis) {
+        CommonUtils.validateIsTrue(drainTimeoutMillis >= 0, 
+                "Drain timeout cannot be negative");
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+    
+    
+    private synchronized long getDrainTimeoutMillis() {
+        return this.drainTimeoutMillis;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets whether replaced encryptors should be destroyed once drained.
+     * Default is <tt>false</tt>, as the replaced encryptor belongs to the
+     * caller: this should only be enabled if replaced encryptors are not 
+     * used anywhere else (for example, they are not shared nor wrapped by
+     * the new encryptor, as in a {@link MultiKeyStringEncryptor}). An encryptor
+     * swapped for itself is never destroyed.
+     * </p>
+     * 
+     * @param destroyReplacedEncryptors whether to destroy replaced encryptors.
+     */
+    public synchronized void setDestroyReplacedEncryptors(final boolean destroyReplacedEncryptors) {
+        this.destroyReplacedEncryptors = destroyReplacedEncryptors;
+    }
+    
+    
+    private synchronized boolean getDestroyReplacedEncryptors() {
+        return this.destroyReplacedEncryptors;
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Warms the specified encryptor and replaces the current one with it,
+     * waiting for operations in flight on the old encryptor to finish.
+     * </p>
+     * 
+     * @param encryptor the new encryptor.
+     * @return true if the old encryptor was completely drained, false if
+     *         the drain timeout expired first.
+     * @throws EncryptionInitializationException if the new encryptor 
+     *         cannot be initialized (the old one will remain in use).
+     */
+    public boolean swap(final StringEncryptor encryptor) {
+        CommonUtils.validateNotNull(encryptor, "Encryptor cannot be set null");
+        return this.swapper.swap(encryptor, getDrainTimeoutMillis(), 
+                getDestroyReplacedEncryptors());
+    }
+    
+    
+    /**
+     * <p>
+     * Performs the same operations as {@link #swap(StringEncryptor)}, but
+     * in a background thread. Any failure can be obtained with
+     * {@link #getLastSwapFailure()} once the swap is finished.
+     * </p>
+     * 
+     * @param encryptor the new encryptor.
+     * @throws EncryptionInitializationException if another background swap
+     *         is already in progress.
+     */
+    public void swapInBackground(final StringEncryptor encryptor) {
+        CommonUtils.validateNotNull(encryptor, "Encryptor cannot be set null");
+        this.swapper.swapInBackground(encryptor, getDrainTimeoutMillis(), 
+                getDestroyReplacedEncryptors());
+    }
+    
+    
+    /**
+     * <p>
+     * Waits for the last background swap (if any) to finish.
+     * </p>
+     * 
+     * @param timeoutMillis the maximum time to wait (zero for no limit).
+     * @return true if no background swap is in progress anymore.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean waitForSwap(final long timeoutMillis) throws InterruptedException {
+        return this.swapper.waitForSwap(timeoutMillis);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether a background swap is in progress.
+     * </p>
+     * 
+     * @return true if a background swap is in progress.
+     */
+    public boolean isSwapping() {
+        return this.swapper.isSwapping();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the exception which made the last background swap fail, or
+     * null if it was successful.
+     * </p>
+     * 
+     * @return the last background swap failure, or null.
+     */
+    public Exception getLastSwapFailure() {
+        return this.swapper.getLastSwapFailure();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of swaps performed so far.
+     * </p>
+     * 
+     * @return the number of swaps.
+     */
+    public long getSwapCount() {
+        return this.swapper.getSwapCount();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the encryptor currently in use.
+     * </p>
+     * 
+     * @return the current encryptor.
+     */
+    public StringEncryptor getCurrentEncryptor() {
+        return (StringEncryptor) this.swapper.getCurrent();
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Encrypts a message with the current encryptor.
+     * </p>
+     * 
+     * @param message the message to be encrypted.
+     * @return the result of encryption.
+     */
+    public String encrypt(final String message) {
+        final EncryptorSwapper.Generation generation = this.swapper.acquire();
+        try {
+            return ((StringEncryptor) generation.encryptor).encrypt(message);
+        } finally {
+            this.swapper.release(generation);
+        }
+    }
+
+    
+    /**
+     * <p>
+     * Decrypts a message with the current encryptor.
+     * </p>
+     * 
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption.
+     */
+    public String decrypt(final String encryptedMessage) {
+        final EncryptorSwapper.Generation generation = this.swapper.acquire();
+        try {
+            return ((StringEncryptor) generation.encryptor).decrypt(encryptedMessage);
+        } finally {
+            this.swapper.release(generation);
+        }
+    }
+
+    
+    /**
+     * <p>
+     * Decrypts a message with the current encryptor, returning a result 
+     * object instead of raising an exception if decryption is not possible.
+     * </p>
+     * 
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption.
+     */
+    public StringDecryptionResult tryDecrypt(final String encryptedMessage) {
+        final EncryptorSwapper.Generation generation = this.swapper.acquire();
+        try {
+            final Object encryptor = generation.encryptor;
+            if (encryptor instanceof StandardPBEStringEncryptor) {
+                return ((StandardPBEStringEncryptor) encryptor).tryDecrypt(encryptedMessage);
+            }
+            if (encryptor instanceof PooledPBEStringEncryptor) {
+                return ((PooledPBEStringEncryptor) encryptor).tryDecrypt(encryptedMessage);
+            }
+            if (encryptor instanceof MultiKeyStringEncryptor) {
+                return ((MultiKeyStringEncryptor) encryptor).tryDecrypt(encryptedMessage);
+            }
+            try {
+                return StringDecryptionResult.successful(
+                        ((StringEncryptor) encryptor).decrypt(encryptedMessage));
+            } catch (final EncryptionOperationNotPossibleException e) {
+                return StringDecryptionResult.FAILED;
+            }
+        } finally {
+            this.swapper.release(generation);
+        }
+    }
+    
+}
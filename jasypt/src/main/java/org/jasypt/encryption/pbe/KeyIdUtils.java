@@ -0,0 +1,168 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.UnsupportedEncodingException;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+
+/**
+ * <p>
+ * Utils for creating and reading the key identifiers which can be
+ * optionally included in encryption results (see <tt>setKeyId</tt> at the
+ * PBE encryptors), so that the encryptor (or key) that has to be used 
+ * for decrypting them can be known without having to try.
+ * </p>
+ * <p>
+ * Key identifiers are included:
+ * </p>
+ * <ul>
+ *   <li>In byte encryption results, as a header containing two
+ *       <i>magic</i> bytes, a byte with the length of the identifier and
+ *       the identifier itself (UTF-8).</li>
+ *   <li>In String encryption results, as a <tt>[keyId]</tt> prefix
+ *       (square brackets are neither BASE64 nor hexadecimal characters,
+ *       so there is no possible ambiguity).</li>
+ * </ul>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+final class KeyIdUtils {
+
+    private static final byte[] HEADER_MAGIC = new byte[] { (byte)0xEA, (byte)0x1D };
+    
+    private static final int MAX_KEY_ID_SIZE_BYTES = 255;
+    
+    private static final String KEY_ID_CHARSET = "UTF-8";
+    
+    private static final char STRING_PREFIX_START = '[';
+    private static final char STRING_PREFIX_END = ']';
+    
+    
+    
+    static void validateKeyId(final String keyId) {
+        CommonUtils.validateNotEmpty(keyId, "Key identifier cannot be set empty");
+        CommonUtils.validateIsTrue(keyId.indexOf(STRING_PREFIX_END) == -1, 
+                "Key identifier cannot contain '" + STRING_PREFIX_END + "'");
+        CommonUtils.validateIsTrue(getKeyIdBytes(keyId).length <= MAX_KEY_ID_SIZE_BYTES, 
+                "Key identifier cannot be longer than " + MAX_KEY_ID_SIZE_BYTES + " bytes");
+    }
+    
+    
+    
+    static byte[] createHeader(final String keyId) {
+        final byte[] keyIdBytes = getKeyIdBytes(keyId);
+        final byte[] header = new byte[HEADER_MAGIC.length + 1 + keyIdBytes.length];
+        System.arraycopy(HEADER_MAGIC, 0, header, 0, HEADER_MAGIC.length);
+        header[HEADER_MAGIC.length] = (byte) keyIdBytes.length;
+        System.arraycopy(keyIdBytes, 0, header, HEADER_MAGIC.length + 1, keyIdBytes.length);
+        return header;
+    }
+    
+    
+    static boolean hasHeader(final byte[] encryptedMessage, final byte[] header) {
+        if (encryptedMessage.length <= header.length) {
+            return false;
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (encryptedMessage[i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    static byte[] removeHeader(final byte[] encryptedMessage, final byte[] header) {
+        final byte[] result = new byte[encryptedMessage.length - header.length];
+        System.arraycopy(encryptedMessage, header.length, result, 0, result.length);
+        return result;
+    }
+
+    
+    /*
+     * Returns the key identifier in the header of the encrypted message, or 
+     * null if it has no (well-formed) header.
+     */
+    static String readKeyId(final byte[] encryptedMessage) {
+        if (encryptedMessage == null || encryptedMessage.length <= HEADER_MAGIC.length + 1) {
+            return null;
+        }
+        for (int i = 0; i < HEADER_MAGIC.length; i++) {
+            if (encryptedMessage[i] != HEADER_MAGIC[i]) {
+                return null;
+            }
+        }
+        final int keyIdSize = (encryptedMessage[HEADER_MAGIC.length] & 0xff);
+        if (keyIdSize == 0 || 
+                encryptedMessage.length <= (HEADER_MAGIC.length + 1 + keyIdSize)) {
+            return null;
+        }
+        try {
+            return new String(encryptedMessage, HEADER_MAGIC.length + 1, keyIdSize, KEY_ID_CHARSET);
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+    
+    
+    
+    static String createPrefix(final String keyId) {
+        return STRING_PREFIX_START + keyId + STRING_PREFIX_END;
+    }
+
+    
+    /*
+     * Returns the key identifier in the prefix of the encrypted message, or 
+     * null if it has no prefix.
+     */
+    static String readKeyId(final String encryptedMessage) {
+        if (encryptedMessage == null || encryptedMessage.length() == 0 ||
+                encryptedMessage.charAt(0) != STRING_PREFIX_START) {
+            return null;
+        }
+        final int end = encryptedMessage.indexOf(STRING_PREFIX_END);
+        if (end <= 1) {
+            return null;
+        }
+        return encryptedMessage.substring(1, end);
+    }
+    
+    
+    
+    private static byte[] getKeyIdBytes(final String keyId) {
+        try {
+            return keyId.getBytes(KEY_ID_CHARSET);
+        } catch (final UnsupportedEncodingException e) {
+            throw new EncryptionInitializationException(e);
+        }
+    }
+    
+    
+    private KeyIdUtils() {
+        super();
+    }
+    
+}
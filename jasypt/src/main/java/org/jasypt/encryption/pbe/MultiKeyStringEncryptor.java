@@ -0,0 +1,308 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringDecryptionResult;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * String encryptor which holds several other encryptors, each one of them
+ * registered under a different <i>key identifier</i>, in order to 
+ * support key (password) rotation.
+ * </p>
+ * <p>
+ * Every encryption operation is performed with the encryptor registered 
+ * for the <i>current</i> key identifier (see 
+ * {@link #setCurrentKeyId(String)}), and the identifier is included in the
+ * encryption result as a <tt>[keyId]</tt> prefix, exactly as 
+ * {@link StandardPBEStringEncryptor#setKeyId(String)} does. When decrypting,
+ * the identifier is read from the encrypted message and the message is 
+ * routed directly to the encryptor registered for it, so that only one 
+ * decryption attempt is needed, no matter how many keys are registered.
+ * </p>
+ * <p>
+ * Encrypted messages containing no key identifier (like those created
+ * before key identifiers were in use) are decrypted by trying each 
+ * registered encryptor in turn, starting by the one for the current key.
+ * Note that, depending on the algorithm, decrypting with a wrong key
+ * might (rarely) succeed and return a wrong result, so it is 
+ * recommended to re-encrypt these messages as soon as possible.
+ * </p>
+ * <p>
+ * Registered encryptors should <b>not</b> have a key identifier set
+ * themselves, as this class is in charge of adding and removing it.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class MultiKeyStringEncryptor implements StringEncryptor {
+
+    // Map<String,StringEncryptor>, plus the key identifiers in order of
+    // registration (for decrypting messages with no key identifier)
+    private final Map encryptors = new HashMap();
+    private final List keyIds = new ArrayList();
+    
+    private String currentKeyId = null;
+    private String currentKeyIdTag = null;
+    
+
+    
+    /**
+     * <p>
+     * Creates a new instance of <tt>MultiKeyStringEncryptor</tt>. At least
+     * one encryptor will have to be registered, and the current key 
+     * identifier set, before encrypting.
+     * </p>
+     */
+    public MultiKeyStringEncryptor() {
+        super();
+    }
+    
+    
+    /**
+     * <p>
+     * Registers an encryptor for the specified key identifier (replacing
+     * any encryptor previously registered for it).
+     * </p>
+     * 
+     * @param keyId the key identifier.
+     * @param encryptor the encryptor.
+     */
+    public synchronized void addEncryptor(final String keyId, final StringEncryptor encryptor) {
+        KeyIdUtils.validateKeyId(keyId);
+        CommonUtils.validateNotNull(encryptor, "Encryptor cannot be set null");
+        if (this.encryptors.put(keyId, encryptor) == null) {
+            this.keyIds.add(keyId);
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Unregisters the encryptor for the specified key identifier, once
+     * no more messages encrypted with it exist. The current key cannot
+     * be removed.
+     * </p>
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void removeEncryptor(final String keyId) {
+        CommonUtils.validateIsTrue(!keyId.equals(this.currentKeyId), 
+                "Current key cannot be removed");
+        this.encryptors.remove(keyId);
+        this.keyIds.remove(keyId);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the key identifier of the encryptor to be used for all encryption
+     * operations from now on. An encryptor must have already been
+     * registered for it.
+     * </p>
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void setCurrentKeyId(final String keyId) {
+        CommonUtils.validateIsTrue(this.encryptors.containsKey(keyId), 
+                "No encryptor has been registered for key identifier \"" + keyId + "\"");
+        this.currentKeyId = keyId;
+        this.currentKeyIdTag = KeyIdUtils.createPrefix(keyId);
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Encrypts a message with the encryptor registered for the current key
+     * identifier, and adds the identifier to the result.
+     * </p>
+     * 
+     * @param message the message to be encrypted.
+     * @return the result of encryption.
+     * @throws EncryptionInitializationException if no current key identifier
+     *         has been set.
+     */
+    public String encrypt(final String message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        final StringEncryptor encryptor;
+        final String tag;
+        synchronized (this) {
+            if (this.currentKeyId == null) {
+                throw new EncryptionInitializationException(
+                        "No current key identifier has been set");
+            }
+            encryptor = (StringEncryptor) this.encryptors.get(this.currentKeyId);
+            tag = this.currentKeyIdTag;
+        }
+        
+        return tag + encryptor.encrypt(message);
+        
+    }
+
+    
+    /**
+     * <p>
+     * Decrypts a message, routing it to the encryptor registered for the
+     * key identifier it contains (or trying every registered encryptor if
+     * it contains none).
+     * </p>
+     * 
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption.
+     * @throws EncryptionOperationNotPossibleException if the message cannot
+     *         be decrypted.
+     */
+    public String decrypt(final String encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        final String message = decryptOrNull(encryptedMessage);
+        if (message == null) {
+            throw EncryptionOperationNotPossibleException.createWithoutStackTrace();
+        }
+        return message;
+        
+    }
+
+    
+    /**
+     * <p>
+     * Decrypts a message exactly as {@link #decrypt(String)} does, but 
+     * returning a result object instead of raising an exception if 
+     * decryption is not possible.
+     * </p>
+     * 
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption.
+     */
+    public StringDecryptionResult tryDecrypt(final String encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return StringDecryptionResult.successful(null);
+        }
+        
+        final String message = decryptOrNull(encryptedMessage);
+        if (message == null) {
+            return StringDecryptionResult.FAILED;
+        }
+        return StringDecryptionResult.successful(message);
+        
+    }
+    
+    
+    
+    private String decryptOrNull(final String encryptedMessage) {
+        
+        final String keyId = KeyIdUtils.readKeyId(encryptedMessage);
+        
+        final StringEncryptor routedEncryptor;
+        final StringEncryptor[] candidates;
+        synchronized (this) {
+            routedEncryptor = 
+                (keyId == null? null : (StringEncryptor) this.encryptors.get(keyId));
+            candidates = getCandidates();
+        }
+        
+        if (routedEncryptor != null) {
+            return decryptOrNull(routedEncryptor, encryptedMessage.substring(KeyIdUtils.createPrefix(keyId).length()));
+        }
+        if (keyId != null && routedEncryptor == null) {
+            // Prefixed, but with an unknown key identifier (a prefix can
+            // never be part of a message with no identifier)
+            return null;
+        }
+        
+        // No key identifier: try every encryptor, current one first
+        for (int i = 0; i < candidates.length; i++) {
+            final String message = decryptOrNull(candidates[i], encryptedMessage);
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+        
+    }
+    
+    
+    // Must be called while holding the lock on this
+    private StringEncryptor[] getCandidates() {
+        final StringEncryptor[] candidates = new StringEncryptor[this.keyIds.size()];
+        int pos = 0;
+        if (this.currentKeyId != null) {
+            candidates[pos++] = (StringEncryptor) this.encryptors.get(this.currentKeyId);
+        }
+        for (int i = 0, n = this.keyIds.size(); i < n; i++) {
+            final Object candidateKeyId = this.keyIds.get(i);
+            if (!candidateKeyId.equals(this.currentKeyId)) {
+                candidates[pos++] = (StringEncryptor) this.encryptors.get(candidateKeyId);
+            }
+        }
+        return candidates;
+    }
+    
+    
+    /*
+     * Standard and pooled PBE encryptors can be asked to decrypt without
+     * raising exceptions on failure.
+     */
+    private static String decryptOrNull(final StringEncryptor encryptor, final String encryptedMessage) {
+        
+        if (encryptor instanceof StandardPBEStringEncryptor) {
+            final StringDecryptionResult result = 
+                ((StandardPBEStringEncryptor) encryptor).tryDecrypt(encryptedMessage);
+            return (result.isSuccessful()? result.getDecryptedMessage() : null);
+        }
+        if (encryptor instanceof PooledPBEStringEncryptor) {
+            final StringDecryptionResult result = 
+                ((PooledPBEStringEncryptor) encryptor).tryDecrypt(encryptedMessage);
+            return (result.isSuccessful()? result.getDecryptedMessage() : null);
+        }
+        try {
+            return encryptor.decrypt(encryptedMessage);
+        } catch (final EncryptionOperationNotPossibleException e) {
+            return null;
+        }
+        
+    }
+    
+}
@@ -78,6 +78,10 @@ final class NumberUtils {
             if (expectedSize < 0 || expectedSize > maxSafeSizeInBytes()) {
                 throw new EncryptionOperationNotPossibleException();
             }
+            // BigInteger can only have removed bytes, never added them
+            if (processedByteArray.length > expectedSize) {
+                throw new EncryptionOperationNotPossibleException();
+            }
 
             // If expected and real sizes do not match, we will need to pad
             // (this happens because BigInteger removes 0x0's and -0x1's in
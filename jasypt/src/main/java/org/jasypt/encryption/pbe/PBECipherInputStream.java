@@ -0,0 +1,141 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * Input stream which encrypts or decrypts (depending on the mode its
+ * <tt>Cipher</tt> was initialized with) the contents of another stream 
+ * while they are read, optionally preceded by a fixed prefix (key 
+ * identifier header, salt) which is returned as is.
+ * </p>
+ * <p>
+ * Unlike <tt>javax.crypto.CipherInputStream</tt>, this stream will not
+ * silently ignore padding errors at the end of the message: an 
+ * <tt>EncryptionOperationNotPossibleException</tt> will be thrown instead.
+ * </p>
+ * <p>
+ * This class is <i>not thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+final class PBECipherInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final InputStream source;
+    private final Cipher cipher;
+    private final byte[] inputBuffer = new byte[BUFFER_SIZE];
+    
+    private byte[] outputBuffer;
+    private int outputPosition = 0;
+    private boolean finished = false;
+    
+    
+    PBECipherInputStream(final InputStream source, final byte[] prefix, final Cipher cipher) {
+        super();
+        this.source = source;
+        this.cipher = cipher;
+        this.outputBuffer = (prefix == null? new byte[0] : prefix);
+    }
+    
+    
+    
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return this.outputBuffer[this.outputPosition++] & 0xFF;
+    }
+
+    
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int count = Math.min(len, this.outputBuffer.length - this.outputPosition);
+        System.arraycopy(this.outputBuffer, this.outputPosition, b, off, count);
+        this.outputPosition += count;
+        return count;
+    }
+
+    
+    public int available() throws IOException {
+        return this.outputBuffer.length - this.outputPosition;
+    }
+
+    
+    public void close() throws IOException {
+        this.source.close();
+    }
+    
+    
+    
+    /*
+     * Makes sure there is output available, processing more input if 
+     * needed. Returns false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        
+        while (this.outputPosition >= this.outputBuffer.length) {
+            
+            if (this.finished) {
+                return false;
+            }
+            
+            final int read = this.source.read(this.inputBuffer);
+            byte[] output = null;
+            try {
+                if (read < 0) {
+                    output = this.cipher.doFinal();
+                    this.finished = true;
+                } else {
+                    output = this.cipher.update(this.inputBuffer, 0, read);
+                }
+            } catch (final GeneralSecurityException e) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+            
+            this.outputBuffer = (output == null? new byte[0] : output);
+            this.outputPosition = 0;
+            
+        }
+        
+        return true;
+        
+    }
+    
+}
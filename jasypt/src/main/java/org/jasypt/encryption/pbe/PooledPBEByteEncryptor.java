@@ -19,11 +19,18 @@
  */
 package org.jasypt.encryption.pbe;
 
+import java.io.InputStream;
 import java.security.Provider;
 
+import javax.security.auth.Destroyable;
+
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
+import org.jasypt.encryption.ByteDecryptionResult;
+import org.jasypt.encryption.ByteStreamEncryptor;
 import org.jasypt.encryption.pbe.config.PBEConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
 import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.salt.SaltGenerator;
 
@@ -50,7 +57,8 @@ import org.jasypt.salt.SaltGenerator;
  * @author Daniel Fern&aacute;ndez
  *
  */
-public final class PooledPBEByteEncryptor implements PBEByteCleanablePasswordEncryptor {
+public final class PooledPBEByteEncryptor 
+        implements PBEByteCleanablePasswordEncryptor, ByteStreamEncryptor, Destroyable {
 
     
     private final StandardPBEByteEncryptor firstEncryptor;
@@ -70,6 +78,7 @@ public final class PooledPBEByteEncryptor implements PBEByteCleanablePasswordEnc
      * be allowed.
      */
     private boolean initialized = false;
+    private boolean destroyed = false;
 
     
     
@@ -270,6 +279,58 @@ public final class PooledPBEByteEncryptor implements PBEByteCleanablePasswordEnc
     }
 
     
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the encryption algorithm when the 
+     * encryptor is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardPBEByteEncryptor#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public synchronized void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.firstEncryptor.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.firstEncryptor.getProviderSelection();
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Sets a key identifier to be included in every encryption result
+     * (see {@link StandardPBEByteEncryptor#setKeyId(String)}).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void setKeyId(final String keyId) {
+        this.firstEncryptor.setKeyId(keyId);
+    }
+
+    
     
     /**
      * <p>
@@ -354,6 +415,11 @@ public final class PooledPBEByteEncryptor implements PBEByteCleanablePasswordEnc
         // Double-check to avoid synchronization issues
         if (!this.initialized) {
 
+            if (this.destroyed) {
+                throw new EncryptionInitializationException(
+                        "Encryptor has been destroyed");
+            }
+
             if (this.config != null) {
                 
                 final Integer configPoolSize = this.config.getPoolSize();
@@ -470,7 +536,154 @@ public final class PooledPBEByteEncryptor implements PBEByteCleanablePasswordEnc
         
         return this.pool[poolPosition].decrypt(encryptedMessage);
         
-    }    
+    }
     
-}
+    
+    /**
+     * <p>
+     * Returns a stream which encrypts a message while it is read (see
+     * {@link StandardPBEByteEncryptor#encryptStream(InputStream)}).
+     * </p>
+     * 
+     * @param message the stream of the message to be encrypted.
+     * @return the stream of the result of encryption, or null if the 
+     *         message stream was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public InputStream encryptStream(final InputStream message) {
+        return nextEncryptor().encryptStream(message);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a stream which decrypts a message while it is read (see
+     * {@link StandardPBEByteEncryptor#decryptStream(InputStream)}).
+     * </p>
+     * 
+     * @param encryptedMessage the stream of the message to be decrypted.
+     * @return the stream of the result of decryption, or null if the 
+     *         encrypted message stream was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public InputStream decryptStream(final InputStream encryptedMessage) {
+        return nextEncryptor().decryptStream(encryptedMessage);
+    }
+    
+    
+    /*
+     * Returns every encryptor in the pool (initializing this one if needed),
+     * so that they can be warmed one by one before receiving operations.
+     */
+    StandardPBEByteEncryptor[] getPoolEncryptors() {
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        final StandardPBEByteEncryptor[] encryptors = new StandardPBEByteEncryptor[this.pool.length];
+        System.arraycopy(this.pool, 0, encryptors, 0, this.pool.length);
+        return encryptors;
+        
+    }
+    
+    
+    private StandardPBEByteEncryptor nextEncryptor() {
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition];
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message, exactly as {@link #decrypt(byte[])} does, but 
+     * without raising any exceptions if the decryption operation fails
+     * because of the encrypted message not being valid (or having been
+     * encrypted with a different password). A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #decrypt(byte[])} in scenarios in which failures are frequent.
+     * </p>
+     * 
+     * @param encryptedMessage the byte array message to be decrypted
+     * @return the result of decryption, which will only contain the 
+     *         decrypted message if decryption was successful.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public ByteDecryptionResult tryDecrypt(final byte[] encryptedMessage) {
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition].tryDecrypt(encryptedMessage);
+        
+    }
 
+
+    /**
+     * <p>
+     * Destroys the encryptor and all the encryptors in its pool, cleaning 
+     * their passwords and releasing their key material (see 
+     * {@link StandardPBEByteEncryptor#destroy()}). Once destroyed, the encryptor 
+     * cannot be used anymore.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public synchronized void destroy() {
+        if (this.destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        this.firstEncryptor.destroy();
+        if (this.pool != null) {
+            for (int i = 0; i < this.pool.length; i++) {
+                this.pool[i].destroy();
+            }
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the encryptor has been destroyed.
+     * </p>
+     * 
+     * @return true if the encryptor has been destroyed, false if not.
+     * @since 1.9.3
+     */
+    public synchronized boolean isDestroyed() {
+        return this.destroyed;
+    }
+    
+}
@@ -19,11 +19,19 @@
  */
 package org.jasypt.encryption.pbe;
 
+import java.io.Reader;
 import java.security.Provider;
 
+import javax.security.auth.Destroyable;
+
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
+import org.jasypt.encryption.CharacterStreamEncryptor;
+import org.jasypt.encryption.StringDecryptionResult;
 import org.jasypt.encryption.pbe.config.PBEConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.salt.SaltGenerator;
 
 
@@ -51,7 +59,8 @@ import org.jasypt.salt.SaltGenerator;
  * @author Daniel Fern&aacute;ndez
  *
  */
-public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswordEncryptor {
+public final class PooledPBEStringEncryptor 
+        implements PBEStringCleanablePasswordEncryptor, CharacterStreamEncryptor, Destroyable {
 
     
     private final StandardPBEStringEncryptor firstEncryptor;
@@ -71,6 +80,7 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
      * be allowed.
      */
     private boolean initialized = false;
+    private boolean destroyed = false;
     
     
     
@@ -271,6 +281,78 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
     }
     
     
+    /**
+     * <p>
+     * Sets the number of synthetic encryption/decryption operations to be performed on 
+     * throwaway data by each of the encryptors in the pool when it is 
+     * initialized. Default is 0 (no warm-up).
+     * </p>
+     * <p>
+     * See {@link StandardPBEStringEncryptor#setWarmUpIterations(int)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpIterations the number of warm-up operations (0 for
+     *        no warm-up).
+     */
+    public synchronized void setWarmUpIterations(final int warmUpIterations) {
+        this.firstEncryptor.setWarmUpIterations(warmUpIterations);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum time (in milliseconds) the warm-up of each of the
+     * encryptors in the pool can take. Default is 
+     * {@link StandardPBEStringEncryptor#DEFAULT_WARM_UP_TIME_LIMIT_MILLIS}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpTimeLimitMillis the warm-up time limit, in milliseconds.
+     */
+    public synchronized void setWarmUpTimeLimitMillis(final long warmUpTimeLimitMillis) {
+        this.firstEncryptor.setWarmUpTimeLimitMillis(warmUpTimeLimitMillis);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the encryption algorithm when the 
+     * encryptor is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardPBEByteEncryptor#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.firstEncryptor.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.firstEncryptor.getProviderSelection();
+    }
+    
+    
     /**
      * <p>
      * Sets the the form in which String output
@@ -292,6 +374,22 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
 
     
     
+    /**
+     * <p>
+     * Sets a key identifier to be included in every encryption result
+     * (see {@link StandardPBEStringEncryptor#setKeyId(String)}).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void setKeyId(final String keyId) {
+        this.firstEncryptor.setKeyId(keyId);
+    }
+
+    
+    
     /**
      * <p>
      * Sets the size of the pool of digesters to be created.
@@ -375,6 +473,11 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
         // Double-check to avoid synchronization issues
         if (!this.initialized) {
 
+            if (this.destroyed) {
+                throw new EncryptionInitializationException(
+                        "Encryptor has been destroyed");
+            }
+
             if (this.config != null) {
                 
                 final Integer configPoolSize = this.config.getPoolSize();
@@ -391,6 +494,13 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
             
             this.pool = this.firstEncryptor.cloneAndInitializeEncryptor(this.poolSize);
             
+            // Clones are lazily initialized unless they have to be warmed up
+            if (this.firstEncryptor.isWarmUpEnabled()) {
+                for (int i = 1; i < this.pool.length; i++) {
+                    this.pool[i].initialize();
+                }
+            }
+            
             this.initialized = true;
             
         }
@@ -498,6 +608,153 @@ public final class PooledPBEStringEncryptor implements PBEStringCleanablePasswor
         return this.pool[poolPosition].decrypt(encryptedMessage);
         
     }
+    
+    
+    /**
+     * <p>
+     * Returns a reader which encrypts a message while it is read (see
+     * {@link StandardPBEStringEncryptor#encryptCharacterStream(Reader)}).
+     * </p>
+     * 
+     * @param message the reader of the message to be encrypted.
+     * @return the reader of the result of encryption, or null if the 
+     *         message reader was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public Reader encryptCharacterStream(final Reader message) {
+        return nextEncryptor().encryptCharacterStream(message);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a reader which decrypts a message while it is read (see
+     * {@link StandardPBEStringEncryptor#decryptCharacterStream(Reader)}).
+     * </p>
+     * 
+     * @param encryptedMessage the reader of the message to be decrypted.
+     * @return the reader of the result of decryption, or null if the 
+     *         encrypted message reader was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public Reader decryptCharacterStream(final Reader encryptedMessage) {
+        return nextEncryptor().decryptCharacterStream(encryptedMessage);
+    }
+    
+    
+    /*
+     * Returns every encryptor in the pool (initializing this one if needed),
+     * so that they can be warmed one by one before receiving operations.
+     */
+    StandardPBEStringEncryptor[] getPoolEncryptors() {
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        final StandardPBEStringEncryptor[] encryptors = new StandardPBEStringEncryptor[this.pool.length];
+        System.arraycopy(this.pool, 0, encryptors, 0, this.pool.length);
+        return encryptors;
+        
+    }
+    
+    
+    private StandardPBEStringEncryptor nextEncryptor() {
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition];
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message, exactly as {@link #decrypt(String)} does, but 
+     * without raising any exceptions if the decryption operation fails
+     * because of the encrypted message not being valid (or having been
+     * encrypted with a different password). A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #decrypt(String)} in scenarios in which failures are frequent.
+     * </p>
+     * 
+     * @param encryptedMessage the String message to be decrypted
+     * @return the result of decryption, which will only contain the 
+     *         decrypted message if decryption was successful.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public StringDecryptionResult tryDecrypt(final String encryptedMessage) {
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        int poolPosition;
+        synchronized(this) {
+            poolPosition = this.roundRobin;
+            this.roundRobin = (this.roundRobin + 1) % this.poolSize;
+        }
+        
+        return this.pool[poolPosition].tryDecrypt(encryptedMessage);
+        
+    }
 
+
+    /**
+     * <p>
+     * Destroys the encryptor and all the encryptors in its pool, cleaning 
+     * their passwords and releasing their key material (see 
+     * {@link StandardPBEStringEncryptor#destroy()}). Once destroyed, the encryptor 
+     * cannot be used anymore.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public synchronized void destroy() {
+        if (this.destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        this.firstEncryptor.destroy();
+        if (this.pool != null) {
+            for (int i = 0; i < this.pool.length; i++) {
+                this.pool[i].destroy();
+            }
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the encryptor has been destroyed.
+     * </p>
+     * 
+     * @return true if the encryptor has been destroyed, false if not.
+     * @since 1.9.3
+     */
+    public synchronized boolean isDestroyed() {
+        return this.destroyed;
+    }
     
 }
@@ -0,0 +1,567 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.lang.ref.WeakReference;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.BigDecimalEncryptor;
+import org.jasypt.encryption.BigIntegerEncryptor;
+import org.jasypt.encryption.ByteEncryptor;
+import org.jasypt.encryption.ByteStreamEncryptor;
+import org.jasypt.encryption.CharacterStreamEncryptor;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.config.PBECleanablePasswordConfig;
+import org.jasypt.encryption.pbe.config.PBEConfig;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
+import org.jasypt.encryption.pbe.config.StringPBEConfig;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.salt.RandomSaltGenerator;
+import org.jasypt.salt.SaltGenerator;
+import org.jasypt.salt.ZeroSaltGenerator;
+
+
+/**
+ * <p>
+ * Process-wide factory of <i>shared</i> PBE encryptors: every component 
+ * asking for an encryptor with the same configuration (algorithm, 
+ * password, iterations, provider, salt generator, output type and pool 
+ * size) receives the same already initialized, thread-safe instance, 
+ * instead of creating and initializing its own.
+ * </p>
+ * <p>
+ * Encryptors are identified by a <i>fingerprint</i> of their 
+ * configuration: a SHA-256 digest of the configuration values (password 
+ * included) salted with a random value generated at startup. Neither the 
+ * password nor the configuration object are retained by this factory.
+ * As with any encryptor, the password of the configuration object will
+ * be cleaned after use if it is a {@link PBECleanablePasswordConfig}.
+ * </p>
+ * <p>
+ * Shared encryptors are only weakly referenced by the factory, so that 
+ * they can be garbage-collected once no component uses them anymore.
+ * </p>
+ * <p>
+ * Encryptors configured with a salt generator other than 
+ * {@link RandomSaltGenerator} or {@link ZeroSaltGenerator} (for example,
+ * a fixed salt generator) cannot be identified by configuration, so a
+ * new (not shared) encryptor is created for them.
+ * </p>
+ * <p>
+ * Shared encryptors are returned already initialized, and wrapped so that
+ * only their encryption and decryption operations are exposed: as they 
+ * are used by other components, they cannot be reconfigured nor destroyed
+ * by any of them.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class SharedPBEEncryptorFactory {
+
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    private static final int FINGERPRINT_SALT_SIZE_BYTES = 16;
+    
+    private static final String TYPE_STRING = "string";
+    private static final String TYPE_BYTE = "byte";
+    private static final String TYPE_BIG_INTEGER = "biginteger";
+    private static final String TYPE_BIG_DECIMAL = "bigdecimal";
+    
+    private static final SharedPBEEncryptorFactory instance = 
+        new SharedPBEEncryptorFactory();
+
+    
+    // Map<String,WeakReference> (fingerprint -> encryptor)
+    private final Map encryptors = new HashMap();
+    private final byte[] fingerprintSalt;
+    
+    
+    
+    /**
+     * <p>
+     * Returns the singleton instance of the factory.
+     * </p>
+     * 
+     * @return the factory.
+     */
+    public static SharedPBEEncryptorFactory getInstance() {
+        return instance;
+    }
+    
+    
+    private SharedPBEEncryptorFactory() {
+        super();
+        this.fingerprintSalt = new byte[FINGERPRINT_SALT_SIZE_BYTES];
+        new SecureRandom().nextBytes(this.fingerprintSalt);
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Returns the shared string encryptor for the specified configuration.
+     * If the configuration specifies a pool size greater than 1, the 
+     * encryptor will be backed by a {@link PooledPBEStringEncryptor}.
+     * </p>
+     * 
+     * @param config the configuration (a {@link StringPBEConfig} if a 
+     *               string output type has to be specified).
+     * @return the shared, initialized encryptor.
+     * @throws EncryptionInitializationException if the encryptor cannot
+     *         be initialized (for example, no password has been set).
+     */
+    public StringEncryptor getStringEncryptor(final PBEConfig config) {
+        return (StringEncryptor) getEncryptor(TYPE_STRING, config);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the shared byte encryptor for the specified configuration.
+     * If the configuration specifies a pool size greater than 1, the 
+     * encryptor will be backed by a {@link PooledPBEByteEncryptor}.
+     * </p>
+     * 
+     * @param config the configuration.
+     * @return the shared, initialized encryptor.
+     * @throws EncryptionInitializationException if the encryptor cannot
+     *         be initialized (for example, no password has been set).
+     */
+    public ByteEncryptor getByteEncryptor(final PBEConfig config) {
+        return (ByteEncryptor) getEncryptor(TYPE_BYTE, config);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the shared BigInteger encryptor for the specified 
+     * configuration. If the configuration specifies a pool size greater 
+     * than 1, the encryptor will be backed by a {@link PooledPBEBigIntegerEncryptor}.
+     * </p>
+     * 
+     * @param config the configuration.
+     * @return the shared, initialized encryptor.
+     * @throws EncryptionInitializationException if the encryptor cannot
+     *         be initialized (for example, no password has been set).
+     */
+    public BigIntegerEncryptor getBigIntegerEncryptor(final PBEConfig config) {
+        return (BigIntegerEncryptor) getEncryptor(TYPE_BIG_INTEGER, config);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the shared BigDecimal encryptor for the specified 
+     * configuration. If the configuration specifies a pool size greater 
+     * than 1, the encryptor will be backed by a {@link PooledPBEBigDecimalEncryptor}.
+     * </p>
+     * 
+     * @param config the configuration.
+     * @return the shared, initialized encryptor.
+     * @throws EncryptionInitializationException if the encryptor cannot
+     *         be initialized (for example, no password has been set).
+     */
+    public BigDecimalEncryptor getBigDecimalEncryptor(final PBEConfig config) {
+        return (BigDecimalEncryptor) getEncryptor(TYPE_BIG_DECIMAL, config);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of shared encryptors currently alive.
+     * </p>
+     * 
+     * @return the number of shared encryptors.
+     */
+    public synchronized int getSize() {
+        purge();
+        return this.encryptors.size();
+    }
+    
+    
+    
+    private Object getEncryptor(final String type, final PBEConfig config) {
+        
+        CommonUtils.validateNotNull(config, "Config cannot be null");
+        
+        // Configuration is resolved (and the password read) only once, as
+        // configuration objects might obtain their values from the 
+        // environment every time.
+        final SimpleStringPBEConfig resolvedConfig = resolve(config);
+        
+        try {
+            
+            if (!isShareable(resolvedConfig.getSaltGenerator())) {
+                return createEncryptor(type, resolvedConfig);
+            }
+            
+            final String fingerprint = computeFingerprint(type, resolvedConfig);
+            
+            // Encryptors are created while holding the lock, so that an
+            // encryptor is never initialized twice for the same configuration
+            synchronized (this) {
+                
+                final WeakReference reference = (WeakReference) this.encryptors.get(fingerprint);
+                final Object existing = (reference == null? null : reference.get());
+                if (existing != null) {
+                    return existing;
+                }
+                
+                purge();
+                final Object encryptor = createEncryptor(type, resolvedConfig);
+                this.encryptors.put(fingerprint, new WeakReference(encryptor));
+                return encryptor;
+                
+            }
+            
+        } finally {
+            resolvedConfig.cleanPassword();
+        }
+        
+    }
+    
+    
+    
+    private static SimpleStringPBEConfig resolve(final PBEConfig config) {
+        
+        final SimpleStringPBEConfig resolvedConfig = new SimpleStringPBEConfig();
+        
+        char[] password = null;
+        if (config instanceof PBECleanablePasswordConfig) {
+            password = ((PBECleanablePasswordConfig) config).getPasswordCharArray();
+            ((PBECleanablePasswordConfig) config).cleanPassword();
+        } else {
+            final String configPassword = config.getPassword();
+            password = (configPassword == null? null : configPassword.toCharArray());
+        }
+        if (password == null || password.length == 0) {
+            throw new EncryptionInitializationException(
+                    "Password not set for Password Based Encryptor");
+        }
+        resolvedConfig.setPasswordCharArray(password);
+        cleanPassword(password);
+        
+        final String algorithm = config.getAlgorithm();
+        resolvedConfig.setAlgorithm(
+                algorithm == null? StandardPBEByteEncryptor.DEFAULT_ALGORITHM : algorithm);
+        final Integer iterations = config.getKeyObtentionIterations();
+        resolvedConfig.setKeyObtentionIterations(
+                iterations == null? new Integer(StandardPBEByteEncryptor.DEFAULT_KEY_OBTENTION_ITERATIONS) : iterations);
+        resolvedConfig.setSaltGenerator(config.getSaltGenerator());
+        resolvedConfig.setProviderName(config.getProviderName());
+        resolvedConfig.setProvider(config.getProvider());
+        final Integer poolSize = config.getPoolSize();
+        resolvedConfig.setPoolSize(
+                (poolSize == null || poolSize.intValue() < 1)? new Integer(1) : poolSize);
+        final String stringOutputType = 
+            (config instanceof StringPBEConfig? ((StringPBEConfig) config).getStringOutputType() : null);
+        resolvedConfig.setStringOutputType(
+                stringOutputType == null? 
+                        StandardPBEStringEncryptor.DEFAULT_STRING_OUTPUT_TYPE : 
+                        CommonUtils.getStandardStringOutputType(stringOutputType));
+        
+        return resolvedConfig;
+        
+    }
+    
+    
+    private static boolean isShareable(final SaltGenerator saltGenerator) {
+        return (saltGenerator == null ||
+                saltGenerator.getClass() == RandomSaltGenerator.class ||
+                saltGenerator.getClass() == ZeroSaltGenerator.class);
+    }
+    
+    
+    
+    private String computeFingerprint(final String type, final SimpleStringPBEConfig config) {
+        
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new EncryptionInitializationException(e);
+        }
+        
+        digest.update(this.fingerprintSalt);
+        update(digest, type);
+        update(digest, config.getAlgorithm());
+        update(digest, config.getKeyObtentionIterations().toString());
+        update(digest, config.getProviderName());
+        final Provider provider = config.getProvider();
+        update(digest, provider == null? null : 
+            provider.getClass().getName() + "/" + provider.getName() + "/" + provider.getVersion());
+        final SaltGenerator saltGenerator = config.getSaltGenerator();
+        update(digest, saltGenerator == null? null : saltGenerator.getClass().getName());
+        update(digest, config.getPoolSize().toString());
+        update(digest, config.getStringOutputType());
+        
+        // Password goes last, digested directly from the char array
+        final char[] password = config.getPasswordCharArray();
+        final byte[] passwordBytes = new byte[password.length * 2];
+        for (int i = 0; i < password.length; i++) {
+            passwordBytes[2 * i] = (byte) (password[i] >> 8);
+            passwordBytes[2 * i + 1] = (byte) password[i];
+        }
+        digest.update(passwordBytes);
+        cleanPassword(password);
+        for (int i = 0; i < passwordBytes.length; i++) {
+            passwordBytes[i] = 0;
+        }
+        
+        return CommonUtils.toHexadecimal(digest.digest());
+        
+    }
+    
+    
+    // Values are length-prefixed so that different value sequences can
+    // never produce the same digested bytes
+    private static void update(final MessageDigest digest, final String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        digest.update((byte) 1);
+        final int length = value.length();
+        digest.update((byte) (length >> 8));
+        digest.update((byte) length);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            digest.update((byte) (c >> 8));
+            digest.update((byte) c);
+        }
+    }
+    
+    
+    
+    private static Object createEncryptor(final String type, final SimpleStringPBEConfig config) {
+        
+        // A copy is used, as encryptors clean the password of the 
+        // configuration objects they are set
+        final SimpleStringPBEConfig encryptorConfig = new SimpleStringPBEConfig();
+        final char[] password = config.getPasswordCharArray();
+        encryptorConfig.setPasswordCharArray(password);
+        cleanPassword(password);
+        encryptorConfig.setAlgorithm(config.getAlgorithm());
+        encryptorConfig.setKeyObtentionIterations(config.getKeyObtentionIterations());
+        encryptorConfig.setSaltGenerator(config.getSaltGenerator());
+        encryptorConfig.setProviderName(config.getProviderName());
+        encryptorConfig.setProvider(config.getProvider());
+        encryptorConfig.setPoolSize(config.getPoolSize());
+        encryptorConfig.setStringOutputType(config.getStringOutputType());
+        
+        final boolean pooled = (config.getPoolSize().intValue() > 1);
+        
+        if (TYPE_STRING.equals(type)) {
+            if (pooled) {
+                final PooledPBEStringEncryptor encryptor = new PooledPBEStringEncryptor();
+                encryptor.setConfig(encryptorConfig);
+                encryptor.initialize();
+                return new SharedStringEncryptor(encryptor, encryptor);
+            }
+            final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+            encryptor.setConfig(encryptorConfig);
+            encryptor.initialize();
+            return new SharedStringEncryptor(encryptor, encryptor);
+        }
+        if (TYPE_BYTE.equals(type)) {
+            if (pooled) {
+                final PooledPBEByteEncryptor encryptor = new PooledPBEByteEncryptor();
+                encryptor.setConfig(encryptorConfig);
+                encryptor.initialize();
+                return new SharedByteEncryptor(encryptor, encryptor);
+            }
+            final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+            encryptor.setConfig(encryptorConfig);
+            encryptor.initialize();
+            return new SharedByteEncryptor(encryptor, encryptor);
+        }
+        if (TYPE_BIG_INTEGER.equals(type)) {
+            if (pooled) {
+                final PooledPBEBigIntegerEncryptor encryptor = new PooledPBEBigIntegerEncryptor();
+                encryptor.setConfig(encryptorConfig);
+                encryptor.initialize();
+                return new SharedBigIntegerEncryptor(encryptor);
+            }
+            final StandardPBEBigIntegerEncryptor encryptor = new StandardPBEBigIntegerEncryptor();
+            encryptor.setConfig(encryptorConfig);
+            encryptor.initialize();
+            return new SharedBigIntegerEncryptor(encryptor);
+        }
+        if (pooled) {
+            final PooledPBEBigDecimalEncryptor encryptor = new PooledPBEBigDecimalEncryptor();
+            encryptor.setConfig(encryptorConfig);
+            encryptor.initialize();
+            return new SharedBigDecimalEncryptor(encryptor);
+        }
+        final StandardPBEBigDecimalEncryptor encryptor = new StandardPBEBigDecimalEncryptor();
+        encryptor.setConfig(encryptorConfig);
+        encryptor.initialize();
+        return new SharedBigDecimalEncryptor(encryptor);
+        
+    }
+    
+    
+    
+    // Must be called while holding the lock on this
+    private void purge() {
+        final Iterator referencesIter = this.encryptors.values().iterator();
+        while (referencesIter.hasNext()) {
+            if (((WeakReference) referencesIter.next()).get() == null) {
+                referencesIter.remove();
+            }
+        }
+    }
+    
+    
+    private static void cleanPassword(final char[] password) {
+        for (int i = 0; i < password.length; i++) {
+            password[i] = (char) 0;
+        }
+    }
+    
+    
+    
+    /*
+     * Wrappers handed out instead of the shared encryptors, exposing only
+     * their (thread-safe) operations: no setters and no destroy(). They are
+     * also what the factory references weakly, so a shared encryptor lives 
+     * as long as any component holds its wrapper.
+     */
+    
+    private static final class SharedStringEncryptor 
+            implements StringEncryptor, CharacterStreamEncryptor {
+        
+        private final StringEncryptor encryptor;
+        private final CharacterStreamEncryptor streamEncryptor;
+        
+        SharedStringEncryptor(final StringEncryptor encryptor, 
+                final CharacterStreamEncryptor streamEncryptor) {
+            super();
+            this.encryptor = encryptor;
+            this.streamEncryptor = streamEncryptor;
+        }
+        
+        public String encrypt(final String message) {
+            return this.encryptor.encrypt(message);
+        }
+        
+        public String decrypt(final String encryptedMessage) {
+            return this.encryptor.decrypt(encryptedMessage);
+        }
+        
+        public Reader encryptCharacterStream(final Reader message) {
+            return this.streamEncryptor.encryptCharacterStream(message);
+        }
+        
+        public Reader decryptCharacterStream(final Reader encryptedMessage) {
+            return this.streamEncryptor.decryptCharacterStream(encryptedMessage);
+        }
+        
+    }
+    
+    
+    private static final class SharedByteEncryptor 
+            implements ByteEncryptor, ByteStreamEncryptor {
+        
+        private final ByteEncryptor encryptor;
+        private final ByteStreamEncryptor streamEncryptor;
+        
+        SharedByteEncryptor(final ByteEncryptor encryptor, 
+                final ByteStreamEncryptor streamEncryptor) {
+            super();
+            this.encryptor = encryptor;
+            this.streamEncryptor = streamEncryptor;
+        }
+        
+        public byte[] encrypt(final byte[] message) {
+            return this.encryptor.encrypt(message);
+        }
+        
+        public byte[] decrypt(final byte[] encryptedMessage) {
+            return this.encryptor.decrypt(encryptedMessage);
+        }
+        
+        public InputStream encryptStream(final InputStream message) {
+            return this.streamEncryptor.encryptStream(message);
+        }
+        
+        public InputStream decryptStream(final InputStream encryptedMessage) {
+            return this.streamEncryptor.decryptStream(encryptedMessage);
+        }
+        
+    }
+    
+    
+    private static final class SharedBigIntegerEncryptor implements BigIntegerEncryptor {
+        
+        private final BigIntegerEncryptor encryptor;
+        
+        SharedBigIntegerEncryptor(final BigIntegerEncryptor encryptor) {
+            super();
+            this.encryptor = encryptor;
+        }
+        
+        public BigInteger encrypt(final BigInteger message) {
+            return this.encryptor.encrypt(message);
+        }
+        
+        public BigInteger decrypt(final BigInteger encryptedMessage) {
+            return this.encryptor.decrypt(encryptedMessage);
+        }
+        
+    }
+    
+    
+    private static final class SharedBigDecimalEncryptor implements BigDecimalEncryptor {
+        
+        private final BigDecimalEncryptor encryptor;
+        
+        SharedBigDecimalEncryptor(final BigDecimalEncryptor encryptor) {
+            super();
+            this.encryptor = encryptor;
+        }
+        
+        public BigDecimal encrypt(final BigDecimal message) {
+            return this.encryptor.encrypt(message);
+        }
+        
+        public BigDecimal decrypt(final BigDecimal encryptedMessage) {
+            return this.encryptor.decrypt(encryptedMessage);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,258 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+/**
+ * <p>
+ * Implementation of the AES-SIV deterministic authenticated encryption 
+ * mode (<a href="http://tools.ietf.org/html/rfc5297" target="_blank">RFC 
+ * 5297</a>), built on top of the AES block cipher: the S2V function uses
+ * AES-CMAC (<a href="http://tools.ietf.org/html/rfc4493" 
+ * target="_blank">RFC 4493</a>), and encryption is performed with AES-CTR
+ * using the synthetic IV as counter.
+ * </p>
+ * <p>
+ * Results are returned as the 16-byte synthetic IV followed by the 
+ * ciphertext (which has the same length as the plaintext).
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+final class SivCipher {
+
+    static final int BLOCK_SIZE = 16;
+    
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_SIZE];
+    
+    // Key for S2V (CMAC): used in ECB mode for computing CMAC block by block
+    private final Cipher macCipher;
+    private final byte[] macSubkey1;
+    private final byte[] macSubkey2;
+    
+    // Key for CTR encryption
+    private final SecretKeySpec ctrKey;
+    private final Cipher ctrCipher;
+    
+    
+    /*
+     * The key must be 32, 48 or 64 bytes: the first half is used for
+     * S2V and the second half for CTR encryption.
+     */
+    SivCipher(final byte[] key) throws GeneralSecurityException {
+        
+        super();
+        
+        if (key.length != 32 && key.length != 48 && key.length != 64) {
+            throw new IllegalArgumentException("Invalid AES-SIV key length: " + key.length);
+        }
+        final int halfLength = key.length / 2;
+        
+        this.macCipher = Cipher.getInstance("AES/ECB/NoPadding");
+        this.macCipher.init(Cipher.ENCRYPT_MODE, 
+                new SecretKeySpec(key, 0, halfLength, "AES"));
+        
+        final byte[] l = this.macCipher.doFinal(ZERO_BLOCK);
+        this.macSubkey1 = dbl(l);
+        this.macSubkey2 = dbl(this.macSubkey1);
+        
+        this.ctrKey = new SecretKeySpec(key, halfLength, halfLength, "AES");
+        this.ctrCipher = Cipher.getInstance("AES/CTR/NoPadding");
+        
+    }
+    
+    
+    byte[] encrypt(final byte[][] associatedData, final byte[] plaintext) {
+        
+        try {
+            
+            final byte[] v = s2v(associatedData, plaintext);
+            final byte[] ciphertext = ctr(v, plaintext);
+            
+            final byte[] result = new byte[BLOCK_SIZE + ciphertext.length];
+            System.arraycopy(v, 0, result, 0, BLOCK_SIZE);
+            System.arraycopy(ciphertext, 0, result, BLOCK_SIZE, ciphertext.length);
+            return result;
+            
+        } catch (final GeneralSecurityException e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    byte[] decrypt(final byte[][] associatedData, final byte[] encrypted) {
+        
+        if (encrypted.length < BLOCK_SIZE) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+        try {
+            
+            final byte[] v = new byte[BLOCK_SIZE];
+            System.arraycopy(encrypted, 0, v, 0, BLOCK_SIZE);
+            final byte[] ciphertext = new byte[encrypted.length - BLOCK_SIZE];
+            System.arraycopy(encrypted, BLOCK_SIZE, ciphertext, 0, ciphertext.length);
+            
+            final byte[] plaintext = ctr(v, ciphertext);
+            
+            // The synthetic IV authenticates both associated data and plaintext
+            if (!MessageDigest.isEqual(v, s2v(associatedData, plaintext))) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+            return plaintext;
+            
+        } catch (final GeneralSecurityException e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    
+    private byte[] s2v(final byte[][] associatedData, final byte[] plaintext) 
+            throws GeneralSecurityException {
+        
+        byte[] d = cmac(ZERO_BLOCK);
+        for (int i = 0; i < associatedData.length; i++) {
+            d = xor(dbl(d), cmac(associatedData[i]));
+        }
+        
+        final byte[] t;
+        if (plaintext.length >= BLOCK_SIZE) {
+            // xorend: xor D into the last block of the plaintext
+            t = new byte[plaintext.length];
+            System.arraycopy(plaintext, 0, t, 0, plaintext.length);
+            final int offset = plaintext.length - BLOCK_SIZE;
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                t[offset + i] ^= d[i];
+            }
+        } else {
+            t = xor(dbl(d), pad(plaintext, 0, plaintext.length));
+        }
+        
+        return cmac(t);
+        
+    }
+    
+    
+    private byte[] ctr(final byte[] v, final byte[] input) 
+            throws GeneralSecurityException {
+        
+        // Bits 31 and 63 (counting from the right) are zeroed
+        final byte[] q = new byte[BLOCK_SIZE];
+        System.arraycopy(v, 0, q, 0, BLOCK_SIZE);
+        q[8] &= (byte) 0x7F;
+        q[12] &= (byte) 0x7F;
+        
+        synchronized (this.ctrCipher) {
+            this.ctrCipher.init(Cipher.ENCRYPT_MODE, this.ctrKey, new IvParameterSpec(q));
+            return this.ctrCipher.doFinal(input);
+        }
+        
+    }
+    
+    
+    private byte[] cmac(final byte[] message) throws GeneralSecurityException {
+        
+        final int blocks = 
+            (message.length == 0? 1 : (message.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        final int lastOffset = (blocks - 1) * BLOCK_SIZE;
+        final int lastLength = message.length - lastOffset;
+        
+        final byte[] last;
+        if (lastLength == BLOCK_SIZE) {
+            last = xor(copy(message, lastOffset, BLOCK_SIZE), this.macSubkey1);
+        } else {
+            last = xor(pad(message, lastOffset, lastLength), this.macSubkey2);
+        }
+        
+        byte[] x = new byte[BLOCK_SIZE];
+        synchronized (this.macCipher) {
+            for (int i = 0; i < blocks - 1; i++) {
+                for (int j = 0; j < BLOCK_SIZE; j++) {
+                    x[j] ^= message[i * BLOCK_SIZE + j];
+                }
+                x = this.macCipher.doFinal(x);
+            }
+            return this.macCipher.doFinal(xor(x, last));
+        }
+        
+    }
+    
+    
+    /*
+     * Multiplication by x in GF(2^128)
+     */
+    private static byte[] dbl(final byte[] block) {
+        final byte[] result = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE - 1; i++) {
+            result[i] = (byte) ((block[i] << 1) | ((block[i + 1] & 0xFF) >>> 7));
+        }
+        result[BLOCK_SIZE - 1] = (byte) (block[BLOCK_SIZE - 1] << 1);
+        if ((block[0] & 0x80) != 0) {
+            result[BLOCK_SIZE - 1] ^= (byte) 0x87;
+        }
+        return result;
+    }
+    
+    
+    private static byte[] xor(final byte[] a, final byte[] b) {
+        final byte[] result = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            result[i] = (byte) (a[i] ^ b[i]);
+        }
+        return result;
+    }
+    
+    
+    /*
+     * Pads an incomplete block with a single 1 bit followed by zeroes
+     */
+    private static byte[] pad(final byte[] data, final int offset, final int length) {
+        final byte[] result = new byte[BLOCK_SIZE];
+        System.arraycopy(data, offset, result, 0, length);
+        result[length] = (byte) 0x80;
+        return result;
+    }
+    
+    
+    private static byte[] copy(final byte[] data, final int offset, final int length) {
+        final byte[] result = new byte[length];
+        System.arraycopy(data, offset, result, 0, length);
+        return result;
+    }
+    
+}
@@ -19,16 +19,26 @@
  */
 package org.jasypt.encryption.pbe;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.Provider;
+import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.PBEParameterSpec;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
+import org.jasypt.commons.ProviderSelectionUtils;
+import org.jasypt.encryption.ByteDecryptionResult;
+import org.jasypt.encryption.ByteStreamEncryptor;
 import org.jasypt.encryption.pbe.config.PBECleanablePasswordConfig;
 import org.jasypt.encryption.pbe.config.PBEConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
@@ -124,7 +134,8 @@ import org.jasypt.salt.SaltGenerator;
  * @author Daniel Fern&aacute;ndez
  * 
  */
-public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordEncryptor {
+public final class StandardPBEByteEncryptor 
+        implements PBEByteCleanablePasswordEncryptor, ByteStreamEncryptor, Destroyable {
 
 
     /**
@@ -144,6 +155,11 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
      */
     public static final int DEFAULT_SALT_SIZE_BYTES = 8;
 
+    // Markers in algorithm names for block cipher modes which do not pad
+    // the encrypted kernel to a multiple of the block size.
+    private static final String[] UNPADDED_MODE_MARKERS =
+        new String[] { "CTR", "GCM", "CFB", "OFB", "CTS", "NOPADDING" };
+
 
     // Algorithm (and provider-related info) for Password Based Encoding.
     private String algorithm = DEFAULT_ALGORITHM;
@@ -170,6 +186,11 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
     // default value will be used).
     private int saltSizeBytes = DEFAULT_SALT_SIZE_BYTES;
     
+    // Key identifier to be included (as a header) in encryption results 
+    // (optional), and the header itself.
+    private String keyId = null;
+    private byte[] keyIdHeader = null;
+    
     
     // Config object set (optionally).
     private PBEConfig config = null;
@@ -185,6 +206,14 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
     private boolean saltGeneratorSet = false;
     private boolean providerNameSet = false;
     private boolean providerSet = false;
+
+    /*
+     * Whether the fastest of the installed providers should be selected
+     * at initialization (if no provider was explicitly set), and the 
+     * result of that selection.
+     */
+    private boolean selectFastestProvider = false;
+    private ProviderSelection providerSelection = null;
     
     
     /*
@@ -194,6 +223,12 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
      * be allowed.
      */
     private boolean initialized = false;
+    
+    /*
+     * Flag which indicates whether the encryptor has been destroyed, after
+     * which no further operations will be allowed.
+     */
+    private volatile boolean destroyed = false;
 
     
     // Encryption key generated.
@@ -209,6 +244,12 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
     // be applied).
     private boolean usingFixedSalt = false;
     private byte[] fixedSaltInUse = null;
+    
+    // Size of the blocks the encrypted message kernel (the encrypted message
+    // without its salt) is made of, or zero if it can have any length (for 
+    // example, in stream ciphers). Used for validating encrypted messages 
+    // before performing any expensive key derivation operations on them.
+    private int encryptedKernelBlockSize = 0;
 
     
     
@@ -459,6 +500,87 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
         this.provider = provider;
         this.providerSet = true;
     }
+    
+    
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the encryption algorithm when the 
+     * encryptor is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * When enabled, every installed provider supporting the algorithm is
+     * micro-benchmarked (for a few milliseconds, using the configured key
+     * obtention iterations) and the fastest one producing byte-identical
+     * results to the default provider is used. The result of this selection 
+     * can be obtained by calling {@link #getProviderSelection()}.
+     * </p>
+     * <p>
+     * This setting is ignored if a provider or provider name is explicitly
+     * set (in this encryptor or its config object).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public synchronized void setSelectFastestProvider(final boolean selectFastestProvider) {
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.selectFastestProvider = selectFastestProvider;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.providerSelection;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets a key identifier to be included in every encryption result, in
+     * the form of a small header prepended to it. Encrypted messages will 
+     * then only be decrypted by this encryptor if they contain this same 
+     * header, and messages encrypted with other keys will be rejected
+     * without performing any expensive operations on them.
+     * </p>
+     * <p>
+     * This allows several keys (passwords) to co-exist during key rotation,
+     * routing each encrypted message directly to the encryptor able to 
+     * decrypt it (see {@link MultiKeyByteEncryptor}).
+     * </p>
+     * <p>
+     * Key identifiers are not secret, and they cannot be longer than 255
+     * bytes (UTF-8). If not set, no header will be used (which is
+     * the default, and the only format compatible with previous
+     * versions of jasypt).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void setKeyId(final String keyId) {
+        KeyIdUtils.validateKeyId(keyId);
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.keyId = keyId;
+        this.keyIdHeader = KeyIdUtils.createHeader(keyId);
+    }
 
 
     
@@ -513,6 +635,9 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
             if (this.saltGenerator != null) {
                 clone.setSaltGenerator(this.saltGenerator);
             }
+            if (this.keyId != null) {
+                clone.setKeyId(this.keyId);
+            }
             
             clones[i] = clone;
             
@@ -585,6 +710,8 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
      */
     public synchronized void initialize() {
         
+        checkNotDestroyed();
+        
         // Double-check to avoid synchronization issues
         if (!this.initialized) {
             
@@ -649,6 +776,18 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
                 this.saltGenerator = new RandomSaltGenerator();
             }
             
+            /*
+             * If requested (and no provider has been explicitly set), 
+             * benchmark the installed providers and use the fastest one.
+             */
+            if (this.selectFastestProvider && 
+                    this.provider == null && this.providerName == null) {
+                this.providerSelection =
+                    ProviderSelectionUtils.selectFastestPBEProvider(
+                            this.algorithm, this.keyObtentionIterations);
+                this.provider = this.providerSelection.getSelectedProvider();
+            }
+            
             try {
             
                 // Password cannot be null.
@@ -725,6 +864,10 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
             }
             
             
+            this.encryptedKernelBlockSize = 
+                computeEncryptedKernelBlockSize(algorithmBlockSize);
+            
+            
             this.usingFixedSalt = (this.saltGenerator instanceof FixedSaltGenerator);
             
             if (this.usingFixedSalt) {
@@ -814,6 +957,74 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
 
         
     
+    /**
+     * <p>
+     * Destroys the encryptor, cleaning its password and releasing its key
+     * and ciphers (destroying the key if its implementation allows so)
+     * in order to leave as little key material in memory as possible. 
+     * Once destroyed, the encryptor cannot be used anymore.
+     * </p>
+     * <p>
+     * Note destroying the key is a best-effort operation: many key 
+     * implementations (like the <tt>PBEKey</tt> returned by the SunJCE
+     * provider in Java 8) do not support it, in which case the key is only
+     * released, and its contents will remain in memory until garbage 
+     * collected. Also, ciphers keep their own copy of the key material
+     * while they are reachable.
+     * </p>
+     * <p>
+     * Operations being executed on the encryptor while it is destroyed will
+     * either complete normally or fail with an
+     * <tt>EncryptionOperationNotPossibleException</tt>.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public synchronized void destroy() {
+        
+        if (this.destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        
+        cleanPassword(this.password);
+        if (this.key instanceof Destroyable) {
+            try {
+                ((Destroyable) this.key).destroy();
+            } catch (final DestroyFailedException e) {
+                // Not supported by the key implementation: it will only be
+                // released (the password it was created from is already clean).
+            }
+        }
+        this.key = null;
+        this.encryptCipher = null;
+        this.decryptCipher = null;
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the encryptor has been destroyed.
+     * </p>
+     * 
+     * @return true if the encryptor has been destroyed, false if not.
+     * @since 1.9.3
+     */
+    public boolean isDestroyed() {
+        return this.destroyed;
+    }
+    
+    
+    private void checkNotDestroyed() {
+        if (this.destroyed) {
+            throw new EncryptionInitializationException(
+                    "Encryptor has been destroyed");
+        }
+    }
+    
+    
+    
     private static void cleanPassword(final char[] password) {
         if (password != null) {
             synchronized (password) {
@@ -872,6 +1083,19 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
         if (!isInitialized()) {
             initialize();
         }
+        checkNotDestroyed();
+        
+        // Copied under the same lock destroy() takes for releasing them
+        final Cipher cipher;
+        final SecretKey secretKey;
+        synchronized (this) {
+            cipher = this.encryptCipher;
+            secretKey = this.key;
+        }
+        if (cipher == null || secretKey == null) {
+            // Destroyed concurrently
+            throw new EncryptionOperationNotPossibleException();
+        }
         
         try {
 
@@ -881,8 +1105,8 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
 
                 salt = this.fixedSaltInUse;
                 
-                synchronized (this.encryptCipher) {
-                    encryptedMessage = this.encryptCipher.doFinal(message);
+                synchronized (cipher) {
+                    encryptedMessage = cipher.doFinal(message);
                 }
                 
             } else {
@@ -896,10 +1120,10 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
                 final PBEParameterSpec parameterSpec = 
                     new PBEParameterSpec(salt, this.keyObtentionIterations);
     
-                synchronized (this.encryptCipher) {
-                    this.encryptCipher.init(
-                            Cipher.ENCRYPT_MODE, this.key, parameterSpec);
-                    encryptedMessage = this.encryptCipher.doFinal(message);
+                synchronized (cipher) {
+                    cipher.init(
+                            Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+                    encryptedMessage = cipher.doFinal(message);
                 }
                 
             }
@@ -908,15 +1132,24 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
             // Finally we build an array containing both the unencrypted salt
             // and the result of the encryption. This is done only
             // if the salt generator we are using specifies to do so.
+            final byte[] result;
             if (this.saltGenerator.includePlainSaltInEncryptionResults()) {
                 
                 // Insert unhashed salt before the encryption result
-                return CommonUtils.appendArrays(salt, encryptedMessage);
+                result = CommonUtils.appendArrays(salt, encryptedMessage);
+                
+            } else {
+                
+                result = encryptedMessage;
                 
             }
-
             
-            return encryptedMessage;
+            // If a key identifier has been set, its header goes first
+            if (this.keyIdHeader != null) {
+                return CommonUtils.appendArrays(this.keyIdHeader, result);
+            }
+            
+            return result;
             
         } catch (final InvalidKeyException e) {
             // The problem could be not having the unlimited strength policies
@@ -967,13 +1200,289 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
         if (!isInitialized()) {
             initialize();
         }
+        checkNotDestroyed();
+        
+        final byte[] decryptedMessage = decryptOrNull(encryptedMessage);
+        if (decryptedMessage == null) {
+            throw EncryptionOperationNotPossibleException.createWithoutStackTrace();
+        }
+        return decryptedMessage;
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a stream which encrypts a message while it is read, so that
+     * large messages can be encrypted without holding them in memory. 
+     * The contents of the returned stream will be exactly the same as the
+     * result of calling {@link #encrypt(byte[])} on the whole message.
+     * </p>
+     * <p>
+     * Each stream uses its own <tt>Cipher</tt> instance, and is not
+     * thread-safe.
+     * </p>
+     * 
+     * @param message the stream of the message to be encrypted.
+     * @return the stream of the result of encryption, or null if the 
+     *         message stream was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails (also while reading the returned stream).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public InputStream encryptStream(final InputStream message) {
+        
+        if (message == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        checkNotDestroyed();
+        
+        try {
+            
+            final byte[] salt = 
+                (this.usingFixedSalt? 
+                        this.fixedSaltInUse : 
+                        this.saltGenerator.generateSalt(this.saltSizeBytes));
+            
+            byte[] prefix = 
+                (this.saltGenerator.includePlainSaltInEncryptionResults()? 
+                        salt : new byte[0]);
+            if (this.keyIdHeader != null) {
+                prefix = CommonUtils.appendArrays(this.keyIdHeader, prefix);
+            }
+            
+            return new PBECipherInputStream(
+                    message, prefix, createStreamCipher(Cipher.ENCRYPT_MODE, salt));
+            
+        } catch (final InvalidKeyException e) {
+            handleInvalidKeyException(e);
+            throw new EncryptionOperationNotPossibleException();
+        } catch (final Exception e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a stream which decrypts an encrypted message while it is 
+     * read, so that large messages can be decrypted without holding them in
+     * memory. The encrypted message can have been created either by
+     * {@link #encrypt(byte[])} or by {@link #encryptStream(InputStream)}.
+     * </p>
+     * <p>
+     * The key identifier header (if any) and salt are read from the 
+     * encrypted stream when this method is called. Each stream uses its own 
+     * <tt>Cipher</tt> instance, and is not thread-safe.
+     * </p>
+     * 
+     * @param encryptedMessage the stream of the message to be decrypted.
+     * @return the stream of the result of decryption, or null if the 
+     *         encrypted message stream was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails (also while reading the returned stream).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public InputStream decryptStream(final InputStream encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        checkNotDestroyed();
+        
+        try {
+            
+            // If a key identifier has been set, only messages with its 
+            // header can be decrypted.
+            if (this.keyIdHeader != null) {
+                final byte[] header = readFully(encryptedMessage, this.keyIdHeader.length);
+                if (!Arrays.equals(header, this.keyIdHeader)) {
+                    throw new EncryptionOperationNotPossibleException();
+                }
+            }
+            
+            final byte[] salt;
+            if (this.saltGenerator.includePlainSaltInEncryptionResults()) {
+                salt = readFully(encryptedMessage, this.saltSizeBytes);
+            } else if (this.usingFixedSalt) {
+                salt = this.fixedSaltInUse;
+            } else {
+                salt = this.saltGenerator.generateSalt(this.saltSizeBytes);
+            }
+            
+            return new PBECipherInputStream(
+                    encryptedMessage, null, createStreamCipher(Cipher.DECRYPT_MODE, salt));
+            
+        } catch (final EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (final InvalidKeyException e) {
+            handleInvalidKeyException(e);
+            throw new EncryptionOperationNotPossibleException();
+        } catch (final Exception e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    /*
+     * Creates a new Cipher for a stream (encryptors' ciphers cannot be 
+     * used, as they would have to be locked during the whole life of
+     * the stream).
+     */
+    private Cipher createStreamCipher(final int mode, final byte[] salt) 
+            throws GeneralSecurityException {
+        
+        // Copied under the same lock destroy() takes for releasing it
+        final SecretKey secretKey;
+        synchronized (this) {
+            secretKey = this.key;
+        }
+        if (secretKey == null) {
+            // Destroyed concurrently
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+        final Cipher cipher;
+        if (this.provider != null) {
+            cipher = Cipher.getInstance(this.algorithm, this.provider);
+        } else if (this.providerName != null) {
+            cipher = Cipher.getInstance(this.algorithm, this.providerName);
+        } else {
+            cipher = Cipher.getInstance(this.algorithm);
+        }
+        cipher.init(mode, secretKey, new PBEParameterSpec(salt, this.keyObtentionIterations));
+        return cipher;
         
+    }
+    
+    
+    /*
+     * Reads exactly the specified number of bytes from the stream.
+     */
+    private static byte[] readFully(final InputStream stream, final int size) 
+            throws IOException {
+        
+        final byte[] result = new byte[size];
+        int total = 0;
+        while (total < size) {
+            final int read = stream.read(result, total, size - total);
+            if (read < 0) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+            total += read;
+        }
+        return result;
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message, exactly as {@link #decrypt(byte[])} does, but 
+     * without raising any exceptions if the decryption operation fails
+     * because of the encrypted message not being valid (or having been
+     * encrypted with a different password). A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #decrypt(byte[])} in scenarios in which failures are frequent.
+     * </p>
+     * 
+     * @param encryptedMessage the byte array message to be decrypted
+     * @return the result of decryption, which will only contain the 
+     *         decrypted message if decryption was successful.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public ByteDecryptionResult tryDecrypt(final byte[] encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return ByteDecryptionResult.successful(null);
+        }
+        
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        checkNotDestroyed();
+        
+        final byte[] decryptedMessage = decryptOrNull(encryptedMessage);
+        if (decryptedMessage == null) {
+            return ByteDecryptionResult.FAILED;
+        }
+        return ByteDecryptionResult.successful(decryptedMessage);
+        
+    }
+    
+    
+    /*
+     * Performs the decryption operation, returning null if it is not 
+     * possible because the encrypted message is not valid. This way, no
+     * exceptions have to be created (and their stack traces filled) for
+     * what, in some scenarios, is a normal control flow. The encryptor is
+     * expected to be already initialized, and the message not to be null.
+     */
+    byte[] decryptOrNull(final byte[] encryptedInput) {
+        
+        // If a key identifier has been set, only messages with its header 
+        // can be decrypted.
+        final byte[] encryptedMessage;
+        if (this.keyIdHeader != null) {
+            if (!KeyIdUtils.hasHeader(encryptedInput, this.keyIdHeader)) {
+                return null;
+            }
+            encryptedMessage = KeyIdUtils.removeHeader(encryptedInput, this.keyIdHeader);
+        } else {
+            encryptedMessage = encryptedInput;
+        }
+        
+        /*
+         * Check the structure of the encrypted message before performing 
+         * any (expensive) key derivation: it must be bigger than the salt, 
+         * and if we are using a padded block cipher the size of the message
+         * kernel must be a multiple of the block size.
+         */
+        int encryptedMessageKernelSize = encryptedMessage.length;
         if (this.saltGenerator.includePlainSaltInEncryptionResults()) {
             // Check that the received message is bigger than the salt
             if (encryptedMessage.length <= this.saltSizeBytes) {
-                throw new EncryptionOperationNotPossibleException();
+                return null;
+            }
+            encryptedMessageKernelSize -= this.saltSizeBytes;
+        }
+        if (this.encryptedKernelBlockSize > 0) {
+            if ((encryptedMessageKernelSize < this.encryptedKernelBlockSize) ||
+                    ((encryptedMessageKernelSize % this.encryptedKernelBlockSize) != 0)) {
+                return null;
             }
         }
+        
+        // Copied under the same lock destroy() takes for releasing them
+        final Cipher cipher;
+        final SecretKey secretKey;
+        synchronized (this) {
+            cipher = this.decryptCipher;
+            secretKey = this.key;
+        }
+        if (cipher == null || secretKey == null) {
+            // Destroyed concurrently
+            return null;
+        }
     
         try {
 
@@ -1019,9 +1528,9 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
                 /*
                  * Fixed salt is being used, therefore no initialization supposedly needed
                  */
-                synchronized (this.decryptCipher) {
+                synchronized (cipher) {
                     decryptedMessage = 
-                        this.decryptCipher.doFinal(encryptedMessageKernel);
+                        cipher.doFinal(encryptedMessageKernel);
                 }
 
             } else {
@@ -1032,11 +1541,11 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
                 final PBEParameterSpec parameterSpec = 
                     new PBEParameterSpec(salt, this.keyObtentionIterations);
                      
-                synchronized (this.decryptCipher) {
-                    this.decryptCipher.init(
-                            Cipher.DECRYPT_MODE, this.key, parameterSpec);
+                synchronized (cipher) {
+                    cipher.init(
+                            Cipher.DECRYPT_MODE, secretKey, parameterSpec);
                     decryptedMessage = 
-                        this.decryptCipher.doFinal(encryptedMessageKernel);
+                        cipher.doFinal(encryptedMessageKernel);
                 }
 
             }
@@ -1048,16 +1557,44 @@ public final class StandardPBEByteEncryptor implements PBEByteCleanablePasswordE
             // The problem could be not having the unlimited strength policies
             // installed, so better give a usefull error message.
             handleInvalidKeyException(e);
-            throw new EncryptionOperationNotPossibleException();
+            return null;
         } catch (final Exception e) {
             // If decryption fails, it is more secure not to return any 
             // information about the cause in nested exceptions. Simply fail.
-            throw new EncryptionOperationNotPossibleException();
+            return null;
         }
         
     }    
 
 
+    /*
+     * Finds out whether the chosen algorithm always produces encrypted
+     * kernels which size is a multiple of its block size (i.e. a padded block
+     * cipher, which is the case of most PBE algorithms) from the block size
+     * reported by the cipher and the mode/padding specified in the algorithm
+     * name, if any. If it does, encrypted messages not complying with
+     * this can be rejected before performing any expensive operations. If 
+     * it cannot be determined, no such validation will be applied.
+     */
+    private int computeEncryptedKernelBlockSize(final int algorithmBlockSize) {
+        
+        if (algorithmBlockSize <= 1) {
+            return 0;
+        }
+        
+        // Block ciphers in these modes (or without padding) can produce 
+        // encrypted kernels of any length
+        final String upperAlgorithm = this.algorithm.toUpperCase();
+        for (int i = 0; i < UNPADDED_MODE_MARKERS.length; i++) {
+            if (upperAlgorithm.indexOf(UNPADDED_MODE_MARKERS[i]) != -1) {
+                return 0;
+            }
+        }
+        return algorithmBlockSize;
+        
+    }
+
+
     /*
      * Method used to provide an useful error message in the case that the
      * user tried to use a strong PBE algorithm like TripleDES and he/she
@@ -19,10 +19,20 @@
  */
 package org.jasypt.encryption.pbe;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.security.Provider;
 
+import javax.security.auth.Destroyable;
+
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ProviderSelection;
 import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+import org.jasypt.encryption.CharacterStreamEncryptor;
+import org.jasypt.encryption.StringDecryptionResult;
 import org.jasypt.encryption.pbe.config.PBEConfig;
 import org.jasypt.encryption.pbe.config.StringPBEConfig;
 import org.jasypt.exceptions.AlreadyInitializedException;
@@ -119,7 +129,8 @@ import org.jasypt.salt.SaltGenerator;
  * @author Daniel Fern&aacute;ndez
  * 
  */
-public final class StandardPBEStringEncryptor implements PBEStringCleanablePasswordEncryptor {
+public final class StandardPBEStringEncryptor 
+        implements PBEStringCleanablePasswordEncryptor, CharacterStreamEncryptor, Destroyable {
 
     /**
      * <p>
@@ -177,6 +188,17 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
         CommonUtils.STRING_OUTPUT_TYPE_BASE64;
     
 
+    /**
+     * <p>
+     * Default maximum time (in milliseconds) the warm-up performed on 
+     * initialization can take: 10 seconds.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public static final long DEFAULT_WARM_UP_TIME_LIMIT_MILLIS = 10000L;
+    
+
     // If the config object set is a StringPBEConfig, it must be referenced
     private StringPBEConfig stringPBEConfig = null;
     
@@ -193,6 +215,16 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
      */
     private boolean stringOutputTypeSet = false;
     
+    // Key identifier to be included (as a prefix) in encryption results 
+    // (optional), and the prefix itself.
+    private String keyId = null;
+    private String keyIdPrefix = null;
+    
+    // Number of synthetic operations to be performed on initialization
+    // (if any) and maximum time these operations can take.
+    private int warmUpIterations = 0;
+    private long warmUpTimeLimitMillis = DEFAULT_WARM_UP_TIME_LIMIT_MILLIS;
+    
     
     // The StandardPBEByteEncryptor that will be internally used.
     private final StandardPBEByteEncryptor byteEncryptor;
@@ -420,6 +452,42 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
     }
     
     
+    /**
+     * <p>
+     * Sets whether the fastest of the installed security providers should
+     * be automatically selected for the encryption algorithm when the 
+     * encryptor is initialized. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     * See {@link StandardPBEByteEncryptor#setSelectFastestProvider(boolean)}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param selectFastestProvider whether the fastest provider should
+     *        be selected.
+     */
+    public void setSelectFastestProvider(final boolean selectFastestProvider) {
+        this.byteEncryptor.setSelectFastestProvider(selectFastestProvider);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the result of the automatic selection of the fastest provider 
+     * (see {@link #setSelectFastestProvider(boolean)}), or null if no such
+     * selection has been performed.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @return the result of the provider selection, or null.
+     */
+    public ProviderSelection getProviderSelection() {
+        return this.byteEncryptor.getProviderSelection();
+    }
+    
+    
     /**
      * <p>
      * Sets the the form in which String output
@@ -449,6 +517,41 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
 
         this.stringOutputTypeSet = true;
     }
+    
+    
+    /**
+     * <p>
+     * Sets a key identifier to be included in every encryption result, in
+     * the form of a <tt>[keyId]</tt> prefix (which cannot be mistaken 
+     * for BASE64 or hexadecimal output). Encrypted messages will then only
+     * be decrypted by this encryptor if they contain this same prefix,
+     * and messages encrypted with other keys will be rejected
+     * without performing any expensive operations on them.
+     * </p>
+     * <p>
+     * This allows several keys (passwords) to co-exist during key rotation,
+     * routing each encrypted message directly to the encryptor able to 
+     * decrypt it (see {@link MultiKeyStringEncryptor}).
+     * </p>
+     * <p>
+     * Key identifiers are not secret, cannot contain the <tt>']'</tt> 
+     * character and cannot be longer than 255 bytes (UTF-8). If not set, 
+     * no prefix will be used (which is the default, and the only 
+     * format compatible with previous versions of jasypt).
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param keyId the key identifier.
+     */
+    public synchronized void setKeyId(final String keyId) {
+        KeyIdUtils.validateKeyId(keyId);
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.keyId = keyId;
+        this.keyIdPrefix = KeyIdUtils.createPrefix(keyId);
+    }
 
     
 
@@ -470,6 +573,7 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
             this.byteEncryptor.cloneAndInitializeEncryptor(size);
         
         initializeSpecifics();
+        warmUp();
 
         final StandardPBEStringEncryptor[] clones = new StandardPBEStringEncryptor[size];
         
@@ -480,6 +584,11 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
             if (CommonUtils.isNotEmpty(this.stringOutputType)) {
                 clones[i].setStringOutputType(this.stringOutputType);
             }
+            if (this.keyId != null) {
+                clones[i].setKeyId(this.keyId);
+            }
+            clones[i].setWarmUpIterations(this.warmUpIterations);
+            clones[i].setWarmUpTimeLimitMillis(this.warmUpTimeLimitMillis);
         }
         
         return clones;
@@ -489,6 +598,55 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
     
     
 
+    /**
+     * <p>
+     * Sets the number of synthetic encryption/decryption operations to be performed on 
+     * throwaway data when this encryptor is initialized, so that it 
+     * (and the JIT-compiled code it uses) is already warmed up when 
+     * real operations start. Default is 0 (no warm-up).
+     * </p>
+     * <p>
+     * Warm-up will stop earlier if it takes longer than the time limit set 
+     * by {@link #setWarmUpTimeLimitMillis(long)}. In pooled encryptors, 
+     * every member of the pool is warmed up.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpIterations the number of warm-up operations (0 for
+     *        no warm-up).
+     */
+    public synchronized void setWarmUpIterations(final int warmUpIterations) {
+        CommonUtils.validateIsTrue(warmUpIterations >= 0, 
+                "Warm-up iterations cannot be negative");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.warmUpIterations = warmUpIterations;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum time (in milliseconds) the warm-up performed on 
+     * initialization can take (see {@link #setWarmUpIterations(int)}). 
+     * Default is {@link #DEFAULT_WARM_UP_TIME_LIMIT_MILLIS}.
+     * </p>
+     * 
+     * @since 1.9.3
+     * 
+     * @param warmUpTimeLimitMillis the warm-up time limit, in milliseconds.
+     */
+    public synchronized void setWarmUpTimeLimitMillis(final long warmUpTimeLimitMillis) {
+        CommonUtils.validateIsTrue(warmUpTimeLimitMillis > 0, 
+                "Warm-up time limit must be > 0");
+        if (isInitialized()) {
+            throw new AlreadyInitializedException();
+        }
+        this.warmUpTimeLimitMillis = warmUpTimeLimitMillis;
+    }
+    
+    
     /**
      * <p>
      *   Returns true if the encryptor has already been initialized, false if
@@ -551,6 +709,7 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
         if (!this.isInitialized()) {
             initializeSpecifics();
             this.byteEncryptor.initialize();
+            warmUp();
         }
 
     }
@@ -558,6 +717,52 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
     
     
     
+    /*
+     * Performs the configured number of encryption/decryption operations
+     * on throwaway data (if any), within the configured time limit.
+     */
+    void warmUp() {
+        
+        if (this.warmUpIterations <= 0) {
+            return;
+        }
+        
+        final long limit = System.currentTimeMillis() + this.warmUpTimeLimitMillis;
+        final StringBuffer message = new StringBuffer();
+        for (int i = 0; i < this.warmUpIterations; i++) {
+            // Vary message lengths so that different paths are exercised
+            if (message.length() >= 64) {
+                message.setLength(0);
+            }
+            message.append((char) ('a' + (i % 26)));
+            final String plain = message.toString();
+            try {
+                if (!plain.equals(decrypt(encrypt(plain)))) {
+                    throw new EncryptionInitializationException(
+                            "Warm-up operation returned an unexpected result");
+                }
+            } catch (final EncryptionOperationNotPossibleException e) {
+                throw new EncryptionInitializationException(
+                        "Warm-up operation failed", e);
+            }
+            if (System.currentTimeMillis() >= limit) {
+                break;
+            }
+        }
+        
+    }
+    
+    
+    /*
+     * Returns whether warm-up operations have been configured.
+     */
+    boolean isWarmUpEnabled() {
+        return this.warmUpIterations > 0;
+    }
+    
+    
+    
+    
     private void initializeSpecifics() {
         /*
          * If a StringPBEConfig object has been set, we need to 
@@ -651,6 +856,11 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
                 result = CommonUtils.toHexadecimal(encryptedMessage);
             }
             
+            // If a key identifier has been set, its prefix goes first
+            if (this.keyIdPrefix != null) {
+                return this.keyIdPrefix + result;
+            }
+            
             return result;
         
         } catch (EncryptionInitializationException e) {
@@ -705,6 +915,213 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
             initialize();
         }
         
+        final String message = decryptOrNull(encryptedMessage);
+        if (message == null) {
+            throw EncryptionOperationNotPossibleException.createWithoutStackTrace();
+        }
+        return message;
+
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a reader which encrypts a message while it is read, so that
+     * large messages can be encrypted without holding them in memory. 
+     * The contents of the returned reader will be exactly the same as the
+     * result of calling {@link #encrypt(String)} on the whole message.
+     * </p>
+     * <p>
+     * Each reader uses its own <tt>Cipher</tt> instance, and is not
+     * thread-safe.
+     * </p>
+     * 
+     * @param message the reader of the message to be encrypted.
+     * @return the reader of the result of encryption, or null if the 
+     *         message reader was null.
+     * @throws EncryptionOperationNotPossibleException if the encryption 
+     *         operation fails (also while reading the returned reader).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public Reader encryptCharacterStream(final Reader message) {
+        
+        if (message == null) {
+            return null;
+        }
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            // Same conversions as in encrypt(String), performed on the fly
+            final InputStream encryptedStream = 
+                this.byteEncryptor.encryptStream(TextStreamUtils.toUtf8Stream(message));
+            InputStream resultStream = 
+                TextStreamUtils.toEncodedStream(encryptedStream, this.stringOutputTypeBase64);
+            
+            // If a key identifier has been set, its prefix goes first
+            if (this.keyIdPrefix != null) {
+                resultStream = new SequenceInputStream(
+                        new ByteArrayInputStream(this.keyIdPrefix.getBytes(MESSAGE_CHARSET)), 
+                        resultStream);
+            }
+            
+            return new InputStreamReader(resultStream, MESSAGE_CHARSET);
+            
+        } catch (EncryptionInitializationException e) {
+            throw e;
+        } catch (EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a reader which decrypts an encrypted message while it is 
+     * read, so that large messages can be decrypted without holding them in
+     * memory. The encrypted message can have been created either by
+     * {@link #encrypt(String)} or by {@link #encryptCharacterStream(Reader)}.
+     * </p>
+     * <p>
+     * Each reader uses its own <tt>Cipher</tt> instance, and is not
+     * thread-safe.
+     * </p>
+     * 
+     * @param encryptedMessage the reader of the message to be decrypted.
+     * @return the reader of the result of decryption, or null if the 
+     *         encrypted message reader was null.
+     * @throws EncryptionOperationNotPossibleException if the decryption 
+     *         operation fails (also while reading the returned reader).
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public Reader decryptCharacterStream(final Reader encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return null;
+        }
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        try {
+            
+            // If a key identifier has been set, only messages with its 
+            // prefix can be decrypted.
+            if (this.keyIdPrefix != null) {
+                final char[] prefix = new char[this.keyIdPrefix.length()];
+                int total = 0;
+                while (total < prefix.length) {
+                    final int read = encryptedMessage.read(prefix, total, prefix.length - total);
+                    if (read < 0) {
+                        throw new EncryptionOperationNotPossibleException();
+                    }
+                    total += read;
+                }
+                if (!this.keyIdPrefix.equals(new String(prefix))) {
+                    throw new EncryptionOperationNotPossibleException();
+                }
+            }
+            
+            // Same conversions as in decrypt(String), performed on the fly
+            final InputStream encryptedStream = 
+                TextStreamUtils.fromEncodedReader(encryptedMessage, this.stringOutputTypeBase64);
+            return new InputStreamReader(
+                    this.byteEncryptor.decryptStream(encryptedStream), MESSAGE_CHARSET);
+            
+        } catch (EncryptionInitializationException e) {
+            throw e;
+        } catch (EncryptionOperationNotPossibleException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+
+    /**
+     * <p>
+     * Decrypts a message, exactly as {@link #decrypt(String)} does, but 
+     * without raising any exceptions if the decryption operation fails
+     * because of the encrypted message not being valid (or having been
+     * encrypted with a different password). A result object is returned
+     * instead, which makes this method much cheaper than 
+     * {@link #decrypt(String)} in scenarios in which failures are frequent.
+     * </p>
+     * 
+     * @param encryptedMessage the String message to be decrypted
+     * @return the result of decryption, which will only contain the 
+     *         decrypted message if decryption was successful.
+     * @throws EncryptionInitializationException if initialization could not
+     *         be correctly done (for example, no password has been set).
+     * @since 1.9.3
+     */
+    public StringDecryptionResult tryDecrypt(final String encryptedMessage) {
+        
+        if (encryptedMessage == null) {
+            return StringDecryptionResult.successful(null);
+        }
+
+        // Check initialization
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        final String message = decryptOrNull(encryptedMessage);
+        if (message == null) {
+            return StringDecryptionResult.FAILED;
+        }
+        return StringDecryptionResult.successful(message);
+        
+    }
+    
+    
+    /*
+     * Performs the decryption operation, returning null if it is not 
+     * possible because the encrypted message is not valid (see 
+     * StandardPBEByteEncryptor.decryptOrNull). The encryptor is expected to
+     * be already initialized, and the message not to be null.
+     */
+    private String decryptOrNull(final String encryptedInput) {
+        
+        // If a key identifier has been set, only messages with its prefix 
+        // can be decrypted.
+        final String encryptedMessage;
+        if (this.keyIdPrefix != null) {
+            if (!encryptedInput.startsWith(this.keyIdPrefix)) {
+                return null;
+            }
+            encryptedMessage = encryptedInput.substring(this.keyIdPrefix.length());
+        } else {
+            encryptedMessage = encryptedInput;
+        }
+        
+        // Check the structure of the encoded message before decoding it (and
+        // before any key derivation is performed on it)
+        if (this.stringOutputTypeBase64) {
+            if (!CommonUtils.isBase64(encryptedMessage)) {
+                return null;
+            }
+        } else {
+            if (!CommonUtils.isHexadecimal(encryptedMessage)) {
+                return null;
+            }
+        }
+        
         try {
             
             byte[] encryptedMessageBytes = null;
@@ -722,7 +1139,10 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
             }
 
             // Let the byte encyptor decrypt
-            final byte[] message = this.byteEncryptor.decrypt(encryptedMessageBytes);
+            final byte[] message = this.byteEncryptor.decryptOrNull(encryptedMessageBytes);
+            if (message == null) {
+                return null;
+            }
             
             // Return the resulting decrypted String, using MESSAGE_CHARSET
             // as charset to maintain between encryption and decyption
@@ -736,10 +1156,36 @@ public final class StandardPBEStringEncryptor implements PBEStringCleanablePassw
         } catch (Exception e) {
             // If decryption fails, it is more secure not to return any 
             // information about the cause in nested exceptions. Simply fail.
-            throw new EncryptionOperationNotPossibleException();
+            return null;
         }
 
     }
 
+
+    /**
+     * <p>
+     * Destroys the encryptor, cleaning its password and releasing its key
+     * material (see {@link StandardPBEByteEncryptor#destroy()}). Once 
+     * destroyed, the encryptor cannot be used anymore.
+     * </p>
+     * 
+     * @since 1.9.3
+     */
+    public void destroy() {
+        this.byteEncryptor.destroy();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the encryptor has been destroyed.
+     * </p>
+     * 
+     * @return true if the encryptor has been destroyed, false if not.
+     * @since 1.9.3
+     */
+    public boolean isDestroyed() {
+        return this.byteEncryptor.isDestroyed();
+    }
     
 }
@@ -0,0 +1,57 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import org.jasypt.encryption.StringEncryptor;
+
+
+/**
+ * <p>
+ * Factory of encryptors for a {@link TenantEncryptorRegistry}, which 
+ * creates (and configures) the encryptor to be used for each tenant.
+ * </p>
+ * <p>
+ * Implementations must be <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public interface TenantEncryptorFactory {
+
+    
+    /**
+     * <p>
+     * Creates a new encryptor for the specified tenant. If the returned
+     * encryptor implements {@link javax.security.auth.Destroyable} (as
+     * standard and pooled PBE encryptors do), it will be destroyed when 
+     * evicted from the registry, only if 
+     * {@link TenantEncryptorRegistry#setDestroyEvictedEncryptors(boolean)}
+     * is enabled.
+     * </p>
+     * 
+     * @param tenantId the tenant identifier.
+     * @return the encryptor for the tenant.
+     */
+    public StringEncryptor createEncryptor(final String tenantId);
+    
+}
@@ -0,0 +1,558 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+
+/**
+ * <p>
+ * Registry of string encryptors for multi-tenant applications, in which
+ * each tenant uses its own encryptor (usually with its own password).
+ * Encryptors are created by a {@link TenantEncryptorFactory} and cached,
+ * so that their (expensive) initialization is only performed once:
+ * </p>
+ * <ul>
+ *   <li>Encryptors are created and initialized <i>lazily</i>, the first 
+ *       time a tenant is used.</li>
+ *   <li>Creation is <i>single-flight</i>: if several threads need the 
+ *       encryptor for a tenant at the same time, only one of them creates
+ *       it and the others wait for it.</li>
+ *   <li>The registry is bounded: when it exceeds its maximum size, the
+ *       least recently used encryptors are evicted. Encryptors idle for 
+ *       longer than the maximum idle time are evicted too.</li>
+ *   <li>If {@link #setDestroyEvictedEncryptors(boolean)} is enabled, 
+ *       evicted encryptors are destroyed (which cleans their passwords 
+ *       and releases their keys) once the operations in flight on them
+ *       have finished.</li>
+ * </ul>
+ * <p>
+ * Encryptors are never handed out directly, so that they can be safely
+ * destroyed: operations are performed through 
+ * {@link #encrypt(String, String)} and {@link #decrypt(String, String)}, 
+ * or through the lightweight views returned by 
+ * {@link #getEncryptor(String)}.
+ * </p>
+ * <p>
+ * Hit, creation and eviction counts are available for monitoring.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class TenantEncryptorRegistry {
+
+    /**
+     * Default maximum number of cached encryptors: 1000.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    
+    /**
+     * Default maximum idle time: 30 minutes.
+     */
+    public static final long DEFAULT_MAX_IDLE_TIME_MILLIS = 30L * 60L * 1000L;
+    
+    
+    private static final class Entry {
+        
+        StringEncryptor encryptor = null;
+        RuntimeException failure = null;
+        boolean created = false;
+        boolean evicted = false;
+        int inFlight = 0;
+        long lastAccess = 0L;
+        
+    }
+    
+    
+    private final TenantEncryptorFactory factory;
+    
+    // Map<String,Entry> in access order: least recently used first
+    private final LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+    
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long maxIdleTimeMillis = DEFAULT_MAX_IDLE_TIME_MILLIS;
+    private boolean destroyEvictedEncryptors = false;
+    
+    private long hitCount = 0L;
+    private long creationCount = 0L;
+    private long creationFailureCount = 0L;
+    private long evictionCount = 0L;
+    
+    
+    
+    /**
+     * <p>
+     * Creates a new registry.
+     * </p>
+     * 
+     * @param factory the factory which will create the encryptor for each
+     *                tenant.
+     */
+    public TenantEncryptorRegistry(final TenantEncryptorFactory factory) {
+        super();
+        CommonUtils.validateNotNull(factory, "Factory cannot be set null");
+        this.factory = factory;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of encryptors to be cached. Default is
+     * {@link #DEFAULT_MAX_SIZE}.
+     * </p>
+     * 
+     * @param maxSize the maximum size.
+     */
+    public void setMaxSize(final int maxSize) {
+        CommonUtils.validateIsTrue(maxSize > 0, "Maximum size must be > 0");
+        final List evicted;
+        synchronized (this) {
+            this.maxSize = maxSize;
+            evicted = evictExceeding(System.currentTimeMillis());
+        }
+        destroyAll(evicted);
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the time (in milliseconds) after which an encryptor that has not
+     * been used is evicted. Zero means encryptors are never evicted because
+     * of being idle. Default is {@link #DEFAULT_MAX_IDLE_TIME_MILLIS}.
+     * </p>
+     * <p>
+     * Idle encryptors are evicted when the registry is accessed, or when
+     * {@link #evictIdle()} is called.
+     * </p>
+     * 
+     * @param maxIdleTimeMillis the maximum idle time.
+     */
+    public synchronized void setMaxIdleTimeMillis(final long maxIdleTimeMillis) {
+        CommonUtils.validateIsTrue(maxIdleTimeMillis >= 0, 
+                "Maximum idle time cannot be negative");
+        this.maxIdleTimeMillis = maxIdleTimeMillis;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets whether evicted encryptors should be destroyed, once the 
+     * operations in flight on them have finished. Default is 
+     * <tt>false</tt>, as the registry cannot know whether the encryptors
+     * returned by the factory are used anywhere else: this should only 
+     * be enabled if the factory creates a new encryptor each time.
+     * </p>
+     * 
+     * @param destroyEvictedEncryptors whether to destroy evicted encryptors.
+     */
+    public synchronized void setDestroyEvictedEncryptors(final boolean destroyEvictedEncryptors) {
+        this.destroyEvictedEncryptors = destroyEvictedEncryptors;
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Encrypts a message with the encryptor for the specified tenant 
+     * (creating it if needed).
+     * </p>
+     * 
+     * @param tenantId the tenant identifier.
+     * @param message the message to be encrypted.
+     * @return the result of encryption.
+     * @throws EncryptionInitializationException if the encryptor for the
+     *         tenant cannot be created.
+     */
+    public String encrypt(final String tenantId, final String message) {
+        final Entry entry = acquire(tenantId);
+        try {
+            return entry.encryptor.encrypt(message);
+        } finally {
+            release(entry);
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts a message with the encryptor for the specified tenant 
+     * (creating it if needed).
+     * </p>
+     * 
+     * @param tenantId the tenant identifier.
+     * @param encryptedMessage the message to be decrypted.
+     * @return the result of decryption.
+     * @throws EncryptionInitializationException if the encryptor for the
+     *         tenant cannot be created.
+     */
+    public String decrypt(final String tenantId, final String encryptedMessage) {
+        final Entry entry = acquire(tenantId);
+        try {
+            return entry.encryptor.decrypt(encryptedMessage);
+        } finally {
+            release(entry);
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a view of the encryptor for the specified tenant, which can
+     * be passed to any component expecting a {@link StringEncryptor}. Views
+     * are lightweight and hold no key material: every operation on them
+     * is performed through the registry, so they remain usable after 
+     * the tenant's encryptor has been evicted.
+     * </p>
+     * 
+     * @param tenantId the tenant identifier.
+     * @return an encryptor for the tenant.
+     */
+    public StringEncryptor getEncryptor(final String tenantId) {
+        CommonUtils.validateNotNull(tenantId, "Tenant identifier cannot be null");
+        return new StringEncryptor() {
+            public String encrypt(final String message) {
+                return TenantEncryptorRegistry.this.encrypt(tenantId, message);
+            }
+            public String decrypt(final String encryptedMessage) {
+                return TenantEncryptorRegistry.this.decrypt(tenantId, encryptedMessage);
+            }
+        };
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Evicts (and destroys, once not in use) the encryptor for the 
+     * specified tenant, if cached. This should be done when the tenant's
+     * password changes.
+     * </p>
+     * 
+     * @param tenantId the tenant identifier.
+     */
+    public void evict(final String tenantId) {
+        final List evicted = new ArrayList();
+        synchronized (this) {
+            final Entry entry = (Entry) this.entries.remove(tenantId);
+            if (entry != null) {
+                markEvicted(entry, evicted);
+            }
+        }
+        destroyAll(evicted);
+    }
+    
+    
+    /**
+     * <p>
+     * Evicts (and destroys, once not in use) every cached encryptor.
+     * </p>
+     */
+    public void evictAll() {
+        final List evicted = new ArrayList();
+        synchronized (this) {
+            final Iterator entriesIter = this.entries.values().iterator();
+            while (entriesIter.hasNext()) {
+                markEvicted((Entry) entriesIter.next(), evicted);
+            }
+            this.entries.clear();
+        }
+        destroyAll(evicted);
+    }
+    
+    
+    /**
+     * <p>
+     * Evicts the encryptors which have been idle for longer than the 
+     * maximum idle time. This is also done automatically when the registry
+     * is accessed, but can be called periodically in order to release 
+     * key material even if the registry is not being used.
+     * </p>
+     */
+    public void evictIdle() {
+        final List evicted;
+        synchronized (this) {
+            evicted = evictExceeding(System.currentTimeMillis());
+        }
+        destroyAll(evicted);
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Returns the number of cached encryptors.
+     * </p>
+     * 
+     * @return the number of cached encryptors.
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of operations for which the encryptor was 
+     * already cached (or being created by another thread).
+     * </p>
+     * 
+     * @return the number of hits.
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of encryptors created (including those whose 
+     * creation failed).
+     * </p>
+     * 
+     * @return the number of creations.
+     */
+    public synchronized long getCreationCount() {
+        return this.creationCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of encryptor creations that failed.
+     * </p>
+     * 
+     * @return the number of failed creations.
+     */
+    public synchronized long getCreationFailureCount() {
+        return this.creationFailureCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of encryptors evicted (because of size, idle time
+     * or explicit eviction).
+     * </p>
+     * 
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+    
+    
+    
+    private Entry acquire(final String tenantId) {
+        
+        CommonUtils.validateNotNull(tenantId, "Tenant identifier cannot be null");
+        
+        final Entry entry;
+        final boolean creator;
+        final List evicted;
+        synchronized (this) {
+            
+            final long now = System.currentTimeMillis();
+            final Entry existing = (Entry) this.entries.get(tenantId);
+            if (existing != null) {
+                entry = existing;
+                creator = false;
+                this.hitCount++;
+            } else {
+                entry = new Entry();
+                creator = true;
+                this.creationCount++;
+                this.entries.put(tenantId, entry);
+            }
+            entry.inFlight++;
+            entry.lastAccess = now;
+            
+            evicted = evictExceeding(now);
+            
+        }
+        destroyAll(evicted);
+        
+        if (creator) {
+            create(tenantId, entry);
+        } else {
+            waitForCreation(entry);
+        }
+        
+        if (entry.failure != null) {
+            release(entry);
+            throw entry.failure;
+        }
+        return entry;
+        
+    }
+    
+    
+    private void create(final String tenantId, final Entry entry) {
+        
+        StringEncryptor encryptor = null;
+        RuntimeException failure = null;
+        try {
+            encryptor = this.factory.createEncryptor(tenantId);
+            if (encryptor == null) {
+                throw new EncryptionInitializationException(
+                        "Factory returned no encryptor for tenant " + tenantId);
+            }
+            // Initialization is paid once, here, and not by later operations 
+            if (encryptor instanceof PBEStringCleanablePasswordEncryptor) {
+                initialize(encryptor);
+            }
+        } catch (final EncryptionInitializationException e) {
+            failure = e;
+        } catch (final RuntimeException e) {
+            failure = new EncryptionInitializationException(e);
+        }
+        
+        synchronized (this) {
+            entry.encryptor = encryptor;
+            entry.failure = failure;
+            entry.created = true;
+            if (failure != null) {
+                this.creationFailureCount++;
+                // Failures are not cached: next operation will try again
+                if (this.entries.get(tenantId) == entry) {
+                    this.entries.remove(tenantId);
+                }
+                entry.evicted = true;
+            }
+            notifyAll();
+        }
+        
+    }
+    
+    
+    private static void initialize(final StringEncryptor encryptor) {
+        if (encryptor instanceof StandardPBEStringEncryptor) {
+            ((StandardPBEStringEncryptor) encryptor).initialize();
+        } else if (encryptor instanceof PooledPBEStringEncryptor) {
+            ((PooledPBEStringEncryptor) encryptor).initialize();
+        }
+    }
+    
+    
+    private synchronized void waitForCreation(final Entry entry) {
+        while (!entry.created) {
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.inFlight--;
+                throw new EncryptionInitializationException(
+                        "Interrupted while waiting for encryptor creation", e);
+            }
+        }
+    }
+    
+    
+    private void release(final Entry entry) {
+        final boolean destroy;
+        synchronized (this) {
+            entry.inFlight--;
+            destroy = (this.destroyEvictedEncryptors && entry.evicted && entry.inFlight == 0);
+        }
+        if (destroy) {
+            destroy(entry.encryptor);
+        }
+    }
+    
+    
+    
+    /*
+     * Evicts the least recently used entries exceeding the maximum size, 
+     * and the idle ones. Must be called while holding the lock on this.
+     * Returns the encryptors to be destroyed (outside the lock), if any.
+     */
+    private List evictExceeding(final long now) {
+        
+        final List evicted = new ArrayList();
+        
+        int excess = this.entries.size() - this.maxSize;
+        final long idleLimit = 
+            (this.maxIdleTimeMillis > 0? now - this.maxIdleTimeMillis : Long.MIN_VALUE);
+        
+        final Iterator entriesIter = this.entries.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            final Entry entry = (Entry) ((Map.Entry) entriesIter.next()).getValue();
+            // Access order: once one entry is neither exceeding nor idle,
+            // no following one can be idle either
+            if (excess <= 0 && entry.lastAccess >= idleLimit) {
+                break;
+            }
+            entriesIter.remove();
+            excess--;
+            markEvicted(entry, evicted);
+        }
+        
+        return evicted;
+        
+    }
+    
+    
+    // Must be called while holding the lock on this
+    private void markEvicted(final Entry entry, final List evicted) {
+        if (entry.evicted) {
+            return;
+        }
+        entry.evicted = true;
+        this.evictionCount++;
+        if (this.destroyEvictedEncryptors && entry.inFlight == 0 && entry.created) {
+            evicted.add(entry.encryptor);
+        }
+    }
+    
+    
+    private static void destroyAll(final List encryptors) {
+        for (int i = 0, n = encryptors.size(); i < n; i++) {
+            destroy((StringEncryptor) encryptors.get(i));
+        }
+    }
+    
+    
+    private static void destroy(final StringEncryptor encryptor) {
+        if (encryptor instanceof Destroyable) {
+            try {
+                ((Destroyable) encryptor).destroy();
+            } catch (final DestroyFailedException e) {
+                // Nothing else can be done: the encryptor is released anyway
+            }
+        }
+    }
+    
+}
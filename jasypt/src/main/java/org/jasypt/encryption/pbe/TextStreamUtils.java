@@ -0,0 +1,246 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
+
+
+/**
+ * <p>
+ * Utils for converting between character and binary streams the same way
+ * {@link StandardPBEStringEncryptor} converts between Strings and byte 
+ * arrays: messages are encoded in UTF-8, and encryption results in BASE64
+ * or hexadecimal.
+ * </p>
+ * <p>
+ * All conversions are performed on the fly, in chunks, while streams
+ * are read.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+final class TextStreamUtils {
+
+    private static final int CHUNK_SIZE = 3072; // multiple of 2, 3 and 4
+    
+    
+    /*
+     * Returns the UTF-8 bytes of the characters read from the reader.
+     */
+    static InputStream toUtf8Stream(final Reader reader) {
+        return new ChunkedInputStream() {
+            
+            private final char[] chars = new char[CHUNK_SIZE + 1];
+            private int pending = 0;
+            
+            protected byte[] nextChunk() throws IOException {
+                final int read = readFully(reader, this.chars, this.pending, CHUNK_SIZE);
+                int length = this.pending + read;
+                if (length == 0) {
+                    return null;
+                }
+                // A surrogate pair cannot be split between chunks
+                this.pending = 0;
+                if (read == CHUNK_SIZE && isHighSurrogate(this.chars[length - 1])) {
+                    length--;
+                    this.pending = 1;
+                }
+                final byte[] result = new String(this.chars, 0, length).getBytes("UTF-8");
+                if (this.pending > 0) {
+                    this.chars[0] = this.chars[length];
+                }
+                return result;
+            }
+            
+            public void close() throws IOException {
+                reader.close();
+            }
+            
+        };
+    }
+    
+    
+    /*
+     * Returns the BASE64 or hexadecimal (ASCII) encoding of the bytes read
+     * from the stream.
+     */
+    static InputStream toEncodedStream(final InputStream stream, final boolean base64) {
+        return new ChunkedInputStream() {
+            
+            private final byte[] bytes = new byte[CHUNK_SIZE];
+            private final Base64 base64Codec = new Base64();
+            
+            protected byte[] nextChunk() throws IOException {
+                final int read = readFully(stream, this.bytes);
+                if (read == 0) {
+                    return null;
+                }
+                final byte[] chunk = new byte[read];
+                System.arraycopy(this.bytes, 0, chunk, 0, read);
+                if (base64) {
+                    return this.base64Codec.encode(chunk);
+                }
+                return CommonUtils.toHexadecimal(chunk).getBytes("US-ASCII");
+            }
+            
+            public void close() throws IOException {
+                stream.close();
+            }
+            
+        };
+    }
+    
+    
+    /*
+     * Returns the bytes resulting from decoding the BASE64 or hexadecimal 
+     * characters read from the reader.
+     */
+    static InputStream fromEncodedReader(final Reader reader, final boolean base64) {
+        return new ChunkedInputStream() {
+            
+            private final char[] chars = new char[CHUNK_SIZE];
+            private final Base64 base64Codec = new Base64();
+            
+            protected byte[] nextChunk() throws IOException {
+                final int read = readFully(reader, this.chars, 0, CHUNK_SIZE);
+                if (read == 0) {
+                    return null;
+                }
+                final String chunk = new String(this.chars, 0, read);
+                if (base64) {
+                    return this.base64Codec.decode(chunk.getBytes("US-ASCII"));
+                }
+                return CommonUtils.fromHexadecimal(chunk);
+            }
+            
+            public void close() throws IOException {
+                reader.close();
+            }
+            
+        };
+    }
+    
+    
+    
+    private static boolean isHighSurrogate(final char c) {
+        return (c >= '\uD800' && c <= '\uDBFF');
+    }
+    
+    
+    private static int readFully(final InputStream stream, final byte[] buffer) 
+            throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            final int read = stream.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    
+    private static int readFully(final Reader reader, final char[] buffer, 
+            final int offset, final int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            final int read = reader.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    
+    
+    /*
+     * Input stream which returns the contents of a series of chunks, 
+     * computed on demand.
+     */
+    private abstract static class ChunkedInputStream extends InputStream {
+        
+        private byte[] chunk = new byte[0];
+        private int position = 0;
+        private boolean finished = false;
+        
+        /*
+         * Returns the next chunk, or null if there are no more.
+         */
+        protected abstract byte[] nextChunk() throws IOException;
+        
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return this.chunk[this.position++] & 0xFF;
+        }
+        
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int count = Math.min(len, this.chunk.length - this.position);
+            System.arraycopy(this.chunk, this.position, b, off, count);
+            this.position += count;
+            return count;
+        }
+        
+        public int available() throws IOException {
+            return this.chunk.length - this.position;
+        }
+        
+        private boolean fill() throws IOException {
+            while (this.position >= this.chunk.length) {
+                if (this.finished) {
+                    return false;
+                }
+                final byte[] next = nextChunk();
+                if (next == null) {
+                    this.finished = true;
+                    return false;
+                }
+                this.chunk = next;
+                this.position = 0;
+            }
+            return true;
+        }
+        
+    }
+    
+    
+    private TextStreamUtils() {
+        super();
+    }
+    
+}
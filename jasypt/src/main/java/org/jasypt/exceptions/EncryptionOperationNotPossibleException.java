@@ -40,16 +40,59 @@ public final class EncryptionOperationNotPossibleException extends RuntimeExcept
 
     private static final long serialVersionUID = 6304674109588715145L;
 
+    /*
+     * Throwable's constructors call fillInStackTrace() before this field
+     * is initialized, so the stack trace is explicitly filled by each public
+     * constructor after setting it.
+     */
+    private transient boolean stackTraceEnabled;
+
+    
+    /**
+     * <p>
+     * Creates an exception without a stack trace, which is much cheaper to
+     * build. Used by encryptors and digesters for failures that can be part
+     * of a normal control flow (e.g. decrypting a message with the wrong key),
+     * and that will be thrown at high rates in some scenarios.
+     * </p>
+     * 
+     * @return the new exception, without a stack trace.
+     * @since 1.9.3
+     */
+    public static EncryptionOperationNotPossibleException createWithoutStackTrace() {
+        return new EncryptionOperationNotPossibleException(false);
+    }
+    
+    
     public EncryptionOperationNotPossibleException() {
         super();
+        this.stackTraceEnabled = true;
+        super.fillInStackTrace();
     }
 
     public EncryptionOperationNotPossibleException(final Throwable t) {
         super(t);
+        this.stackTraceEnabled = true;
+        super.fillInStackTrace();
     }
     
     public EncryptionOperationNotPossibleException(final String message) {
         super(message);
+        this.stackTraceEnabled = true;
+        super.fillInStackTrace();
+    }
+    
+    private EncryptionOperationNotPossibleException(final boolean stackTraceEnabled) {
+        super();
+        this.stackTraceEnabled = stackTraceEnabled;
+    }
+    
+    
+    public synchronized Throwable fillInStackTrace() {
+        if (!this.stackTraceEnabled) {
+            return this;
+        }
+        return super.fillInStackTrace();
     }
     
 }
@@ -0,0 +1,53 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.exceptions;
+
+/**
+ * Exception thrown when a re-encryption process (see 
+ * {@link org.jasypt.reencryption.ReencryptionEngine}) cannot continue
+ * because of an error not related to the values being re-encrypted
+ * (for example, when the source of values or the sink cannot be accessed).
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ReencryptionException extends RuntimeException {
+    
+    private static final long serialVersionUID = -2185021873648294816L;
+
+    public ReencryptionException() {
+        super();
+    }
+
+    public ReencryptionException(final Throwable t) {
+        super(t);
+    }
+    
+    public ReencryptionException(final String msg, final Throwable t) {
+        super(msg, t);
+    }
+    
+    public ReencryptionException(final String msg) {
+        super(msg);
+    }
+
+}
@@ -31,6 +31,10 @@ final class ArgumentNaming {
     
     static final String ARG_INPUT = "input";
     
+    static final String ARG_INPUT_FILE = "inputFile";
+    
+    static final String ARG_KEY = "key";
+    
     static final String ARG_PASSWORD = "password";
     
     static final String ARG_ALGORITHM = "algorithm";
@@ -27,6 +27,8 @@ import java.util.Properties;
 import java.util.Set;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
 import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 
 
@@ -200,6 +202,56 @@ final class CLIUtils {
     }
     
     
+    /*
+     * Creates a string encryptor configured from the PBE-related command
+     * arguments (password, algorithm, iterations, salt generator, provider
+     * and string output type), for operations that need to call an encryptor
+     * more than once or pass it to other components.
+     */
+    static StandardPBEStringEncryptor createStringEncryptor(final Properties argumentValues) {
+        
+        final SimpleStringPBEConfig config = new SimpleStringPBEConfig();
+        
+        final String password = argumentValues.getProperty(ArgumentNaming.ARG_PASSWORD);
+        if (password != null) {
+            config.setPassword(password);
+        }
+        final String algorithm = argumentValues.getProperty(ArgumentNaming.ARG_ALGORITHM);
+        if (algorithm != null) {
+            config.setAlgorithm(algorithm);
+        }
+        final String keyObtentionIterations = 
+            argumentValues.getProperty(ArgumentNaming.ARG_KEY_OBTENTION_ITERATIONS);
+        if (keyObtentionIterations != null) {
+            config.setKeyObtentionIterations(keyObtentionIterations);
+        }
+        final String saltGeneratorClassName = 
+            argumentValues.getProperty(ArgumentNaming.ARG_SALT_GENERATOR_CLASS_NAME);
+        if (saltGeneratorClassName != null) {
+            config.setSaltGeneratorClassName(saltGeneratorClassName);
+        }
+        final String providerName = argumentValues.getProperty(ArgumentNaming.ARG_PROVIDER_NAME);
+        if (providerName != null) {
+            config.setProviderName(providerName);
+        }
+        final String providerClassName = 
+            argumentValues.getProperty(ArgumentNaming.ARG_PROVIDER_CLASS_NAME);
+        if (providerClassName != null) {
+            config.setProviderClassName(providerClassName);
+        }
+        final String stringOutputType = 
+            argumentValues.getProperty(ArgumentNaming.ARG_STRING_OUTPUT_TYPE);
+        if (stringOutputType != null) {
+            config.setStringOutputType(stringOutputType);
+        }
+        
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setConfig(config);
+        return encryptor;
+        
+    }
+    
+    
     /*
      * Renders the usage instructions and exits with error.
      */
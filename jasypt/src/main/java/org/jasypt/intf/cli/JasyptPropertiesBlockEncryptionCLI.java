@@ -0,0 +1,187 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.intf.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.properties.PropertyValueEncryptionUtils;
+
+
+/**
+ * <p>
+ * This class supports the CLI "encryptBlock" operation, which encrypts
+ * a whole <tt>.properties</tt> file (or a section of one) into one single
+ * <tt>ENCBLOCK(...)</tt> value, to be loaded by 
+ * {@link org.jasypt.properties.EncryptableProperties}.
+ * </p>
+ * <p>
+ * If a <tt>key</tt> argument is specified, the output will be a complete
+ * property line (<tt>key=ENCBLOCK(...)</tt>) which can be directly appended
+ * to a <tt>.properties</tt> file.
+ * </p>
+ * <p>
+ * <b>It should NEVER be used inside your code, only from the supplied
+ * command-line tools</b>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ *
+ */
+public final class JasyptPropertiesBlockEncryptionCLI {
+    
+    /*
+     * The charset in which .properties files are read
+     */
+    private static final String PROPERTIES_CHARSET = "ISO-8859-1";
+    
+    /*
+     * The required arguments for this CLI operation.
+     */
+    private static final String[][] VALID_REQUIRED_ARGUMENTS =
+        new String[][] {
+            new String [] {
+                ArgumentNaming.ARG_INPUT_FILE
+            },
+            new String [] {
+                ArgumentNaming.ARG_PASSWORD
+            }
+        };
+    
+    /*
+     * The optional arguments for this CLI operation.
+     */
+    private static final String[][] VALID_OPTIONAL_ARGUMENTS =
+        new String[][] {
+            new String [] {
+                ArgumentNaming.ARG_VERBOSE
+            },
+            new String [] {
+                ArgumentNaming.ARG_KEY
+            },
+            new String [] {
+                ArgumentNaming.ARG_ALGORITHM
+            },
+            new String [] {
+                ArgumentNaming.ARG_KEY_OBTENTION_ITERATIONS
+            },
+            new String [] {
+                ArgumentNaming.ARG_SALT_GENERATOR_CLASS_NAME
+            },
+            new String [] {
+                ArgumentNaming.ARG_PROVIDER_NAME
+            },
+            new String [] {
+                ArgumentNaming.ARG_PROVIDER_CLASS_NAME
+            },
+            new String [] {
+                ArgumentNaming.ARG_STRING_OUTPUT_TYPE
+            }
+        };
+    
+    
+    /**
+     * <p>
+     * CLI execution method.
+     * </p>
+     * 
+     * @param args the command execution arguments
+     */
+    public static void main(final String[] args) {
+
+        final boolean verbose = CLIUtils.getVerbosity(args);
+
+        try {
+            
+            String applicationName = null;
+            String[] arguments = null;
+            if (args[0] == null || args[0].indexOf("=") != -1) {
+                applicationName = JasyptPropertiesBlockEncryptionCLI.class.getName();
+                arguments = args;
+            } else {
+                applicationName = args[0];
+                arguments = new String[args.length - 1];
+                System.arraycopy(args, 1, arguments, 0, args.length - 1);
+            }
+            
+            final Properties argumentValues = 
+                CLIUtils.getArgumentValues(
+                        applicationName, arguments, 
+                        VALID_REQUIRED_ARGUMENTS, VALID_OPTIONAL_ARGUMENTS);
+
+            CLIUtils.showEnvironment(verbose);
+
+            final String input = 
+                readFile(argumentValues.getProperty(ArgumentNaming.ARG_INPUT_FILE));
+
+            CLIUtils.showArgumentDescription(argumentValues, verbose);
+            
+            final StringEncryptor encryptor = 
+                CLIUtils.createStringEncryptor(argumentValues);
+            
+            final String block = 
+                PropertyValueEncryptionUtils.encryptBlock(input, encryptor);
+            
+            final String key = argumentValues.getProperty(ArgumentNaming.ARG_KEY);
+            final String result = 
+                (key == null? block : key + "=" + block);
+            
+            CLIUtils.showOutput(result, verbose);
+
+        } catch (Throwable t) {
+            CLIUtils.showError(t, verbose);
+        }
+        
+    }
+    
+    
+    /*
+     * Reads the whole file as .properties files are read: ISO-8859-1
+     */
+    private static String readFile(final String fileName) throws IOException {
+        final InputStream inputStream = new FileInputStream(fileName);
+        try {
+            final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read = 0;
+            while ((read = inputStream.read(buffer)) != -1) {
+                contents.write(buffer, 0, read);
+            }
+            return new String(contents.toByteArray(), PROPERTIES_CHARSET);
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    
+    /*
+     * Instantiation is forbidden.
+     */
+    private JasyptPropertiesBlockEncryptionCLI() {
+        super();
+    }
+    
+}
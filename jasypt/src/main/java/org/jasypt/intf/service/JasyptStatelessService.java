@@ -22,7 +22,8 @@ package org.jasypt.intf.service;
 import org.jasypt.commons.CommonUtils;
 import org.jasypt.digest.StandardStringDigester;
 import org.jasypt.digest.config.EnvironmentStringDigesterConfig;
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
 import org.jasypt.encryption.pbe.config.EnvironmentStringPBEConfig;
 
 
@@ -444,8 +445,9 @@ public final class JasyptStatelessService {
         }
         
         
-        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
-        encryptor.setConfig(config);
+        // Encryptors are shared among all the calls with the same configuration
+        final StringEncryptor encryptor = 
+            SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
         
         return encryptor.encrypt(input);
         
@@ -589,8 +591,9 @@ public final class JasyptStatelessService {
         }
         
         
-        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
-        encryptor.setConfig(config);
+        // Encryptors are shared among all the calls with the same configuration
+        final StringEncryptor encryptor = 
+            SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
         
         return encryptor.decrypt(input);
         
@@ -19,12 +19,21 @@
  */
 package org.jasypt.properties;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
 import org.jasypt.encryption.StringEncryptor;
 import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.util.text.TextEncryptor;
@@ -59,6 +68,29 @@ import org.jasypt.util.text.TextEncryptor;
  * properties file.
  * </p>
  * <p>
+ * Also, a whole block of properties (a complete <tt>.properties</tt> file 
+ * or a section of one) can be encrypted as one single value (an 
+ * <i>envelope</i>) surrounded by <tt>ENCBLOCK(...)</tt>, like:
+ * </p>
+ * <p>
+ *   <center>
+ *     <tt>my.section=ENCBLOCK(!"DGAS24FaIO$)</tt>
+ *   </center>
+ * </p>
+ * <p>
+ * Encrypted blocks are decrypted when the properties are loaded by means of
+ * {@link #load(InputStream)} (one single decryption operation per block),
+ * and the properties they contain are added to this object, replacing the
+ * block itself. Any properties contained in a block will override properties
+ * with the same key appearing outside of it. Blocks can be created with the 
+ * <tt>encryptBlock</tt> command-line tool.
+ * </p>
+ * <p>
+ * Alternatively, all the encrypted values can be eagerly decrypted at once
+ * (in parallel) by calling {@link #preloadEncryptedValues()} after loading.
+ * Decrypted values are then kept in memory and served from there.
+ * </p>
+ * <p>
  * Please note that, altough objects of this class are Serializable, they
  * cannot be serialized and then de-serialized in different classloaders or
  * virtual machines. This is so because encryptors are not serializable themselves
@@ -75,6 +107,12 @@ public final class EncryptableProperties extends Properties {
 
     private static final long serialVersionUID = 6479795856725500639L;
 
+    /*
+     * Charset in which the contents of encrypted blocks are parsed, the same
+     * one used by Properties.load(InputStream) for .properties files.
+     */
+    private static final String BLOCK_CHARSET = "ISO-8859-1";
+
     /*
      * Used as an identifier for the encryptor registry
      */
@@ -92,6 +130,12 @@ public final class EncryptableProperties extends Properties {
      */
     private transient TextEncryptor textEncryptor = null;
     
+    /*
+     * Decrypted values obtained by preloading, mapped by their encrypted
+     * (ENC(...)) form. Will be null unless values have been preloaded.
+     */
+    private transient Map preloadedValues = null;
+    
     
     /**
      * <p>
@@ -210,6 +254,157 @@ public final class EncryptableProperties extends Properties {
     }
     
     
+    /**
+     * <p>
+     * Reads a property list from the input byte stream (see 
+     * {@link Properties#load(InputStream)}), and then decrypts and
+     * expands the encrypted blocks (<tt>ENCBLOCK(...)</tt>) in it, if any.
+     * </p>
+     * <p>
+     * Blocks are only expanded once all of them have been decrypted: if any
+     * of them cannot be decrypted, the exception is thrown and no block is
+     * expanded (the properties read from the stream are kept as they are).
+     * </p>
+     * 
+     * @param inStream the input stream.
+     * @throws IOException if an error occurred when reading from the 
+     *         input stream.
+     * @since 1.9.3
+     */
+    public synchronized void load(final InputStream inStream) throws IOException {
+        super.load(inStream);
+        expandEncryptedBlocks();
+    }
+    
+    
+    /*
+     * Replaces every encrypted block by the properties it contains. Each
+     * block needs only one decryption operation, and its contents are
+     * parsed as a .properties file (ISO-8859-1 with unicode escapes). All
+     * blocks are decrypted before any of them is expanded, so that a 
+     * decryption failure leaves this object unmodified.
+     */
+    private void expandEncryptedBlocks() throws IOException {
+        
+        final List blockKeys = new ArrayList();
+        final Iterator entriesIter = entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            final Map.Entry entry = (Map.Entry) entriesIter.next();
+            if ((entry.getValue() instanceof String) && 
+                    PropertyValueEncryptionUtils.isEncryptedBlock((String) entry.getValue())) {
+                blockKeys.add(entry.getKey());
+            }
+        }
+        
+        if (blockKeys.isEmpty()) {
+            return;
+        }
+        
+        final Properties blockProperties = new Properties();
+        for (int i = 0, n = blockKeys.size(); i < n; i++) {
+            
+            final String encodedBlock = (String) super.get(blockKeys.get(i));
+            final String block;
+            if (this.stringEncryptor != null) {
+                block = PropertyValueEncryptionUtils.decryptBlock(encodedBlock, this.stringEncryptor);
+            } else {
+                block = PropertyValueEncryptionUtils.decryptBlock(encodedBlock, this.textEncryptor);
+            }
+            blockProperties.load(new ByteArrayInputStream(block.getBytes(BLOCK_CHARSET)));
+            
+        }
+        
+        for (int i = 0, n = blockKeys.size(); i < n; i++) {
+            remove(blockKeys.get(i));
+        }
+        putAll(blockProperties);
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts all the encrypted values in this object (including those
+     * in its defaults) at once, in parallel, using as many threads as 
+     * processors are available to the JVM.
+     * </p>
+     * <p>
+     * See {@link #preloadEncryptedValues(int)}.
+     * </p>
+     * 
+     * @return a report on the decryption process, including any failures.
+     * @since 1.9.3
+     */
+    public PropertyValueDecryptionReport preloadEncryptedValues() {
+        return preloadEncryptedValues(ParallelProcessingUtils.getDefaultThreadCount());
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts all the encrypted values in this object (including those
+     * in its defaults) at once, in parallel, using the specified number of
+     * threads.
+     * </p>
+     * <p>
+     * If the defaults are an <tt>EncryptableProperties</tt> object themselves,
+     * they will decrypt their own values, so they should be preloaded 
+     * separately.
+     * </p>
+     * <p>
+     * Decrypted values are kept in memory, so that subsequent calls to 
+     * {@link #getProperty(String)}, {@link #getProperty(String, String)} or
+     * {@link #get(Object)} do not need to decrypt them again. Values that
+     * could not be decrypted are reported in the returned object, and will
+     * keep being decrypted (and failing) on-the-fly when accessed.
+     * </p>
+     * <p>
+     * Note that, in order for decryption to really happen in parallel, the
+     * encryptor being used should be able to attend several requests at the
+     * same time, like 
+     * {@link org.jasypt.encryption.pbe.PooledPBEStringEncryptor} does.
+     * </p>
+     * 
+     * @param threadCount the maximum number of threads to be used.
+     * @return a report on the decryption process, including any failures.
+     * @since 1.9.3
+     */
+    public synchronized PropertyValueDecryptionReport preloadEncryptedValues(final int threadCount) {
+        
+        final ParallelPropertyValueDecryptor decryptor = 
+            (this.stringEncryptor != null? 
+                    new ParallelPropertyValueDecryptor(this.stringEncryptor) :
+                    new ParallelPropertyValueDecryptor(this.textEncryptor));
+        decryptor.setThreadCount(threadCount);
+
+        // We need the raw (still encrypted) values. Note we cannot use
+        // propertyNames() for this, as it would call get(Object) on every
+        // key, and therefore decrypt every value sequentially.
+        final Map rawValues = new HashMap();
+        if (this.defaults != null && !(this.defaults instanceof EncryptableProperties)) {
+            final Enumeration defaultNames = this.defaults.propertyNames();
+            while (defaultNames.hasMoreElements()) {
+                final String name = (String) defaultNames.nextElement();
+                rawValues.put(name, this.defaults.getProperty(name));
+            }
+        }
+        rawValues.putAll(this);
+        
+        final PropertyValueDecryptionReport report = decryptor.decrypt(rawValues);
+        
+        final Map newPreloadedValues = new HashMap();
+        final Iterator decryptedIter = report.getDecryptedValues().entrySet().iterator();
+        while (decryptedIter.hasNext()) {
+            final Map.Entry entry = (Map.Entry) decryptedIter.next();
+            newPreloadedValues.put(rawValues.get(entry.getKey()), entry.getValue());
+        }
+        this.preloadedValues = newPreloadedValues;
+        
+        return report;
+        
+    }
+    
+    
     /*
      *  Returns the identifier, just to be used by the registry
      */
@@ -226,6 +421,12 @@ public final class EncryptableProperties extends Properties {
         if (!PropertyValueEncryptionUtils.isEncryptedValue(encodedValue)) {
             return encodedValue;
         }
+        if (this.preloadedValues != null) {
+            final String preloadedValue = (String) this.preloadedValues.get(encodedValue);
+            if (preloadedValue != null) {
+                return preloadedValue;
+            }
+        }
         if (this.stringEncryptor != null) {
             return PropertyValueEncryptionUtils.decrypt(encodedValue, this.stringEncryptor);
             
@@ -0,0 +1,72 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.properties;
+
+import java.util.Set;
+
+
+/**
+ * <p>
+ * Listener interface for being notified of the changes detected by an
+ * {@link EncryptablePropertiesWatcher}.
+ * </p>
+ * <p>
+ * Listener methods are called from the watcher's own background thread,
+ * once the new snapshot of the properties has already been published.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface EncryptablePropertiesChangeListener {
+
+    
+    /**
+     * <p>
+     * Called when a new version of the properties has been loaded and
+     * published.
+     * </p>
+     * 
+     * @param watcher the watcher that detected the change.
+     * @param changedKeys the keys that have been added or whose values
+     *                    have changed (a Set of String).
+     * @param removedKeys the keys that have been removed (a Set of String).
+     */
+    public void propertiesChanged(final EncryptablePropertiesWatcher watcher,
+            final Set changedKeys, final Set removedKeys);
+
+    
+    /**
+     * <p>
+     * Called when a change has been detected but the new version of the
+     * properties could not be loaded (for example, because the file could
+     * not be read or some of its encrypted values could not be decrypted).
+     * The previous snapshot remains published.
+     * </p>
+     * 
+     * @param watcher the watcher that detected the change.
+     * @param cause the exception that prevented the reload.
+     */
+    public void reloadFailed(final EncryptablePropertiesWatcher watcher,
+            final Exception cause);
+    
+}
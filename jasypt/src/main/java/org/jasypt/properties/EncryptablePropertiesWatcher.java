@@ -0,0 +1,529 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.properties;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.util.text.TextEncryptor;
+
+
+/**
+ * <p>
+ * Watches a <tt>.properties</tt> file containing encrypted values 
+ * (<tt>ENC(...)</tt>) and/or encrypted blocks (<tt>ENCBLOCK(...)</tt>),
+ * and keeps an always-decrypted snapshot of its contents which is updated
+ * every time the file changes, without needing to restart the application.
+ * </p>
+ * <p>
+ * Changes are detected by a background (daemon) thread which checks the 
+ * modification time and size of the file every 
+ * {@link #setPollInterval(long) poll interval}. When a change is detected,
+ * the new version of the file is read and compared to the previous one, and
+ * only the encrypted values that have been added or modified are decrypted
+ * (in parallel, see {@link ParallelPropertyValueDecryptor}), reusing the 
+ * already-decrypted values for every other key. Once every value has been
+ * decrypted, the new snapshot replaces the previous one atomically: readers 
+ * never see a partially-updated set of properties, and they never block
+ * while decryption takes place.
+ * </p>
+ * <p>
+ * If some of the new values cannot be decrypted, the previous snapshot
+ * remains published and the registered 
+ * {@link EncryptablePropertiesChangeListener listeners} are informed of
+ * the failure.
+ * </p>
+ * <p>
+ * Please note that decrypted values are kept in memory for as long as they
+ * are part of the current snapshot.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class EncryptablePropertiesWatcher {
+
+    /**
+     * Default interval between checks for changes: 5 seconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000L;
+    
+    
+    private final File file;
+
+    /*
+     * Only one of these instances will be initialized, the other one will be
+     * null.
+     */
+    private final StringEncryptor stringEncryptor;
+    private final TextEncryptor textEncryptor;
+    
+    private final ParallelPropertyValueDecryptor decryptor;
+    
+    private final List listeners = new ArrayList();
+
+    /*
+     * Reloads (from the watcher thread or from checkForChanges) are
+     * executed one at a time.
+     */
+    private final Object reloadLock = new Object();
+    
+    /*
+     * The following fields are guarded by "this"
+     */
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private long lastModified = -1L;
+    private long lastLength = -1L;
+    private Map rawValues = new HashMap();
+    private Properties snapshot = new Properties();
+    private PropertyValueDecryptionReport lastReport = null;
+    private Thread watcherThread = null;
+    
+    
+
+    /**
+     * <p>
+     * Creates a watcher for the specified file, which will use the passed
+     * {@link StringEncryptor} to decrypt its encrypted values.
+     * </p>
+     * 
+     * @param file the <tt>.properties</tt> file to be watched.
+     * @param stringEncryptor the {@link StringEncryptor} to be used do decrypt
+     *                        values. It can not be null.
+     */
+    public EncryptablePropertiesWatcher(final File file, final StringEncryptor stringEncryptor) {
+        super();
+        CommonUtils.validateNotNull(file, "File cannot be null");
+        CommonUtils.validateNotNull(stringEncryptor, "Encryptor cannot be null");
+        this.file = file;
+        this.stringEncryptor = stringEncryptor;
+        this.textEncryptor = null;
+        this.decryptor = new ParallelPropertyValueDecryptor(stringEncryptor);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a watcher for the specified file, which will use the passed
+     * {@link TextEncryptor} to decrypt its encrypted values.
+     * </p>
+     * 
+     * @param file the <tt>.properties</tt> file to be watched.
+     * @param textEncryptor the {@link TextEncryptor} to be used do decrypt
+     *                      values. It can not be null.
+     */
+    public EncryptablePropertiesWatcher(final File file, final TextEncryptor textEncryptor) {
+        super();
+        CommonUtils.validateNotNull(file, "File cannot be null");
+        CommonUtils.validateNotNull(textEncryptor, "Encryptor cannot be null");
+        this.file = file;
+        this.stringEncryptor = null;
+        this.textEncryptor = textEncryptor;
+        this.decryptor = new ParallelPropertyValueDecryptor(textEncryptor);
+    }
+
+    
+    
+    /**
+     * <p>
+     * Sets the interval (in milliseconds) between two consecutive checks
+     * for changes in the watched file. Default is 
+     * {@link #DEFAULT_POLL_INTERVAL_MILLIS}.
+     * </p>
+     * 
+     * @param pollIntervalMillis the poll interval in milliseconds.
+     */
+    public synchronized void setPollInterval(final long pollIntervalMillis) {
+        CommonUtils.validateIsTrue(pollIntervalMillis > 0, "Poll interval must be > 0");
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of threads to be used for decrypting the 
+     * changed values. By default, this equals the number of processors
+     * available to the JVM.
+     * </p>
+     * 
+     * @param threadCount the number of threads to be used.
+     */
+    public void setThreadCount(final int threadCount) {
+        this.decryptor.setThreadCount(threadCount);
+    }
+    
+    
+    /**
+     * <p>
+     * Registers a listener to be notified of changes.
+     * </p>
+     * 
+     * @param listener the listener to be added.
+     */
+    public void addListener(final EncryptablePropertiesChangeListener listener) {
+        CommonUtils.validateNotNull(listener, "Listener cannot be null");
+        synchronized (this.listeners) {
+            this.listeners.add(listener);
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Unregisters a previously registered listener.
+     * </p>
+     * 
+     * @param listener the listener to be removed.
+     */
+    public void removeListener(final EncryptablePropertiesChangeListener listener) {
+        synchronized (this.listeners) {
+            this.listeners.remove(listener);
+        }
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Loads (and fully decrypts) the watched file and starts watching it
+     * for changes. Calling this method on an already started watcher has
+     * no effect.
+     * </p>
+     * 
+     * @throws IOException if the file cannot be read.
+     * @throws EncryptionOperationNotPossibleException if any of the encrypted
+     *         values in the file cannot be decrypted.
+     */
+    public void start() throws IOException {
+        
+        synchronized (this) {
+            if (this.watcherThread != null) {
+                return;
+            }
+        }
+        
+        reload(true);
+        
+        synchronized (this) {
+            if (this.watcherThread != null) {
+                return;
+            }
+            this.watcherThread = new Thread(new Runnable() {
+                public void run() {
+                    watch();
+                }
+            }, "jasypt-properties-watcher");
+            this.watcherThread.setDaemon(true);
+            this.watcherThread.start();
+        }
+        
+    }
+    
+    
+    /**
+     * <p>
+     * Stops watching the file for changes. The last published snapshot
+     * remains available.
+     * </p>
+     */
+    public void stop() {
+        final Thread thread;
+        synchronized (this) {
+            thread = this.watcherThread;
+            this.watcherThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether the watcher is currently watching the file for 
+     * changes.
+     * </p>
+     * 
+     * @return true if started (and not stopped), false if not.
+     */
+    public synchronized boolean isStarted() {
+        return (this.watcherThread != null);
+    }
+    
+    
+    /**
+     * <p>
+     * Checks the watched file for changes right now (without waiting for
+     * the next poll) and, if it has changed, loads it, decrypts its modified
+     * values and publishes the new snapshot.
+     * </p>
+     * 
+     * @return true if a new snapshot with different values has been 
+     *         published, false if not.
+     * @throws IOException if the file cannot be read.
+     * @throws EncryptionOperationNotPossibleException if any of the new
+     *         encrypted values cannot be decrypted.
+     */
+    public boolean checkForChanges() throws IOException {
+        try {
+            return reload(false);
+        } catch (final IOException e) {
+            fireReloadFailed(e);
+            throw e;
+        } catch (final RuntimeException e) {
+            fireReloadFailed(e);
+            throw e;
+        }
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Returns the decrypted value of a property in the current snapshot.
+     * </p>
+     * 
+     * @param key the property key.
+     * @return the decrypted value, or null if not present.
+     */
+    public String getProperty(final String key) {
+        return getSnapshot().getProperty(key);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the decrypted value of a property in the current snapshot, 
+     * or a default value if not present.
+     * </p>
+     * 
+     * @param key the property key.
+     * @param defaultValue the value to be returned if the key is not present.
+     * @return the decrypted value, or the default value if not present.
+     */
+    public String getProperty(final String key, final String defaultValue) {
+        return getSnapshot().getProperty(key, defaultValue);
+    }
+    
+    
+    /**
+     * <p>
+     * Returns a copy of the current snapshot, containing all the 
+     * properties in the watched file with their values already decrypted.
+     * Modifications made on the returned object will not affect the watcher.
+     * </p>
+     * 
+     * @return a copy of the current snapshot.
+     */
+    public Properties getProperties() {
+        final Properties copy = new Properties();
+        copy.putAll(getSnapshot());
+        return copy;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the report of the decryption operations performed during the
+     * last reload (which include only those values that had changed).
+     * </p>
+     * 
+     * @return the report, or null if the file has not been loaded yet.
+     */
+    public synchronized PropertyValueDecryptionReport getLastReport() {
+        return this.lastReport;
+    }
+    
+    
+    private synchronized Properties getSnapshot() {
+        return this.snapshot;
+    }
+    
+    
+    
+    private void watch() {
+        
+        while (true) {
+
+            final long interval;
+            synchronized (this) {
+                if (this.watcherThread != Thread.currentThread()) {
+                    return;
+                }
+                interval = this.pollIntervalMillis;
+            }
+            
+            try {
+                Thread.sleep(interval);
+            } catch (final InterruptedException e) {
+                return;
+            }
+            
+            try {
+                checkForChanges();
+            } catch (final Exception ignored) {
+                // Listeners have already been notified, and the previous
+                // snapshot remains published: keep on watching
+            }
+            
+        }
+        
+    }
+    
+    
+    
+    private boolean reload(final boolean force) throws IOException {
+        
+        synchronized (this.reloadLock) {
+            
+            final long modified = this.file.lastModified();
+            final long length = this.file.length();
+            
+            final Map oldRawValues;
+            final Properties oldSnapshot;
+            synchronized (this) {
+                if (!force && modified == this.lastModified && length == this.lastLength) {
+                    return false;
+                }
+                // Whatever the result, this version of the file will not be 
+                // tried again until it changes
+                this.lastModified = modified;
+                this.lastLength = length;
+                oldRawValues = this.rawValues;
+                oldSnapshot = this.snapshot;
+            }
+
+            // Encrypted blocks, if any, are expanded when loading
+            final EncryptableProperties loaded = 
+                (this.stringEncryptor != null?
+                        new EncryptableProperties(this.stringEncryptor) :
+                        new EncryptableProperties(this.textEncryptor));
+            final InputStream inputStream = new FileInputStream(this.file);
+            try {
+                loaded.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            
+            // Raw values: obtained through entrySet(), so nothing is decrypted 
+            final Map newRawValues = new HashMap(loaded);
+            
+            final Set changedKeys = new HashSet();
+            final Set removedKeys = new HashSet(oldRawValues.keySet());
+            removedKeys.removeAll(newRawValues.keySet());
+            
+            final Map valuesToDecrypt = new HashMap();
+            final Iterator entriesIter = newRawValues.entrySet().iterator();
+            while (entriesIter.hasNext()) {
+                final Map.Entry entry = (Map.Entry) entriesIter.next();
+                if (!entry.getValue().equals(oldRawValues.get(entry.getKey()))) {
+                    changedKeys.add(entry.getKey());
+                    valuesToDecrypt.put(entry.getKey(), entry.getValue());
+                }
+            }
+            
+            final PropertyValueDecryptionReport report = 
+                this.decryptor.decrypt(valuesToDecrypt);
+            
+            if (report.hasFailures()) {
+                throw new EncryptionOperationNotPossibleException(
+                        "Could not decrypt the values of properties " + 
+                        report.getFailures().keySet() + " in file " + this.file);
+            }
+            
+            final Properties newSnapshot = new Properties();
+            final Map decryptedValues = report.getDecryptedValues();
+            final Iterator newEntriesIter = newRawValues.entrySet().iterator();
+            while (newEntriesIter.hasNext()) {
+                final Map.Entry entry = (Map.Entry) newEntriesIter.next();
+                final Object key = entry.getKey();
+                final Object value = entry.getValue();
+                if (!(value instanceof String) || 
+                        !PropertyValueEncryptionUtils.isEncryptedValue((String) value)) {
+                    newSnapshot.put(key, value);
+                } else if (decryptedValues.containsKey(key)) {
+                    newSnapshot.put(key, decryptedValues.get(key));
+                } else {
+                    // Unchanged encrypted value: reuse its decrypted version
+                    newSnapshot.put(key, oldSnapshot.get(key));
+                }
+            }
+            
+            synchronized (this) {
+                this.rawValues = newRawValues;
+                this.snapshot = newSnapshot;
+                this.lastReport = report;
+            }
+            
+            if (changedKeys.isEmpty() && removedKeys.isEmpty()) {
+                return false;
+            }
+            
+            firePropertiesChanged(changedKeys, removedKeys);
+            return true;
+            
+        }
+        
+    }
+    
+    
+    
+    private EncryptablePropertiesChangeListener[] getListeners() {
+        synchronized (this.listeners) {
+            return (EncryptablePropertiesChangeListener[]) this.listeners.toArray(
+                    new EncryptablePropertiesChangeListener[this.listeners.size()]);
+        }
+    }
+    
+    
+    private void firePropertiesChanged(final Set changedKeys, final Set removedKeys) {
+        final EncryptablePropertiesChangeListener[] currentListeners = getListeners();
+        for (int i = 0; i < currentListeners.length; i++) {
+            currentListeners[i].propertiesChanged(this, changedKeys, removedKeys);
+        }
+    }
+    
+    
+    private void fireReloadFailed(final Exception cause) {
+        final EncryptablePropertiesChangeListener[] currentListeners = getListeners();
+        for (int i = 0; i < currentListeners.length; i++) {
+            currentListeners[i].reloadFailed(this, cause);
+        }
+    }
+    
+}
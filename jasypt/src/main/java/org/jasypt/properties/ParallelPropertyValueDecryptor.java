@@ -0,0 +1,213 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.properties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.util.text.TextEncryptor;
+
+
+/**
+ * <p>
+ * Decrypts all the encrypted values in a set of properties in a single pass,
+ * distributing the work among several threads.
+ * </p>
+ * <p>
+ * A value is considered "encrypted" when it appears surrounded by 
+ * <tt>ENC(...)</tt>, like:
+ * </p>
+ * <p>
+ *   <center>
+ *     <tt>my.value=ENC(!"DGAS24FaIO$)</tt>
+ *   </center>
+ * </p>
+ * <p>
+ * This allows moving the cost of decrypting a large amount of encrypted
+ * property values to application startup, where it can be done in parallel
+ * and in a predictable time, instead of paying it the first time each
+ * value is accessed. Failures do not interrupt the process: every failed
+ * key is reported in the resulting {@link PropertyValueDecryptionReport}.
+ * </p>
+ * <p>
+ * Note that, in order for decryption to really happen in parallel, the
+ * encryptor being used should be able to attend several requests at the
+ * same time, like {@link org.jasypt.encryption.pbe.PooledPBEStringEncryptor}
+ * does (standard encryptors are thread-safe, but serialize their 
+ * decryption operations).
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ParallelPropertyValueDecryptor {
+
+    /*
+     * Only one of these instances will be initialized, the other one will be
+     * null.
+     */
+    private final StringEncryptor stringEncryptor;
+    private final TextEncryptor textEncryptor;
+    
+    private int threadCount = ParallelProcessingUtils.getDefaultThreadCount();
+    
+    
+    
+    /**
+     * <p>
+     * Creates a <tt>ParallelPropertyValueDecryptor</tt> instance which will use
+     * the passed {@link StringEncryptor} object to decrypt encrypted values.
+     * </p>
+     * 
+     * @param stringEncryptor the {@link StringEncryptor} to be used do decrypt
+     *                        values. It can not be null.
+     */
+    public ParallelPropertyValueDecryptor(final StringEncryptor stringEncryptor) {
+        super();
+        CommonUtils.validateNotNull(stringEncryptor, "Encryptor cannot be null");
+        this.stringEncryptor = stringEncryptor;
+        this.textEncryptor = null;
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a <tt>ParallelPropertyValueDecryptor</tt> instance which will use
+     * the passed {@link TextEncryptor} object to decrypt encrypted values.
+     * </p>
+     * 
+     * @param textEncryptor the {@link TextEncryptor} to be used do decrypt
+     *                      values. It can not be null.
+     */
+    public ParallelPropertyValueDecryptor(final TextEncryptor textEncryptor) {
+        super();
+        CommonUtils.validateNotNull(textEncryptor, "Encryptor cannot be null");
+        this.stringEncryptor = null;
+        this.textEncryptor = textEncryptor;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of threads to be used for decrypting. By 
+     * default, this equals the number of processors available to the JVM.
+     * </p>
+     * 
+     * @param threadCount the number of threads to be used.
+     */
+    public synchronized void setThreadCount(final int threadCount) {
+        CommonUtils.validateIsTrue(threadCount > 0, "Thread count must be > 0");
+        this.threadCount = threadCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Decrypts all the encrypted values in the specified map (usually a
+     * <tt>java.util.Properties</tt> object containing the raw values
+     * as loaded from a <tt>.properties</tt> file). Non-encrypted values
+     * are ignored.
+     * </p>
+     * <p>
+     * The map will not be modified.
+     * </p>
+     * 
+     * @param values the map of property keys to (possibly encrypted) values. 
+     * @return the report containing the decrypted values and the failures.
+     */
+    public PropertyValueDecryptionReport decrypt(final Map values) {
+        
+        CommonUtils.validateNotNull(values, "Values cannot be null");
+        
+        final long startTime = System.currentTimeMillis();
+        
+        final List keys = new ArrayList();
+        final List encryptedValues = new ArrayList();
+        synchronized (values) {
+            final Iterator entriesIter = values.entrySet().iterator();
+            while (entriesIter.hasNext()) {
+                final Map.Entry entry = (Map.Entry) entriesIter.next();
+                final Object value = entry.getValue();
+                if ((value instanceof String) && 
+                        PropertyValueEncryptionUtils.isEncryptedValue((String) value)) {
+                    keys.add(entry.getKey());
+                    encryptedValues.add(value);
+                }
+            }
+        }
+        
+        final int size = keys.size();
+        final String[] results = new String[size];
+        final RuntimeException[] failures = new RuntimeException[size];
+
+        final int threads;
+        synchronized (this) {
+            threads = this.threadCount;
+        }
+        
+        ParallelProcessingUtils.process(size, threads, 
+                new ParallelProcessingUtils.IndexedTask() {
+                    public void process(final int index) {
+                        try {
+                            results[index] = 
+                                decryptValue((String) encryptedValues.get(index));
+                        } catch (final RuntimeException e) {
+                            failures[index] = e;
+                        }
+                    }
+                });
+        
+        final Map decryptedValues = new HashMap();
+        final Map failedValues = new HashMap();
+        for (int i = 0; i < size; i++) {
+            if (failures[i] != null) {
+                failedValues.put(keys.get(i), failures[i]);
+            } else {
+                decryptedValues.put(keys.get(i), results[i]);
+            }
+        }
+        
+        return new PropertyValueDecryptionReport(
+                decryptedValues, failedValues, 
+                (System.currentTimeMillis() - startTime));
+        
+    }
+    
+    
+    
+    private String decryptValue(final String encodedValue) {
+        if (this.stringEncryptor != null) {
+            return PropertyValueEncryptionUtils.decrypt(encodedValue, this.stringEncryptor);
+        }
+        return PropertyValueEncryptionUtils.decrypt(encodedValue, this.textEncryptor);
+    }
+    
+}
@@ -0,0 +1,131 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.properties;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * <p>
+ * Result of decrypting a set of encrypted property values in a single pass
+ * by means of a {@link ParallelPropertyValueDecryptor}.
+ * </p>
+ * <p>
+ * It contains the decrypted values for every key which could be correctly
+ * decrypted, the failures produced for every key which could not, and the
+ * total time spent in the operation. Values which were not encrypted 
+ * (not surrounded by <tt>ENC(...)</tt>) are not included in any of these.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class PropertyValueDecryptionReport {
+
+    private final Map decryptedValues;
+    private final Map failures;
+    private final long elapsedTimeMillis;
+    
+    
+    PropertyValueDecryptionReport(
+            final Map decryptedValues, final Map failures, final long elapsedTimeMillis) {
+        super();
+        this.decryptedValues = Collections.unmodifiableMap(decryptedValues);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedTimeMillis = elapsedTimeMillis;
+    }
+
+
+    /**
+     * <p>
+     * Returns the decrypted values, as a map of property keys to 
+     * decrypted values.
+     * </p>
+     * 
+     * @return the decrypted values (unmodifiable).
+     */
+    public Map getDecryptedValues() {
+        return this.decryptedValues;
+    }
+
+
+    /**
+     * <p>
+     * Returns the keys that could not be decrypted, mapped to the 
+     * exception raised when trying to decrypt their values (usually an
+     * {@link org.jasypt.exceptions.EncryptionOperationNotPossibleException}).
+     * </p>
+     * 
+     * @return the failures (unmodifiable).
+     */
+    public Map getFailures() {
+        return this.failures;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether any of the encrypted values could not be decrypted.
+     * </p>
+     * 
+     * @return true if there were failures, false if not.
+     */
+    public boolean hasFailures() {
+        return !this.failures.isEmpty();
+    }
+
+    
+    /**
+     * <p>
+     * Returns the total number of encrypted values processed (both
+     * succeeded and failed).
+     * </p>
+     * 
+     * @return the number of encrypted values.
+     */
+    public int getEncryptedValueCount() {
+        return this.decryptedValues.size() + this.failures.size();
+    }
+
+    
+    /**
+     * <p>
+     * Returns the total time spent decrypting, in milliseconds.
+     * </p>
+     * 
+     * @return the elapsed time.
+     */
+    public long getElapsedTimeMillis() {
+        return this.elapsedTimeMillis;
+    }
+    
+    
+    public String toString() {
+        return "Decrypted " + this.decryptedValues.size() + " of " + 
+                getEncryptedValueCount() + " encrypted values in " + 
+                this.elapsedTimeMillis + "ms" + 
+                (hasFailures()? 
+                        (", failed keys: " + this.failures.keySet()) : "");
+    }
+    
+}
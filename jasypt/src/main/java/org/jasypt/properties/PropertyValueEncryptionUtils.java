@@ -37,6 +37,16 @@ import org.jasypt.util.text.TextEncryptor;
  *   </center>
  * </p>
  * <p>
+ * Also, a whole block of properties (a complete <tt>.properties</tt> file or
+ * a section of one) can be encrypted as a single value (an <i>envelope</i>) 
+ * surrounded by <tt>ENCBLOCK(...)</tt>, like:
+ * </p>
+ * <p>
+ *   <center>
+ *     <tt>my.section=ENCBLOCK(!"DGAS24FaIO$)</tt>
+ *   </center>
+ * </p>
+ * <p>
  *   <b>This class is meant for internal Jasypt use only.</b>
  * </p>
  * 
@@ -50,6 +60,9 @@ public final class PropertyValueEncryptionUtils {
     private static final String ENCRYPTED_VALUE_PREFIX = "ENC(";
     private static final String ENCRYPTED_VALUE_SUFFIX = ")";
 
+    private static final String ENCRYPTED_BLOCK_PREFIX = "ENCBLOCK(";
+    private static final String ENCRYPTED_BLOCK_SUFFIX = ")";
+
     
     public static boolean isEncryptedValue(final String value) {
         if (value == null) {
@@ -67,6 +80,22 @@ public final class PropertyValueEncryptionUtils {
     }
 
     
+    public static boolean isEncryptedBlock(final String value) {
+        if (value == null) {
+            return false;
+        }
+        final String trimmedValue = value.trim();
+        return (trimmedValue.startsWith(ENCRYPTED_BLOCK_PREFIX) && 
+                trimmedValue.endsWith(ENCRYPTED_BLOCK_SUFFIX));
+    }
+    
+    private static String getInnerEncryptedBlock(final String value) {
+        return value.substring(
+                ENCRYPTED_BLOCK_PREFIX.length(),
+                (value.length() - ENCRYPTED_BLOCK_SUFFIX.length()));
+    }
+
+    
     public static String decrypt(
             final String encodedValue, final StringEncryptor encryptor) {
         return encryptor.decrypt(getInnerEncryptedValue(encodedValue.trim()));
@@ -97,6 +126,36 @@ public final class PropertyValueEncryptionUtils {
     }
     
     
+    public static String decryptBlock(
+            final String encodedBlock, final StringEncryptor encryptor) {
+        return encryptor.decrypt(getInnerEncryptedBlock(encodedBlock.trim()));
+    }
+
+    
+    public static String decryptBlock(
+            final String encodedBlock, final TextEncryptor encryptor) {
+        return encryptor.decrypt(getInnerEncryptedBlock(encodedBlock.trim()));
+    }
+
+    
+    public static String encryptBlock(
+            final String decodedBlock, final StringEncryptor encryptor) {
+        return 
+            ENCRYPTED_BLOCK_PREFIX + 
+            encryptor.encrypt(decodedBlock) +
+            ENCRYPTED_BLOCK_SUFFIX;
+    }
+
+    
+    public static String encryptBlock(
+            final String decodedBlock, final TextEncryptor encryptor) {
+        return 
+            ENCRYPTED_BLOCK_PREFIX + 
+            encryptor.encrypt(decodedBlock) +
+            ENCRYPTED_BLOCK_SUFFIX;
+    }
+    
+    
     private PropertyValueEncryptionUtils() {
         super();
     }
@@ -0,0 +1,112 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.ReencryptionException;
+
+
+/**
+ * <p>
+ * {@link ReencryptionCheckpointStore} implementation which stores the
+ * checkpoint in a file.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class FileReencryptionCheckpointStore implements ReencryptionCheckpointStore {
+
+    private static final String CHECKPOINT_PROPERTY = "checkpoint";
+    
+    private final File file;
+    
+    
+    /**
+     * <p>
+     * Creates a new checkpoint store.
+     * </p>
+     * 
+     * @param file the file in which the checkpoint will be stored. It will
+     *             be deleted once the checkpoint is cleared.
+     */
+    public FileReencryptionCheckpointStore(final File file) {
+        super();
+        CommonUtils.validateNotNull(file, "File cannot be null");
+        this.file = file;
+    }
+    
+    
+    public String loadCheckpoint() {
+        if (!this.file.exists()) {
+            return null;
+        }
+        try {
+            final Properties properties = new Properties();
+            final InputStream inputStream = new FileInputStream(this.file);
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            return properties.getProperty(CHECKPOINT_PROPERTY);
+        } catch (final IOException e) {
+            throw new ReencryptionException("Could not read checkpoint file " + this.file, e);
+        }
+    }
+    
+    
+    public void saveCheckpoint(final String key) {
+        try {
+            // Properties are used so that keys are correctly escaped
+            final Properties properties = new Properties();
+            properties.setProperty(CHECKPOINT_PROPERTY, key);
+            final File tempFile = 
+                new File(this.file.getAbsolutePath() + ".tmp");
+            final OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+            ReencryptionFileUtils.replaceFile(tempFile, this.file);
+        } catch (final IOException e) {
+            throw new ReencryptionException("Could not write checkpoint file " + this.file, e);
+        }
+    }
+    
+    
+    public void clearCheckpoint() {
+        if (this.file.exists() && !this.file.delete()) {
+            throw new ReencryptionException("Could not delete checkpoint file " + this.file);
+        }
+    }
+    
+}
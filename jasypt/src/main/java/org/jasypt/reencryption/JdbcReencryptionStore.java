@@ -0,0 +1,237 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.ReencryptionException;
+
+
+/**
+ * <p>
+ * {@link ReencryptionSource} and {@link ReencryptionSink} implementation 
+ * for a database table, accessed through JDBC.
+ * </p>
+ * <p>
+ * The table must have a unique key column (which will be used for 
+ * ordering and as checkpoint) and a column containing the encrypted
+ * values, as created by a {@link org.jasypt.encryption.StringEncryptor}.
+ * Rows with a <tt>null</tt> value are skipped. Each batch is written in
+ * a single transaction, and a row is only updated if its value is still 
+ * the one that was read: rows modified concurrently are not overwritten,
+ * but returned as conflicts.
+ * </p>
+ * <p>
+ * Keys are handled as Strings (e.g. in checkpoints), but they are bound to
+ * statements with the SQL type of the key column, so that numeric keys
+ * are compared and ordered as numbers.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class JdbcReencryptionStore 
+        implements ReencryptionSource, ReencryptionSink {
+
+    private final DataSource dataSource;
+    private final String selectSql;
+    private final String selectFirstSql;
+    private final String updateSql;
+    private final String keyTypeSql;
+    
+    // SQL type of the key column, obtained from database metadata when first needed
+    private Integer keySqlType = null;
+    
+    
+    /**
+     * <p>
+     * Creates a new store for the specified table.
+     * </p>
+     * 
+     * @param dataSource the data source for obtaining connections.
+     * @param table the table name.
+     * @param keyColumn the name of the (unique) key column.
+     * @param valueColumn the name of the column containing encrypted values.
+     */
+    public JdbcReencryptionStore(final DataSource dataSource, final String table, 
+            final String keyColumn, final String valueColumn) {
+        super();
+        CommonUtils.validateNotNull(dataSource, "Data source cannot be null");
+        validateIdentifier(table);
+        validateIdentifier(keyColumn);
+        validateIdentifier(valueColumn);
+        this.dataSource = dataSource;
+        final String select = 
+            "SELECT " + keyColumn + ", " + valueColumn + " FROM " + table + 
+            " WHERE " + valueColumn + " IS NOT NULL";
+        this.selectFirstSql = select + " ORDER BY " + keyColumn;
+        this.selectSql = select + " AND " + keyColumn + " > ? ORDER BY " + keyColumn;
+        this.updateSql = 
+            "UPDATE " + table + " SET " + valueColumn + " = ? WHERE " + keyColumn + " = ?" +
+            " AND " + valueColumn + " = ?";
+        this.keyTypeSql = 
+            "SELECT " + keyColumn + " FROM " + table + " WHERE 1 = 0";
+    }
+    
+    
+    private static void validateIdentifier(final String identifier) {
+        CommonUtils.validateNotEmpty(identifier, "Table and column names cannot be empty");
+        CommonUtils.validateIsTrue(identifier.matches("[A-Za-z0-9_.]+"),
+                "Invalid table or column name: " + identifier);
+    }
+    
+    
+    private synchronized int getKeySqlType(final Connection connection) 
+            throws SQLException {
+        if (this.keySqlType == null) {
+            final PreparedStatement statement = connection.prepareStatement(this.keyTypeSql);
+            try {
+                final ResultSet resultSet = statement.executeQuery();
+                try {
+                    final int sqlType = resultSet.getMetaData().getColumnType(1);
+                    this.keySqlType = 
+                        new Integer(sqlType == Types.OTHER? Types.VARCHAR : sqlType);
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        }
+        return this.keySqlType.intValue();
+    }
+    
+    
+    
+    public ReencryptionRecord[] read(final String afterKey, final int maxRecords) {
+        
+        Connection connection = null;
+        try {
+            connection = this.dataSource.getConnection();
+            final int keySqlType = getKeySqlType(connection);
+            final PreparedStatement statement = 
+                connection.prepareStatement(afterKey == null? this.selectFirstSql : this.selectSql);
+            try {
+                if (afterKey != null) {
+                    statement.setObject(1, afterKey, keySqlType);
+                }
+                statement.setMaxRows(maxRecords);
+                final List records = new ArrayList();
+                final ResultSet resultSet = statement.executeQuery();
+                try {
+                    while (resultSet.next() && records.size() < maxRecords) {
+                        records.add(new ReencryptionRecord(resultSet.getString(1), resultSet.getString(2)));
+                    }
+                } finally {
+                    resultSet.close();
+                }
+                return (ReencryptionRecord[]) records.toArray(new ReencryptionRecord[records.size()]);
+            } finally {
+                statement.close();
+            }
+        } catch (final SQLException e) {
+            throw new ReencryptionException("Could not read records", e);
+        } finally {
+            close(connection);
+        }
+        
+    }
+    
+    
+    
+    public String[] write(final ReencryptionRecord[] records) {
+        
+        final List conflictingKeys = new ArrayList();
+        Connection connection = null;
+        boolean autoCommit = true;
+        boolean committed = false;
+        try {
+            connection = this.dataSource.getConnection();
+            final int keySqlType = getKeySqlType(connection);
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            final PreparedStatement statement = connection.prepareStatement(this.updateSql);
+            try {
+                for (int i = 0; i < records.length; i++) {
+                    CommonUtils.validateNotNull(records[i].getPreviousValue(), 
+                            "Previous value of " + records[i] + " cannot be null");
+                    statement.setString(1, records[i].getValue());
+                    statement.setObject(2, records[i].getKey(), keySqlType);
+                    statement.setString(3, records[i].getPreviousValue());
+                    statement.addBatch();
+                }
+                final int[] updateCounts = statement.executeBatch();
+                for (int i = 0; i < updateCounts.length; i++) {
+                    // SUCCESS_NO_INFO means the driver cannot tell, so the row is assumed written
+                    if (updateCounts[i] == 0) {
+                        conflictingKeys.add(records[i].getKey());
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+            connection.commit();
+            committed = true;
+        } catch (final SQLException e) {
+            throw new ReencryptionException("Could not write records", e);
+        } finally {
+            if (connection != null) {
+                try {
+                    if (!committed) {
+                        connection.rollback();
+                    }
+                    // Pooled connections must be returned as they were obtained
+                    connection.setAutoCommit(autoCommit);
+                } catch (final SQLException ignored) {
+                    // The original exception is more relevant
+                }
+            }
+            close(connection);
+        }
+        
+        return (String[]) conflictingKeys.toArray(new String[conflictingKeys.size()]);
+        
+    }
+    
+    
+    
+    private static void close(final Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (final SQLException ignored) {
+            // Nothing to do
+        }
+    }
+    
+}
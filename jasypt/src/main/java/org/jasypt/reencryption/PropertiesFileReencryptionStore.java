@@ -0,0 +1,339 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.ReencryptionException;
+import org.jasypt.properties.PropertyValueEncryptionUtils;
+
+
+/**
+ * <p>
+ * {@link ReencryptionSource} and {@link ReencryptionSink} implementation 
+ * for <tt>.properties</tt> files, which re-encrypts every encrypted value
+ * (<tt>ENC(...)</tt>) and encrypted block (<tt>ENCBLOCK(...)</tt>) in 
+ * the file, in place.
+ * </p>
+ * <p>
+ * After each batch, the file is rewritten (atomically, by means of a 
+ * temporary file) replacing only the re-encrypted values: comments, 
+ * blank lines, ordering and every other property are preserved.
+ * Properties are processed in the alphabetical order of their keys.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class PropertiesFileReencryptionStore 
+        implements ReencryptionSource, ReencryptionSink {
+
+    private static final String PROPERTIES_CHARSET = "ISO-8859-1";
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    
+    private final File file;
+    
+    // Encrypted values in the file, in key order, loaded on first read
+    private List keys = null;
+    private Map values = null;
+    private Set blockKeys = null;
+    
+    
+    /**
+     * <p>
+     * Creates a new store for the specified file.
+     * </p>
+     * 
+     * @param file the <tt>.properties</tt> file.
+     */
+    public PropertiesFileReencryptionStore(final File file) {
+        super();
+        CommonUtils.validateNotNull(file, "File cannot be null");
+        this.file = file;
+    }
+    
+    
+    
+    public synchronized ReencryptionRecord[] read(final String afterKey, final int maxRecords) {
+        
+        if (this.keys == null) {
+            load();
+        }
+        
+        int start = 0;
+        if (afterKey != null) {
+            final int pos = Collections.binarySearch(this.keys, afterKey);
+            start = (pos >= 0? pos + 1 : -(pos + 1));
+        }
+        final int end = Math.min(this.keys.size(), start + maxRecords);
+        
+        final ReencryptionRecord[] records = new ReencryptionRecord[Math.max(0, end - start)];
+        for (int i = start; i < end; i++) {
+            final String key = (String) this.keys.get(i);
+            records[i - start] = new ReencryptionRecord(key, (String) this.values.get(key));
+        }
+        return records;
+        
+    }
+    
+    
+    
+    public synchronized String[] write(final ReencryptionRecord[] records) {
+        
+        final Map newValues = new HashMap();
+        for (int i = 0; i < records.length; i++) {
+            final String key = records[i].getKey();
+            final boolean block = (this.blockKeys != null && this.blockKeys.contains(key));
+            newValues.put(key, 
+                    (block? "ENCBLOCK(" : "ENC(") + records[i].getValue() + ")");
+        }
+        
+        try {
+            
+            final File tempFile = new File(this.file.getAbsolutePath() + ".tmp");
+            
+            final BufferedReader reader = 
+                new BufferedReader(new InputStreamReader(new FileInputStream(this.file), PROPERTIES_CHARSET));
+            try {
+                final Writer writer = 
+                    new OutputStreamWriter(new FileOutputStream(tempFile), PROPERTIES_CHARSET);
+                try {
+                    rewrite(reader, writer, newValues);
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                reader.close();
+            }
+            
+            ReencryptionFileUtils.replaceFile(tempFile, this.file);
+            
+        } catch (final IOException e) {
+            throw new ReencryptionException("Could not write properties file " + this.file, e);
+        }
+        
+        return new String[0];
+        
+    }
+    
+    
+    
+    private void load() {
+        
+        final Properties properties = new Properties();
+        try {
+            final InputStream inputStream = new FileInputStream(this.file);
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (final IOException e) {
+            throw new ReencryptionException("Could not read properties file " + this.file, e);
+        }
+        
+        this.keys = new ArrayList();
+        this.values = new HashMap();
+        this.blockKeys = new HashSet();
+        
+        final Iterator entriesIter = properties.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            final Map.Entry entry = (Map.Entry) entriesIter.next();
+            final String key = (String) entry.getKey();
+            final String value = ((String) entry.getValue()).trim();
+            if (PropertyValueEncryptionUtils.isEncryptedBlock(value)) {
+                this.blockKeys.add(key);
+                this.values.put(key, value.substring("ENCBLOCK(".length(), value.length() - 1));
+            } else if (PropertyValueEncryptionUtils.isEncryptedValue(value)) {
+                this.values.put(key, value.substring("ENC(".length(), value.length() - 1));
+            } else {
+                continue;
+            }
+            this.keys.add(key);
+        }
+        
+        Collections.sort(this.keys);
+        
+    }
+    
+    
+    
+    /*
+     * Copies the file line by line, replacing the values of the specified
+     * properties (and removing any continuation lines they had).
+     */
+    private static void rewrite(final BufferedReader reader, final Writer writer, 
+            final Map newValues) throws IOException {
+        
+        boolean skippingContinuation = false;
+        boolean inContinuation = false;
+        
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+            
+            final boolean continues = endsWithContinuation(line);
+            
+            if (inContinuation) {
+                // Continuation line of a value we are not replacing
+                inContinuation = continues;
+                if (!skippingContinuation) {
+                    writer.write(line);
+                    writer.write(LINE_SEPARATOR);
+                }
+                skippingContinuation = skippingContinuation && continues;
+                continue;
+            }
+            
+            final int[] keyBounds = findKey(line);
+            if (keyBounds != null) {
+                final String key = unescape(line.substring(keyBounds[0], keyBounds[1]));
+                final String newValue = (String) newValues.get(key);
+                if (newValue != null) {
+                    writer.write(line.substring(0, keyBounds[2]));
+                    writer.write(newValue);
+                    writer.write(LINE_SEPARATOR);
+                    inContinuation = continues;
+                    skippingContinuation = continues;
+                    continue;
+                }
+            }
+            
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+            inContinuation = continues;
+            skippingContinuation = false;
+            
+        }
+        
+    }
+    
+    
+    private static boolean endsWithContinuation(final String line) {
+        int backslashes = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return ((backslashes % 2) == 1);
+    }
+    
+    
+    /*
+     * Returns {keyStart, keyEnd, valueStart} for a property line, or null
+     * if the line is blank or a comment.
+     */
+    private static int[] findKey(final String line) {
+        
+        final int length = line.length();
+        int pos = 0;
+        while (pos < length && isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        if (pos == length || line.charAt(pos) == '#' || line.charAt(pos) == '!') {
+            return null;
+        }
+        
+        final int keyStart = pos;
+        while (pos < length) {
+            final char c = line.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+                continue;
+            }
+            if (c == '=' || c == ':' || isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+        final int keyEnd = Math.min(pos, length);
+        
+        // Separator: whitespace, optionally one '=' or ':', whitespace
+        pos = keyEnd;
+        while (pos < length && isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        if (pos < length && (line.charAt(pos) == '=' || line.charAt(pos) == ':')) {
+            pos++;
+            while (pos < length && isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+        
+        return new int[] { keyStart, keyEnd, pos };
+        
+    }
+    
+    
+    private static boolean isWhitespace(final char c) {
+        return (c == ' ' || c == '\t' || c == '\f');
+    }
+    
+    
+    private static String unescape(final String key) {
+        if (key.indexOf('\\') == -1) {
+            return key;
+        }
+        final StringBuffer result = new StringBuffer();
+        final int length = key.length();
+        for (int i = 0; i < length; i++) {
+            final char c = key.charAt(i);
+            if (c != '\\' || i == length - 1) {
+                result.append(c);
+                continue;
+            }
+            final char next = key.charAt(++i);
+            if (next == 'u' && i + 4 < length) {
+                result.append((char) Integer.parseInt(key.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else if (next == 't') {
+                result.append('\t');
+            } else if (next == 'n') {
+                result.append('\n');
+            } else if (next == 'r') {
+                result.append('\r');
+            } else if (next == 'f') {
+                result.append('\f');
+            } else {
+                result.append(next);
+            }
+        }
+        return result.toString();
+    }
+    
+}
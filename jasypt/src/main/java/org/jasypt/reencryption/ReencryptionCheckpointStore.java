@@ -0,0 +1,69 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+
+/**
+ * <p>
+ * Storage for the progress of a re-encryption process, so that it can be
+ * resumed after being interrupted. The checkpoint is the key of the last
+ * record written to the sink.
+ * </p>
+ * <p>
+ * Implementations are only called from one thread at a time.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface ReencryptionCheckpointStore {
+
+    
+    /**
+     * <p>
+     * Returns the last saved checkpoint.
+     * </p>
+     * 
+     * @return the key of the last written record, or null if there is
+     *         no checkpoint (the process has to start from the beginning).
+     */
+    public String loadCheckpoint();
+    
+    
+    /**
+     * <p>
+     * Saves a checkpoint.
+     * </p>
+     * 
+     * @param key the key of the last written record.
+     */
+    public void saveCheckpoint(final String key);
+
+    
+    /**
+     * <p>
+     * Removes the checkpoint, once the process has been completed.
+     * </p>
+     */
+    public void clearCheckpoint();
+    
+}
@@ -0,0 +1,466 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.commons.ParallelProcessingUtils;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.ReencryptionException;
+
+
+/**
+ * <p>
+ * Re-encrypts (decrypts with one encryptor and encrypts again with 
+ * another one) all the values in a {@link ReencryptionSource}, writing
+ * the results to a {@link ReencryptionSink}. This is the operation needed
+ * for rotating the password (or changing the algorithm) with which a set
+ * of stored values is encrypted.
+ * </p>
+ * <p>
+ * Values are read from the source in batches, and batches are re-encrypted
+ * in parallel by several worker threads. Only a limited number of batches
+ * is allowed to be <i>in flight</i> (read but not yet written) at any 
+ * time, so that reading the source never gets too far ahead of the
+ * workers and the sink (backpressure), and memory usage is bounded no matter
+ * the size of the source. Batches are always written to the sink in the
+ * same order they were read and, after each batch is written, a checkpoint
+ * is saved (if a {@link ReencryptionCheckpointStore} is specified). An 
+ * interrupted process will then be resumed from its last checkpoint.
+ * </p>
+ * <p>
+ * Values in the batch that was being written when the process was
+ * interrupted (the first batch after the checkpoint) may have already
+ * been re-encrypted, so the values in that batch are first decrypted with
+ * the target encryptor: those which it can decrypt are skipped. Trying the
+ * source encryptor first would not be safe, as most algorithms will 
+ * sometimes (wrongly) decrypt a value encrypted with a different key 
+ * without raising an error. For the same reason, values in that batch that
+ * both encryptors are able to decrypt are not written, but reported as
+ * failures. The batch size should not be changed between an interrupted
+ * execution and its resumption.
+ * </p>
+ * <p>
+ * Values that cannot be re-encrypted (for example, because they cannot be
+ * decrypted with the source encryptor) do not stop the process: they are
+ * not written to the sink, and are reported in the resulting 
+ * {@link ReencryptionReport}. The same happens to values the sink 
+ * reports as modified since they were read. Any error reading the source or writing the 
+ * sink, on the contrary, stops the process with a 
+ * {@link ReencryptionException}.
+ * </p>
+ * <p>
+ * Note that, in order for re-encryption to really happen in parallel,
+ * the encryptors should be able to attend several requests at the
+ * same time, like {@link org.jasypt.encryption.pbe.PooledPBEStringEncryptor}
+ * does.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>, though each execution of 
+ * {@link #reencrypt(ReencryptionSource, ReencryptionSink, ReencryptionCheckpointStore)}
+ * should use its own source, sink and checkpoint store.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ReencryptionEngine {
+
+    /**
+     * Default number of records per batch: 100.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    
+    
+    private final StringEncryptor sourceEncryptor;
+    private final StringEncryptor targetEncryptor;
+    
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int threadCount = ParallelProcessingUtils.getDefaultThreadCount();
+    private int maxInFlightBatches = 0;
+    
+    
+    
+    /**
+     * <p>
+     * Creates a new engine.
+     * </p>
+     * 
+     * @param sourceEncryptor the encryptor able to decrypt the current values.
+     * @param targetEncryptor the encryptor that will encrypt the new values.
+     */
+    public ReencryptionEngine(final StringEncryptor sourceEncryptor, 
+            final StringEncryptor targetEncryptor) {
+        super();
+        CommonUtils.validateNotNull(sourceEncryptor, "Source encryptor cannot be null");
+        CommonUtils.validateNotNull(targetEncryptor, "Target encryptor cannot be null");
+        this.sourceEncryptor = sourceEncryptor;
+        this.targetEncryptor = targetEncryptor;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of records to be read, re-encrypted and 
+     * written (and checkpointed) at a time. Default is 
+     * {@link #DEFAULT_BATCH_SIZE}.
+     * </p>
+     * 
+     * @param batchSize the batch size.
+     */
+    public synchronized void setBatchSize(final int batchSize) {
+        CommonUtils.validateIsTrue(batchSize > 0, "Batch size must be > 0");
+        this.batchSize = batchSize;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the number of worker threads. By default, this equals the number
+     * of processors available to the JVM.
+     * </p>
+     * 
+     * @param threadCount the number of threads.
+     */
+    public synchronized void setThreadCount(final int threadCount) {
+        CommonUtils.validateIsTrue(threadCount > 0, "Thread count must be > 0");
+        this.threadCount = threadCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of batches that can be read from the source
+     * and not yet written to the sink at a time. By default, this equals 
+     * twice the number of threads.
+     * </p>
+     * 
+     * @param maxInFlightBatches the maximum number of batches in flight.
+     */
+    public synchronized void setMaxInFlightBatches(final int maxInFlightBatches) {
+        CommonUtils.validateIsTrue(maxInFlightBatches > 0, "Max in-flight batches must be > 0");
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+    
+    
+    
+    /**
+     * <p>
+     * Re-encrypts all the values in the source (after the last checkpoint,
+     * if any) and writes them to the sink. Once every value has been
+     * processed, the checkpoint is cleared.
+     * </p>
+     * 
+     * @param source the source of encrypted values.
+     * @param sink the destination of re-encrypted values.
+     * @param checkpointStore the store for checkpoints (can be null if
+     *                        the process does not need to be resumable).
+     * @return the report of the process.
+     * @throws ReencryptionException if the process cannot be completed 
+     *         because of an error reading the source or writing the sink.
+     */
+    public ReencryptionReport reencrypt(final ReencryptionSource source, 
+            final ReencryptionSink sink, final ReencryptionCheckpointStore checkpointStore) {
+        
+        CommonUtils.validateNotNull(source, "Source cannot be null");
+        CommonUtils.validateNotNull(sink, "Sink cannot be null");
+        
+        final int currentBatchSize;
+        final int currentThreadCount;
+        final int currentMaxInFlightBatches;
+        synchronized (this) {
+            currentBatchSize = this.batchSize;
+            currentThreadCount = this.threadCount;
+            currentMaxInFlightBatches = 
+                (this.maxInFlightBatches > 0? this.maxInFlightBatches : (2 * this.threadCount));
+        }
+        
+        final long startTime = System.currentTimeMillis();
+        
+        final String resumedAfterKey = 
+            (checkpointStore != null? checkpointStore.loadCheckpoint() : null);
+        
+        final Pipeline pipeline = new Pipeline();
+        final Thread[] workers = new Thread[currentThreadCount];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    pipeline.work();
+                }
+            }, "jasypt-reencryption-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        
+        final Map failures = new HashMap();
+        final Set conflicts = new HashSet();
+        long reencryptedCount = 0;
+        long batchCount = 0;
+        
+        try {
+            
+            String lastReadKey = resumedAfterKey;
+            boolean exhausted = false;
+            int readBatches = 0;
+            int writtenBatches = 0;
+            
+            while (true) {
+                
+                // Read as long as there is room for more batches in flight
+                while (!exhausted && (readBatches - writtenBatches) < currentMaxInFlightBatches) {
+                    final ReencryptionRecord[] records = 
+                        source.read(lastReadKey, currentBatchSize);
+                    if (records == null || records.length == 0) {
+                        exhausted = true;
+                    } else {
+                        lastReadKey = records[records.length - 1].getKey();
+                        // Only the first batch after a checkpoint can contain values already written
+                        final boolean resumedBatch = (resumedAfterKey != null && readBatches == 0);
+                        pipeline.submit(new Batch(readBatches++, records, resumedBatch));
+                    }
+                }
+                
+                if (exhausted && writtenBatches == readBatches) {
+                    break;
+                }
+                
+                // Batches are written strictly in order
+                final Batch batch = pipeline.takeCompleted(writtenBatches);
+                
+                String[] conflictingKeys = null;
+                if (batch.reencryptedRecords.length > 0) {
+                    conflictingKeys = sink.write(batch.reencryptedRecords);
+                }
+                if (checkpointStore != null) {
+                    checkpointStore.saveCheckpoint(batch.getLastKey());
+                }
+                
+                writtenBatches++;
+                batchCount++;
+                reencryptedCount += batch.reencryptedRecords.length;
+                failures.putAll(batch.failures);
+                if (conflictingKeys != null) {
+                    reencryptedCount -= conflictingKeys.length;
+                    conflicts.addAll(Arrays.asList(conflictingKeys));
+                }
+                
+            }
+            
+            if (checkpointStore != null) {
+                checkpointStore.clearCheckpoint();
+            }
+            
+        } catch (final ReencryptionException e) {
+            throw e;
+        } catch (final RuntimeException e) {
+            throw new ReencryptionException(e);
+        } finally {
+            pipeline.stop();
+            joinAll(workers);
+        }
+        
+        return new ReencryptionReport(resumedAfterKey, reencryptedCount, batchCount, 
+                failures, conflicts, (System.currentTimeMillis() - startTime));
+        
+    }
+    
+    
+    
+    private void reencrypt(final Batch batch) {
+        
+        final ReencryptionRecord[] records = batch.records;
+        final ReencryptionRecord[] results = new ReencryptionRecord[records.length];
+        int resultCount = 0;
+        
+        for (int i = 0; i < records.length; i++) {
+            
+            final String key = records[i].getKey();
+            final String value = records[i].getValue();
+            
+            if (batch.resumed && canDecrypt(this.targetEncryptor, value)) {
+                if (canDecrypt(this.sourceEncryptor, value)) {
+                    batch.failures.put(key, new ReencryptionException(
+                            "Value can be decrypted with both the source and the target " +
+                            "encryptors: it cannot be known whether it was already re-encrypted"));
+                }
+                continue;
+            }
+            
+            try {
+                final String message = this.sourceEncryptor.decrypt(value);
+                results[resultCount++] = 
+                    new ReencryptionRecord(key, this.targetEncryptor.encrypt(message), value);
+            } catch (final RuntimeException e) {
+                // Outside the resumed batch, values encrypted with the target encryptor are just skipped
+                if (batch.resumed || !canDecrypt(this.targetEncryptor, value)) {
+                    batch.failures.put(key, e);
+                }
+            }
+            
+        }
+        
+        batch.reencryptedRecords = new ReencryptionRecord[resultCount];
+        System.arraycopy(results, 0, batch.reencryptedRecords, 0, resultCount);
+        
+    }
+    
+    
+    private static boolean canDecrypt(final StringEncryptor encryptor, final String value) {
+        try {
+            encryptor.decrypt(value);
+            return true;
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+    
+    
+    private static void joinAll(final Thread[] threads) {
+        boolean interrupted = false;
+        for (int i = 0; i < threads.length; i++) {
+            while (true) {
+                try {
+                    threads[i].join();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    
+    
+    private static final class Batch {
+        
+        final int sequence;
+        final ReencryptionRecord[] records;
+        final boolean resumed;
+        final Map failures = new HashMap();
+        ReencryptionRecord[] reencryptedRecords = null;
+        
+        Batch(final int sequence, final ReencryptionRecord[] records, final boolean resumed) {
+            this.sequence = sequence;
+            this.records = records;
+            this.resumed = resumed;
+        }
+        
+        String getLastKey() {
+            return this.records[this.records.length - 1].getKey();
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Queue of pending batches and map of completed (not yet written) ones,
+     * shared by the coordinating thread and the workers.
+     */
+    private final class Pipeline {
+        
+        private final LinkedList pending = new LinkedList();
+        private final Map completed = new HashMap();
+        private Throwable workerFailure = null;
+        private boolean stopped = false;
+        
+        
+        synchronized void submit(final Batch batch) {
+            this.pending.addLast(batch);
+            notifyAll();
+        }
+        
+        
+        synchronized Batch takeCompleted(final int sequence) {
+            final Integer key = new Integer(sequence);
+            while (!this.completed.containsKey(key)) {
+                if (this.workerFailure != null) {
+                    throw new ReencryptionException(
+                            "Re-encryption worker failed", this.workerFailure);
+                }
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ReencryptionException("Re-encryption was interrupted");
+                }
+            }
+            return (Batch) this.completed.remove(key);
+        }
+        
+        
+        synchronized void stop() {
+            this.stopped = true;
+            notifyAll();
+        }
+        
+        
+        void work() {
+            
+            while (true) {
+                
+                final Batch batch;
+                synchronized (this) {
+                    while (!this.stopped && this.pending.isEmpty()) {
+                        try {
+                            wait();
+                        } catch (final InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (this.stopped) {
+                        return;
+                    }
+                    batch = (Batch) this.pending.removeFirst();
+                }
+                
+                try {
+                    reencrypt(batch);
+                } catch (final Throwable t) {
+                    synchronized (this) {
+                        this.workerFailure = t;
+                        notifyAll();
+                    }
+                    return;
+                }
+                
+                synchronized (this) {
+                    this.completed.put(new Integer(batch.sequence), batch);
+                    notifyAll();
+                }
+                
+            }
+            
+        }
+        
+    }
+    
+}
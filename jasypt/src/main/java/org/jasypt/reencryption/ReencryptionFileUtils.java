@@ -0,0 +1,51 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/*
+ * Internal utils for the file-based re-encryption adapters.
+ */
+final class ReencryptionFileUtils {
+
+    
+    /*
+     * Replaces a file with a new (already complete) version of it, so that
+     * an interruption never leaves a partially written file.
+     */
+    static void replaceFile(final File newFile, final File file) throws IOException {
+        if (newFile.renameTo(file)) {
+            return;
+        }
+        // Some platforms cannot rename onto an existing file
+        if (!file.delete() || !newFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file + " with " + newFile);
+        }
+    }
+    
+    
+    private ReencryptionFileUtils() {
+        super();
+    }
+    
+}
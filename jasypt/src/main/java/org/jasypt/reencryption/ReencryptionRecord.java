@@ -0,0 +1,101 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import org.jasypt.commons.CommonUtils;
+
+
+/**
+ * <p>
+ * A value to be re-encrypted, along with the key that identifies it in
+ * its source (for example, a property name or a primary key value).
+ * Re-encrypted records also contain the value they replace, as it was
+ * read from the source.
+ * </p>
+ * <p>
+ * Objects of this class are immutable and <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ReencryptionRecord {
+
+    private final String key;
+    private final String value;
+    private final String previousValue;
+    
+    
+    /**
+     * <p>
+     * Creates a new record.
+     * </p>
+     * 
+     * @param key the key identifying the value in its source (cannot be null).
+     * @param value the (encrypted) value.
+     */
+    public ReencryptionRecord(final String key, final String value) {
+        this(key, value, null);
+    }
+    
+    
+    /**
+     * <p>
+     * Creates a new re-encrypted record.
+     * </p>
+     * 
+     * @param key the key identifying the value in its source (cannot be null).
+     * @param value the re-encrypted value.
+     * @param previousValue the value read from the source, which the 
+     *                      re-encrypted one replaces.
+     */
+    public ReencryptionRecord(final String key, final String value, 
+            final String previousValue) {
+        super();
+        CommonUtils.validateNotNull(key, "Key cannot be null");
+        this.key = key;
+        this.value = value;
+        this.previousValue = previousValue;
+    }
+    
+    
+    public String getKey() {
+        return this.key;
+    }
+    
+    
+    public String getValue() {
+        return this.value;
+    }
+    
+    
+    public String getPreviousValue() {
+        return this.previousValue;
+    }
+    
+    
+    public String toString() {
+        // Values are not shown, even if encrypted
+        return "ReencryptionRecord[" + this.key + "]";
+    }
+    
+}
@@ -0,0 +1,163 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * <p>
+ * Results of the execution of a {@link ReencryptionEngine}.
+ * </p>
+ * <p>
+ * Objects of this class are immutable and <i>thread-safe</i>.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class ReencryptionReport {
+
+    private final String resumedAfterKey;
+    private final long reencryptedCount;
+    private final long batchCount;
+    private final Map failures;
+    private final Set conflicts;
+    private final long elapsedTimeMillis;
+    
+    
+    ReencryptionReport(final String resumedAfterKey, final long reencryptedCount, 
+            final long batchCount, final Map failures, final Set conflicts, 
+            final long elapsedTimeMillis) {
+        super();
+        this.resumedAfterKey = resumedAfterKey;
+        this.reencryptedCount = reencryptedCount;
+        this.batchCount = batchCount;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.conflicts = Collections.unmodifiableSet(conflicts);
+        this.elapsedTimeMillis = elapsedTimeMillis;
+    }
+    
+
+    /**
+     * <p>
+     * Returns the checkpoint from which the process was resumed.
+     * </p>
+     * 
+     * @return the key after which the process started, or null if it 
+     *         started from the beginning.
+     */
+    public String getResumedAfterKey() {
+        return this.resumedAfterKey;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of values that were successfully re-encrypted 
+     * and written to the sink.
+     * </p>
+     * 
+     * @return the number of re-encrypted values.
+     */
+    public long getReencryptedCount() {
+        return this.reencryptedCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the number of batches that were written to the sink.
+     * </p>
+     * 
+     * @return the number of batches.
+     */
+    public long getBatchCount() {
+        return this.batchCount;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the values that could not be re-encrypted (usually, because
+     * they could not be decrypted). These values were not written to the
+     * sink, and so they remain as they were.
+     * </p>
+     * 
+     * @return a map of record keys to the exceptions raised.
+     */
+    public Map getFailures() {
+        return this.failures;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the keys of the values that were re-encrypted but not written,
+     * because the sink found they had been modified since they were read.
+     * These values are not counted as re-encrypted.
+     * </p>
+     * 
+     * @return the set of record keys.
+     */
+    public Set getConflicts() {
+        return this.conflicts;
+    }
+    
+    
+    /**
+     * <p>
+     * Returns whether any values could not be re-encrypted, either because 
+     * of a failure or a conflict.
+     * </p>
+     * 
+     * @return true if there were failures or conflicts, false if not.
+     */
+    public boolean hasFailures() {
+        return !this.failures.isEmpty() || !this.conflicts.isEmpty();
+    }
+    
+    
+    /**
+     * <p>
+     * Returns the total time spent in the process, in milliseconds.
+     * </p>
+     * 
+     * @return the elapsed time.
+     */
+    public long getElapsedTimeMillis() {
+        return this.elapsedTimeMillis;
+    }
+    
+    
+    public String toString() {
+        return "ReencryptionReport[reencrypted=" + this.reencryptedCount + 
+               ", failed=" + this.failures.size() + 
+               ", conflicts=" + this.conflicts.size() + 
+               ", batches=" + this.batchCount + 
+               ", elapsedTimeMillis=" + this.elapsedTimeMillis + 
+               (this.resumedAfterKey != null? ", resumedAfter=" + this.resumedAfterKey : "") + "]";
+    }
+    
+}
@@ -0,0 +1,65 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+
+/**
+ * <p>
+ * Destination of the values re-encrypted by a {@link ReencryptionEngine}.
+ * It will usually be the same object as the {@link ReencryptionSource} 
+ * (the values being replaced by their re-encrypted versions), but it is
+ * not required to.
+ * </p>
+ * <p>
+ * Records are written in batches, in the same order in which they were read
+ * from the source. Implementations are only called from one thread at 
+ * a time.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface ReencryptionSink {
+
+    
+    /**
+     * <p>
+     * Writes (durably) a batch of re-encrypted records. Once this method
+     * returns, the engine will save a checkpoint after the last of these 
+     * records.
+     * </p>
+     * <p>
+     * Sinks able to detect concurrent modifications should not overwrite
+     * values that changed since they were read (see
+     * {@link ReencryptionRecord#getPreviousValue()}), and return their keys 
+     * instead.
+     * </p>
+     * 
+     * @param records the re-encrypted records.
+     * @return the keys of the records that were not written because their
+     *         values had been modified since they were read (never null).
+     * @throws org.jasypt.exceptions.ReencryptionException if the records
+     *         cannot be written.
+     */
+    public String[] write(final ReencryptionRecord[] records);
+    
+}
@@ -0,0 +1,61 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+
+/**
+ * <p>
+ * Source of the encrypted values to be re-encrypted by a 
+ * {@link ReencryptionEngine}.
+ * </p>
+ * <p>
+ * Sources are read in <i>pages</i>, always in the same (ascending) key 
+ * order, by asking for the records which keys come after the last key
+ * read. This allows resuming an interrupted re-encryption process from
+ * its last checkpoint (see {@link ReencryptionCheckpointStore}).
+ * </p>
+ * <p>
+ * Implementations are only called from one thread at a time.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface ReencryptionSource {
+
+    
+    /**
+     * <p>
+     * Reads the next records to be re-encrypted.
+     * </p>
+     * 
+     * @param afterKey the key after which records must be read, or null
+     *                 for reading from the beginning.
+     * @param maxRecords the maximum number of records to be returned.
+     * @return the records, in ascending key order (an empty array if there
+     *         are no more records to be read).
+     * @throws org.jasypt.exceptions.ReencryptionException if the source 
+     *         cannot be read.
+     */
+    public ReencryptionRecord[] read(final String afterKey, final int maxRecords);
+    
+}
@@ -19,7 +19,12 @@
  */
 package org.jasypt.util.binary;
 
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.ByteEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
 import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
+import org.jasypt.exceptions.AlreadyInitializedException;
 
 
 /**
@@ -46,6 +51,11 @@ import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
  * </ol> 
  * </p>
  * <p>
+ * The internal encryptor is obtained from {@link SharedPBEEncryptorFactory}
+ * the first time it is needed, so that it is shared by every instance of
+ * this class (or any other component) using the same password.
+ * </p>
+ * <p>
  * This class is <i>thread-safe</i>.
  * </p>
  * 
@@ -57,8 +67,11 @@ import org.jasypt.encryption.pbe.StandardPBEByteEncryptor;
 public final class StrongBinaryEncryptor implements BinaryEncryptor {
 
 
-    // The internal encryptor 
-    private final StandardPBEByteEncryptor encryptor;
+    // The configuration of the internal encryptor
+    private final SimplePBEConfig config;
+    
+    // The internal encryptor, obtained on first use
+    private ByteEncryptor encryptor = null;
     
     
     /**
@@ -66,8 +79,8 @@ public final class StrongBinaryEncryptor implements BinaryEncryptor {
      */
     public StrongBinaryEncryptor() {
         super();
-        this.encryptor = new StandardPBEByteEncryptor();
-        this.encryptor.setAlgorithm("PBEWithMD5AndTripleDES");
+        this.config = new SimplePBEConfig();
+        this.config.setAlgorithm("PBEWithMD5AndTripleDES");
     }
 
     
@@ -76,8 +89,12 @@ public final class StrongBinaryEncryptor implements BinaryEncryptor {
      * 
      * @param password the password to be set.
      */
-    public void setPassword(final String password) {
-        this.encryptor.setPassword(password);
+    public synchronized void setPassword(final String password) {
+        CommonUtils.validateNotEmpty(password, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPassword(password);
     }
 
     
@@ -87,8 +104,13 @@ public final class StrongBinaryEncryptor implements BinaryEncryptor {
      * @since 1.8
      * @param password the password to be set.
      */
-    public void setPasswordCharArray(final char[] password) {
-        this.encryptor.setPasswordCharArray(password);
+    public synchronized void setPasswordCharArray(final char[] password) {
+        CommonUtils.validateNotNull(password, "Password cannot be set null");
+        CommonUtils.validateIsTrue(password.length > 0, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPasswordCharArray(password);
     }
 
     
@@ -99,7 +121,10 @@ public final class StrongBinaryEncryptor implements BinaryEncryptor {
      * @see StandardPBEByteEncryptor#encrypt(byte[])
      */
     public byte[] encrypt(final byte[] binary) {
-        return this.encryptor.encrypt(binary);
+        if (binary == null) {
+            return null;
+        }
+        return getEncryptor().encrypt(binary);
     }
 
     
@@ -110,9 +135,19 @@ public final class StrongBinaryEncryptor implements BinaryEncryptor {
      * @see StandardPBEByteEncryptor#decrypt(byte[])
      */
     public byte[] decrypt(final byte[] encryptedBinary) {
-        return this.encryptor.decrypt(encryptedBinary);
+        if (encryptedBinary == null) {
+            return null;
+        }
+        return getEncryptor().decrypt(encryptedBinary);
     }
 
-
+    
+    private synchronized ByteEncryptor getEncryptor() {
+        // The factory checks the password has been set
+        if (this.encryptor == null) {
+            this.encryptor = SharedPBEEncryptorFactory.getInstance().getByteEncryptor(this.config);
+        }
+        return this.encryptor;
+    }
     
 }
@@ -21,7 +21,12 @@ package org.jasypt.util.numeric;
 
 import java.math.BigInteger;
 
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.BigIntegerEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
 import org.jasypt.encryption.pbe.StandardPBEBigIntegerEncryptor;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
+import org.jasypt.exceptions.AlreadyInitializedException;
 
 /**
  * <p>
@@ -47,6 +52,11 @@ import org.jasypt.encryption.pbe.StandardPBEBigIntegerEncryptor;
  * </ol> 
  * </p>
  * <p>
+ * The internal encryptor is obtained from {@link SharedPBEEncryptorFactory}
+ * the first time it is needed, so that it is shared by every instance of
+ * this class (or any other component) using the same password.
+ * </p>
+ * <p>
  * This class is <i>thread-safe</i>.
  * </p>
  * 
@@ -58,8 +68,11 @@ import org.jasypt.encryption.pbe.StandardPBEBigIntegerEncryptor;
 public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor {
 
 
-    // The internal encryptor 
-    private final StandardPBEBigIntegerEncryptor encryptor;
+    // The configuration of the internal encryptor
+    private final SimplePBEConfig config;
+    
+    // The internal encryptor, obtained on first use
+    private BigIntegerEncryptor encryptor = null;
     
     
     /**
@@ -67,8 +80,8 @@ public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor
      */
     public BasicIntegerNumberEncryptor() {
         super();
-        this.encryptor = new StandardPBEBigIntegerEncryptor();
-        this.encryptor.setAlgorithm("PBEWithMD5AndDES");
+        this.config = new SimplePBEConfig();
+        this.config.setAlgorithm("PBEWithMD5AndDES");
     }
 
     
@@ -77,8 +90,12 @@ public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor
      * 
      * @param password the password to be set.
      */
-    public void setPassword(final String password) {
-        this.encryptor.setPassword(password);
+    public synchronized void setPassword(final String password) {
+        CommonUtils.validateNotEmpty(password, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPassword(password);
     }
 
     
@@ -88,8 +105,13 @@ public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor
      * @since 1.8
      * @param password the password to be set.
      */
-    public void setPasswordCharArray(final char[] password) {
-        this.encryptor.setPasswordCharArray(password);
+    public synchronized void setPasswordCharArray(final char[] password) {
+        CommonUtils.validateNotNull(password, "Password cannot be set null");
+        CommonUtils.validateIsTrue(password.length > 0, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPasswordCharArray(password);
     }
 
 
@@ -100,7 +122,10 @@ public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor
      * @see StandardPBEBigIntegerEncryptor#encrypt(BigInteger)
      */
     public BigInteger encrypt(final BigInteger number) {
-        return this.encryptor.encrypt(number);
+        if (number == null) {
+            return null;
+        }
+        return getEncryptor().encrypt(number);
     }
     
     
@@ -111,7 +136,19 @@ public final class BasicIntegerNumberEncryptor implements IntegerNumberEncryptor
      * @see StandardPBEBigIntegerEncryptor#decrypt(BigInteger)
      */
     public BigInteger decrypt(final BigInteger encryptedNumber) {
-        return this.encryptor.decrypt(encryptedNumber);
+        if (encryptedNumber == null) {
+            return null;
+        }
+        return getEncryptor().decrypt(encryptedNumber);
     }
 
+    
+    private synchronized BigIntegerEncryptor getEncryptor() {
+        // The factory checks the password has been set
+        if (this.encryptor == null) {
+            this.encryptor = SharedPBEEncryptorFactory.getInstance().getBigIntegerEncryptor(this.config);
+        }
+        return this.encryptor;
+    }
+    
 }
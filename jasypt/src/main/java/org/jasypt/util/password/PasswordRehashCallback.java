@@ -0,0 +1,55 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.util.password;
+
+
+/**
+ * <p>
+ * Callback notified by {@link UpgradingPasswordEncryptor} when a password
+ * has been successfully checked against a digest created with outdated 
+ * parameters, and a new digest has been created for it with the current
+ * ones.
+ * </p>
+ * <p>
+ * Implementations will normally replace the stored digest with the new 
+ * one. As digests are salted, the old digest identifies the stored 
+ * password unequivocally.
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public interface PasswordRehashCallback {
+
+    
+    /**
+     * <p>
+     * Called when a password has been re-digested with the current 
+     * parameters.
+     * </p>
+     * 
+     * @param oldEncryptedPassword the outdated digest, which was checked.
+     * @param newEncryptedPassword the new digest.
+     */
+    public void passwordRehashed(String oldEncryptedPassword, String newEncryptedPassword);
+    
+}
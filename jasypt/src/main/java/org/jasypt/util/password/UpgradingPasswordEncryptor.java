@@ -0,0 +1,414 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.util.password;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.digest.StandardStringDigester;
+import org.jasypt.exceptions.EncryptionInitializationException;
+
+/**
+ * <p>
+ * Utility class for performing password digesting and checking which 
+ * allows changing the digest parameters (algorithm, iterations and salt 
+ * size) without invalidating the digests created with the old ones.
+ * </p>
+ * <p>
+ * Digests created by this class are prefixed with the parameters used
+ * for creating them, like <tt>{jasypt:SHA-256:100000:16}</tt>, so that 
+ * they can always be checked. When a password is successfully checked 
+ * against a digest created with parameters different from the current 
+ * ones, the password is digested again with the current parameters and 
+ * the new digest is passed to a {@link PasswordRehashCallback}, so that 
+ * it can be stored. Stored digests are this way migrated as their users 
+ * log in, without any bulk operations.
+ * </p>
+ * <p>
+ * As the parameters in a prefix are read from the stored digest, digests
+ * with more iterations than a maximum (see 
+ * {@link #setMaxIterations(int)}) or with an algorithm that is not 
+ * available never match.
+ * </p>
+ * <p>
+ * Digests without a prefix (for example, those created by a 
+ * {@link ConfigurablePasswordEncryptor} or a 
+ * {@link BasicPasswordEncryptor}) can be checked (and migrated) by 
+ * setting the encryptor which created them as <i>legacy</i> encryptor.
+ * </p>
+ * <p>
+ * As any other {@link PasswordEncryptor}, it can be used from the Spring 
+ * Security <tt>PasswordEncoder</tt> implementations in jasypt's Spring
+ * Security integration modules, in which case the callback will be the 
+ * one set with {@link #setRehashCallback(PasswordRehashCallback)}.
+ * </p>
+ * <p>
+ * Default parameters are the same as those used by
+ * {@link StrongPasswordEncryptor}: SHA-256, 100,000 iterations and 16 bytes
+ * of salt.
+ * </p>
+ * <p>
+ * This class is <i>thread-safe</i>
+ * </p>
+ * 
+ * @since 1.9.3
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ */
+public final class UpgradingPasswordEncryptor implements PasswordEncryptor {
+
+    /**
+     * Default algorithm: SHA-256.
+     */
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+    
+    /**
+     * Default number of iterations: 100,000.
+     */
+    public static final int DEFAULT_ITERATIONS = 100000;
+    
+    /**
+     * Default salt size: 16 bytes.
+     */
+    public static final int DEFAULT_SALT_SIZE_BYTES = 16;
+    
+    /**
+     * Default maximum number of iterations accepted in digest prefixes: 
+     * 1,000,000.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 1000000;
+    
+    // Digesters for prefixes beyond this number are created for each use
+    private static final int MAX_CACHED_DIGESTERS = 32;
+    
+    private static final String PREFIX_START = "{jasypt:";
+    private static final char PREFIX_SEPARATOR = ':';
+    private static final char PREFIX_END = '}';
+    
+    private String algorithm = DEFAULT_ALGORITHM;
+    private int iterations = DEFAULT_ITERATIONS;
+    private int saltSizeBytes = DEFAULT_SALT_SIZE_BYTES;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private PasswordEncryptor legacyPasswordEncryptor = null;
+    private PasswordRehashCallback rehashCallback = null;
+    
+    // Map<String,StandardStringDigester> (prefix -> digester)
+    private final Map digesters = new HashMap();
+    
+    
+    /**
+     * Creates a new instance of <tt>UpgradingPasswordEncryptor</tt>
+     */
+    public UpgradingPasswordEncryptor() {
+        super();
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the algorithm to be used for new digests.
+     * </p>
+     * 
+     * @param algorithm the name of the algorithm to be used.
+     */
+    public synchronized void setAlgorithm(final String algorithm) {
+        CommonUtils.validateNotEmpty(algorithm, "Algorithm cannot be empty");
+        CommonUtils.validateIsTrue(
+                algorithm.indexOf(PREFIX_SEPARATOR) == -1 && algorithm.indexOf(PREFIX_END) == -1,
+                "Algorithm name cannot contain '" + PREFIX_SEPARATOR + "' or '" + PREFIX_END + "'");
+        this.algorithm = algorithm;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the number of hash iterations to be applied for new digests.
+     * </p>
+     * 
+     * @param iterations the number of iterations.
+     */
+    public synchronized void setIterations(final int iterations) {
+        CommonUtils.validateIsTrue(iterations > 0, 
+                "Number of iterations must be greater than zero");
+        this.iterations = iterations;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the size of the salt to be used for new digests.
+     * </p>
+     * 
+     * @param saltSizeBytes the salt size in bytes.
+     */
+    public synchronized void setSaltSizeBytes(final int saltSizeBytes) {
+        CommonUtils.validateIsTrue(saltSizeBytes > 0, 
+                "Salt size in bytes must be greater than zero");
+        this.saltSizeBytes = saltSizeBytes;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the maximum number of iterations a digest prefix can specify.
+     * Digests with more iterations are considered invalid and never match,
+     * so that a tampered digest cannot make checking a password arbitrarily
+     * expensive. Digests with the current number of iterations always 
+     * match, even if it is higher than this maximum.
+     * </p>
+     * <p>
+     * Default value is {@link #DEFAULT_MAX_ITERATIONS}.
+     * </p>
+     * 
+     * @param maxIterations the maximum number of iterations.
+     */
+    public synchronized void setMaxIterations(final int maxIterations) {
+        CommonUtils.validateIsTrue(maxIterations > 0, 
+                "Maximum number of iterations must be greater than zero");
+        this.maxIterations = maxIterations;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the encryptor which created the digests that have no parameter
+     * prefix. If not set, unprefixed digests will never match.
+     * </p>
+     * 
+     * @param legacyPasswordEncryptor the legacy encryptor.
+     */
+    public synchronized void setLegacyPasswordEncryptor(
+            final PasswordEncryptor legacyPasswordEncryptor) {
+        this.legacyPasswordEncryptor = legacyPasswordEncryptor;
+    }
+    
+    
+    /**
+     * <p>
+     * Sets the callback to be notified of re-digested passwords by
+     * {@link #checkPassword(String, String)}.
+     * </p>
+     * 
+     * @param rehashCallback the callback.
+     */
+    public synchronized void setRehashCallback(final PasswordRehashCallback rehashCallback) {
+        this.rehashCallback = rehashCallback;
+    }
+    
+    
+    
+    /**
+     * Encrypts (digests) a password with the current parameters.
+     * 
+     * @param password the password to be encrypted.
+     * @return the resulting digest, prefixed with its parameters.
+     * @see StandardStringDigester#digest(String)
+     */
+    public String encryptPassword(final String password) {
+        return getDigester(getCurrentPrefix()).digest(password);
+    }
+
+    
+    /**
+     * Checks an unencrypted (plain) password against an encrypted one
+     * (a digest) to see if they match. If they match and the digest was 
+     * created with outdated parameters, the rehash callback set by
+     * {@link #setRehashCallback(PasswordRehashCallback)} (if any) will be
+     * notified of a new digest.
+     * 
+     * @param plainPassword the plain password to check.
+     * @param encryptedPassword the digest against which to check the password.
+     * @return true if passwords match, false if not.
+     * @see StandardStringDigester#matches(String, String)
+     */
+    public boolean checkPassword(final String plainPassword, 
+            final String encryptedPassword) {
+        return checkPassword(plainPassword, encryptedPassword, getRehashCallback());
+    }
+
+    
+    /**
+     * Checks an unencrypted (plain) password against an encrypted one
+     * (a digest) to see if they match. If they match and the digest was 
+     * created with outdated parameters, the specified callback will be
+     * notified of a new digest.
+     * 
+     * @param plainPassword the plain password to check.
+     * @param encryptedPassword the digest against which to check the password.
+     * @param rehashCallback the callback to be notified (can be null).
+     * @return true if passwords match, false if not (also if the digest 
+     *         specifies more iterations than allowed or an algorithm 
+     *         that is not available).
+     */
+    public boolean checkPassword(final String plainPassword, 
+            final String encryptedPassword, final PasswordRehashCallback rehashCallback) {
+        
+        if (encryptedPassword == null) {
+            return false;
+        }
+        
+        final String prefix = extractPrefix(encryptedPassword);
+        final boolean matches;
+        if (prefix == null) {
+            final PasswordEncryptor legacyEncryptor = getLegacyPasswordEncryptor();
+            matches = 
+                (legacyEncryptor != null && 
+                 legacyEncryptor.checkPassword(plainPassword, encryptedPassword));
+        } else if (getIterations(prefix) > getIterationsLimit()) {
+            matches = false;
+        } else {
+            StandardStringDigester digester = null;
+            try {
+                digester = getDigester(prefix);
+            } catch (final EncryptionInitializationException e) {
+                // Algorithm not available: the digest cannot be checked
+            }
+            matches = 
+                (digester != null && digester.matches(plainPassword, encryptedPassword));
+        }
+        
+        if (matches && rehashCallback != null && needsRehash(encryptedPassword)) {
+            rehashCallback.passwordRehashed(encryptedPassword, encryptPassword(plainPassword));
+        }
+        
+        return matches;
+        
+    }
+    
+    
+    /**
+     * Returns whether the specified digest was created with parameters
+     * different from the current ones (or by the legacy encryptor).
+     * 
+     * @param encryptedPassword the digest.
+     * @return true if the digest was created with outdated parameters.
+     */
+    public boolean needsRehash(final String encryptedPassword) {
+        final String prefix = extractPrefix(encryptedPassword);
+        return (prefix == null || !prefix.equals(getCurrentPrefix()));
+    }
+    
+    
+    
+    private synchronized String getCurrentPrefix() {
+        return createPrefix(this.algorithm, this.iterations, this.saltSizeBytes);
+    }
+    
+    
+    private synchronized int getIterationsLimit() {
+        return Math.max(this.maxIterations, this.iterations);
+    }
+    
+    
+    private synchronized PasswordEncryptor getLegacyPasswordEncryptor() {
+        return this.legacyPasswordEncryptor;
+    }
+    
+    
+    private synchronized PasswordRehashCallback getRehashCallback() {
+        return this.rehashCallback;
+    }
+    
+    
+    private static String createPrefix(final String algorithm, 
+            final int iterations, final int saltSizeBytes) {
+        return PREFIX_START + algorithm + PREFIX_SEPARATOR + iterations + 
+            PREFIX_SEPARATOR + saltSizeBytes + PREFIX_END;
+    }
+    
+    
+    /*
+     * Returns the (validated) parameter prefix of a digest, or null if it
+     * has none.
+     */
+    private static String extractPrefix(final String encryptedPassword) {
+        if (encryptedPassword == null || !encryptedPassword.startsWith(PREFIX_START)) {
+            return null;
+        }
+        final int end = encryptedPassword.indexOf(PREFIX_END);
+        if (end == -1) {
+            return null;
+        }
+        final String prefix = encryptedPassword.substring(0, end + 1);
+        return (parsePrefix(prefix) == null? null : prefix);
+    }
+    
+    
+    /*
+     * Returns { algorithm, iterations, saltSizeBytes } or null if the 
+     * prefix is not valid.
+     */
+    private static Object[] parsePrefix(final String prefix) {
+        final String parameters = 
+            prefix.substring(PREFIX_START.length(), prefix.length() - 1);
+        final int firstSeparator = parameters.indexOf(PREFIX_SEPARATOR);
+        final int lastSeparator = parameters.lastIndexOf(PREFIX_SEPARATOR);
+        if (firstSeparator <= 0 || lastSeparator == firstSeparator) {
+            return null;
+        }
+        try {
+            final int iterations = 
+                Integer.parseInt(parameters.substring(firstSeparator + 1, lastSeparator));
+            final int saltSizeBytes = 
+                Integer.parseInt(parameters.substring(lastSeparator + 1));
+            if (iterations <= 0 || saltSizeBytes <= 0) {
+                return null;
+            }
+            return new Object[] { 
+                    parameters.substring(0, firstSeparator), 
+                    new Integer(iterations), new Integer(saltSizeBytes) };
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    
+    private static int getIterations(final String prefix) {
+        return ((Integer) parsePrefix(prefix)[1]).intValue();
+    }
+    
+    
+    private StandardStringDigester getDigester(final String prefix) {
+        
+        synchronized (this.digesters) {
+            
+            StandardStringDigester digester = 
+                (StandardStringDigester) this.digesters.get(prefix);
+            if (digester == null) {
+                final Object[] parameters = parsePrefix(prefix);
+                digester = new StandardStringDigester();
+                digester.setAlgorithm((String) parameters[0]);
+                digester.setIterations(((Integer) parameters[1]).intValue());
+                digester.setSaltSizeBytes(((Integer) parameters[2]).intValue());
+                digester.setPrefix(prefix);
+                digester.initialize();
+                if (this.digesters.size() < MAX_CACHED_DIGESTERS) {
+                    this.digesters.put(prefix, digester);
+                }
+            }
+            return digester;
+            
+        }
+        
+    }
+    
+}
@@ -19,7 +19,12 @@
  */
 package org.jasypt.util.text;
 
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.SharedPBEEncryptorFactory;
 import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
+import org.jasypt.exceptions.AlreadyInitializedException;
 
 /**
  * <p>
@@ -50,6 +55,11 @@ import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
  * Files</i></a>. 
  * </p>
  * <p>
+ * The internal encryptor is obtained from {@link SharedPBEEncryptorFactory}
+ * the first time it is needed, so that it is shared by every instance of
+ * this class (or any other component) using the same password.
+ * </p>
+ * <p>
  * This class is <i>thread-safe</i>.
  * </p>
  * 
@@ -61,8 +71,11 @@ import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
 public final class StrongTextEncryptor implements TextEncryptor {
 
     
-    // The internal encryptor 
-    private final StandardPBEStringEncryptor encryptor;
+    // The configuration of the internal encryptor
+    private final SimplePBEConfig config;
+    
+    // The internal encryptor, obtained on first use
+    private StringEncryptor encryptor = null;
     
     
 
@@ -71,8 +84,8 @@ public final class StrongTextEncryptor implements TextEncryptor {
      */
     public StrongTextEncryptor() {
         super();
-        this.encryptor = new StandardPBEStringEncryptor();
-        this.encryptor.setAlgorithm("PBEWithMD5AndTripleDES");
+        this.config = new SimplePBEConfig();
+        this.config.setAlgorithm("PBEWithMD5AndTripleDES");
     }
 
     
@@ -81,8 +94,12 @@ public final class StrongTextEncryptor implements TextEncryptor {
      * 
      * @param password the password to be set.
      */
-    public void setPassword(final String password) {
-        this.encryptor.setPassword(password);
+    public synchronized void setPassword(final String password) {
+        CommonUtils.validateNotEmpty(password, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPassword(password);
     }
 
     
@@ -92,8 +109,13 @@ public final class StrongTextEncryptor implements TextEncryptor {
      * @since 1.8
      * @param password the password to be set.
      */
-    public void setPasswordCharArray(final char[] password) {
-        this.encryptor.setPasswordCharArray(password);
+    public synchronized void setPasswordCharArray(final char[] password) {
+        CommonUtils.validateNotNull(password, "Password cannot be set null");
+        CommonUtils.validateIsTrue(password.length > 0, "Password cannot be set empty");
+        if (this.encryptor != null) {
+            throw new AlreadyInitializedException();
+        }
+        this.config.setPasswordCharArray(password);
     }
 
     
@@ -104,7 +126,10 @@ public final class StrongTextEncryptor implements TextEncryptor {
      * @see StandardPBEStringEncryptor#encrypt(String)
      */
     public String encrypt(final String message) {
-        return this.encryptor.encrypt(message);
+        if (message == null) {
+            return null;
+        }
+        return getEncryptor().encrypt(message);
     }
     
 
@@ -115,7 +140,19 @@ public final class StrongTextEncryptor implements TextEncryptor {
      * @see StandardPBEStringEncryptor#decrypt(String)
      */
     public String decrypt(final String encryptedMessage) {
-        return this.encryptor.decrypt(encryptedMessage);
+        if (encryptedMessage == null) {
+            return null;
+        }
+        return getEncryptor().decrypt(encryptedMessage);
+    }
+
+    
+    private synchronized StringEncryptor getEncryptor() {
+        // The factory checks the password has been set
+        if (this.encryptor == null) {
+            this.encryptor = SharedPBEEncryptorFactory.getInstance().getStringEncryptor(this.config);
+        }
+        return this.encryptor;
     }
     
 }
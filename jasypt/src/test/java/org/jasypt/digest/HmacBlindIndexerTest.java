@@ -0,0 +1,72 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.digest;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.AlreadyInitializedException;
+
+
+public class HmacBlindIndexerTest extends TestCase {
+
+    
+    public void testKnownValue() throws Exception {
+        
+        // RFC 4231, test case 2
+        final HmacBlindIndexer indexer = new HmacBlindIndexer();
+        indexer.setPassword("Jefe");
+        indexer.setStringOutputType("hexadecimal");
+        Assert.assertEquals(
+                "5BDCC146BF60754E6A042426089575C75A003F089D2739839DEC58B964EC3843",
+                indexer.index("what do ya want for nothing?").toUpperCase());
+        
+        try {
+            indexer.setAlgorithm("HmacSHA1");
+            Assert.fail();
+        } catch (final AlreadyInitializedException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testDeterministicAndKeyed() throws Exception {
+        
+        final HmacBlindIndexer indexer = new HmacBlindIndexer();
+        indexer.setPassword("blind-index-secret");
+        final HmacBlindIndexer sameKeyIndexer = new HmacBlindIndexer();
+        sameKeyIndexer.setPassword("blind-index-secret");
+        final HmacBlindIndexer otherKeyIndexer = new HmacBlindIndexer();
+        otherKeyIndexer.setPassword("another-secret");
+        
+        final String index = indexer.index("someone@example.com");
+        Assert.assertEquals(index, indexer.index("someone@example.com"));
+        Assert.assertEquals(index, sameKeyIndexer.index("someone@example.com"));
+        Assert.assertFalse(index.equals(otherKeyIndexer.index("someone@example.com")));
+        Assert.assertFalse(index.equals(indexer.index("someone.else@example.com")));
+        Assert.assertNull(indexer.index(null));
+        
+        // Composed and decomposed forms of the same text get the same index
+        Assert.assertEquals(indexer.index("\u00E1"), indexer.index("a\u0301"));
+        
+    }
+    
+}
@@ -28,6 +28,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.jasypt.contrib.org.apache.commons.codec_1_3.binary.Base64;
 import org.jasypt.digest.config.EnvironmentStringDigesterConfig;
 import org.jasypt.digest.config.SimpleDigesterConfig;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.salt.FixedByteArraySaltGenerator;
 
 public class StandardStringDigesterTest extends TestCase {
@@ -164,4 +165,37 @@ public class StandardStringDigesterTest extends TestCase {
         
     }
     
+    
+    public void testTryMatches() throws Exception {
+        
+        final String message = "This is a Message";
+        
+        final StandardStringDigester digester = new StandardStringDigester();
+        digester.setPrefix("{JASYPT}");
+        final String digest = digester.digest(message);
+        
+        assertSame(DigestMatchResult.MATCH, digester.tryMatches(message, digest));
+        assertSame(DigestMatchResult.NO_MATCH, digester.tryMatches("Other", digest));
+        assertSame(DigestMatchResult.MATCH, digester.tryMatches(null, null));
+        assertSame(DigestMatchResult.NO_MATCH, digester.tryMatches(message, null));
+        
+        assertSame(DigestMatchResult.INVALID, digester.tryMatches(message, "{JASYPT}AAAA"));
+        assertSame(DigestMatchResult.INVALID, digester.tryMatches(message, "AAAA"));
+        try {
+            digester.matches(message, "{JASYPT}AAAA");
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        final PooledStringDigester pooledDigester = new PooledStringDigester();
+        pooledDigester.setPoolSize(2);
+        pooledDigester.setPrefix("{JASYPT}");
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pooledDigester.tryMatches(message, digest).isMatch());
+            assertFalse(pooledDigester.tryMatches(message, "{JASYPT}AAAA").isValid());
+        }
+        
+    }
+    
 }
@@ -0,0 +1,203 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+public class CompressingPBEEncryptorTest extends TestCase {
+
+    
+    private static StandardPBEByteEncryptor createByteEncryptor() {
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("compressing");
+        return encryptor;
+    }
+    
+    
+    private static String createVerboseMessage() {
+        final StringBuffer message = new StringBuffer();
+        message.append("[");
+        for (int i = 0; i < 200; i++) {
+            message.append(i == 0? "" : ",");
+            message.append("{\"id\":" + i + ",\"name\":\"Customer \u00F1 " + i + 
+                    "\",\"country\":\"ES\",\"active\":true}");
+        }
+        message.append("]");
+        return message.toString();
+    }
+    
+    
+    public void testByteEncryption() throws Exception {
+        
+        final StandardPBEByteEncryptor plainEncryptor = createByteEncryptor();
+        final CompressingPBEByteEncryptor encryptor = 
+            new CompressingPBEByteEncryptor(createByteEncryptor());
+        
+        final byte[] verbose = createVerboseMessage().getBytes("UTF-8");
+        final byte[] random = new byte[2000];
+        new Random().nextBytes(random);
+        
+        final byte[][] messages = new byte[][] { 
+                new byte[0], "short".getBytes("UTF-8"), verbose, random };
+        for (int i = 0; i < messages.length; i++) {
+            final byte[] encrypted = encryptor.encrypt(messages[i]);
+            Assert.assertTrue(Arrays.equals(messages[i], encryptor.decrypt(encrypted)));
+        }
+        
+        // Verbose messages are compressed, incompressible ones are stored
+        // with just one additional header byte
+        Assert.assertTrue(
+                encryptor.encrypt(verbose).length < plainEncryptor.encrypt(verbose).length / 4);
+        Assert.assertTrue(
+                encryptor.encrypt(random).length <= plainEncryptor.encrypt(random).length + 8);
+        
+        Assert.assertNull(encryptor.encrypt(null));
+        Assert.assertNull(encryptor.decrypt(null));
+        
+    }
+    
+    
+    public void testStringEncryption() throws Exception {
+        
+        final CompressingPBEStringEncryptor encryptor = 
+            new CompressingPBEStringEncryptor(createByteEncryptor());
+        final CompressingPBEStringEncryptor hexEncryptor = 
+            new CompressingPBEStringEncryptor(createByteEncryptor(), 0, 9);
+        hexEncryptor.setStringOutputType("hexadecimal");
+        
+        final String[] messages = new String[] { 
+                "", "a", "someone@example.com", createVerboseMessage() };
+        for (int i = 0; i < messages.length; i++) {
+            Assert.assertEquals(messages[i], encryptor.decrypt(encryptor.encrypt(messages[i])));
+            Assert.assertEquals(messages[i], hexEncryptor.decrypt(hexEncryptor.encrypt(messages[i])));
+        }
+        
+    }
+    
+    
+    public void testConcurrentUse() throws Exception {
+        
+        final CompressingPBEStringEncryptor encryptor = 
+            new CompressingPBEStringEncryptor(createByteEncryptor());
+        final String message = createVerboseMessage();
+        
+        final Throwable[] failures = new Throwable[1];
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            Assert.assertEquals(message, encryptor.decrypt(encryptor.encrypt(message)));
+                        }
+                    } catch (final Throwable t) {
+                        synchronized (failures) {
+                            failures[0] = t;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        Assert.assertNull(failures[0]);
+        
+    }
+    
+    
+    public void testNotCompressedByThisEncryptor() throws Exception {
+        
+        final StandardPBEByteEncryptor plainEncryptor = createByteEncryptor();
+        final CompressingPBEByteEncryptor encryptor = 
+            new CompressingPBEByteEncryptor(createByteEncryptor());
+        
+        // Plain messages start with a byte that is not a valid header
+        try {
+            encryptor.decrypt(plainEncryptor.encrypt(new byte[] { 0x7F, 0x01, 0x02 }));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        // A deflated header followed by invalid compressed data
+        try {
+            encryptor.decrypt(plainEncryptor.encrypt(new byte[] { 0x01, 0x7F, 0x7F, 0x7F }));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+    }
+    
+    public void testMaxInflatedSize() throws Exception {
+        
+        final StandardPBEByteEncryptor plainEncryptor = createByteEncryptor();
+        final CompressingPBEByteEncryptor encryptor = 
+            new CompressingPBEByteEncryptor(createByteEncryptor(), 0, 9, 1000);
+        
+        // Highly compressible messages over the limit are stored, so they
+        // can still be decrypted
+        final byte[] large = new byte[5000];
+        final byte[] encrypted = encryptor.encrypt(large);
+        Assert.assertTrue(encrypted.length >= plainEncryptor.encrypt(large).length);
+        Assert.assertTrue(Arrays.equals(large, encryptor.decrypt(encrypted)));
+        
+        // But compressed messages inflating beyond it are rejected
+        final CompressingPBEByteEncryptor unboundedEncryptor = 
+            new CompressingPBEByteEncryptor(createByteEncryptor(), 0, 9);
+        try {
+            encryptor.decrypt(unboundedEncryptor.encrypt(large));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        final byte[] small = new byte[1000];
+        Assert.assertTrue(Arrays.equals(small, encryptor.decrypt(unboundedEncryptor.encrypt(small))));
+        
+    }
+    
+    
+    public void testClose() throws Exception {
+        
+        final CompressingPBEStringEncryptor encryptor = 
+            new CompressingPBEStringEncryptor(createByteEncryptor());
+        final String message = createVerboseMessage();
+        
+        encryptor.close();
+        final String encrypted = encryptor.encrypt(message);
+        encryptor.close();
+        Assert.assertEquals(message, encryptor.decrypt(encrypted));
+        encryptor.close();
+        encryptor.close();
+        Assert.assertEquals(message, encryptor.decrypt(encryptor.encrypt(message)));
+        
+    }
+    
+}
@@ -0,0 +1,155 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.commons.CommonUtils;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+public class DeterministicPBEEncryptorTest extends TestCase {
+
+    
+    public void testSivTestVectors() throws Exception {
+        
+        // RFC 5297, A.1: deterministic authenticated encryption
+        final SivCipher cipher = new SivCipher(CommonUtils.fromHexadecimal(
+                "fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff"));
+        final byte[][] associatedData = new byte[][] { CommonUtils.fromHexadecimal(
+                "101112131415161718191a1b1c1d1e1f2021222324252627") };
+        final byte[] plaintext = CommonUtils.fromHexadecimal("112233445566778899aabbccddee");
+        final byte[] encrypted = cipher.encrypt(associatedData, plaintext);
+        Assert.assertEquals(
+                "85632d07c6e8f37f950acd320a2ecc9340c02b9690c4dc04daef7f6afe5c",
+                CommonUtils.toHexadecimal(encrypted).toLowerCase());
+        Assert.assertTrue(Arrays.equals(plaintext, cipher.decrypt(associatedData, encrypted)));
+        
+        // RFC 5297, A.2: nonce-based authenticated encryption
+        final SivCipher nonceCipher = new SivCipher(CommonUtils.fromHexadecimal(
+                "7f7e7d7c7b7a79787776757473727170404142434445464748494a4b4c4d4e4f"));
+        final byte[][] nonceAssociatedData = new byte[][] {
+                CommonUtils.fromHexadecimal(
+                        "00112233445566778899aabbccddeeffdeaddadadeaddadaffeeddccbbaa99887766554433221100"),
+                CommonUtils.fromHexadecimal("102030405060708090a0"),
+                CommonUtils.fromHexadecimal("09f911029d74e35bd84156c5635688c0") };
+        final byte[] noncePlaintext = CommonUtils.fromHexadecimal(
+                "7468697320697320736f6d6520706c61696e7465787420746f20656e6372797074207573696e67205349562d414553");
+        Assert.assertEquals(
+                "7bdb6e3b432667eb06f4d14bff2fbd0fcb900f2fddbe404326601965c889bf17" +
+                "dba77ceb094fa663b7a3f748ba8af829ea64ad544a272e9c485b62a3fd5c0d",
+                CommonUtils.toHexadecimal(
+                        nonceCipher.encrypt(nonceAssociatedData, noncePlaintext)).toLowerCase());
+        
+    }
+    
+    
+    public void testDeterministicStringEncryption() throws Exception {
+        
+        final DeterministicPBEStringEncryptor encryptor = new DeterministicPBEStringEncryptor();
+        encryptor.setPassword("deterministic");
+        final DeterministicPBEStringEncryptor sameEncryptor = new DeterministicPBEStringEncryptor();
+        sameEncryptor.setPassword("deterministic");
+        final DeterministicPBEStringEncryptor otherEncryptor = new DeterministicPBEStringEncryptor();
+        otherEncryptor.setPassword("another password");
+        
+        final String[] messages = new String[] { 
+                "", "a", "someone@example.com", "This is a longer message, spanning several blocks" };
+        for (int i = 0; i < messages.length; i++) {
+            final String encrypted = encryptor.encrypt(messages[i]);
+            Assert.assertEquals(encrypted, encryptor.encrypt(messages[i]));
+            Assert.assertEquals(encrypted, sameEncryptor.encrypt(messages[i]));
+            Assert.assertFalse(encrypted.equals(otherEncryptor.encrypt(messages[i])));
+            Assert.assertEquals(messages[i], sameEncryptor.decrypt(encrypted));
+            try {
+                otherEncryptor.decrypt(encrypted);
+                Assert.fail();
+            } catch (final EncryptionOperationNotPossibleException e) {
+                // expected
+            }
+        }
+        Assert.assertFalse(encryptor.encrypt("a").equals(encryptor.encrypt("b")));
+        Assert.assertNull(encryptor.encrypt(null));
+        
+    }
+    
+    
+    public void testKeyDerivationSalt() throws Exception {
+        
+        final DeterministicPBEStringEncryptor encryptor = new DeterministicPBEStringEncryptor();
+        encryptor.setPassword("deterministic");
+        encryptor.setKeyDerivationSalt("application-salt");
+        final DeterministicPBEStringEncryptor sameEncryptor = new DeterministicPBEStringEncryptor();
+        sameEncryptor.setPassword("deterministic");
+        sameEncryptor.setKeyDerivationSalt("application-salt");
+        final DeterministicPBEStringEncryptor defaultSaltEncryptor = new DeterministicPBEStringEncryptor();
+        defaultSaltEncryptor.setPassword("deterministic");
+        
+        final String encrypted = encryptor.encrypt("someone@example.com");
+        Assert.assertEquals(encrypted, sameEncryptor.encrypt("someone@example.com"));
+        Assert.assertFalse(encrypted.equals(defaultSaltEncryptor.encrypt("someone@example.com")));
+        try {
+            defaultSaltEncryptor.decrypt(encrypted);
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        try {
+            encryptor.setKeyDerivationSalt("another-salt");
+            Assert.fail();
+        } catch (final AlreadyInitializedException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testTamperedByteEncryption() throws Exception {
+        
+        final DeterministicPBEByteEncryptor encryptor = new DeterministicPBEByteEncryptor();
+        encryptor.setPassword("deterministic");
+        encryptor.setKeyObtentionIterations(10);
+        
+        final byte[] message = "This is a message".getBytes("UTF-8");
+        final byte[] encrypted = encryptor.encrypt(message);
+        Assert.assertEquals(message.length + 16, encrypted.length);
+        Assert.assertTrue(Arrays.equals(message, encryptor.decrypt(encrypted)));
+        
+        encrypted[encrypted.length - 1] ^= 0x01;
+        try {
+            encryptor.decrypt(encrypted);
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        try {
+            encryptor.decrypt(new byte[5]);
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+    }
+    
+}
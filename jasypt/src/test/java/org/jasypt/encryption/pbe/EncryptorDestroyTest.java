@@ -0,0 +1,96 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+public class EncryptorDestroyTest extends TestCase {
+
+    
+    public void testDestroy() throws Exception {
+        
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        final byte[] encryptedMessage = encryptor.encrypt(new byte[] { 1, 2, 3 });
+        
+        encryptor.destroy();
+        Assert.assertTrue(encryptor.isDestroyed());
+        
+        try {
+            encryptor.decrypt(encryptedMessage);
+            fail();
+        } catch (final EncryptionInitializationException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testDestroyWhileOperating() throws Exception {
+        
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        encryptor.setKeyObtentionIterations(1);
+        final byte[] message = new byte[] { 1, 2, 3 };
+        final byte[] encryptedMessage = encryptor.encrypt(message);
+        
+        final RuntimeException[] unexpected = new RuntimeException[1];
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    while (true) {
+                        try {
+                            encryptor.encrypt(message);
+                            encryptor.decrypt(encryptedMessage);
+                        } catch (final EncryptionOperationNotPossibleException e) {
+                            // expected, if destroyed in the middle of the operation
+                        } catch (final EncryptionInitializationException e) {
+                            // expected, if already destroyed
+                            return;
+                        } catch (final RuntimeException e) {
+                            synchronized (unexpected) {
+                                unexpected[0] = e;
+                            }
+                            return;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        
+        Thread.sleep(50L);
+        encryptor.destroy();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(10000L);
+        }
+        
+        synchronized (unexpected) {
+            Assert.assertNull(unexpected[0]);
+        }
+        
+    }
+    
+}
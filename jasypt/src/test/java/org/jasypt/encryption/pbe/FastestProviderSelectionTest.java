@@ -0,0 +1,132 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.security.Security;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.jasypt.commons.ProviderSelection;
+import org.jasypt.digest.StandardStringDigester;
+
+
+public class FastestProviderSelectionTest extends TestCase {
+
+    
+    private boolean providerAdded = false;
+    
+    
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.providerAdded = 
+            (Security.addProvider(new BouncyCastleProvider()) != -1);
+    }
+    
+    
+    protected void tearDown() throws Exception {
+        if (this.providerAdded) {
+            Security.removeProvider(BouncyCastleProvider.PROVIDER_NAME);
+        }
+        super.tearDown();
+    }
+    
+    
+    public void testEncryptorSelection() throws Exception {
+
+        final StandardPBEStringEncryptor selecting = new StandardPBEStringEncryptor();
+        selecting.setPassword("selection");
+        selecting.setSelectFastestProvider(true);
+        
+        final StandardPBEStringEncryptor standard = new StandardPBEStringEncryptor();
+        standard.setPassword("selection");
+        
+        final String message = "This is a message";
+        Assert.assertEquals(message, standard.decrypt(selecting.encrypt(message)));
+        Assert.assertEquals(message, selecting.decrypt(standard.encrypt(message)));
+        
+        final ProviderSelection selection = selecting.getProviderSelection();
+        Assert.assertNotNull(selection);
+        Assert.assertEquals("PBEWithMD5AndDES", selection.getAlgorithm());
+        Assert.assertTrue(selection.getOperationsPerSecond().containsKey(
+                selection.getSelectedProvider().getName()));
+        Assert.assertTrue(selection.getOperationsPerSecond().containsKey(
+                selection.getDefaultProvider().getName()));
+        Assert.assertNull(standard.getProviderSelection());
+        
+    }
+    
+    
+    public void testPooledEncryptorSelection() throws Exception {
+
+        final PooledPBEStringEncryptor selecting = new PooledPBEStringEncryptor();
+        selecting.setPassword("selection");
+        selecting.setPoolSize(3);
+        selecting.setSelectFastestProvider(true);
+        
+        final StandardPBEStringEncryptor standard = new StandardPBEStringEncryptor();
+        standard.setPassword("selection");
+        
+        for (int i = 0; i < 6; i++) {
+            final String message = "Message " + i;
+            Assert.assertEquals(message, standard.decrypt(selecting.encrypt(message)));
+        }
+        Assert.assertNotNull(selecting.getProviderSelection());
+        
+    }
+    
+    
+    public void testExplicitProviderIsKept() throws Exception {
+
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("selection");
+        encryptor.setProviderName("SunJCE");
+        encryptor.setSelectFastestProvider(true);
+        encryptor.initialize();
+        
+        Assert.assertNull(encryptor.getProviderSelection());
+        
+    }
+    
+    
+    public void testDigesterSelection() throws Exception {
+
+        final StandardStringDigester selecting = new StandardStringDigester();
+        selecting.setAlgorithm("SHA-256");
+        selecting.setSelectFastestProvider(true);
+        
+        final StandardStringDigester standard = new StandardStringDigester();
+        standard.setAlgorithm("SHA-256");
+        
+        final String message = "This is a message";
+        Assert.assertTrue(standard.matches(message, selecting.digest(message)));
+        Assert.assertTrue(selecting.matches(message, standard.digest(message)));
+        
+        final ProviderSelection selection = selecting.getProviderSelection();
+        Assert.assertNotNull(selection);
+        Assert.assertEquals("SHA-256", selection.getAlgorithm());
+        if (this.providerAdded) {
+            Assert.assertTrue(selection.getOperationsPerSecond().size() >= 2);
+        }
+        
+    }
+    
+}
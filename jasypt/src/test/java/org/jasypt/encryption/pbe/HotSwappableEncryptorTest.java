@@ -0,0 +1,213 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+public class HotSwappableEncryptorTest extends TestCase {
+
+    
+    private static StandardPBEStringEncryptor createEncryptor(final String password) {
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword(password);
+        return encryptor;
+    }
+    
+    
+    
+    public void testSwap() throws Exception {
+        
+        final StandardPBEStringEncryptor oldEncryptor = createEncryptor("old");
+        final StandardPBEStringEncryptor newEncryptor = createEncryptor("new");
+        
+        final HotSwappableStringEncryptor encryptor = new HotSwappableStringEncryptor(oldEncryptor);
+        final String oldEncrypted = encryptor.encrypt("message");
+        
+        Assert.assertFalse(newEncryptor.isInitialized());
+        Assert.assertTrue(encryptor.swap(newEncryptor));
+        Assert.assertTrue(newEncryptor.isInitialized());
+        Assert.assertSame(newEncryptor, encryptor.getCurrentEncryptor());
+        Assert.assertEquals(1, encryptor.getSwapCount());
+        Assert.assertFalse(oldEncryptor.isDestroyed());
+        
+        final String newEncrypted = encryptor.encrypt("message");
+        Assert.assertEquals("message", newEncryptor.decrypt(newEncrypted));
+        Assert.assertFalse(encryptor.tryDecrypt(oldEncrypted).isSuccessful());
+        
+        // A failing encryptor is never swapped in
+        final StringEncryptor brokenEncryptor = new StringEncryptor() {
+            public String encrypt(final String message) {
+                return message;
+            }
+            public String decrypt(final String encryptedMessage) {
+                throw new EncryptionOperationNotPossibleException();
+            }
+        };
+        try {
+            encryptor.swap(brokenEncryptor);
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // Expected
+        }
+        Assert.assertSame(newEncryptor, encryptor.getCurrentEncryptor());
+        
+        encryptor.swapInBackground(brokenEncryptor);
+        Assert.assertTrue(encryptor.waitForSwap(10000L));
+        Assert.assertTrue(encryptor.getLastSwapFailure() instanceof EncryptionOperationNotPossibleException);
+        Assert.assertSame(newEncryptor, encryptor.getCurrentEncryptor());
+        
+        final byte[] message = new byte[] { 1, 2, 3 };
+        final StandardPBEByteEncryptor newByteEncryptor = new StandardPBEByteEncryptor();
+        newByteEncryptor.setPassword("new");
+        final StandardPBEByteEncryptor oldByteEncryptor = new StandardPBEByteEncryptor();
+        oldByteEncryptor.setPassword("old");
+        final HotSwappableByteEncryptor byteEncryptor = new HotSwappableByteEncryptor(oldByteEncryptor);
+        byteEncryptor.swapInBackground(newByteEncryptor);
+        Assert.assertTrue(byteEncryptor.waitForSwap(10000L));
+        Assert.assertNull(byteEncryptor.getLastSwapFailure());
+        Assert.assertSame(newByteEncryptor, byteEncryptor.getCurrentEncryptor());
+        Assert.assertEquals(3, newByteEncryptor.decrypt(byteEncryptor.encrypt(message)).length);
+        
+    }
+    
+    
+    
+    public void testReplacedEncryptorsAreKept() throws Exception {
+        
+        final StandardPBEStringEncryptor oldEncryptor = createEncryptor("old");
+        final HotSwappableStringEncryptor encryptor = new HotSwappableStringEncryptor(oldEncryptor);
+        final String oldEncrypted = encryptor.encrypt("message");
+        
+        // Rotation: the new encryptor still uses the old one for old messages
+        final MultiKeyStringEncryptor multiKeyEncryptor = new MultiKeyStringEncryptor();
+        multiKeyEncryptor.addEncryptor("old", oldEncryptor);
+        multiKeyEncryptor.addEncryptor("new", createEncryptor("new"));
+        multiKeyEncryptor.setCurrentKeyId("new");
+        Assert.assertTrue(encryptor.swap(multiKeyEncryptor));
+        Assert.assertFalse(oldEncryptor.isDestroyed());
+        Assert.assertEquals("message", encryptor.decrypt(oldEncrypted));
+        Assert.assertEquals("message", encryptor.decrypt(encryptor.encrypt("message")));
+        
+        // Even when enabled, an encryptor swapped for itself is not destroyed
+        final StandardPBEStringEncryptor sameEncryptor = createEncryptor("same");
+        final HotSwappableStringEncryptor sameInstanceEncryptor = 
+            new HotSwappableStringEncryptor(sameEncryptor);
+        sameInstanceEncryptor.setDestroyReplacedEncryptors(true);
+        Assert.assertTrue(sameInstanceEncryptor.swap(sameEncryptor));
+        Assert.assertFalse(sameEncryptor.isDestroyed());
+        Assert.assertEquals("message", 
+                sameInstanceEncryptor.decrypt(sameInstanceEncryptor.encrypt("message")));
+        
+        // ...but any other is, when enabled
+        Assert.assertTrue(sameInstanceEncryptor.swap(createEncryptor("other")));
+        Assert.assertTrue(sameEncryptor.isDestroyed());
+        
+    }
+    
+    
+    
+    public void testSwapWarmsEveryPoolEncryptor() throws Exception {
+        
+        final PooledPBEStringEncryptor newEncryptor = new PooledPBEStringEncryptor();
+        newEncryptor.setPassword("new");
+        newEncryptor.setPoolSize(4);
+        
+        final HotSwappableStringEncryptor encryptor = 
+            new HotSwappableStringEncryptor(createEncryptor("old"));
+        Assert.assertTrue(encryptor.swap(newEncryptor));
+        
+        final StandardPBEStringEncryptor[] poolEncryptors = newEncryptor.getPoolEncryptors();
+        Assert.assertEquals(4, poolEncryptors.length);
+        for (int i = 0; i < poolEncryptors.length; i++) {
+            Assert.assertTrue(poolEncryptors[i].isInitialized());
+        }
+        
+    }
+    
+    
+    
+    public void testDrain() throws Exception {
+        
+        final Object lock = new Object();
+        final boolean[] blocked = new boolean[] { false, true };
+        
+        // Blocks on encryption until released
+        final StringEncryptor slowEncryptor = new StringEncryptor() {
+            public String encrypt(final String message) {
+                synchronized (lock) {
+                    blocked[0] = true;
+                    lock.notifyAll();
+                    while (blocked[1]) {
+                        try {
+                            lock.wait();
+                        } catch (final InterruptedException e) {
+                            return null;
+                        }
+                    }
+                }
+                return message;
+            }
+            public String decrypt(final String encryptedMessage) {
+                return encryptedMessage;
+            }
+        };
+        
+        final HotSwappableStringEncryptor encryptor = new HotSwappableStringEncryptor(slowEncryptor);
+        encryptor.setDrainTimeoutMillis(100L);
+        
+        final String[] result = new String[1];
+        final Thread thread = new Thread() {
+            public void run() {
+                result[0] = encryptor.encrypt("in flight");
+            }
+        };
+        thread.start();
+        synchronized (lock) {
+            while (!blocked[0]) {
+                lock.wait();
+            }
+        }
+        
+        // The operation in flight does not block the swap nor new operations
+        final StandardPBEStringEncryptor newEncryptor = createEncryptor("new");
+        Assert.assertFalse(encryptor.swap(newEncryptor));
+        Assert.assertEquals("message", newEncryptor.decrypt(encryptor.encrypt("message")));
+        
+        synchronized (lock) {
+            blocked[1] = false;
+            lock.notifyAll();
+        }
+        thread.join();
+        Assert.assertEquals("in flight", result[0]);
+        
+        try {
+            new HotSwappableStringEncryptor(newEncryptor).setDrainTimeoutMillis(-1L);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // Expected
+        }
+        
+    }
+    
+}
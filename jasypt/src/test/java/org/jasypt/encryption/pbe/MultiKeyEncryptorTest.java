@@ -0,0 +1,173 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.salt.SaltGenerator;
+
+public class MultiKeyEncryptorTest extends TestCase {
+
+    
+    private static StandardPBEStringEncryptor createStringEncryptor(final String password) {
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword(password);
+        return encryptor;
+    }
+    
+    
+    public void testMultiKeyStringEncryptor() throws Exception {
+
+        final String message = "This is a message";
+        
+        final String legacyEncryptedMessage = createStringEncryptor("first").encrypt(message);
+        
+        final MultiKeyStringEncryptor encryptor = new MultiKeyStringEncryptor();
+        try {
+            encryptor.encrypt(message);
+            fail();
+        } catch (final RuntimeException e) {
+            // expected: no current key
+        }
+        
+        encryptor.addEncryptor("k1", createStringEncryptor("first"));
+        encryptor.setCurrentKeyId("k1");
+        
+        final String k1EncryptedMessage = encryptor.encrypt(message);
+        assertTrue(k1EncryptedMessage.startsWith("[k1]"));
+        assertEquals(message, encryptor.decrypt(k1EncryptedMessage));
+        
+        final PooledPBEStringEncryptor secondEncryptor = new PooledPBEStringEncryptor();
+        secondEncryptor.setPassword("second");
+        secondEncryptor.setPoolSize(2);
+        encryptor.addEncryptor("k2", secondEncryptor);
+        encryptor.setCurrentKeyId("k2");
+        
+        final String k2EncryptedMessage = encryptor.encrypt(message);
+        assertTrue(k2EncryptedMessage.startsWith("[k2]"));
+        assertEquals(message, encryptor.decrypt(k2EncryptedMessage));
+        assertEquals(message, encryptor.decrypt(k1EncryptedMessage));
+        assertEquals(message, encryptor.decrypt(legacyEncryptedMessage));
+        
+        assertFalse(encryptor.tryDecrypt("[k3]" + k2EncryptedMessage.substring(4)).isSuccessful());
+        try {
+            encryptor.decrypt("[k3]" + k2EncryptedMessage.substring(4));
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        // Same format as the one used by StandardPBEStringEncryptor.setKeyId()
+        final StandardPBEStringEncryptor k2Encryptor = createStringEncryptor("second");
+        k2Encryptor.setKeyId("k2");
+        assertEquals(message, k2Encryptor.decrypt(k2EncryptedMessage));
+        assertFalse(k2Encryptor.tryDecrypt(k1EncryptedMessage).isSuccessful());
+        assertEquals(message, encryptor.decrypt(k2Encryptor.encrypt(message)));
+        
+        try {
+            encryptor.removeEncryptor("k2");
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected: current key
+        }
+        final PooledPBEStringEncryptor pooledK2Encryptor = new PooledPBEStringEncryptor();
+        pooledK2Encryptor.setPassword("second");
+        pooledK2Encryptor.setPoolSize(2);
+        pooledK2Encryptor.setKeyId("k2");
+        for (int i = 0; i < 4; i++) {
+            assertEquals(message, encryptor.decrypt(pooledK2Encryptor.encrypt(message)));
+        }
+        
+        encryptor.removeEncryptor("k1");
+        assertFalse(encryptor.tryDecrypt(k1EncryptedMessage).isSuccessful());
+        
+    }
+    
+    
+    public void testMultiKeyByteEncryptor() throws Exception {
+
+        final byte[] message = "This is a message".getBytes("UTF-8");
+        
+        final StandardPBEByteEncryptor firstEncryptor = new StandardPBEByteEncryptor();
+        firstEncryptor.setPassword("first");
+        final StandardPBEByteEncryptor secondEncryptor = new StandardPBEByteEncryptor();
+        secondEncryptor.setPassword("second");
+        
+        final byte[] legacyEncryptedMessage = firstEncryptor.encrypt(message);
+        
+        final MultiKeyByteEncryptor encryptor = new MultiKeyByteEncryptor();
+        encryptor.addEncryptor("k1", firstEncryptor);
+        encryptor.addEncryptor("k2", secondEncryptor);
+        encryptor.setCurrentKeyId("k2");
+        
+        final byte[] encryptedMessage = encryptor.encrypt(message);
+        assertTrue(Arrays.equals(message, encryptor.decrypt(encryptedMessage)));
+        assertTrue(Arrays.equals(message, encryptor.decrypt(legacyEncryptedMessage)));
+        
+        final StandardPBEByteEncryptor k2Encryptor = new StandardPBEByteEncryptor();
+        k2Encryptor.setPassword("second");
+        k2Encryptor.setKeyId("k2");
+        assertTrue(Arrays.equals(message, k2Encryptor.decrypt(encryptedMessage)));
+        assertTrue(Arrays.equals(message, encryptor.decrypt(k2Encryptor.encrypt(message))));
+        assertFalse(k2Encryptor.tryDecrypt(legacyEncryptedMessage).isSuccessful());
+        
+    }
+    
+    
+    public void testMultiKeyByteEncryptorHeaderLikeSalt() throws Exception {
+
+        final byte[] message = "This is a message".getBytes("UTF-8");
+        
+        // A message with no key identifier, which random salt happens to 
+        // start like the header for "k2"
+        final StandardPBEByteEncryptor legacyEncryptor = new StandardPBEByteEncryptor();
+        legacyEncryptor.setPassword("first");
+        legacyEncryptor.setSaltGenerator(new SaltGenerator() {
+            public byte[] generateSalt(final int lengthBytes) {
+                final byte[] salt = new byte[lengthBytes];
+                final byte[] header = KeyIdUtils.createHeader("k2");
+                System.arraycopy(header, 0, salt, 0, header.length);
+                return salt;
+            }
+            public boolean includePlainSaltInEncryptionResults() {
+                return true;
+            }
+        });
+        final byte[] legacyEncryptedMessage = legacyEncryptor.encrypt(message);
+        assertEquals("k2", KeyIdUtils.readKeyId(legacyEncryptedMessage));
+        
+        final StandardPBEByteEncryptor firstEncryptor = new StandardPBEByteEncryptor();
+        firstEncryptor.setPassword("first");
+        final StandardPBEByteEncryptor secondEncryptor = new StandardPBEByteEncryptor();
+        secondEncryptor.setPassword("second");
+        
+        final MultiKeyByteEncryptor encryptor = new MultiKeyByteEncryptor();
+        encryptor.addEncryptor("k1", firstEncryptor);
+        encryptor.addEncryptor("k2", secondEncryptor);
+        encryptor.setCurrentKeyId("k2");
+        
+        assertTrue(Arrays.equals(message, encryptor.decrypt(legacyEncryptedMessage)));
+        
+    }
+    
+}
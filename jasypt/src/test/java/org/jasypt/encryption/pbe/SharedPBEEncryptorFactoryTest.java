@@ -0,0 +1,154 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+
+import javax.security.auth.Destroyable;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.encryption.BigIntegerEncryptor;
+import org.jasypt.encryption.ByteEncryptor;
+import org.jasypt.encryption.ByteStreamEncryptor;
+import org.jasypt.encryption.CharacterStreamEncryptor;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.config.SimplePBEConfig;
+import org.jasypt.encryption.pbe.config.SimpleStringPBEConfig;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.jasypt.exceptions.PasswordAlreadyCleanedException;
+import org.jasypt.salt.StringFixedSaltGenerator;
+import org.jasypt.util.text.BasicTextEncryptor;
+
+public class SharedPBEEncryptorFactoryTest extends TestCase {
+
+    
+    private static SimpleStringPBEConfig createConfig(final String password) {
+        final SimpleStringPBEConfig config = new SimpleStringPBEConfig();
+        config.setPassword(password);
+        config.setAlgorithm("PBEWithMD5AndDES");
+        return config;
+    }
+    
+    
+    
+    public void testSharedEncryptors() throws Exception {
+
+        final SharedPBEEncryptorFactory factory = SharedPBEEncryptorFactory.getInstance();
+        
+        final StringEncryptor encryptor = factory.getStringEncryptor(createConfig("shared"));
+        Assert.assertSame(encryptor, factory.getStringEncryptor(createConfig("shared")));
+        
+        // Shared encryptors cannot be reconfigured nor destroyed
+        Assert.assertFalse(encryptor instanceof PBEStringEncryptor);
+        Assert.assertFalse(encryptor instanceof Destroyable);
+        Assert.assertTrue(encryptor instanceof CharacterStreamEncryptor);
+        
+        // Configuration values left to default are equivalent to the defaults
+        final SimpleStringPBEConfig defaultsConfig = new SimpleStringPBEConfig();
+        defaultsConfig.setPassword("shared");
+        defaultsConfig.setStringOutputType("base64");
+        Assert.assertSame(encryptor, factory.getStringEncryptor(defaultsConfig));
+        
+        Assert.assertNotSame(encryptor, factory.getStringEncryptor(createConfig("other")));
+        final SimpleStringPBEConfig hexConfig = createConfig("shared");
+        hexConfig.setStringOutputType("hexadecimal");
+        Assert.assertNotSame(encryptor, factory.getStringEncryptor(hexConfig));
+        final SimpleStringPBEConfig pooledConfig = createConfig("shared");
+        pooledConfig.setPoolSize(new Integer(2));
+        final StringEncryptor pooledEncryptor = factory.getStringEncryptor(pooledConfig);
+        Assert.assertNotSame(encryptor, pooledEncryptor);
+        Assert.assertFalse(pooledEncryptor instanceof Destroyable);
+        Assert.assertEquals("message", encryptor.decrypt(pooledEncryptor.encrypt("message")));
+        
+        // Fixed salt generators cannot be identified by configuration
+        final SimpleStringPBEConfig fixedSaltConfig = createConfig("shared");
+        fixedSaltConfig.setSaltGenerator(new StringFixedSaltGenerator("fixedsalt"));
+        final SimpleStringPBEConfig otherFixedSaltConfig = createConfig("shared");
+        otherFixedSaltConfig.setSaltGenerator(new StringFixedSaltGenerator("fixedsalt"));
+        Assert.assertNotSame(
+                factory.getStringEncryptor(fixedSaltConfig), 
+                factory.getStringEncryptor(otherFixedSaltConfig));
+        
+        // Each encryptor type is shared separately
+        final SimplePBEConfig numberConfig = new SimplePBEConfig();
+        numberConfig.setPassword("shared");
+        final BigIntegerEncryptor numberEncryptor = factory.getBigIntegerEncryptor(numberConfig);
+        Assert.assertFalse(numberEncryptor instanceof PBEBigIntegerEncryptor);
+        Assert.assertEquals(BigInteger.ONE, numberEncryptor.decrypt(numberEncryptor.encrypt(BigInteger.ONE)));
+        
+        // Byte encryptors still support streams
+        final ByteEncryptor byteEncryptor = factory.getByteEncryptor(createConfig("shared"));
+        Assert.assertFalse(byteEncryptor instanceof Destroyable);
+        final byte[] message = new byte[] { 1, 2, 3 };
+        final InputStream decryptedStream = ((ByteStreamEncryptor) byteEncryptor).decryptStream(
+                new ByteArrayInputStream(byteEncryptor.encrypt(message)));
+        try {
+            for (int i = 0; i < message.length; i++) {
+                Assert.assertEquals(message[i], decryptedStream.read());
+            }
+            Assert.assertEquals(-1, decryptedStream.read());
+        } finally {
+            decryptedStream.close();
+        }
+        
+    }
+    
+    
+    
+    public void testPasswordCleaned() throws Exception {
+        
+        final SimpleStringPBEConfig config = createConfig("cleaned");
+        SharedPBEEncryptorFactory.getInstance().getStringEncryptor(config);
+        try {
+            config.getPasswordCharArray();
+            fail();
+        } catch (final PasswordAlreadyCleanedException e) {
+            // Expected
+        }
+        
+    }
+    
+    
+    
+    public void testUtilsShareEncryptors() throws Exception {
+        
+        final BasicTextEncryptor first = new BasicTextEncryptor();
+        first.setPassword("utils");
+        final BasicTextEncryptor second = new BasicTextEncryptor();
+        second.setPasswordCharArray("utils".toCharArray());
+        
+        final int size = SharedPBEEncryptorFactory.getInstance().getSize();
+        Assert.assertEquals("message", second.decrypt(first.encrypt("message")));
+        Assert.assertTrue(SharedPBEEncryptorFactory.getInstance().getSize() <= size + 1);
+        
+        try {
+            first.setPassword("other");
+            fail();
+        } catch (final AlreadyInitializedException e) {
+            // Expected
+        }
+        
+    }
+    
+}
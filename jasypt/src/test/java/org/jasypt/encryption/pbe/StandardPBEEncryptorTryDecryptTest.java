@@ -0,0 +1,172 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import junit.framework.TestCase;
+
+import org.jasypt.encryption.ByteDecryptionResult;
+import org.jasypt.encryption.StringDecryptionResult;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+public class StandardPBEEncryptorTryDecryptTest extends TestCase {
+
+    
+    public void testStringTryDecrypt() throws Exception {
+
+        final String message = "This is a message";
+        
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        final StandardPBEStringEncryptor wrongEncryptor = new StandardPBEStringEncryptor();
+        wrongEncryptor.setPassword("ANOTHER PASSWORD");
+        
+        final String encryptedMessage = encryptor.encrypt(message);
+        
+        final StringDecryptionResult result = encryptor.tryDecrypt(encryptedMessage);
+        assertTrue(result.isSuccessful());
+        assertEquals(message, result.getDecryptedMessage());
+        
+        final String wrappedMessage = 
+            encryptedMessage.substring(0, 8) + "\r\n" + encryptedMessage.substring(8) + "\n";
+        assertEquals(message, encryptor.decrypt(wrappedMessage));
+        
+        assertTrue(encryptor.tryDecrypt(null).isSuccessful());
+        assertNull(encryptor.tryDecrypt(null).getDecryptedMessage());
+        
+        assertSame(StringDecryptionResult.FAILED, encryptor.tryDecrypt("AAAA"));
+        assertSame(StringDecryptionResult.FAILED, encryptor.tryDecrypt("!!!!"));
+        
+        for (int i = 0; i < 20; i++) {
+            final StringDecryptionResult wrongResult = 
+                wrongEncryptor.tryDecrypt(encryptor.encrypt(message));
+            assertTrue(!wrongResult.isSuccessful() || 
+                    !message.equals(wrongResult.getDecryptedMessage()));
+        }
+        
+        try {
+            StringDecryptionResult.FAILED.getDecryptedMessage();
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        final PooledPBEStringEncryptor pooledEncryptor = new PooledPBEStringEncryptor();
+        pooledEncryptor.setPassword("A PASSWORD BEING SET");
+        pooledEncryptor.setPoolSize(2);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(message, pooledEncryptor.tryDecrypt(encryptedMessage).getDecryptedMessage());
+            assertFalse(pooledEncryptor.tryDecrypt("AAAA").isSuccessful());
+        }
+        
+    }
+
+    
+    public void testByteTryDecrypt() throws Exception {
+
+        final byte[] message = "This is a message".getBytes("UTF-8");
+        
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        
+        final byte[] encryptedMessage = encryptor.encrypt(message);
+        
+        final ByteDecryptionResult result = encryptor.tryDecrypt(encryptedMessage);
+        assertTrue(result.isSuccessful());
+        assertEquals(new String(message, "UTF-8"), new String(result.getDecryptedMessage(), "UTF-8"));
+        
+        assertSame(ByteDecryptionResult.FAILED, encryptor.tryDecrypt(new byte[4]));
+        assertSame(ByteDecryptionResult.FAILED, encryptor.tryDecrypt(new byte[21]));
+        
+        final PooledPBEByteEncryptor pooledEncryptor = new PooledPBEByteEncryptor();
+        pooledEncryptor.setPassword("A PASSWORD BEING SET");
+        pooledEncryptor.setPoolSize(2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pooledEncryptor.tryDecrypt(encryptedMessage).isSuccessful());
+            assertFalse(pooledEncryptor.tryDecrypt(new byte[4]).isSuccessful());
+        }
+        
+    }
+    
+    
+    public void testDecryptFailuresHaveNoStackTrace() throws Exception {
+
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        
+        try {
+            encryptor.decrypt("AAAA");
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            assertEquals(0, e.getStackTrace().length);
+        }
+        
+        final StandardPBEByteEncryptor byteEncryptor = new StandardPBEByteEncryptor();
+        byteEncryptor.setPassword("A PASSWORD BEING SET");
+        
+        try {
+            byteEncryptor.decrypt(new byte[4]);
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            assertEquals(0, e.getStackTrace().length);
+        }
+        
+        final EncryptionOperationNotPossibleException e = 
+            new EncryptionOperationNotPossibleException();
+        assertTrue(e.getStackTrace().length > 0);
+        assertEquals(getClass().getName(), e.getStackTrace()[0].getClassName());
+        
+    }
+    
+    
+    public void testStructuralValidation() throws Exception {
+
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("A PASSWORD BEING SET");
+        
+        final byte[] encryptedMessage = encryptor.encrypt("This is a message".getBytes("UTF-8"));
+        final byte[] truncatedMessage = new byte[encryptedMessage.length - 1];
+        System.arraycopy(encryptedMessage, 0, truncatedMessage, 0, truncatedMessage.length);
+        
+        assertSame(ByteDecryptionResult.FAILED, encryptor.tryDecrypt(truncatedMessage));
+        try {
+            encryptor.decrypt(truncatedMessage);
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        final StandardPBEStringEncryptor base64Encryptor = new StandardPBEStringEncryptor();
+        base64Encryptor.setPassword("A PASSWORD BEING SET");
+        final String encryptedBase64 = base64Encryptor.encrypt("This is a message");
+        assertTrue(base64Encryptor.tryDecrypt(encryptedBase64 + "\n").isSuccessful());
+        assertFalse(base64Encryptor.tryDecrypt(encryptedBase64.substring(1)).isSuccessful());
+        assertFalse(base64Encryptor.tryDecrypt("$" + encryptedBase64).isSuccessful());
+        
+        final StandardPBEStringEncryptor hexEncryptor = new StandardPBEStringEncryptor();
+        hexEncryptor.setPassword("A PASSWORD BEING SET");
+        hexEncryptor.setStringOutputType("hexadecimal");
+        final String encryptedHex = hexEncryptor.encrypt("This is a message");
+        assertTrue(hexEncryptor.tryDecrypt(encryptedHex).isSuccessful());
+        assertFalse(hexEncryptor.tryDecrypt(encryptedHex.substring(1)).isSuccessful());
+        assertFalse(hexEncryptor.tryDecrypt("ZZ" + encryptedHex.substring(2)).isSuccessful());
+        
+    }
+    
+}
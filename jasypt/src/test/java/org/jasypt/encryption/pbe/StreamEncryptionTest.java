@@ -0,0 +1,134 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+
+public class StreamEncryptionTest extends TestCase {
+
+    
+    public void testByteStreams() throws Exception {
+
+        final StandardPBEByteEncryptor encryptor = new StandardPBEByteEncryptor();
+        encryptor.setPassword("streaming");
+        encryptor.setKeyId("k1");
+        
+        final byte[] message = new byte[300000];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) (i * 31);
+        }
+        
+        final byte[] encrypted = 
+            readAll(encryptor.encryptStream(new ByteArrayInputStream(message)));
+        Assert.assertTrue(Arrays.equals(message, encryptor.decrypt(encrypted)));
+        
+        final InputStream decrypted = 
+            encryptor.decryptStream(new ByteArrayInputStream(encryptor.encrypt(message)));
+        Assert.assertTrue(Arrays.equals(message, readAll(decrypted)));
+        
+        Assert.assertEquals(0, readAll(encryptor.decryptStream(new ByteArrayInputStream(
+                readAll(encryptor.encryptStream(new ByteArrayInputStream(new byte[0])))))).length);
+        
+        // Tampering with the end of the message is detected
+        encrypted[encrypted.length - 1] ^= 0x01;
+        try {
+            readAll(encryptor.decryptStream(new ByteArrayInputStream(encrypted)));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testCharacterStreams() throws Exception {
+
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("streaming");
+        final PooledPBEStringEncryptor hexEncryptor = new PooledPBEStringEncryptor();
+        hexEncryptor.setPassword("streaming");
+        hexEncryptor.setPoolSize(2);
+        hexEncryptor.setStringOutputType("hexadecimal");
+        hexEncryptor.setKeyId("k2");
+        
+        final StringBuffer messageBuffer = new StringBuffer();
+        for (int i = 0; i < 5000; i++) {
+            messageBuffer.append("Message \u00E1\u20AC\uD834\uDD1E ").append(i);
+        }
+        final String message = messageBuffer.toString();
+        
+        final String encrypted = 
+            readAll(encryptor.encryptCharacterStream(new StringReader(message)));
+        Assert.assertEquals(message, encryptor.decrypt(encrypted));
+        Assert.assertEquals(message, 
+                readAll(encryptor.decryptCharacterStream(new StringReader(encryptor.encrypt(message)))));
+        
+        final String hexEncrypted = 
+            readAll(hexEncryptor.encryptCharacterStream(new StringReader(message)));
+        Assert.assertTrue(hexEncrypted.startsWith("[k2]"));
+        Assert.assertEquals(message, hexEncryptor.decrypt(hexEncrypted));
+        Assert.assertEquals(message, 
+                readAll(hexEncryptor.decryptCharacterStream(new StringReader(hexEncrypted))));
+        
+        try {
+            hexEncryptor.decryptCharacterStream(new StringReader(encrypted));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    private static byte[] readAll(final InputStream stream) throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            baos.write(buffer, 0, read);
+        }
+        stream.close();
+        return baos.toByteArray();
+    }
+    
+    
+    private static String readAll(final Reader reader) throws Exception {
+        final StringBuffer result = new StringBuffer();
+        final char[] buffer = new char[1000];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            result.append(buffer, 0, read);
+        }
+        reader.close();
+        return result.toString();
+    }
+    
+}
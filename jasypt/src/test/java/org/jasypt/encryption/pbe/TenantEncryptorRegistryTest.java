@@ -0,0 +1,195 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionInitializationException;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+
+public class TenantEncryptorRegistryTest extends TestCase {
+
+    
+    private static final class TestFactory implements TenantEncryptorFactory {
+        
+        final List created = new ArrayList();
+        
+        public StringEncryptor createEncryptor(final String tenantId) {
+            if (tenantId.startsWith("broken")) {
+                throw new IllegalStateException("No password for " + tenantId);
+            }
+            try {
+                // Make concurrent creations overlap
+                Thread.sleep(50L);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException();
+            }
+            final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+            encryptor.setPassword("password-" + tenantId);
+            synchronized (this) {
+                this.created.add(encryptor);
+            }
+            return encryptor;
+        }
+        
+        synchronized StandardPBEStringEncryptor get(final int i) {
+            return (StandardPBEStringEncryptor) this.created.get(i);
+        }
+        
+    }
+    
+    
+    
+    public void testSingleFlightCreation() throws Exception {
+        
+        final TestFactory factory = new TestFactory();
+        final TenantEncryptorRegistry registry = new TenantEncryptorRegistry(factory);
+        
+        final String[] results = new String[10];
+        final Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    results[index] = registry.encrypt("tenant", "message" + index);
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        
+        Assert.assertEquals(1, factory.created.size());
+        Assert.assertEquals(1, registry.getCreationCount());
+        Assert.assertEquals(9, registry.getHitCount());
+        Assert.assertTrue(factory.get(0).isInitialized());
+        
+        final StringEncryptor tenantEncryptor = registry.getEncryptor("tenant");
+        for (int i = 0; i < results.length; i++) {
+            Assert.assertEquals("message" + i, tenantEncryptor.decrypt(results[i]));
+        }
+        
+        final StringEncryptor otherEncryptor = registry.getEncryptor("other");
+        try {
+            otherEncryptor.decrypt(results[0]);
+            fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // Expected: each tenant has its own password
+        }
+        Assert.assertEquals("message", otherEncryptor.decrypt(otherEncryptor.encrypt("message")));
+        
+    }
+    
+    
+    
+    public void testEviction() throws Exception {
+        
+        final TestFactory factory = new TestFactory();
+        final TenantEncryptorRegistry registry = new TenantEncryptorRegistry(factory);
+        registry.setMaxSize(2);
+        registry.setDestroyEvictedEncryptors(true);
+        
+        final String encrypted = registry.encrypt("a", "message");
+        registry.encrypt("b", "message");
+        registry.decrypt("a", encrypted);
+        registry.encrypt("c", "message");
+        
+        // "b" was the least recently used
+        Assert.assertEquals(2, registry.getSize());
+        Assert.assertEquals(1, registry.getEvictionCount());
+        Assert.assertFalse(factory.get(0).isDestroyed());
+        Assert.assertTrue(factory.get(1).isDestroyed());
+        try {
+            factory.get(1).encrypt("message");
+            fail();
+        } catch (final EncryptionInitializationException e) {
+            // Expected
+        }
+        
+        // Evicted tenants are transparently re-created
+        Assert.assertEquals("message", registry.decrypt("a", encrypted));
+        registry.encrypt("b", "message");
+        Assert.assertEquals(4, registry.getCreationCount());
+        
+        registry.setMaxIdleTimeMillis(1L);
+        Thread.sleep(20L);
+        registry.evictIdle();
+        Assert.assertEquals(0, registry.getSize());
+        for (int i = 0; i < factory.created.size(); i++) {
+            Assert.assertTrue(factory.get(i).isDestroyed());
+        }
+        
+    }
+    
+    
+    
+    public void testEvictedEncryptorsAreKeptByDefault() throws Exception {
+        
+        // Factory handing out a shared encryptor
+        final StandardPBEStringEncryptor sharedEncryptor = new StandardPBEStringEncryptor();
+        sharedEncryptor.setPassword("shared");
+        final TenantEncryptorRegistry registry = new TenantEncryptorRegistry(
+                new TenantEncryptorFactory() {
+                    public StringEncryptor createEncryptor(final String tenantId) {
+                        return sharedEncryptor;
+                    }
+                });
+        registry.setMaxSize(1);
+        
+        final String encrypted = registry.encrypt("a", "message");
+        registry.encrypt("b", "message");
+        registry.evictAll();
+        
+        Assert.assertEquals(2, registry.getEvictionCount());
+        Assert.assertFalse(sharedEncryptor.isDestroyed());
+        Assert.assertEquals("message", sharedEncryptor.decrypt(encrypted));
+        
+    }
+    
+    
+    
+    public void testCreationFailure() throws Exception {
+        
+        final TestFactory factory = new TestFactory();
+        final TenantEncryptorRegistry registry = new TenantEncryptorRegistry(factory);
+        
+        for (int i = 0; i < 2; i++) {
+            try {
+                registry.encrypt("broken", "message");
+                fail();
+            } catch (final EncryptionInitializationException e) {
+                // Expected
+            }
+        }
+        
+        // Failures are not cached
+        Assert.assertEquals(2, registry.getCreationCount());
+        Assert.assertEquals(2, registry.getCreationFailureCount());
+        Assert.assertEquals(0, registry.getSize());
+        
+    }
+    
+}
@@ -0,0 +1,111 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.encryption.pbe;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.digest.PooledStringDigester;
+import org.jasypt.digest.StandardStringDigester;
+import org.jasypt.exceptions.AlreadyInitializedException;
+
+
+public class WarmUpTest extends TestCase {
+
+    
+    public void testEncryptorWarmUp() throws Exception {
+
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("warm-up");
+        encryptor.setKeyObtentionIterations(10);
+        encryptor.setWarmUpIterations(200);
+        encryptor.initialize();
+        
+        Assert.assertTrue(encryptor.isInitialized());
+        Assert.assertEquals("message", encryptor.decrypt(encryptor.encrypt("message")));
+        
+        try {
+            encryptor.setWarmUpIterations(10);
+            Assert.fail();
+        } catch (final AlreadyInitializedException e) {
+            // expected
+        }
+        
+    }
+    
+    
+    public void testPooledEncryptorWarmUp() throws Exception {
+
+        final PooledPBEStringEncryptor encryptor = new PooledPBEStringEncryptor();
+        encryptor.setPassword("warm-up");
+        encryptor.setPoolSize(3);
+        encryptor.setKeyObtentionIterations(10);
+        encryptor.setWarmUpIterations(100);
+        encryptor.initialize();
+        
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals("message", encryptor.decrypt(encryptor.encrypt("message")));
+        }
+        
+    }
+    
+    
+    public void testWarmUpTimeLimit() throws Exception {
+
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("warm-up");
+        encryptor.setWarmUpIterations(Integer.MAX_VALUE);
+        encryptor.setWarmUpTimeLimitMillis(100L);
+        
+        final long start = System.currentTimeMillis();
+        encryptor.initialize();
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+        
+        final StandardStringDigester digester = new StandardStringDigester();
+        digester.setWarmUpIterations(Integer.MAX_VALUE);
+        digester.setWarmUpTimeLimitMillis(100L);
+        
+        final long digesterStart = System.currentTimeMillis();
+        digester.initialize();
+        Assert.assertTrue(System.currentTimeMillis() - digesterStart < 5000L);
+        
+    }
+    
+    
+    public void testDigesterWarmUp() throws Exception {
+
+        final PooledStringDigester digester = new PooledStringDigester();
+        digester.setPoolSize(3);
+        digester.setIterations(10);
+        digester.setWarmUpIterations(100);
+        digester.initialize();
+        
+        for (int i = 0; i < 6; i++) {
+            Assert.assertTrue(digester.matches("message", digester.digest("message")));
+        }
+        
+        final StandardStringDigester standard = new StandardStringDigester();
+        standard.setWarmUpIterations(50);
+        standard.setPrefix("{SHA}");
+        Assert.assertTrue(standard.digest("message").startsWith("{SHA}"));
+        
+    }
+    
+}
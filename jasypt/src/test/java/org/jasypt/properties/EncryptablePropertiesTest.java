@@ -19,12 +19,15 @@
  */
 package org.jasypt.properties;
 
+import java.io.ByteArrayInputStream;
 import java.util.Properties;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
 import org.apache.commons.lang.SerializationUtils;
+import org.jasypt.encryption.pbe.PooledPBEStringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
 import org.jasypt.util.text.BasicTextEncryptor;
 
 public class EncryptablePropertiesTest extends TestCase {
@@ -95,4 +98,99 @@ public class EncryptablePropertiesTest extends TestCase {
     }
     
     
+    public void testEncryptablePropertiesPreload() throws Exception {
+        
+        final PooledPBEStringEncryptor encryptor = new PooledPBEStringEncryptor();
+        encryptor.setPassword("jasypt");
+        encryptor.setPoolSize(4);
+
+        final EncryptableProperties props = new EncryptableProperties(encryptor);
+        for (int i = 0; i < 20; i++) {
+            props.setProperty("p" + i, 
+                    PropertyValueEncryptionUtils.encrypt("Message " + i, encryptor));
+        }
+        props.setProperty("plain", "Plain message");
+        props.setProperty("broken", "ENC(notReallyEncrypted)");
+        
+        final PropertyValueDecryptionReport report = props.preloadEncryptedValues(3);
+        
+        Assert.assertEquals(21, report.getEncryptedValueCount());
+        Assert.assertEquals(20, report.getDecryptedValues().size());
+        Assert.assertTrue(report.hasFailures());
+        Assert.assertTrue(report.getFailures().containsKey("broken"));
+        Assert.assertEquals("Message 7", report.getDecryptedValues().get("p7"));
+        
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("Message " + i, props.getProperty("p" + i));
+        }
+        Assert.assertEquals("Plain message", props.getProperty("plain"));
+        
+    }
+    
+    
+    public void testEncryptablePropertiesBlock() throws Exception {
+        
+        final BasicTextEncryptor encryptor = new BasicTextEncryptor();
+        encryptor.setPassword("jasypt");
+        
+        final String block =
+            "db.user=admin\n" +
+            "db.password=" + PropertyValueEncryptionUtils.encrypt("s3cr3t", encryptor) + "\n" +
+            "db.url=jdbc:hsqldb:mem:\\\n" +
+            "  test\n" +
+            "overridden=from block\n";
+        
+        final String file = 
+            "plain=Plain message\n" +
+            "overridden=outside block\n" +
+            "db=" + PropertyValueEncryptionUtils.encryptBlock(block, encryptor) + "\n";
+        
+        final Properties props = new EncryptableProperties(encryptor);
+        props.load(new ByteArrayInputStream(file.getBytes("ISO-8859-1")));
+        
+        Assert.assertNull(props.getProperty("db"));
+        Assert.assertEquals("Plain message", props.getProperty("plain"));
+        Assert.assertEquals("from block", props.getProperty("overridden"));
+        Assert.assertEquals("admin", props.getProperty("db.user"));
+        Assert.assertEquals("s3cr3t", props.getProperty("db.password"));
+        Assert.assertEquals("jdbc:hsqldb:mem:test", props.getProperty("db.url"));
+        
+    }
+    
+    
+    public void testEncryptablePropertiesBlockFailure() throws Exception {
+        
+        final BasicTextEncryptor encryptor = new BasicTextEncryptor();
+        encryptor.setPassword("jasypt");
+        final BasicTextEncryptor otherEncryptor = new BasicTextEncryptor();
+        otherEncryptor.setPassword("another password");
+        
+        final String goodBlock = 
+            PropertyValueEncryptionUtils.encryptBlock("db.user=admin\n", encryptor);
+        final String badBlock = 
+            PropertyValueEncryptionUtils.encryptBlock("mail.user=mailer\n", otherEncryptor);
+        // Whichever block is processed first, the other one fails
+        final String file = 
+            "plain=Plain message\n" +
+            "a=" + goodBlock + "\n" +
+            "b=" + badBlock + "\n" +
+            "c=" + goodBlock + "\n";
+        
+        final Properties props = new EncryptableProperties(encryptor);
+        try {
+            props.load(new ByteArrayInputStream(file.getBytes("ISO-8859-1")));
+            Assert.fail();
+        } catch (final EncryptionOperationNotPossibleException e) {
+            // expected
+        }
+        
+        // No block has been expanded
+        Assert.assertEquals("Plain message", props.getProperty("plain"));
+        Assert.assertNull(props.getProperty("db.user"));
+        Assert.assertNull(props.getProperty("mail.user"));
+        Assert.assertEquals(4, props.size());
+        
+    }
+    
+    
 }
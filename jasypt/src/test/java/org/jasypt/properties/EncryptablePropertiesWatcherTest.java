@@ -0,0 +1,126 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.properties;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.util.text.BasicTextEncryptor;
+
+public class EncryptablePropertiesWatcherTest extends TestCase {
+
+    
+    private static void write(final File file, final String contents, final long modified) 
+            throws Exception {
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            outputStream.close();
+        }
+        file.setLastModified(modified);
+    }
+    
+    
+    public void testEncryptablePropertiesWatcher() throws Exception {
+
+        final BasicTextEncryptor encryptor = new BasicTextEncryptor();
+        encryptor.setPassword("jasypt");
+        
+        final File file = File.createTempFile("jasypt", ".properties");
+        file.deleteOnExit();
+        
+        final String one = PropertyValueEncryptionUtils.encrypt("one", encryptor);
+        final String two = PropertyValueEncryptionUtils.encrypt("two", encryptor);
+        
+        write(file, "a=" + one + "\nb=" + two + "\nc=plain\n", 100000L);
+        
+        final EncryptablePropertiesWatcher watcher = 
+            new EncryptablePropertiesWatcher(file, encryptor);
+        watcher.setPollInterval(60000L);
+        
+        final Set[] notified = new Set[2];
+        watcher.addListener(new EncryptablePropertiesChangeListener() {
+            public void propertiesChanged(final EncryptablePropertiesWatcher source, 
+                    final Set changedKeys, final Set removedKeys) {
+                notified[0] = changedKeys;
+                notified[1] = removedKeys;
+            }
+            public void reloadFailed(final EncryptablePropertiesWatcher source, 
+                    final Exception cause) {
+                notified[0] = null;
+                notified[1] = null;
+            }
+        });
+        
+        try {
+            
+            watcher.start();
+            Assert.assertTrue(watcher.isStarted());
+            Assert.assertEquals("one", watcher.getProperty("a"));
+            Assert.assertEquals("two", watcher.getProperty("b"));
+            Assert.assertEquals("plain", watcher.getProperty("c"));
+            Assert.assertEquals(2, watcher.getLastReport().getEncryptedValueCount());
+            
+            Assert.assertFalse(watcher.checkForChanges());
+            
+            final String three = PropertyValueEncryptionUtils.encrypt("three", encryptor);
+            write(file, "a=" + one + "\nb=" + three + "\nd=new\n", 200000L);
+            
+            Assert.assertTrue(watcher.checkForChanges());
+            Assert.assertEquals("one", watcher.getProperty("a"));
+            Assert.assertEquals("three", watcher.getProperty("b"));
+            Assert.assertNull(watcher.getProperty("c"));
+            Assert.assertEquals("new", watcher.getProperty("d"));
+            // Only the changed value has been decrypted
+            Assert.assertEquals(1, watcher.getLastReport().getEncryptedValueCount());
+            Assert.assertEquals(2, notified[0].size());
+            Assert.assertTrue(notified[0].contains("b"));
+            Assert.assertTrue(notified[0].contains("d"));
+            Assert.assertEquals(1, notified[1].size());
+            Assert.assertTrue(notified[1].contains("c"));
+            
+            write(file, "a=" + one + "\nb=ENC(notReallyEncrypted)\n", 300000L);
+            try {
+                watcher.checkForChanges();
+                Assert.fail();
+            } catch (final RuntimeException e) {
+                // expected
+            }
+            Assert.assertNull(notified[0]);
+            // Previous snapshot is still published
+            Assert.assertEquals("three", watcher.getProperty("b"));
+            Assert.assertEquals("new", watcher.getProperty("d"));
+            
+        } finally {
+            watcher.stop();
+        }
+        
+        Assert.assertFalse(watcher.isStarted());
+        
+    }
+    
+    
+}
@@ -0,0 +1,468 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.reencryption;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.jasypt.exceptions.ReencryptionException;
+import org.jasypt.properties.EncryptableProperties;
+import org.jasypt.properties.PropertyValueEncryptionUtils;
+
+public class ReencryptionEngineTest extends TestCase {
+
+    
+    private static StandardPBEStringEncryptor createEncryptor(final String password) {
+        final StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword(password);
+        return encryptor;
+    }
+    
+    
+    /*
+     * Encryptor whose results (and failures) are predictable: values are
+     * just prefixed. A lenient one "decrypts" any value, like PBE algorithms
+     * sometimes do with values encrypted with other keys.
+     */
+    private static final class PrefixStringEncryptor implements StringEncryptor {
+        
+        private final String prefix;
+        private final boolean lenient;
+        
+        PrefixStringEncryptor(final String prefix, final boolean lenient) {
+            this.prefix = prefix + "-";
+            this.lenient = lenient;
+        }
+        
+        public String encrypt(final String message) {
+            return this.prefix + message;
+        }
+        
+        public String decrypt(final String encryptedMessage) {
+            if (encryptedMessage.startsWith(this.prefix)) {
+                return encryptedMessage.substring(this.prefix.length());
+            }
+            if (this.lenient) {
+                return "garbage";
+            }
+            throw new EncryptionOperationNotPossibleException();
+        }
+        
+    }
+    
+    
+    private static FileReencryptionCheckpointStore createCheckpointStore() throws Exception {
+        final File checkpointFile = File.createTempFile("jasypt", ".checkpoint");
+        checkpointFile.delete();
+        checkpointFile.deleteOnExit();
+        return new FileReencryptionCheckpointStore(checkpointFile);
+    }
+    
+    
+    /*
+     * Interrupts the process on the specified batch, either before or
+     * after writing it (in which case no checkpoint will be saved for it).
+     */
+    private static ReencryptionSink createInterruptedSink(final ReencryptionSink sink,
+            final int interruptedBatch, final boolean written) {
+        return new ReencryptionSink() {
+            private int batches = 0;
+            public String[] write(final ReencryptionRecord[] records) {
+                if (++this.batches == interruptedBatch) {
+                    if (written) {
+                        sink.write(records);
+                    }
+                    throw new IllegalStateException("Interrupted");
+                }
+                return sink.write(records);
+            }
+        };
+    }
+    
+    
+    private static void write(final File file, final String contents) throws Exception {
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            outputStream.close();
+        }
+    }
+    
+    
+    private static Properties load(final Properties properties, final File file) throws Exception {
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+    
+    
+    private static File createPropertiesFile(final StringEncryptor encryptor, 
+            final int count) throws Exception {
+        final File file = File.createTempFile("jasypt", ".properties");
+        file.deleteOnExit();
+        final StringBuffer contents = new StringBuffer();
+        contents.append("# Comment\nplain = value\n");
+        for (int i = 0; i < count; i++) {
+            contents.append("key" + (i < 10? "0" : "") + i + " = ");
+            contents.append(PropertyValueEncryptionUtils.encrypt("value" + i, encryptor));
+            contents.append("\n");
+        }
+        write(file, contents.toString());
+        return file;
+    }
+    
+    
+    
+    public void testReencryptPropertiesFile() throws Exception {
+
+        final StandardPBEStringEncryptor oldEncryptor = createEncryptor("old");
+        final StandardPBEStringEncryptor newEncryptor = createEncryptor("new");
+        
+        final File file = createPropertiesFile(oldEncryptor, 25);
+        final String block = PropertyValueEncryptionUtils.encryptBlock("b1=one\nb2=two", oldEncryptor);
+        final OutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.write(("ENCBLOCK(block)=" + block + "\n").getBytes("ISO-8859-1"));
+        } finally {
+            outputStream.close();
+        }
+        
+        final ReencryptionEngine engine = new ReencryptionEngine(oldEncryptor, newEncryptor);
+        engine.setBatchSize(4);
+        engine.setThreadCount(3);
+        
+        final PropertiesFileReencryptionStore store = new PropertiesFileReencryptionStore(file);
+        final ReencryptionReport report = engine.reencrypt(store, store, null);
+        
+        Assert.assertEquals(26, report.getReencryptedCount());
+        Assert.assertEquals(7, report.getBatchCount());
+        Assert.assertFalse(report.hasFailures());
+        
+        final Properties properties = load(new EncryptableProperties(newEncryptor), file);
+        Assert.assertEquals("value", properties.getProperty("plain"));
+        for (int i = 0; i < 25; i++) {
+            Assert.assertEquals("value" + i, properties.getProperty("key" + (i < 10? "0" : "") + i));
+        }
+        Assert.assertEquals("one", properties.getProperty("b1"));
+        Assert.assertEquals("two", properties.getProperty("b2"));
+        
+        final Properties raw = load(new Properties(), file);
+        Assert.assertTrue(PropertyValueEncryptionUtils.isEncryptedValue(raw.getProperty("key00")));
+        
+    }
+    
+
+    
+    public void testReencryptionFailures() throws Exception {
+
+        final StandardPBEStringEncryptor oldEncryptor = createEncryptor("old");
+        final StandardPBEStringEncryptor newEncryptor = createEncryptor("new");
+        
+        final File file = createPropertiesFile(oldEncryptor, 5);
+        final OutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.write("broken=ENC(AAAA)\n".getBytes("ISO-8859-1"));
+            outputStream.write(
+                    ("done=" + PropertyValueEncryptionUtils.encrypt("value", newEncryptor) + "\n").getBytes("ISO-8859-1"));
+        } finally {
+            outputStream.close();
+        }
+        
+        final ReencryptionEngine engine = new ReencryptionEngine(oldEncryptor, newEncryptor);
+        final PropertiesFileReencryptionStore store = new PropertiesFileReencryptionStore(file);
+        final ReencryptionReport report = engine.reencrypt(store, store, null);
+        
+        Assert.assertEquals(5, report.getReencryptedCount());
+        Assert.assertEquals(1, report.getFailures().size());
+        Assert.assertTrue(report.getFailures().containsKey("broken"));
+        
+        final Properties raw = load(new Properties(), file);
+        Assert.assertEquals("ENC(AAAA)", raw.getProperty("broken"));
+        
+    }
+    
+    
+    
+    public void testResumeFromCheckpoint() throws Exception {
+
+        final StringEncryptor oldEncryptor = new PrefixStringEncryptor("old", false);
+        final StringEncryptor newEncryptor = new PrefixStringEncryptor("new", false);
+        
+        final File file = createPropertiesFile(oldEncryptor, 20);
+        final File checkpointFile = File.createTempFile("jasypt", ".checkpoint");
+        checkpointFile.delete();
+        checkpointFile.deleteOnExit();
+        final FileReencryptionCheckpointStore checkpointStore = 
+            new FileReencryptionCheckpointStore(checkpointFile);
+        
+        final ReencryptionEngine engine = new ReencryptionEngine(oldEncryptor, newEncryptor);
+        engine.setBatchSize(5);
+        engine.setThreadCount(2);
+        
+        // A sink that fails on its third batch, simulating an interruption
+        final PropertiesFileReencryptionStore store = new PropertiesFileReencryptionStore(file);
+        try {
+            engine.reencrypt(store, createInterruptedSink(store, 3, false), checkpointStore);
+            fail();
+        } catch (final ReencryptionException e) {
+            // Expected
+        }
+        Assert.assertEquals("key09", checkpointStore.loadCheckpoint());
+        
+        final PropertiesFileReencryptionStore resumedStore = new PropertiesFileReencryptionStore(file);
+        final ReencryptionReport report = engine.reencrypt(resumedStore, resumedStore, checkpointStore);
+        
+        Assert.assertEquals("key09", report.getResumedAfterKey());
+        Assert.assertEquals(10, report.getReencryptedCount());
+        Assert.assertFalse(report.hasFailures());
+        Assert.assertNull(checkpointStore.loadCheckpoint());
+        Assert.assertFalse(checkpointFile.exists());
+        
+        final Properties properties = load(new EncryptableProperties(newEncryptor), file);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("value" + i, properties.getProperty("key" + (i < 10? "0" : "") + i));
+        }
+        
+    }
+    
+    
+    
+    public void testResumeAfterUncheckpointedWrite() throws Exception {
+
+        // The source encryptor "decrypts" values encrypted with the target one
+        final StringEncryptor oldEncryptor = new PrefixStringEncryptor("old", true);
+        final StringEncryptor newEncryptor = new PrefixStringEncryptor("new", false);
+        
+        final File file = createPropertiesFile(oldEncryptor, 20);
+        final FileReencryptionCheckpointStore checkpointStore = createCheckpointStore();
+        
+        final ReencryptionEngine engine = new ReencryptionEngine(oldEncryptor, newEncryptor);
+        engine.setBatchSize(5);
+        engine.setThreadCount(2);
+        
+        // The third batch is written, but interrupted before its checkpoint
+        final PropertiesFileReencryptionStore store = new PropertiesFileReencryptionStore(file);
+        try {
+            engine.reencrypt(store, createInterruptedSink(store, 3, true), checkpointStore);
+            fail();
+        } catch (final ReencryptionException e) {
+            // Expected
+        }
+        Assert.assertEquals("key09", checkpointStore.loadCheckpoint());
+        
+        final PropertiesFileReencryptionStore resumedStore = new PropertiesFileReencryptionStore(file);
+        final ReencryptionReport report = engine.reencrypt(resumedStore, resumedStore, checkpointStore);
+        
+        // Values in the resumed batch are never re-encrypted twice, but as both 
+        // encryptors can decrypt them they cannot be considered done either
+        Assert.assertEquals(5, report.getReencryptedCount());
+        Assert.assertEquals(5, report.getFailures().size());
+        for (int i = 10; i < 15; i++) {
+            Assert.assertTrue(report.getFailures().containsKey("key" + i));
+        }
+        
+        final Properties properties = load(new EncryptableProperties(newEncryptor), file);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("value" + i, properties.getProperty("key" + (i < 10? "0" : "") + i));
+        }
+        
+        // Without ambiguity, already re-encrypted values are just skipped
+        final File otherFile = createPropertiesFile(new PrefixStringEncryptor("old", false), 20);
+        final ReencryptionEngine strictEngine = 
+            new ReencryptionEngine(new PrefixStringEncryptor("old", false), newEncryptor);
+        strictEngine.setBatchSize(5);
+        final PropertiesFileReencryptionStore otherStore = new PropertiesFileReencryptionStore(otherFile);
+        try {
+            strictEngine.reencrypt(otherStore, createInterruptedSink(otherStore, 3, true), checkpointStore);
+            fail();
+        } catch (final ReencryptionException e) {
+            // Expected
+        }
+        final PropertiesFileReencryptionStore resumedOtherStore = new PropertiesFileReencryptionStore(otherFile);
+        final ReencryptionReport strictReport = 
+            strictEngine.reencrypt(resumedOtherStore, resumedOtherStore, checkpointStore);
+        Assert.assertEquals(5, strictReport.getReencryptedCount());
+        Assert.assertFalse(strictReport.hasFailures());
+        
+    }
+    
+    
+    
+    public void testJdbcConcurrentModification() throws Exception {
+        
+        final StringEncryptor oldEncryptor = new PrefixStringEncryptor("old", false);
+        final StringEncryptor newEncryptor = new PrefixStringEncryptor("new", false);
+        
+        final List rows = new ArrayList();
+        rows.add(new String[] { "1", oldEncryptor.encrypt("one") });
+        rows.add(new String[] { "2", oldEncryptor.encrypt("two") });
+        rows.add(new String[] { "3", oldEncryptor.encrypt("three") });
+        
+        // Row 2 is modified by another process after being read
+        final JdbcTable table = new JdbcTable(rows, "2", oldEncryptor.encrypt("changed"));
+        final JdbcReencryptionStore store = 
+            new JdbcReencryptionStore(table.getDataSource(), "secrets", "id", "secret");
+        
+        final ReencryptionReport report = 
+            new ReencryptionEngine(oldEncryptor, newEncryptor).reencrypt(store, store, null);
+        
+        Assert.assertEquals(2, report.getReencryptedCount());
+        Assert.assertTrue(report.hasFailures());
+        Assert.assertEquals(1, report.getConflicts().size());
+        Assert.assertTrue(report.getConflicts().contains("2"));
+        Assert.assertEquals(newEncryptor.encrypt("one"), ((String[]) rows.get(0))[1]);
+        Assert.assertEquals(oldEncryptor.encrypt("changed"), ((String[]) rows.get(1))[1]);
+        Assert.assertEquals(newEncryptor.encrypt("three"), ((String[]) rows.get(2))[1]);
+        
+    }
+    
+    
+    
+    /*
+     * In-memory table accessed through JDBC proxies, just as far as
+     * JdbcReencryptionStore needs.
+     */
+    private static final class JdbcTable implements InvocationHandler {
+        
+        private final List rows;
+        private final String modifiedKey;
+        private final String modifiedValue;
+        private final List parameters = new ArrayList();
+        private final List batches = new ArrayList();
+        private List results = null;
+        private int resultIndex = -1;
+        private String sql = null;
+        
+        JdbcTable(final List rows, final String modifiedKey, final String modifiedValue) {
+            this.rows = rows;
+            this.modifiedKey = modifiedKey;
+            this.modifiedValue = modifiedValue;
+        }
+        
+        DataSource getDataSource() {
+            return (DataSource) proxy(DataSource.class);
+        }
+        
+        private Object proxy(final Class type) {
+            return Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class[] { type }, this);
+        }
+        
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final String name = method.getName();
+            if (name.equals("getConnection")) {
+                return proxy(java.sql.Connection.class);
+            } else if (name.equals("prepareStatement")) {
+                this.sql = (String) args[0];
+                this.parameters.clear();
+                return proxy(java.sql.PreparedStatement.class);
+            } else if (name.equals("setObject") || name.equals("setString")) {
+                this.parameters.add(args[1] == null? null : args[1].toString());
+            } else if (name.equals("addBatch")) {
+                this.batches.add(new ArrayList(this.parameters));
+                this.parameters.clear();
+            } else if (name.equals("executeQuery")) {
+                return executeQuery();
+            } else if (name.equals("executeBatch")) {
+                return executeBatch();
+            } else if (name.equals("next")) {
+                return Boolean.valueOf(++this.resultIndex < this.results.size());
+            } else if (name.equals("getString")) {
+                return ((String[]) this.results.get(this.resultIndex))[((Integer) args[0]).intValue() - 1];
+            } else if (name.equals("getMetaData")) {
+                return proxy(ResultSetMetaData.class);
+            } else if (name.equals("getColumnType")) {
+                return new Integer(Types.VARCHAR);
+            } else if (name.equals("getAutoCommit")) {
+                return Boolean.TRUE;
+            }
+            return null;
+        }
+        
+        private Object executeQuery() {
+            this.results = new ArrayList();
+            this.resultIndex = -1;
+            if (!this.sql.endsWith("1 = 0")) {
+                final String afterKey = (this.parameters.isEmpty()? null : (String) this.parameters.get(0));
+                for (int i = 0; i < this.rows.size(); i++) {
+                    final String[] row = (String[]) this.rows.get(i);
+                    if (afterKey == null || row[0].compareTo(afterKey) > 0) {
+                        this.results.add(row.clone());
+                    }
+                }
+                if (afterKey == null) {
+                    // Concurrent modification, once the rows have been read
+                    findRow(this.modifiedKey)[1] = this.modifiedValue;
+                }
+            }
+            return proxy(java.sql.ResultSet.class);
+        }
+        
+        private int[] executeBatch() {
+            final int[] counts = new int[this.batches.size()];
+            for (int i = 0; i < counts.length; i++) {
+                final List update = (List) this.batches.get(i);
+                final String[] row = findRow((String) update.get(1));
+                if (row != null && row[1].equals(update.get(2))) {
+                    row[1] = (String) update.get(0);
+                    counts[i] = 1;
+                }
+            }
+            this.batches.clear();
+            return counts;
+        }
+        
+        private String[] findRow(final String key) {
+            for (int i = 0; i < this.rows.size(); i++) {
+                final String[] row = (String[]) this.rows.get(i);
+                if (row[0].equals(key)) {
+                    return row;
+                }
+            }
+            return null;
+        }
+        
+    }
+    
+}
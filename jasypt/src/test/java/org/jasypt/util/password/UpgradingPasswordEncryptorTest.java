@@ -0,0 +1,159 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2007-2010, The JASYPT team (http://www.jasypt.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.jasypt.util.password;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+
+public class UpgradingPasswordEncryptorTest extends TestCase {
+
+    
+    private static final class RecordingCallback implements PasswordRehashCallback {
+        
+        final List oldDigests = new ArrayList();
+        final List newDigests = new ArrayList();
+        
+        public void passwordRehashed(final String oldEncryptedPassword, 
+                final String newEncryptedPassword) {
+            this.oldDigests.add(oldEncryptedPassword);
+            this.newDigests.add(newEncryptedPassword);
+        }
+        
+    }
+    
+    
+    public void testDigest() throws Exception {
+
+        String password = "This is a Password";
+        
+        UpgradingPasswordEncryptor passwordEncryptor = new UpgradingPasswordEncryptor();
+        passwordEncryptor.setIterations(1000);
+        String encryptedPassword = passwordEncryptor.encryptPassword(password);
+        assertTrue(encryptedPassword.startsWith("{jasypt:SHA-256:1000:16}"));
+        
+        assertTrue(passwordEncryptor.checkPassword(password, encryptedPassword));
+        assertFalse(passwordEncryptor.checkPassword("This is a  Password", encryptedPassword));
+        assertFalse(passwordEncryptor.needsRehash(encryptedPassword));
+        assertFalse(
+                passwordEncryptor.encryptPassword(password).equals(
+                        passwordEncryptor.encryptPassword(password)));
+        
+        assertFalse(passwordEncryptor.checkPassword(password, null));
+        assertFalse(passwordEncryptor.checkPassword(password, "{jasypt:SHA-256:x:16}abc"));
+        
+    }
+    
+    
+    public void testRehashOnChangedParameters() throws Exception {
+
+        String password = "This is a Password";
+        
+        UpgradingPasswordEncryptor oldEncryptor = new UpgradingPasswordEncryptor();
+        oldEncryptor.setAlgorithm("MD5");
+        oldEncryptor.setIterations(500);
+        oldEncryptor.setSaltSizeBytes(8);
+        String oldEncryptedPassword = oldEncryptor.encryptPassword(password);
+        
+        RecordingCallback callback = new RecordingCallback();
+        UpgradingPasswordEncryptor passwordEncryptor = new UpgradingPasswordEncryptor();
+        passwordEncryptor.setIterations(1000);
+        passwordEncryptor.setRehashCallback(callback);
+        assertTrue(passwordEncryptor.needsRehash(oldEncryptedPassword));
+        
+        // Wrong passwords are never re-digested
+        assertFalse(passwordEncryptor.checkPassword("Another Password", oldEncryptedPassword));
+        assertEquals(0, callback.newDigests.size());
+        
+        assertTrue(passwordEncryptor.checkPassword(password, oldEncryptedPassword));
+        assertEquals(1, callback.newDigests.size());
+        assertEquals(oldEncryptedPassword, callback.oldDigests.get(0));
+        
+        String newEncryptedPassword = (String) callback.newDigests.get(0);
+        assertTrue(newEncryptedPassword.startsWith("{jasypt:SHA-256:1000:16}"));
+        assertFalse(passwordEncryptor.needsRehash(newEncryptedPassword));
+        assertTrue(passwordEncryptor.checkPassword(password, newEncryptedPassword));
+        assertEquals(1, callback.newDigests.size());
+        
+    }
+    
+    
+    public void testRehashLegacyDigests() throws Exception {
+
+        String password = "This is a Password";
+        
+        ConfigurablePasswordEncryptor legacyEncryptor = new ConfigurablePasswordEncryptor();
+        legacyEncryptor.setAlgorithm("MD5");
+        String legacyEncryptedPassword = legacyEncryptor.encryptPassword(password);
+        
+        UpgradingPasswordEncryptor passwordEncryptor = new UpgradingPasswordEncryptor();
+        passwordEncryptor.setIterations(1000);
+        
+        // Without a legacy encryptor, unprefixed digests never match
+        assertFalse(passwordEncryptor.checkPassword(password, legacyEncryptedPassword));
+        
+        passwordEncryptor.setLegacyPasswordEncryptor(legacyEncryptor);
+        RecordingCallback callback = new RecordingCallback();
+        assertTrue(passwordEncryptor.checkPassword(password, legacyEncryptedPassword, callback));
+        assertFalse(passwordEncryptor.checkPassword("Another Password", legacyEncryptedPassword, callback));
+        assertEquals(1, callback.newDigests.size());
+        assertTrue(passwordEncryptor.checkPassword(password, (String) callback.newDigests.get(0)));
+        
+    }
+    
+    
+    public void testUntrustedPrefixes() throws Exception {
+
+        String password = "This is a Password";
+        
+        UpgradingPasswordEncryptor passwordEncryptor = new UpgradingPasswordEncryptor();
+        passwordEncryptor.setIterations(1000);
+        passwordEncryptor.setMaxIterations(5000);
+        String encryptedPassword = passwordEncryptor.encryptPassword(password);
+        String digest = encryptedPassword.substring(encryptedPassword.indexOf('}') + 1);
+        
+        // Unknown algorithms do not match, instead of failing
+        assertFalse(passwordEncryptor.checkPassword(password, "{jasypt:NONEXISTENT:1000:16}" + digest));
+        
+        // Digests over the maximum iterations are rejected without digesting
+        UpgradingPasswordEncryptor expensiveEncryptor = new UpgradingPasswordEncryptor();
+        expensiveEncryptor.setIterations(6000);
+        String expensiveEncryptedPassword = expensiveEncryptor.encryptPassword(password);
+        assertTrue(expensiveEncryptor.checkPassword(password, expensiveEncryptedPassword));
+        assertFalse(passwordEncryptor.checkPassword(password, expensiveEncryptedPassword));
+        assertFalse(passwordEncryptor.checkPassword(password, "{jasypt:SHA-256:2147483647:16}" + digest));
+        
+        // ...unless they have the current number of iterations
+        passwordEncryptor.setIterations(6000);
+        assertTrue(passwordEncryptor.checkPassword(password, expensiveEncryptedPassword));
+        
+        // Digesters for many different prefixes can still be used
+        for (int i = 1; i <= 100; i++) {
+            assertFalse(passwordEncryptor.checkPassword(password, "{jasypt:SHA-256:" + i + ":16}" + digest));
+        }
+        assertTrue(passwordEncryptor.checkPassword(password, encryptedPassword));
+        
+    }
+
+    
+}